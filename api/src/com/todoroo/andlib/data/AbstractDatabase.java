@@ -6,6 +6,7 @@
 package com.todoroo.andlib.data;
 
 import java.util.ArrayList;
+import java.util.concurrent.Callable;
 
 import android.content.ContentValues;
 import android.content.Context;
@@ -13,10 +14,12 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteDatabase.CursorFactory;
+import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.util.Log;
 
 import com.todoroo.andlib.data.Property.PropertyVisitor;
+import com.todoroo.andlib.data.QueryStatistics.Template;
 import com.todoroo.andlib.service.Autowired;
 import com.todoroo.andlib.service.ContextManager;
 import com.todoroo.andlib.service.DependencyInjectionService;
@@ -103,7 +106,38 @@ abstract public class AbstractDatabase {
         listeners.add(listener);
     }
 
+    /**
+     * Interface for responding to changes to a specific table
+     */
+    public interface TableUpdateListener {
+        /**
+         * Called when an INSERT, UPDATE, or DELETE occurs on a table. Unlike
+         * {@link DatabaseUpdateListener}, this is called right away even
+         * inside a transaction, so it should only mark state as stale.
+         *
+         * @param table name of the table that changed
+         * @param values values written, or null for a DELETE
+         */
+        public void onTableUpdated(String table, ContentValues values);
+    }
+
+    private final ArrayList<TableUpdateListener> tableListeners = new ArrayList<TableUpdateListener>();
+
+    public void addTableListener(TableUpdateListener listener) {
+        tableListeners.add(listener);
+    }
+
+    protected void onTableUpdated(String table, ContentValues values) {
+        for(TableUpdateListener listener : tableListeners) {
+            listener.onTableUpdated(table, values);
+        }
+    }
+
     protected void onDatabaseUpdated() {
+        if(transactionDepth > 0) {
+            updatedInTransaction = true;
+            return;
+        }
         for(DatabaseUpdateListener listener : listeners) {
             listener.onDatabaseUpdated();
         }
@@ -197,6 +231,8 @@ abstract public class AbstractDatabase {
     public synchronized final void clear() {
         close();
         ContextManager.getContext().deleteDatabase(getName());
+        for(Table table : getTables())
+            onTableUpdated(table.name, null);
     }
 
     /**
@@ -224,13 +260,25 @@ abstract public class AbstractDatabase {
      * @see android.database.sqlite.SQLiteDatabase#rawQuery(String  sql, String[] selectionArgs)
      */
     public synchronized Cursor rawQuery(String sql, String[] selectionArgs) {
-        return getDatabase().rawQuery(sql, selectionArgs);
+        if(!QueryStatistics.isEnabled())
+            return getDatabase().rawQuery(sql, selectionArgs);
+
+        long start = System.nanoTime();
+        Cursor cursor = getDatabase().rawQuery(sql, selectionArgs);
+        // cursors are lazy, so count rows to actually run the query
+        int rows = cursor.getCount();
+        Template template = QueryStatistics.record(sql, System.nanoTime() - start, rows);
+        if(template != null)
+            capturePlan(template, sql, selectionArgs);
+        return cursor;
     }
 
     /*
      * @see android.database.sqlite.SQLiteDatabase#insert(String  table, String  nullColumnHack, ContentValues  values)
      */
     public synchronized long insert(String table, String nullColumnHack, ContentValues values) {
+        boolean profile = QueryStatistics.isEnabled();
+        long start = profile ? System.nanoTime() : 0;
         long result = -1;
         try {
             result = getDatabase().insertOrThrow(table, nullColumnHack, values);
@@ -240,6 +288,10 @@ abstract public class AbstractDatabase {
             Log.e("SQLiteDatabase", "Error inserting " + values, e);
             result = -1;
         }
+        if(profile)
+            QueryStatistics.record("INSERT INTO " + table + " " + values.keySet(),
+                    System.nanoTime() - start, result < 0 ? 0 : 1);
+        onTableUpdated(table, values);
         onDatabaseUpdated();
         return result;
     }
@@ -248,7 +300,13 @@ abstract public class AbstractDatabase {
      * @see android.database.sqlite.SQLiteDatabase#delete(String  table, String  whereClause, String[] whereArgs)
      */
     public synchronized int delete(String table, String whereClause, String[] whereArgs) {
+        boolean profile = QueryStatistics.isEnabled();
+        long start = profile ? System.nanoTime() : 0;
         int result = getDatabase().delete(table, whereClause, whereArgs);
+        if(profile)
+            QueryStatistics.record("DELETE FROM " + table + " WHERE " + whereClause,
+                    System.nanoTime() - start, result);
+        onTableUpdated(table, null);
         onDatabaseUpdated();
         return result;
     }
@@ -257,11 +315,102 @@ abstract public class AbstractDatabase {
      * @see android.database.sqlite.SQLiteDatabase#update(String  table, ContentValues  values, String  whereClause, String[] whereArgs)
      */
     public synchronized int update(String  table, ContentValues  values, String  whereClause, String[] whereArgs) {
+        boolean profile = QueryStatistics.isEnabled();
+        long start = profile ? System.nanoTime() : 0;
         int result = getDatabase().update(table, values, whereClause, whereArgs);
+        if(profile)
+            QueryStatistics.record("UPDATE " + table + " SET " + values.keySet() +
+                    " WHERE " + whereClause, System.nanoTime() - start, result);
+        onTableUpdated(table, values);
         onDatabaseUpdated();
         return result;
     }
 
+    /*
+     * @see android.database.sqlite.SQLiteDatabase#execSQL(String sql)
+     */
+    public synchronized void execSQL(String sql) {
+        getDatabase().execSQL(sql);
+    }
+
+    /**
+     * Run a query such as a pragma that returns a single number
+     *
+     * @return first column of the first row, or 0 if there are no rows
+     */
+    public synchronized long simpleQueryForLong(String sql) {
+        Cursor cursor = getDatabase().rawQuery(sql, null);
+        try {
+            if(!cursor.moveToFirst())
+                return 0;
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Record the query plan of a slow statement
+     */
+    private void capturePlan(Template template, String sql, String[] selectionArgs) {
+        StringBuilder plan = new StringBuilder();
+        try {
+            Cursor cursor = getDatabase().rawQuery("EXPLAIN QUERY PLAN " + sql, selectionArgs);
+            try {
+                // the last column holds the human-readable detail
+                int detail = cursor.getColumnCount() - 1;
+                for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext())
+                    plan.append(cursor.getString(detail)).append('\n');
+            } finally {
+                cursor.close();
+            }
+        } catch (SQLiteException e) {
+            plan.append("unavailable: ").append(e.getMessage());
+        }
+        QueryStatistics.setPlan(template, plan.toString().trim());
+    }
+
+    // --- transactions
+
+    /** number of nested {@link #runInTransaction} calls in progress */
+    private int transactionDepth = 0;
+
+    /** whether a change was made in the current transaction */
+    private boolean updatedInTransaction = false;
+
+    /**
+     * Runs the given body in a single transaction, which is rolled back if
+     * the body throws. Listeners are notified once when the outermost
+     * transaction commits instead of once per change.
+     * <p>
+     * The whole transaction holds this database's lock, so other threads
+     * writing through this wrapper wait for it rather than deadlocking
+     * against the SQLite transaction lock.
+     *
+     * @return value returned by the body
+     */
+    public synchronized <T> T runInTransaction(Callable<T> body) throws Exception {
+        SQLiteDatabase db = getDatabase();
+        boolean success = false;
+        db.beginTransaction();
+        transactionDepth++;
+        try {
+            T result = body.call();
+            db.setTransactionSuccessful();
+            success = true;
+            return result;
+        } finally {
+            db.endTransaction();
+            transactionDepth--;
+            if(transactionDepth == 0) {
+                boolean updated = updatedInTransaction && success;
+                updatedInTransaction = false;
+                if(updated)
+                    onDatabaseUpdated();
+            }
+        }
+    }
+
     // --- helper classes
 
     /**
@@ -62,62 +62,87 @@ public abstract class AbstractModel implements Parcelable, Cloneable {
     /* Data Source Ordering:
      *
      * In order to return the best data, we want to check first what the user
-     * has explicitly set (setValues), then the values we have read out of
-     * the database (values), then defaults (getDefaultValues)
+     * has explicitly set or what we have read out of the database (store),
+     * then defaults (getDefaultValues). Set values are marked dirty in the
+     * store until the model is saved.
      */
 
-    /** User set values */
-    protected ContentValues setValues = null;
+    /** Values read from the database or set by the user */
+    private ValueStore store = new ValueStore(ValueStore.Layout.forClass(getClass()));
 
-    /** Values from database */
-    protected ContentValues values = null;
+    /** Default values, converted from getDefaultValues() on first use */
+    private ValueStore defaults = null;
+
+    /** Whether values have been set since the model was read or saved */
+    private boolean hasSetValues = false;
+
+    /** Set values handed out by getSetValues(), kept up to date until saved */
+    private ContentValues setValuesView = null;
+
+    /** Decoded string values by property name, dropped when values change */
+    private HashMap<String, Object> decodedValues = null;
 
     /** Transitory Metadata (not saved in database) */
     protected HashMap<String, Object> transitoryData = null;
 
-    /** Get database-read values for this object */
-    public ContentValues getDatabaseValues() {
-        return values;
+    private ValueStore getDefaults() {
+        if(defaults == null)
+            defaults = store.layout.defaults(getDefaultValues());
+        return defaults;
     }
 
-    /** Get the user-set values for this object */
-    public ContentValues getSetValues() {
-        return setValues;
+    /**
+     * Get database-read values for this object, or null if there are none.
+     * Values that have been set since are not included.
+     */
+    public synchronized ContentValues getDatabaseValues() {
+        ContentValues values = new ContentValues();
+        store.writeTo(values, ValueStore.CLEAN);
+        return values.size() == 0 ? null : values;
+    }
+
+    /**
+     * Get the user-set values for this object, or null if nothing was set
+     * since the model was read or last saved. The returned values keep
+     * receiving changes until the model is saved. Changing them does not
+     * change the model, use {@link #setValue} or {@link #mergeWith} instead.
+     */
+    public synchronized ContentValues getSetValues() {
+        if(!hasSetValues)
+            return null;
+        if(setValuesView == null) {
+            setValuesView = new ContentValues();
+            store.writeTo(setValuesView, ValueStore.DIRTY);
+        }
+        return setValuesView;
     }
 
     /** Get a list of all field/value pairs merged across data sources */
-    public ContentValues getMergedValues() {
+    public synchronized ContentValues getMergedValues() {
         ContentValues mergedValues = new ContentValues();
-
-        ContentValues defaultValues = getDefaultValues();
-        if(defaultValues != null)
-            mergedValues.putAll(defaultValues);
-        if(values != null)
-            mergedValues.putAll(values);
-        if(setValues != null)
-            mergedValues.putAll(setValues);
-
+        getDefaults().writeTo(mergedValues, ValueStore.ALL);
+        store.writeTo(mergedValues, ValueStore.ALL);
         return mergedValues;
     }
 
     /**
      * Clear all data on this model
      */
-    public void clear() {
-        values = null;
-        setValues = null;
+    public synchronized void clear() {
+        store.clear();
+        hasSetValues = false;
+        setValuesView = null;
+        decodedValues = null;
     }
 
     /**
      * Transfers all set values into values. This occurs when a task is
      * saved - future saves will not need to write all the data as before.
      */
-    public void markSaved() {
-        if(values == null)
-            values = setValues;
-        else if(setValues != null)
-            values.putAll(setValues);
-        setValues = null;
+    public synchronized void markSaved() {
+        store.clearDirty();
+        hasSetValues = false;
+        setValuesView = null;
     }
 
     /**
@@ -125,36 +150,58 @@ public abstract class AbstractModel implements Parcelable, Cloneable {
      * exactly the same class.
      */
     @Override
-    public boolean equals(Object other) {
+    public synchronized boolean equals(Object other) {
         if(other == null || other.getClass() !=  getClass())
             return false;
 
-        return getMergedValues().equals(((AbstractModel)other).getMergedValues());
+        ValueStore otherStore = ((AbstractModel)other).store;
+        if(otherStore.layout != store.layout)
+            return getMergedValues().equals(((AbstractModel)other).getMergedValues());
+
+        ValueStore defaultValues = getDefaults();
+        int size = store.layout.size();
+        for(int i = 0; i < size; i++) {
+            ValueStore source = store.type(i) == ValueStore.ABSENT ? defaultValues : store;
+            ValueStore otherSource = otherStore.type(i) == ValueStore.ABSENT ? defaultValues : otherStore;
+            if(!ValueStore.valueEquals(source, i, otherSource, i))
+                return false;
+        }
+        return true;
     }
 
     @Override
-    public int hashCode() {
-        return getMergedValues().hashCode() ^ getClass().hashCode();
+    public synchronized int hashCode() {
+        ValueStore defaultValues = getDefaults();
+        String[] names = store.layout.names();
+        int hashCode = 0;
+        for(int i = 0; i < names.length; i++) {
+            ValueStore source = store.type(i) == ValueStore.ABSENT ? defaultValues : store;
+            if(source.type(i) != ValueStore.ABSENT)
+                hashCode += names[i].hashCode() ^ source.valueHashCode(i);
+        }
+        return hashCode ^ getClass().hashCode();
     }
 
     @Override
-    public AbstractModel clone() {
+    public synchronized AbstractModel clone() {
         AbstractModel clone;
         try {
             clone = (AbstractModel) super.clone();
         } catch (CloneNotSupportedException e) {
             throw new RuntimeException(e);
         }
-        if(setValues != null)
-            clone.setValues = new ContentValues(setValues);
-        if(values != null)
-            clone.values = new ContentValues(values);
+        clone.store = store.copy();
+        if(setValuesView != null)
+            clone.setValuesView = new ContentValues(setValuesView);
+        // decoded values are immutable, they can be shared
+        if(decodedValues != null)
+            clone.decodedValues = new HashMap<String, Object>(decodedValues);
         return clone;
     }
 
     /** Check if this model has values that have been changed */
-    public boolean isModified() {
-        return setValues.size() > 0;
+    public synchronized boolean isModified() {
+        return store.dirtyCount() > 0;
     }
 
     // --- data retrieval
@@ -163,19 +210,43 @@ public abstract class AbstractModel implements Parcelable, Cloneable {
      * Reads all properties from the supplied cursor and store
      */
     protected synchronized void readPropertiesFromCursor(TodorooCursor<? extends AbstractModel> cursor) {
-        if (values == null)
-            values = new ContentValues();
-
         // clears user-set values
-        setValues = null;
+        store.removeDirty();
+        hasSetValues = false;
+        setValuesView = null;
         transitoryData = null;
+        decodedValues = null;
+
+        Property<?>[] properties = cursor.getProperties();
+        int[] columns = cursor.getPropertyColumns();
+        for (int i = 0; i < properties.length; i++) {
+            // underlying cursor may not have this column, skip
+            if(columns[i] != -1)
+                readProperty(properties[i], cursor, columns[i]);
+        }
+    }
 
-        for (Property<?> property : cursor.getProperties()) {
-            try {
-                saver.save(property, values, cursor.get(property));
-            } catch (IllegalArgumentException e) {
-                // underlying cursor may have changed, suppress
-            }
+    /**
+     * Reads one column without boxing numbers. Null columns are not stored,
+     * as they indicate unset properties.
+     */
+    private void readProperty(Property<?> property, TodorooCursor<?> cursor, int column) {
+        int index = store.layout.add(property);
+        if(property.nullable && cursor.isNull(column))
+            store.remove(index);
+        else if(property instanceof IntegerProperty)
+            store.putNumber(index, ValueStore.INTEGER, cursor.getInt(column));
+        else if(property instanceof LongProperty)
+            store.putNumber(index, ValueStore.LONG, cursor.getLong(column));
+        else if(property instanceof DoubleProperty)
+            store.putNumber(index, ValueStore.DOUBLE,
+                    Double.doubleToLongBits(cursor.getDouble(column)));
+        else {
+            String value = cursor.getString(column);
+            if(value == null)
+                store.remove(index);
+            else
+                store.put(index, value);
         }
     }
 
@@ -183,36 +254,41 @@ public abstract class AbstractModel implements Parcelable, Cloneable {
      * Reads the given property. Make sure this model has this property!
      */
     public synchronized <TYPE> TYPE getValue(Property<TYPE> property) {
-        Object value;
-        if(setValues != null && setValues.containsKey(property.name))
-            value = setValues.get(property.name);
-
-        else if(values != null && values.containsKey(property.name))
-            value = values.get(property.name);
-
-        else if(getDefaultValues().containsKey(property.name))
-            value = getDefaultValues().get(property.name);
-
-        else
-            throw new UnsupportedOperationException(
-                "Model Error: Did not read property " + property.name); //$NON-NLS-1$
+        int index = store.layout.indexOf(property);
+        ValueStore source = store;
+        if(source.type(index) == ValueStore.ABSENT) {
+            source = getDefaults();
+            if(source.type(index) == ValueStore.ABSENT)
+                throw new UnsupportedOperationException(
+                        "Model Error: Did not read property " + property.name); //$NON-NLS-1$
+        }
 
         // resolve properties that were retrieved with a different type than accessed
         try {
-            if(value instanceof String && property instanceof LongProperty)
-                return (TYPE) Long.valueOf((String)value);
-            else if(value instanceof String && property instanceof IntegerProperty)
-                return (TYPE) Integer.valueOf((String)value);
-            else if(value instanceof String && property instanceof DoubleProperty)
-                return (TYPE) Double.valueOf((String)value);
-            else if(value instanceof Integer && property instanceof LongProperty)
-                return (TYPE) Long.valueOf(((Number)value).longValue());
-            return (TYPE) value;
+            return (TYPE) source.get(index, property);
         } catch (NumberFormatException e) {
-            return (TYPE) getDefaultValues().get(property.name);
+            return (TYPE) getDefaults().get(index);
         }
     }
 
+    /**
+     * Reads the given string property decoded by the given decoder. The
+     * decoded value is kept until the property changes, so it is only
+     * decoded once per value.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <TYPE> TYPE getDecodedValue(Property<String> property,
+            ValueDecoder<TYPE> decoder) {
+        if(decodedValues != null && decodedValues.containsKey(property.name))
+            return (TYPE) decodedValues.get(property.name);
+
+        TYPE value = decoder.decode(getValue(property));
+        if(decodedValues == null)
+            decodedValues = new HashMap<String, Object>();
+        decodedValues.put(property.name, value);
+        return value;
+    }
+
     /**
      * Utility method to get the identifier of the model, if it exists.
      *
@@ -220,23 +296,22 @@ public abstract class AbstractModel implements Parcelable, Cloneable {
      */
     abstract public long getId();
 
-    protected long getIdHelper(LongProperty id) {
-        if(setValues != null && setValues.containsKey(id.name))
-            return setValues.getAsLong(id.name);
-        else if(values != null && values.containsKey(id.name))
-            return values.getAsLong(id.name);
-        else
-            return NO_ID;
+    protected synchronized long getIdHelper(LongProperty id) {
+        return store.getLong(store.layout.indexOf(id), NO_ID);
     }
 
-    public void setId(long id) {
-        if (setValues == null)
-            setValues = new ContentValues();
+    public synchronized void setId(long id) {
+        hasSetValues = true;
 
         if(id == NO_ID)
             clearValue(ID_PROPERTY);
-        else
-            setValues.put(ID_PROPERTY_NAME, id);
+        else {
+            int index = store.layout.add(ID_PROPERTY);
+            store.putNumber(index, ValueStore.LONG, id);
+            store.setDirty(index, true);
+            if(setValuesView != null)
+                setValuesView.put(ID_PROPERTY_NAME, id);
+        }
     }
 
     /**
@@ -250,12 +325,8 @@ public abstract class AbstractModel implements Parcelable, Cloneable {
      * @param property
      * @return true if setValues or values contains this property
      */
-    public boolean containsValue(Property<?> property) {
-        if(setValues != null && setValues.containsKey(property.name))
-            return true;
-        if(values != null && values.containsKey(property.name))
-            return true;
-        return false;
+    public synchronized boolean containsValue(Property<?> property) {
+        return store.type(store.layout.indexOf(property)) != ValueStore.ABSENT;
     }
 
     /**
@@ -263,12 +334,8 @@ public abstract class AbstractModel implements Parcelable, Cloneable {
      * @return true if setValues or values contains this property, and the value
      *         stored is not null
      */
-    public boolean containsNonNullValue(Property<?> property) {
-        if(setValues != null && setValues.containsKey(property.name))
-            return setValues.get(property.name) != null;
-        if(values != null && values.containsKey(property.name))
-            return values.get(property.name) != null;
-        return false;
+    public synchronized boolean containsNonNullValue(Property<?> property) {
+        return store.type(store.layout.indexOf(property)) > ValueStore.NULL;
     }
 
     // --- data storage
@@ -280,12 +347,14 @@ public abstract class AbstractModel implements Parcelable, Cloneable {
     protected synchronized <TYPE> boolean shouldSaveValue(
             Property<TYPE> property, TYPE newValue) {
 
+        int index = store.layout.indexOf(property);
+
     	// we've already decided to save it, so overwrite old value
-        if (setValues.containsKey(property.name))
+        if (store.isDirty(index))
         	return true;
 
         // values contains this key, we should check it out
-        if(values != null && values.containsKey(property.name)) {
+        if(store.type(index) != ValueStore.ABSENT) {
             TYPE value = getValue(property);
             if (value == null) {
                 if (newValue == null)
@@ -303,21 +372,33 @@ public abstract class AbstractModel implements Parcelable, Cloneable {
      */
     public synchronized <TYPE> void setValue(Property<TYPE> property,
             TYPE value) {
-        if (setValues == null)
-            setValues = new ContentValues();
+        hasSetValues = true;
         if (!shouldSaveValue(property, value))
             return;
 
-        saver.save(property, setValues, value);
+        // we don't allow null values, as they indicate unset properties
+        // when the database was written
+        if (value == null)
+            return;
+
+        int index = store.layout.add(property);
+        store.put(index, value);
+        store.setDirty(index, true);
+        if (decodedValues != null)
+            decodedValues.remove(property.name);
+        if (setValuesView != null)
+            saver.save(property, setValuesView, value);
     }
 
     /**
      * Merges content values with those coming from another source
      */
     public synchronized <TYPE> void mergeWith(ContentValues other) {
-        if (setValues == null)
-            setValues = new ContentValues();
-        setValues.putAll(other);
+        hasSetValues = true;
+        store.readFrom(other, true);
+        if (setValuesView != null)
+            setValuesView.putAll(other);
+        decodedValues = null;
     }
 
     /**
@@ -325,10 +406,11 @@ public abstract class AbstractModel implements Parcelable, Cloneable {
      * @param property
      */
     public synchronized void clearValue(Property<?> property) {
-        if(setValues != null && setValues.containsKey(property.name))
-            setValues.remove(property.name);
-        if(values != null && values.containsKey(property.name))
-            values.remove(property.name);
+        store.remove(store.layout.indexOf(property));
+        if(setValuesView != null)
+            setValuesView.remove(property.name);
+        if(decodedValues != null)
+            decodedValues.remove(property.name);
     }
 
     /**
@@ -477,10 +559,32 @@ public abstract class AbstractModel implements Parcelable, Cloneable {
      * {@inheritDoc}
      */
     public void writeToParcel(Parcel dest, int flags) {
+        ContentValues setValues = null;
+        ContentValues values;
+        synchronized(this) {
+            if(hasSetValues) {
+                setValues = new ContentValues();
+                store.writeTo(setValues, ValueStore.DIRTY);
+            }
+            values = getDatabaseValues();
+        }
         dest.writeParcelable(setValues, 0);
         dest.writeParcelable(values, 0);
     }
 
+    /**
+     * Restores values written by {@link #writeToParcel}
+     */
+    private synchronized void readFromParcel(ContentValues setValues, ContentValues values) {
+        clear();
+        if(values != null)
+            store.readFrom(values, false);
+        if(setValues != null) {
+            hasSetValues = true;
+            store.readFrom(setValues, true);
+        }
+    }
+
     /**
      * In addition to overriding this class, model classes should create
      * a static final variable named "CREATOR" in order to satisfy the
@@ -513,8 +617,9 @@ public abstract class AbstractModel implements Parcelable, Cloneable {
             } catch (InstantiationException e) {
                 throw new RuntimeException(e);
             }
-            model.setValues = source.readParcelable(ContentValues.class.getClassLoader());
-            model.values = source.readParcelable(ContentValues.class.getClassLoader());
+            ContentValues setValues = source.readParcelable(ContentValues.class.getClassLoader());
+            ContentValues values = source.readParcelable(ContentValues.class.getClassLoader());
+            ((AbstractModel) model).readFromParcel(setValues, values);
             return model;
         }
 
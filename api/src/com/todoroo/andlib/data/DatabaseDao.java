@@ -8,9 +8,13 @@ package com.todoroo.andlib.data;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
 
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteQueryBuilder;
 import android.util.Log;
 
 import com.todoroo.andlib.service.Autowired;
@@ -75,6 +79,14 @@ public class DatabaseDao<TYPE extends AbstractModel> {
         public void onModelUpdated(MTYPE model);
     }
 
+    /**
+     * Listener that is told about models saved together in one call
+     * instead of once per model
+     */
+    public interface BatchUpdateListener<MTYPE> extends ModelUpdateListener<MTYPE> {
+        public void onModelsUpdated(List<MTYPE> models);
+    }
+
     private final ArrayList<ModelUpdateListener<TYPE>> listeners =
         new ArrayList<ModelUpdateListener<TYPE>>();
 
@@ -89,6 +101,23 @@ public class DatabaseDao<TYPE extends AbstractModel> {
         }
     }
 
+    /**
+     * Notifies listeners of models saved together. Batch listeners are
+     * called once, others once per model. The models are handed to
+     * listeners as they are, so callers pass copies.
+     */
+    protected void onModelsUpdated(List<TYPE> models) {
+        if(models.isEmpty())
+            return;
+        for(ModelUpdateListener<TYPE> listener : listeners) {
+            if(listener instanceof BatchUpdateListener<?>)
+                ((BatchUpdateListener<TYPE>) listener).onModelsUpdated(models);
+            else
+                for(TYPE model : models)
+                    listener.onModelUpdated(model);
+        }
+    }
+
     // --- dao methods
 
     /**
@@ -117,9 +146,9 @@ public class DatabaseDao<TYPE extends AbstractModel> {
         String[] fields = new String[properties.length];
         for(int i = 0; i < properties.length; i++)
             fields[i] = properties[i].name;
-        return new TodorooCursor<TYPE>(database.getDatabase().query(table.name,
-                fields, selection, selectionArgs, null, null, null),
-                properties);
+        String sql = SQLiteQueryBuilder.buildQueryString(false, table.name, fields,
+                selection, null, null, null, null);
+        return new TodorooCursor<TYPE>(database.rawQuery(sql, selectionArgs), properties);
     }
 
     /**
@@ -263,6 +292,77 @@ public class DatabaseDao<TYPE extends AbstractModel> {
         return result;
     }
 
+    /** largest number of ids written into a single IN clause */
+    public static final int IDS_PER_STATEMENT = 500;
+
+    /**
+     * Saves the values set on the template to every one of the given items,
+     * using one UPDATE statement per chunk of ids instead of one per item.
+     * Listeners are notified for each item as if it had been saved with
+     * {@link #saveExisting(AbstractModel)}, batch listeners once for all.
+     *
+     * @param ids ids of existing items
+     * @param template set fields on this object in order to set them in the db.
+     * @return # of updated items
+     */
+    public int saveExistingMultiple(long[] ids, TYPE template) {
+        ContentValues values = template.getSetValues();
+        if(ids.length == 0 || values == null || values.size() == 0) // nothing changed
+            return 0;
+
+        int result = 0;
+        for(int start = 0; start < ids.length; start += IDS_PER_STATEMENT)
+            result += database.update(table.name, values,
+                    idIn(ids, start).toString(), null);
+
+        ArrayList<TYPE> saved = new ArrayList<TYPE>(ids.length);
+        for(long id : ids) {
+            template.setId(id);
+            TYPE model = (TYPE) template.clone();
+            // listeners clear transitory flags of each item separately
+            if(template.transitoryData != null)
+                model.transitoryData = new HashMap<String, Object>(template.transitoryData);
+            saved.add(model);
+        }
+        template.clearValue(AbstractModel.ID_PROPERTY);
+        onModelsUpdated(saved);
+        return result;
+    }
+
+    /**
+     * Runs the given body in a single transaction of this DAO's database,
+     * see {@link AbstractDatabase#runInTransaction(Callable)}
+     *
+     * @return value returned by the body
+     */
+    public <T> T runInTransaction(Callable<T> body) {
+        try {
+            return database.runInTransaction(body);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return criterion matching the chunk of ids beginning at start
+     */
+    protected static Criterion idIn(long[] ids, int start) {
+        return AbstractModel.ID_PROPERTY.in(idChunk(ids, start));
+    }
+
+    /**
+     * @return the chunk of ids beginning at start, at most
+     * {@link #IDS_PER_STATEMENT} of them
+     */
+    public static Long[] idChunk(long[] ids, int start) {
+        Long[] chunk = new Long[Math.min(IDS_PER_STATEMENT, ids.length - start)];
+        for(int i = 0; i < chunk.length; i++)
+            chunk[i] = ids[start + i];
+        return chunk;
+    }
+
     /**
      * Updates multiple rows of the database based on model set values
      *
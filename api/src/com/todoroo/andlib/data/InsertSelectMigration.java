@@ -0,0 +1,71 @@
+/**
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.andlib.data;
+
+import java.util.ArrayList;
+
+/**
+ * Migration that copies rows with one INSERT ... SELECT per chunk, paging
+ * through a source table by rowid. Source tables may live in other
+ * database files, which are attached for the duration of the run.
+ */
+@SuppressWarnings("nls")
+public class InsertSelectMigration extends Migration {
+
+    private final AbstractDatabase database;
+    private final String source;
+    private final String insert;
+    private final ArrayList<String[]> attachments = new ArrayList<String[]>();
+
+    /** number of attachments made by {@link #open()} */
+    private int attached = 0;
+
+    /**
+     * @param source table to page through, e.g. "legacy.alerts". The
+     * insert statement must refer to it by this name, not an alias
+     * @param insert INSERT ... SELECT statement ending in a WHERE clause
+     * that chunk conditions on the rowid of the source are appended to
+     */
+    public InsertSelectMigration(String name, AbstractDatabase database,
+            String source, String insert) {
+        super(name);
+        this.database = database;
+        this.source = source;
+        this.insert = insert;
+    }
+
+    /** Attach another database file under the given alias during the run */
+    public InsertSelectMigration attach(String alias, String path) {
+        attachments.add(new String[] { alias, path });
+        return this;
+    }
+
+    @Override
+    protected void open() {
+        for(String[] attachment : attachments) {
+            database.execSQL("ATTACH DATABASE '" + attachment[1].replace("'", "''") +
+                    "' AS " + attachment[0]);
+            attached++;
+        }
+    }
+
+    @Override
+    protected void close() {
+        // open() may have failed part way
+        for(; attached > 0; attached--)
+            database.execSQL("DETACH DATABASE " + attachments.get(attached - 1)[0]);
+    }
+
+    @Override
+    protected long migrateChunk(long checkpoint, int limit) {
+        long last = database.simpleQueryForLong("SELECT MAX(rowid) FROM (SELECT rowid FROM " +
+                source + " WHERE rowid > " + checkpoint + " ORDER BY rowid LIMIT " + limit + ")");
+        if(last <= checkpoint)
+            return DONE;
+        database.execSQL(insert + " AND " + source + ".rowid > " + checkpoint +
+                " AND " + source + ".rowid <= " + last);
+        return last;
+    }
+
+}
@@ -0,0 +1,50 @@
+/**
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.andlib.data;
+
+/**
+ * A data migration run by {@link MigrationRunner}. Rows are migrated in
+ * chunks, in the order of some increasing key such as a row id. Each
+ * chunk commits in one transaction together with the key of its last
+ * row, so an interrupted migration resumes after the last chunk that
+ * committed.
+ */
+abstract public class Migration {
+
+    /** checkpoint before the first chunk */
+    public static final long START = 0;
+
+    /** checkpoint of a finished migration */
+    public static final long DONE = -1;
+
+    /** unique name under which progress is recorded */
+    public final String name;
+
+    protected Migration(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Called before the first chunk of a run, outside of a transaction,
+     * e.g. to open or attach source databases
+     */
+    protected void open() {
+        //
+    }
+
+    /** Called after the last chunk of a run, also if it failed */
+    protected void close() {
+        //
+    }
+
+    /**
+     * Migrate up to the given number of rows whose key follows the
+     * checkpoint. Runs inside a transaction.
+     *
+     * @return key of the last row migrated, or {@link #DONE} if there were
+     * no rows left
+     */
+    abstract protected long migrateChunk(long checkpoint, int limit) throws Exception;
+
+}
@@ -0,0 +1,126 @@
+/**
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.andlib.data;
+
+import java.util.concurrent.Callable;
+
+import android.database.Cursor;
+import android.util.Log;
+
+import com.todoroo.andlib.service.Autowired;
+import com.todoroo.andlib.service.DependencyInjectionService;
+import com.todoroo.andlib.service.ExceptionService;
+
+/**
+ * Runs {@link Migration}s against a database in chunked transactions.
+ * The checkpoint of each migration is stored in a table of the same
+ * database and committed with each chunk, so a run that is interrupted,
+ * e.g. by the app being killed, picks up where it stopped when it is
+ * started again.
+ */
+@SuppressWarnings("nls")
+public class MigrationRunner {
+
+    /** rows per transaction if not given */
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+
+    private static final String TABLE = "migrations";
+
+    @Autowired ExceptionService exceptionService;
+
+    private final AbstractDatabase database;
+    private final int chunkSize;
+
+    public MigrationRunner(AbstractDatabase database) {
+        this(database, DEFAULT_CHUNK_SIZE);
+    }
+
+    public MigrationRunner(AbstractDatabase database, int chunkSize) {
+        DependencyInjectionService.getInstance().inject(this);
+        this.database = database;
+        this.chunkSize = chunkSize;
+        database.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE +
+                " (name TEXT PRIMARY KEY, checkpoint INTEGER NOT NULL)");
+    }
+
+    // --- running
+
+    /**
+     * Run the given migrations in order, skipping finished ones and
+     * resuming interrupted ones. Stops at the first that fails; it is
+     * resumed from its last checkpoint by the next run.
+     *
+     * @return true if all migrations are finished
+     */
+    public boolean run(Migration... migrations) {
+        for(Migration migration : migrations) {
+            if(!run(migration))
+                return false;
+        }
+        return true;
+    }
+
+    private boolean run(final Migration migration) {
+        long checkpoint = getCheckpoint(migration.name, Migration.START);
+        if(checkpoint == Migration.DONE)
+            return true;
+        // record the start, so an interrupted first chunk is also resumed
+        setCheckpoint(migration.name, checkpoint);
+
+        long start = System.currentTimeMillis();
+        int chunks = 0;
+        try {
+            migration.open();
+            while(checkpoint != Migration.DONE) {
+                final long from = checkpoint;
+                checkpoint = database.runInTransaction(new Callable<Long>() {
+                    public Long call() throws Exception {
+                        long next = migration.migrateChunk(from, chunkSize);
+                        setCheckpoint(migration.name, next);
+                        return next;
+                    }
+                });
+                chunks++;
+            }
+            Log.i("migration", migration.name + ": " + chunks + " chunks in " +
+                    (System.currentTimeMillis() - start) + "ms");
+            return true;
+        } catch (Exception e) {
+            exceptionService.reportError("migration-" + migration.name, e);
+            return false;
+        } finally {
+            migration.close();
+        }
+    }
+
+    // --- checkpoints
+
+    /** @return whether the given migration has started, finished or not */
+    public boolean isStarted(String name) {
+        return getCheckpoint(name, Long.MIN_VALUE) != Long.MIN_VALUE;
+    }
+
+    /** @return whether the given migration has finished */
+    public boolean isDone(String name) {
+        return getCheckpoint(name, Migration.START) == Migration.DONE;
+    }
+
+    private long getCheckpoint(String name, long defaultValue) {
+        Cursor cursor = database.rawQuery("SELECT checkpoint FROM " + TABLE +
+                " WHERE name = ?", new String[] { name });
+        try {
+            if(!cursor.moveToFirst())
+                return defaultValue;
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void setCheckpoint(String name, long checkpoint) {
+        database.getDatabase().execSQL("INSERT OR REPLACE INTO " + TABLE +
+                " (name, checkpoint) VALUES (?, ?)", new Object[] { name, checkpoint });
+    }
+
+}
@@ -33,6 +33,9 @@ public abstract class Property<TYPE> extends Field implements Cloneable {
     /** Can this field be null? */
     public boolean nullable = false;
 
+    /** Position of this column in the model values it was last used with */
+    ValueStore.Layout.Slot slot = null;
+
     /**
      * Create a property by table and column name. Uses the default property
      * expression which is derived from default table name
@@ -225,6 +228,14 @@ public abstract class Property<TYPE> extends Field implements Cloneable {
         }
     }
 
+    /** Runs a SQL function and returns the result as a long */
+    public static class LongFunctionProperty extends LongProperty {
+        public LongFunctionProperty(String function, String columnName) {
+            super(null, columnName, function);
+            alias = columnName;
+        }
+    }
+
     /** Counting in aggregated tables. Returns the result of COUNT(1) */
     public static final class CountProperty extends IntegerFunctionProperty {
         public CountProperty() {
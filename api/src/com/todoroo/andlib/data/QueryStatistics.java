@@ -0,0 +1,271 @@
+/**
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.andlib.data;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.regex.Pattern;
+
+/**
+ * Collects timing statistics of the SQL statements run through
+ * {@link AbstractDatabase}, grouped by template: the statement with its
+ * literals replaced by <code>?</code>. The first time a template runs slower
+ * than the threshold, the database records its query plan.
+ * <p>
+ * Disabled by default, in which case statements are not timed at all.
+ */
+@SuppressWarnings("nls")
+public final class QueryStatistics {
+
+    /** number of latest samples kept per template for percentiles */
+    private static final int SAMPLES = 256;
+
+    /** most templates tracked, least recently used are dropped first */
+    private static final int MAX_TEMPLATES = 500;
+
+    private static volatile boolean enabled = false;
+
+    private static volatile long slowThresholdMillis = 50;
+
+    private static final LinkedHashMap<String, Template> templates =
+        new LinkedHashMap<String, Template>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Entry<String, Template> eldest) {
+                return size() > MAX_TEMPLATES;
+            }
+        };
+
+    private QueryStatistics() {
+        // static methods only
+    }
+
+    // --- settings
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        QueryStatistics.enabled = enabled;
+    }
+
+    /**
+     * @param millis latency above which a template's query plan is recorded
+     */
+    public static void setSlowThreshold(long millis) {
+        slowThresholdMillis = millis;
+    }
+
+    // --- templates
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?(?![\\w.])");
+    private static final Pattern VALUE_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /**
+     * Replace literals in a statement so statements differing only by
+     * their arguments share a template
+     */
+    public static String normalize(String sql) {
+        String template = STRING_LITERAL.matcher(sql).replaceAll("?");
+        template = NUMBER_LITERAL.matcher(template).replaceAll("?");
+        template = VALUE_LIST.matcher(template).replaceAll("(?)");
+        return WHITESPACE.matcher(template).replaceAll(" ").trim();
+    }
+
+    /**
+     * Statistics for one statement template
+     */
+    public static final class Template {
+        public final String sql;
+
+        private int count = 0;
+        private long totalNanos = 0;
+        private long rows = 0;
+        private final long[] samples = new long[SAMPLES];
+
+        private boolean planRequested = false;
+        private String plan = null;
+        private boolean fullScan = false;
+        private boolean tempSort = false;
+
+        Template(String sql) {
+            this.sql = sql;
+        }
+
+        synchronized boolean add(long nanos, int rowCount) {
+            samples[count % SAMPLES] = nanos;
+            count++;
+            totalNanos += nanos;
+            if(rowCount > 0)
+                rows += rowCount;
+
+            if(planRequested || nanos < slowThresholdMillis * 1000000L)
+                return false;
+            planRequested = true;
+            return true;
+        }
+
+        synchronized void setPlan(String plan) {
+            this.plan = plan;
+            String upper = plan.toUpperCase();
+            for(String line : upper.split("\n")) {
+                // "SCAN TABLE x" in newer versions, "TABLE x" in older ones
+                if((line.startsWith("SCAN TABLE") || line.startsWith("TABLE ")) &&
+                        !line.contains("INDEX"))
+                    fullScan = true;
+            }
+            tempSort = upper.contains("TEMP B-TREE");
+        }
+
+        public synchronized int getCount() {
+            return count;
+        }
+
+        public synchronized long getTotalMillis() {
+            return totalNanos / 1000000L;
+        }
+
+        public synchronized long getRows() {
+            return rows;
+        }
+
+        public synchronized String getPlan() {
+            return plan;
+        }
+
+        public synchronized boolean isFullScan() {
+            return fullScan;
+        }
+
+        public synchronized boolean isTempSort() {
+            return tempSort;
+        }
+
+        /**
+         * @param fraction e.g. 0.95 for the 95th percentile
+         * @return latency in milliseconds over the latest samples
+         */
+        public synchronized double getPercentile(double fraction) {
+            int size = Math.min(count, SAMPLES);
+            if(size == 0)
+                return 0;
+            long[] sorted = new long[size];
+            System.arraycopy(samples, 0, sorted, 0, size);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(fraction * size) - 1;
+            return sorted[Math.max(0, Math.min(index, size - 1))] / 1000000.0;
+        }
+    }
+
+    /**
+     * Record one statement
+     *
+     * @param sql statement that was run
+     * @param nanos time it took
+     * @param rows rows returned or changed, or -1 if unknown
+     * @return the statement's template if its query plan should now be
+     * captured with {@link #setPlan}, otherwise null
+     */
+    public static Template record(String sql, long nanos, int rows) {
+        String key = normalize(sql);
+        Template template;
+        synchronized(templates) {
+            template = templates.get(key);
+            if(template == null) {
+                template = new Template(key);
+                templates.put(key, template);
+            }
+        }
+        return template.add(nanos, rows) ? template : null;
+    }
+
+    public static void setPlan(Template template, String plan) {
+        template.setPlan(plan);
+    }
+
+    /**
+     * @return templates, most total time first
+     */
+    public static ArrayList<Template> getTemplates() {
+        ArrayList<Template> list;
+        synchronized(templates) {
+            list = new ArrayList<Template>(templates.values());
+        }
+        Collections.sort(list, new Comparator<Template>() {
+            @Override
+            public int compare(Template object1, Template object2) {
+                long difference = object2.getTotalMillis() - object1.getTotalMillis();
+                return difference > 0 ? 1 : difference < 0 ? -1 : 0;
+            }
+        });
+        return list;
+    }
+
+    public static void reset() {
+        synchronized(templates) {
+            templates.clear();
+        }
+    }
+
+    // --- output
+
+    /**
+     * Write a report of all templates, most total time first
+     */
+    public static void dump(Writer writer) {
+        PrintWriter out = new PrintWriter(writer);
+        for(Template template : getTemplates()) {
+            out.printf("%d calls, %d ms total, p50 %.1f ms, p95 %.1f ms, p99 %.1f ms, %d rows%s%s%n",
+                    template.getCount(), template.getTotalMillis(),
+                    template.getPercentile(0.5), template.getPercentile(0.95),
+                    template.getPercentile(0.99), template.getRows(),
+                    template.isFullScan() ? ", FULL SCAN" : "",
+                    template.isTempSort() ? ", TEMP B-TREE" : "");
+            out.println(template.sql);
+            String plan = template.getPlan();
+            if(plan != null) {
+                for(String line : plan.split("\n"))
+                    out.println("    " + line);
+            }
+            out.println();
+        }
+        out.flush();
+    }
+
+    /**
+     * Write a report of all templates to the given file
+     */
+    public static void dump(File file) throws IOException {
+        FileWriter writer = new FileWriter(file);
+        try {
+            dump(writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * @return report of all templates as a string
+     */
+    public static String dump() {
+        StringWriter writer = new StringWriter();
+        dump(writer);
+        return writer.toString();
+    }
+
+}
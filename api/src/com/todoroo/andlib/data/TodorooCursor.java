@@ -75,6 +75,28 @@ public class TodorooCursor<TYPE extends AbstractModel> extends CursorWrapper {
         return properties;
     }
 
+    /** Column index of each property, -1 for those the cursor lacks */
+    private int[] propertyColumns = null;
+
+    /**
+     * @return column index of each of {@link #getProperties()}, -1 for
+     * properties the underlying cursor does not have
+     */
+    public synchronized int[] getPropertyColumns() {
+        if(propertyColumns == null) {
+            int[] columns = new int[properties.length];
+            for(int i = 0; i < properties.length; i++) {
+                try {
+                    columns[i] = getColumnIndexFromCache(properties[i].name);
+                } catch (IllegalArgumentException e) {
+                    columns[i] = -1;
+                }
+            }
+            propertyColumns = columns;
+        }
+        return propertyColumns;
+    }
+
     /**
      * Use cache to get the column index for the given field name
      */
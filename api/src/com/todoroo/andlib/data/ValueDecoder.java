@@ -0,0 +1,55 @@
+/**
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.andlib.data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Decodes string values, such as JSON columns, into immutable objects.
+ * Recently decoded values are shared by content, so models holding the
+ * same string share one decoded object and it is parsed only once.
+ *
+ * @see AbstractModel#getDecodedValue(Property, ValueDecoder)
+ */
+abstract public class ValueDecoder<TYPE> {
+
+    private final LinkedHashMap<String, TYPE> cache;
+
+    /**
+     * @param size number of distinct values to keep decoded
+     */
+    public ValueDecoder(final int size) {
+        cache = new LinkedHashMap<String, TYPE>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TYPE> eldest) {
+                return size() > size;
+            }
+        };
+    }
+
+    /**
+     * Decode a value, or return the object it was last decoded to
+     * @param value string value, null is decoded as empty
+     */
+    public synchronized TYPE decode(String value) {
+        if(value == null)
+            value = ""; //$NON-NLS-1$
+        TYPE decoded = cache.get(value);
+        if(decoded == null) {
+            decoded = parse(value);
+            cache.put(value, decoded);
+        }
+        return decoded;
+    }
+
+    /**
+     * Parse a value. Must not fail or return null, invalid values should
+     * be decoded to an empty object.
+     */
+    abstract protected TYPE parse(String value);
+
+}
@@ -0,0 +1,523 @@
+/**
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.andlib.data;
+
+import java.util.HashMap;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+
+import android.content.ContentValues;
+
+import com.todoroo.andlib.data.Property.DoubleProperty;
+import com.todoroo.andlib.data.Property.IntegerProperty;
+import com.todoroo.andlib.data.Property.LongProperty;
+
+/**
+ * Values of one {@link AbstractModel}, kept in arrays indexed by the
+ * position of each column in the model's {@link Layout}. Integers, longs
+ * and doubles are stored unboxed, and a bit set tracks which values were
+ * changed since the model was read or last saved.
+ * <p>
+ * Not thread safe, {@link AbstractModel} synchronizes access.
+ */
+final class ValueStore {
+
+    // --- value types, in the order of ContentValues' own types
+
+    static final byte ABSENT = 0;
+    static final byte NULL = 1;
+    static final byte INTEGER = 2;
+    static final byte LONG = 3;
+    static final byte DOUBLE = 4;
+    static final byte STRING = 5;
+    /** any other type found in ContentValues, e.g. booleans */
+    static final byte OBJECT = 6;
+
+    final Layout layout;
+
+    private byte[] types = null;
+
+    /** integer and long values, doubles as their bits */
+    private long[] numbers = null;
+
+    /** strings and other objects, and boxes handed out for numbers */
+    private Object[] objects = null;
+
+    private long[] dirty = null;
+
+    private int dirtyCount = 0;
+
+    ValueStore(Layout layout) {
+        this.layout = layout;
+    }
+
+    // --- reading
+
+    byte type(int index) {
+        if(index < 0 || types == null || index >= types.length)
+            return ABSENT;
+        return types[index];
+    }
+
+    long number(int index) {
+        return numbers[index];
+    }
+
+    /**
+     * @return value at the given index in the type ContentValues would use,
+     * null if absent
+     */
+    Object get(int index) {
+        switch(type(index)) {
+        case INTEGER:
+            if(!(objects[index] instanceof Integer))
+                objects[index] = Integer.valueOf((int) numbers[index]);
+            return objects[index];
+        case LONG:
+            if(!(objects[index] instanceof Long))
+                objects[index] = Long.valueOf(numbers[index]);
+            return objects[index];
+        case DOUBLE:
+            if(!(objects[index] instanceof Double))
+                objects[index] = Double.valueOf(Double.longBitsToDouble(numbers[index]));
+            return objects[index];
+        case STRING:
+        case OBJECT:
+            return objects[index];
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * @return value at the given index converted to the type of the given
+     * property
+     * @throws NumberFormatException if a string cannot be converted
+     */
+    Object get(int index, Property<?> property) {
+        byte type = type(index);
+        if(type == INTEGER || type == LONG || type == DOUBLE) {
+            if(property instanceof LongProperty) {
+                if(type == LONG)
+                    return get(index);
+                return Long.valueOf(type == DOUBLE ? (long) doubleValue(index) : numbers[index]);
+            } else if(property instanceof IntegerProperty) {
+                if(type == INTEGER)
+                    return get(index);
+                return Integer.valueOf(type == DOUBLE ? (int) doubleValue(index) : (int) numbers[index]);
+            } else if(property instanceof DoubleProperty) {
+                if(type == DOUBLE)
+                    return get(index);
+                return Double.valueOf(numbers[index]);
+            }
+            return get(index).toString();
+        } else if(type == STRING) {
+            String value = (String) objects[index];
+            if(property instanceof LongProperty)
+                return Long.valueOf(value);
+            else if(property instanceof IntegerProperty)
+                return Integer.valueOf(value);
+            else if(property instanceof DoubleProperty)
+                return Double.valueOf(value);
+            return value;
+        }
+        return get(index);
+    }
+
+    private double doubleValue(int index) {
+        return Double.longBitsToDouble(numbers[index]);
+    }
+
+    /**
+     * @return value at the given index as a long, or the given default if
+     * it is absent, null or not a number
+     */
+    long getLong(int index, long defaultValue) {
+        switch(type(index)) {
+        case INTEGER:
+        case LONG:
+            return numbers[index];
+        case DOUBLE:
+            return (long) doubleValue(index);
+        case STRING:
+            try {
+                return Long.parseLong((String) objects[index]);
+            } catch (NumberFormatException e) {
+                return defaultValue;
+            }
+        default:
+            return defaultValue;
+        }
+    }
+
+    // --- writing
+
+    private void ensureCapacity(int index) {
+        if(types != null && index < types.length)
+            return;
+        int size = Math.max(index + 1, layout.size());
+        byte[] newTypes = new byte[size];
+        long[] newNumbers = new long[size];
+        Object[] newObjects = new Object[size];
+        long[] newDirty = new long[(size + 63) >> 6];
+        if(types != null) {
+            System.arraycopy(types, 0, newTypes, 0, types.length);
+            System.arraycopy(numbers, 0, newNumbers, 0, numbers.length);
+            System.arraycopy(objects, 0, newObjects, 0, objects.length);
+            System.arraycopy(dirty, 0, newDirty, 0, dirty.length);
+        }
+        types = newTypes;
+        numbers = newNumbers;
+        objects = newObjects;
+        dirty = newDirty;
+    }
+
+    void putNumber(int index, byte type, long number) {
+        ensureCapacity(index);
+        types[index] = type;
+        numbers[index] = number;
+        objects[index] = null;
+    }
+
+    /**
+     * Store a value of any type ContentValues accepts, keeping the given
+     * object as the box for numbers
+     */
+    void put(int index, Object value) {
+        ensureCapacity(index);
+        if(value == null) {
+            types[index] = NULL;
+        } else if(value instanceof Integer) {
+            types[index] = INTEGER;
+            numbers[index] = ((Integer) value).intValue();
+        } else if(value instanceof Long) {
+            types[index] = LONG;
+            numbers[index] = ((Long) value).longValue();
+        } else if(value instanceof Double) {
+            types[index] = DOUBLE;
+            numbers[index] = Double.doubleToLongBits(((Double) value).doubleValue());
+        } else if(value instanceof String) {
+            types[index] = STRING;
+        } else {
+            types[index] = OBJECT;
+        }
+        objects[index] = value;
+    }
+
+    void remove(int index) {
+        if(type(index) == ABSENT)
+            return;
+        setDirty(index, false);
+        types[index] = ABSENT;
+        objects[index] = null;
+    }
+
+    /** Remove all values, keeping the arrays for reuse */
+    void clear() {
+        if(types == null)
+            return;
+        for(int i = 0; i < types.length; i++) {
+            types[i] = ABSENT;
+            objects[i] = null;
+        }
+        clearDirty();
+    }
+
+    // --- dirty values
+
+    boolean isDirty(int index) {
+        if(index < 0 || dirty == null || index >= types.length)
+            return false;
+        return (dirty[index >> 6] & (1L << index)) != 0;
+    }
+
+    void setDirty(int index, boolean value) {
+        if(isDirty(index) == value)
+            return;
+        ensureCapacity(index);
+        if(value) {
+            dirty[index >> 6] |= 1L << index;
+            dirtyCount++;
+        } else {
+            dirty[index >> 6] &= ~(1L << index);
+            dirtyCount--;
+        }
+    }
+
+    int dirtyCount() {
+        return dirtyCount;
+    }
+
+    void clearDirty() {
+        if(dirty == null)
+            return;
+        for(int i = 0; i < dirty.length; i++)
+            dirty[i] = 0;
+        dirtyCount = 0;
+    }
+
+    /** Remove all values that were changed */
+    void removeDirty() {
+        for(int i = 0; dirtyCount > 0 && i < types.length; i++)
+            if(isDirty(i))
+                remove(i);
+    }
+
+    // --- conversion and comparison
+
+    static final int ALL = 0;
+    static final int DIRTY = 1;
+    static final int CLEAN = 2;
+
+    /**
+     * Copy values into a content values object
+     *
+     * @param which {@link #ALL}, {@link #DIRTY} or {@link #CLEAN}
+     */
+    void writeTo(ContentValues target, int which) {
+        if(types == null)
+            return;
+        String[] names = layout.names();
+        for(int i = 0; i < types.length; i++) {
+            if(types[i] == ABSENT)
+                continue;
+            if(which == DIRTY && !isDirty(i) || which == CLEAN && isDirty(i))
+                continue;
+            if(types[i] == NULL)
+                target.putNull(names[i]);
+            else
+                putInto(target, names[i], get(i));
+        }
+    }
+
+    private static void putInto(ContentValues target, String key, Object value) {
+        if(value instanceof Integer)
+            target.put(key, (Integer) value);
+        else if(value instanceof Long)
+            target.put(key, (Long) value);
+        else if(value instanceof Double)
+            target.put(key, (Double) value);
+        else if(value instanceof String)
+            target.put(key, (String) value);
+        else if(value instanceof Boolean)
+            target.put(key, (Boolean) value);
+        else if(value instanceof Float)
+            target.put(key, (Float) value);
+        else if(value instanceof Short)
+            target.put(key, (Short) value);
+        else if(value instanceof Byte)
+            target.put(key, (Byte) value);
+        else if(value instanceof byte[])
+            target.put(key, (byte[]) value);
+        else
+            throw new UnsupportedOperationException("Unsupported value type " + //$NON-NLS-1$
+                    value.getClass());
+    }
+
+    /**
+     * Read all values of a content values object, growing the layout for
+     * keys it does not have yet
+     */
+    void readFrom(ContentValues source, boolean markDirty) {
+        for(Entry<String, Object> entry : source.valueSet()) {
+            int index = layout.add(entry.getKey());
+            put(index, entry.getValue());
+            if(markDirty)
+                setDirty(index, true);
+        }
+    }
+
+    ValueStore copy() {
+        ValueStore copy = new ValueStore(layout);
+        if(types != null) {
+            copy.types = types.clone();
+            copy.numbers = numbers.clone();
+            copy.objects = objects.clone();
+            copy.dirty = dirty.clone();
+            copy.dirtyCount = dirtyCount;
+        }
+        return copy;
+    }
+
+    /**
+     * @return true if both stores hold the same type and value at their
+     * given indices
+     */
+    static boolean valueEquals(ValueStore a, int indexA, ValueStore b, int indexB) {
+        byte type = a.type(indexA);
+        if(type != b.type(indexB))
+            return false;
+        switch(type) {
+        case ABSENT:
+        case NULL:
+            return true;
+        case INTEGER:
+        case LONG:
+        case DOUBLE:
+            return a.numbers[indexA] == b.numbers[indexB];
+        default:
+            return a.objects[indexA].equals(b.objects[indexB]);
+        }
+    }
+
+    int valueHashCode(int index) {
+        switch(type(index)) {
+        case INTEGER:
+        case LONG:
+        case DOUBLE:
+            return (int) (numbers[index] ^ (numbers[index] >>> 32));
+        case STRING:
+        case OBJECT:
+            return objects[index].hashCode();
+        default:
+            return 0;
+        }
+    }
+
+    // --- layout
+
+    /**
+     * Position of each column in the value stores of one model class.
+     * Starts with the model's <code>PROPERTIES</code> in table order and
+     * grows when a model holds a column not among them, e.g. a function
+     * read by a query or a key merged from content values.
+     */
+    static final class Layout {
+
+        /** cached position of one property in one layout */
+        static final class Slot {
+            final Layout layout;
+            final int index;
+
+            Slot(Layout layout, int index) {
+                this.layout = layout;
+                this.index = index;
+            }
+        }
+
+        /** replaced as a whole when a column is added */
+        private volatile HashMap<String, Integer> indices;
+        private volatile String[] names;
+
+        /** default values, built from the model's on first use */
+        private ContentValues defaultsSource = null;
+        private ValueStore defaults = null;
+
+        Layout(Property<?>[] properties) {
+            HashMap<String, Integer> newIndices = new HashMap<String, Integer>();
+            String[] newNames = new String[properties.length];
+            int size = 0;
+            for(Property<?> property : properties) {
+                if(newIndices.containsKey(property.name))
+                    continue;
+                newIndices.put(property.name, size);
+                newNames[size++] = property.name;
+            }
+            String[] trimmed = new String[size];
+            System.arraycopy(newNames, 0, trimmed, 0, size);
+            indices = newIndices;
+            names = trimmed;
+        }
+
+        int size() {
+            return names.length;
+        }
+
+        String[] names() {
+            return names;
+        }
+
+        /**
+         * @return position of the given column, -1 if the layout does not
+         * have it
+         */
+        int indexOf(Property<?> property) {
+            Slot slot = property.slot;
+            if(slot != null && slot.layout == this)
+                return slot.index;
+            Integer index = indices.get(property.name);
+            if(index == null)
+                return -1;
+            property.slot = new Slot(this, index);
+            return index;
+        }
+
+        /**
+         * @return position of the given column, adding it to the layout if
+         * needed
+         */
+        int add(Property<?> property) {
+            int index = indexOf(property);
+            if(index != -1)
+                return index;
+            index = add(property.name);
+            property.slot = new Slot(this, index);
+            return index;
+        }
+
+        int add(String name) {
+            Integer index = indices.get(name);
+            if(index != null)
+                return index;
+            synchronized(this) {
+                index = indices.get(name);
+                if(index != null)
+                    return index;
+                HashMap<String, Integer> newIndices = new HashMap<String, Integer>(indices);
+                String[] newNames = new String[names.length + 1];
+                System.arraycopy(names, 0, newNames, 0, names.length);
+                newNames[names.length] = name;
+                newIndices.put(name, names.length);
+                names = newNames;
+                indices = newIndices;
+                return names.length - 1;
+            }
+        }
+
+        /**
+         * @return store holding the given default values. Default values
+         * must not change once a model of this class has been created.
+         */
+        synchronized ValueStore defaults(ContentValues defaultValues) {
+            if(defaultValues != defaultsSource || defaults == null) {
+                ValueStore store = new ValueStore(this);
+                if(defaultValues != null)
+                    store.readFrom(defaultValues, false);
+                defaults = store;
+                defaultsSource = defaultValues;
+            }
+            return defaults;
+        }
+
+        private static final ConcurrentHashMap<Class<?>, Layout> layouts =
+            new ConcurrentHashMap<Class<?>, Layout>();
+
+        /**
+         * @return layout for the given model class, built from its
+         * <code>PROPERTIES</code> field if it has one
+         */
+        static Layout forClass(Class<? extends AbstractModel> cls) {
+            Layout layout = layouts.get(cls);
+            if(layout != null)
+                return layout;
+
+            Property<?>[] properties = null;
+            try {
+                properties = (Property<?>[]) cls.getField("PROPERTIES").get(null); //$NON-NLS-1$
+            } catch (NoSuchFieldException e) {
+                // grows as values are stored
+            } catch (IllegalAccessException e) {
+                // grows as values are stored
+            }
+            // null while the model class is still being initialized
+            if(properties == null)
+                return new Layout(new Property<?>[0]);
+
+            layout = new Layout(properties);
+            Layout existing = layouts.putIfAbsent(cls, layout);
+            return existing == null ? layout : existing;
+        }
+    }
+
+}
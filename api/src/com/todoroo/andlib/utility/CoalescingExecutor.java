@@ -0,0 +1,167 @@
+/**
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.andlib.utility;
+
+import java.util.HashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.util.Log;
+
+/**
+ * Runs keyed jobs on a small, fixed pool of background threads. A job
+ * waits for a window before it runs; jobs submitted with the same key in
+ * the meantime replace it instead of running too. A job submitted while
+ * one with its key is running runs once more after it. When the last
+ * pending job of a burst is done, the idle callback is invoked once.
+ */
+public class CoalescingExecutor {
+
+    /**
+     * A pending job
+     */
+    private static final class Job implements Runnable {
+        final String key;
+        final CoalescingExecutor owner;
+        Runnable work;
+        boolean running = false;
+        boolean again = false;
+
+        Job(CoalescingExecutor owner, String key, Runnable work) {
+            this.owner = owner;
+            this.key = key;
+            this.work = work;
+        }
+
+        public void run() {
+            owner.run(this);
+        }
+    }
+
+    private final String name;
+    private final long window;
+    private final int maxPending;
+    private final Runnable onIdle;
+    private final ScheduledThreadPoolExecutor executor;
+
+    private final HashMap<String, Job> jobs = new HashMap<String, Job>();
+
+    // --- statistics, guarded by this
+
+    private int submitted = 0;
+    private int coalesced = 0;
+    private int dropped = 0;
+    private int executed = 0;
+    private int failed = 0;
+    private int bursts = 0;
+
+    /**
+     * @param name thread name prefix
+     * @param threads number of worker threads
+     * @param maxPending number of distinct keys that may be pending, further
+     * jobs are dropped
+     * @param window time in millis a job waits for repeats before running
+     * @param onIdle run on a worker thread once no job is left, may be null
+     */
+    public CoalescingExecutor(final String name, int threads, int maxPending,
+            long window, Runnable onIdle) {
+        this.name = name;
+        this.maxPending = maxPending;
+        this.window = window;
+        this.onIdle = onIdle;
+        executor = new ScheduledThreadPoolExecutor(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet()); //$NON-NLS-1$
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Queue a job. If one with the same key is waiting, the new work takes
+     * its place.
+     *
+     * @return false if the job was dropped because too many are pending
+     */
+    public synchronized boolean submit(String key, Runnable work) {
+        submitted++;
+        Job job = jobs.get(key);
+        if(job != null) {
+            job.work = work;
+            if(job.running)
+                job.again = true;
+            coalesced++;
+            return true;
+        }
+        if(jobs.size() >= maxPending) {
+            dropped++;
+            return false;
+        }
+        job = new Job(this, key, work);
+        jobs.put(key, job);
+        executor.schedule(job, window, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    private void run(Job job) {
+        Runnable work;
+        synchronized(this) {
+            job.running = true;
+            job.again = false;
+            work = job.work;
+        }
+
+        boolean success = false;
+        try {
+            work.run();
+            success = true;
+        } catch (RuntimeException e) {
+            // keep the worker alive
+            Log.e(name, "Job failed: " + job.key, e); //$NON-NLS-1$
+        }
+
+        boolean idle;
+        synchronized(this) {
+            executed++;
+            if(!success)
+                failed++;
+            job.running = false;
+            if(job.again) {
+                executor.schedule(job, window, TimeUnit.MILLISECONDS);
+                return;
+            }
+            jobs.remove(job.key);
+            idle = jobs.isEmpty();
+            if(idle)
+                bursts++;
+        }
+        if(idle && onIdle != null)
+            onIdle.run();
+    }
+
+    /** @return number of jobs waiting or running */
+    public synchronized int getPendingCount() {
+        return jobs.size();
+    }
+
+    /** Stop the worker threads. Jobs that have not started are discarded */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    @SuppressWarnings("nls")
+    public synchronized String toString() {
+        return "submitted=" + submitted + " coalesced=" + coalesced +
+            " dropped=" + dropped + " executed=" + executed +
+            " failed=" + failed + " bursts=" + bursts + " pending=" + jobs.size();
+    }
+
+}
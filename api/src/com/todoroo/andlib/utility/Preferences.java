@@ -1,8 +1,16 @@
 package com.todoroo.andlib.utility;
 
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.content.SharedPreferences.Editor;
+import android.content.SharedPreferences.OnSharedPreferenceChangeListener;
 import android.content.res.Resources;
 import android.preference.PreferenceManager;
 
@@ -10,6 +18,13 @@ import com.todoroo.andlib.service.ContextManager;
 
 /**
  * Helper class for reading and writing SharedPreferences
+ * <p>
+ * Values read through this class are cached in memory, together with
+ * parsed values and keys of string resources, and dropped when the
+ * preference changes. Writes update the cache at once and are committed
+ * on a background thread; call {@link #flush()} when a value has to be on
+ * disk before going on. {@link #getPrefs(Context)} flushes first, so
+ * direct readers see every write.
  *
  * @author Tim Su <tim@todoroo.com>
  *
@@ -52,8 +67,13 @@ public class Preferences {
 
     private static SharedPreferences preferences = null;
 
-    /** Get preferences object from the context */
+    /** Get preferences object from the context, writing pending changes first */
     public static SharedPreferences getPrefs(Context context) {
+        flush();
+        return prefs(context);
+    }
+
+    private static synchronized SharedPreferences prefs(Context context) {
         if(preferences != null)
             return preferences;
 
@@ -68,14 +88,193 @@ public class Preferences {
             String alternate = "preferences" + android.os.Process.myUid(); //$NON-NLS-1$
             preferences = context.getSharedPreferences(alternate, Context.MODE_PRIVATE);
         }
+        preferences.registerOnSharedPreferenceChangeListener(changeListener);
 
         return preferences;
     }
 
     /** @return true if given preference is set */
     public static boolean isSet(String key) {
-        Context context = ContextManager.getContext();
-        return getPrefs(context).contains(key);
+        synchronized(lock) {
+            Object value = values.get(key);
+            if(value != null)
+                return value != NO_VALUE;
+        }
+        return prefs(ContextManager.getContext()).contains(key);
+    }
+
+    // --- cache
+
+    /** stands for unset values in the cache and removals in pending writes */
+    private static final Object NO_VALUE = new Object();
+
+    /** guards {@link #values}, {@link #parsed} and {@link #pending} */
+    private static final Object lock = new Object();
+
+    /** values read or written so far, by key */
+    private static final HashMap<String, Object> values = new HashMap<String, Object>();
+
+    /** values of string preferences parsed as numbers, by key */
+    private static final HashMap<String, Object> parsed = new HashMap<String, Object>();
+
+    /** writes not yet committed, in order */
+    private static final LinkedHashMap<String, Object> pending = new LinkedHashMap<String, Object>();
+
+    /** keys of string resources */
+    private static final ConcurrentHashMap<Integer, String> resourceKeys = new ConcurrentHashMap<Integer, String>();
+
+    /** serializes commits */
+    private static final Object writeLock = new Object();
+
+    private static boolean writeScheduled = false;
+
+    private static ExecutorService writer = null;
+
+    /** Drops cached values changed by other writers, e.g. preference screens */
+    private static final OnSharedPreferenceChangeListener changeListener =
+        new OnSharedPreferenceChangeListener() {
+        public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+            synchronized(lock) {
+                // our own pending write is newer
+                if(pending.containsKey(key))
+                    return;
+                values.remove(key);
+                parsed.remove(key);
+            }
+        }
+    };
+
+    private static String key(int keyResource) {
+        String key = resourceKeys.get(keyResource);
+        if(key == null) {
+            key = ContextManager.getContext().getString(keyResource);
+            resourceKeys.put(keyResource, key);
+        }
+        return key;
+    }
+
+    /**
+     * @param type type the caller expects the value to have
+     * @return stored value of the given key, or null if unset
+     */
+    private static Object read(String key, Class<?> type) {
+        synchronized(lock) {
+            Object value = values.get(key);
+            if(value != null)
+                return value == NO_VALUE ? null : value;
+        }
+
+        Object value = load(prefs(ContextManager.getContext()), key, type);
+        synchronized(lock) {
+            // a write may have come in meanwhile
+            if(!values.containsKey(key))
+                values.put(key, value == null ? NO_VALUE : value);
+            value = values.get(key);
+        }
+        return value == NO_VALUE ? null : value;
+    }
+
+    /**
+     * Read one value with the getter for its expected type, as getAll()
+     * copies every preference
+     */
+    private static Object load(SharedPreferences prefs, String key, Class<?> type) {
+        if(!prefs.contains(key))
+            return null;
+        try {
+            if(type == String.class)
+                return prefs.getString(key, null);
+            if(type == Boolean.class)
+                return prefs.getBoolean(key, false);
+            if(type == Integer.class)
+                return prefs.getInt(key, 0);
+            if(type == Long.class)
+                return prefs.getLong(key, 0L);
+        } catch (ClassCastException e) {
+            // stored with another type, cache it as it is
+        }
+        return prefs.getAll().get(key);
+    }
+
+    /** @return value of a string preference parsed as integer, or null */
+    private static Integer readInteger(String key) {
+        synchronized(lock) {
+            Object value = parsed.get(key);
+            if(value instanceof Integer || value == NO_VALUE)
+                return value == NO_VALUE ? null : (Integer) value;
+        }
+        Integer result = null;
+        Object value = read(key, String.class);
+        if(value instanceof String) {
+            try {
+                result = Integer.parseInt((String) value);
+            } catch (NumberFormatException e) {
+                // not an integer
+            }
+        }
+        synchronized(lock) {
+            parsed.put(key, result == null ? NO_VALUE : result);
+        }
+        return result;
+    }
+
+    /** Cache the new value and commit it in the background */
+    private static void write(String key, Object value) {
+        synchronized(lock) {
+            Object stored = value == null ? NO_VALUE : value;
+            values.put(key, stored);
+            parsed.remove(key);
+            pending.put(key, stored);
+            if(writeScheduled)
+                return;
+            writeScheduled = true;
+            if(writer == null)
+                writer = Executors.newSingleThreadExecutor();
+            writer.execute(new Runnable() {
+                public void run() {
+                    flush();
+                }
+            });
+        }
+    }
+
+    /**
+     * Commit pending writes on this thread. Returns once they are on disk
+     */
+    public static void flush() {
+        synchronized(writeLock) {
+            HashMap<String, Object> writes;
+            synchronized(lock) {
+                writeScheduled = false;
+                if(pending.isEmpty())
+                    return;
+                writes = new HashMap<String, Object>(pending);
+            }
+
+            Editor editor = prefs(ContextManager.getContext()).edit();
+            for(Map.Entry<String, Object> entry : writes.entrySet()) {
+                String key = entry.getKey();
+                Object value = entry.getValue();
+                if(value == NO_VALUE)
+                    editor.remove(key);
+                else if(value instanceof String)
+                    editor.putString(key, (String) value);
+                else if(value instanceof Boolean)
+                    editor.putBoolean(key, (Boolean) value);
+                else if(value instanceof Integer)
+                    editor.putInt(key, (Integer) value);
+                else if(value instanceof Long)
+                    editor.putLong(key, (Long) value);
+            }
+            editor.commit();
+
+            synchronized(lock) {
+                // keep writes that came in during the commit
+                for(Map.Entry<String, Object> entry : writes.entrySet())
+                    if(pending.get(entry.getKey()) == entry.getValue())
+                        pending.remove(entry.getKey());
+            }
+        }
     }
 
     // --- preference fetching (string)
@@ -88,8 +287,8 @@ public class Preferences {
      * @return integer value, or null on error
      */
     public static String getStringValue(String key) {
-        Context context = ContextManager.getContext();
-        return getPrefs(context).getString(key, null);
+        Object value = read(key, String.class);
+        return value instanceof String ? (String) value : null;
     }
 
     /** Gets an string value from a string preference. Returns null
@@ -100,8 +299,7 @@ public class Preferences {
      * @return integer value, or null on error
      */
     public static String getStringValue(int keyResource) {
-        Context context = ContextManager.getContext();
-        return getPrefs(context).getString(context.getResources().getString(keyResource), null);
+        return getStringValue(key(keyResource));
     }
 
     /** Gets an integer value from a string preference. Returns null
@@ -111,17 +309,8 @@ public class Preferences {
      * @return integer value, or null on error
      */
     public static int getIntegerFromString(int keyResource, int defaultValue) {
-        Context context = ContextManager.getContext();
-        Resources r = context.getResources();
-        String value = getPrefs(context).getString(r.getString(keyResource), null);
-        if(value == null)
-            return defaultValue;
-
-        try {
-            return Integer.parseInt(value);
-        } catch (Exception e) {
-            return defaultValue;
-        }
+        Integer value = readInteger(key(keyResource));
+        return value == null ? defaultValue : value;
     }
 
     /** Gets an float value from a string preference. Returns null
@@ -131,9 +320,9 @@ public class Preferences {
      * @return
      */
     public static Float getFloatFromString(int keyResource) {
-        Context context = ContextManager.getContext();
-        Resources r = context.getResources();
-        String value = getPrefs(context).getString(r.getString(keyResource), ""); //$NON-NLS-1$
+        String value = getStringValue(key(keyResource));
+        if(value == null)
+            return null;
 
         try {
             return Float.parseFloat(value);
@@ -146,28 +335,21 @@ public class Preferences {
      * Sets string preference
      */
     public static void setString(int keyResource, String newValue) {
-        Context context = ContextManager.getContext();
-        setString(context.getString(keyResource), newValue);
+        setString(key(keyResource), newValue);
     }
 
     /**
      * Sets string preference
      */
     public static void setString(String key, String newValue) {
-        Context context = ContextManager.getContext();
-        Editor editor = getPrefs(context).edit();
-        editor.putString(key, newValue);
-        editor.commit();
+        write(key, newValue);
     }
 
     /**
      * Sets string preference from integer value
      */
     public static void setStringFromInteger(int keyResource, int newValue) {
-        Context context = ContextManager.getContext();
-        Editor editor = getPrefs(context).edit();
-        editor.putString(context.getString(keyResource), Integer.toString(newValue));
-        editor.commit();
+        write(key(keyResource), Integer.toString(newValue));
     }
 
     // --- preference fetching (boolean)
@@ -179,12 +361,8 @@ public class Preferences {
      * @return default if value is unset otherwise the value
      */
     public static boolean getBoolean(String key, boolean defValue) {
-        Context context = ContextManager.getContext();
-        try {
-            return getPrefs(context).getBoolean(key, defValue);
-        } catch (ClassCastException e) {
-            return defValue;
-        }
+        Object value = read(key, Boolean.class);
+        return value instanceof Boolean ? (Boolean) value : defValue;
     }
 
     /** Gets a boolean preference (e.g. a CheckBoxPreference setting)
@@ -194,7 +372,7 @@ public class Preferences {
      * @return default if value is unset otherwise the value
      */
     public static boolean getBoolean(int keyResources, boolean defValue) {
-        return getBoolean(ContextManager.getString(keyResources), defValue);
+        return getBoolean(key(keyResources), defValue);
     }
 
     /**
@@ -203,7 +381,7 @@ public class Preferences {
      * @param value
      */
     public static void setBoolean(int keyResource, boolean value) {
-        setBoolean(ContextManager.getString(keyResource), value);
+        setBoolean(key(keyResource), value);
     }
 
     /**
@@ -212,10 +390,7 @@ public class Preferences {
      * @param value
      */
     public static void setBoolean(String key, boolean value) {
-        Context context = ContextManager.getContext();
-        Editor editor = getPrefs(context).edit();
-        editor.putBoolean(key, value);
-        editor.commit();
+        write(key, value);
     }
 
     // --- preference fetching (int)
@@ -227,8 +402,8 @@ public class Preferences {
      * @return default if value is unset otherwise the value
      */
     public static int getInt(String key, int defValue) {
-        Context context = ContextManager.getContext();
-        return getPrefs(context).getInt(key, defValue);
+        Object value = read(key, Integer.class);
+        return value instanceof Integer ? (Integer) value : defValue;
     }
 
     /**
@@ -237,10 +412,7 @@ public class Preferences {
      * @param value
      */
     public static void setInt(String key, int value) {
-        Context context = ContextManager.getContext();
-        Editor editor = getPrefs(context).edit();
-        editor.putInt(key, value);
-        editor.commit();
+        write(key, value);
     }
 
     // --- preference fetching (long)
@@ -252,8 +424,8 @@ public class Preferences {
      * @return default if value is unset otherwise the value
      */
     public static long getLong(String key, long defValue) {
-        Context context = ContextManager.getContext();
-        return getPrefs(context).getLong(key, defValue);
+        Object value = read(key, Long.class);
+        return value instanceof Long ? (Long) value : defValue;
     }
 
     /**
@@ -262,10 +434,7 @@ public class Preferences {
      * @param value
      */
     public static void setLong(String key, long value) {
-        Context context = ContextManager.getContext();
-        Editor editor = getPrefs(context).edit();
-        editor.putLong(key, value);
-        editor.commit();
+        write(key, value);
     }
 
     /**
@@ -273,10 +442,7 @@ public class Preferences {
      * @param key
      */
     public static void clear(String key) {
-        Context context = ContextManager.getContext();
-        Editor editor = getPrefs(context).edit();
-        editor.remove(key);
-        editor.commit();
+        write(key, null);
     }
 
 }
@@ -30,4 +30,12 @@ abstract public class RemoteModel extends AbstractModel {
     /** user json property */
     public static final StringProperty USER_JSON_PROPERTY = new StringProperty(null, USER_JSON_PROPERTY_NAME);
 
+    /**
+     * @return user json property, decoded once per value. Make sure this
+     * model has this property!
+     */
+    public UserValue getUser() {
+        return getDecodedValue(USER_JSON_PROPERTY, UserValue.DECODER);
+    }
+
 }
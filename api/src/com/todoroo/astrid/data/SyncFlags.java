@@ -7,4 +7,7 @@ public class SyncFlags {
 
     public static final String GTASKS_SUPPRESS_SYNC = "gtasks_suppress_sync";
 
+    /** set on tasks whose tags changed without going through task edit */
+    public static final String TAGS_CHANGED = "tags_changed";
+
 }
@@ -6,6 +6,8 @@
 package com.todoroo.astrid.data;
 
 
+import java.util.List;
+
 import android.content.ContentValues;
 import android.net.Uri;
 
@@ -203,4 +205,9 @@ public final class TagData extends RemoteModel {
             return getValue(DELETION_DATE) > 0;
     }
 
+    /** Members of this tag, decoded once per value. Requires MEMBERS */
+    public List<UserValue> getMembers() {
+        return getDecodedValue(MEMBERS, UserValue.LIST_DECODER);
+    }
+
 }
@@ -131,6 +131,11 @@ public final class Task extends RemoteModel {
     public static final StringProperty CALENDAR_URI = new StringProperty(
             TABLE, "calendarUri");
 
+    /** Unixtime of the occurrence following the current due date of a
+     * repeating task. 0 if the task does not repeat */
+    public static final LongProperty NEXT_OCCURRENCE = new LongProperty(
+            TABLE, "nextOccurrence");
+
     // --- for astrid.com
 
     /** Remote id */
@@ -238,6 +243,7 @@ public final class Task extends RemoteModel {
 
         defaultValues.put(CALENDAR_URI.name, "");
         defaultValues.put(RECURRENCE.name, "");
+        defaultValues.put(NEXT_OCCURRENCE.name, 0);
         defaultValues.put(REMINDER_PERIOD.name, 0);
         defaultValues.put(REMINDER_FLAGS.name, 0);
         defaultValues.put(REMINDER_LAST.name, 0);
@@ -199,6 +199,18 @@ public class TaskApiDao extends ContentResolverDao<Task> {
         if(insignificantChange(values))
             return;
 
+        afterCompleted(task, values);
+        afterTaskListChanged();
+    }
+
+    /**
+     * Send the task completed broadcast if the given save completed the
+     * task. Used when saving many tasks at once, where the task list change
+     * is only broadcast once at the end.
+     * @param task task that was saved
+     * @param values values that were updated
+     */
+    public static void afterCompleted(Task task, ContentValues values) {
         if(values.containsKey(Task.COMPLETION_DATE.name) && task.isCompleted()) {
             Context context = ContextManager.getContext();
             if(context != null) {
@@ -208,8 +220,6 @@ public class TaskApiDao extends ContentResolverDao<Task> {
                 context.sendOrderedBroadcast(broadcastIntent, null);
             }
         }
-
-        afterTaskListChanged();
     }
 
     /**
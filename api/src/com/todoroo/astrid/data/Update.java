@@ -162,4 +162,11 @@ public class Update extends RemoteModel {
         return CREATOR;
     }
 
+    // --- data access methods
+
+    /** Other user of this update, decoded once per value. Requires OTHER_USER */
+    public UserValue getOtherUser() {
+        return getDecodedValue(OTHER_USER, UserValue.DECODER);
+    }
+
 }
@@ -0,0 +1,142 @@
+/**
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.todoroo.andlib.data.ValueDecoder;
+
+/**
+ * Immutable view of a user as stored in JSON columns, such as the user a
+ * task is assigned to or the members of a tag. Decoded values are shared
+ * between models, use {@link #toJson()} to get a copy that may be changed.
+ */
+@SuppressWarnings("nls")
+public final class UserValue {
+
+    /** user of an empty or invalid value */
+    public static final UserValue EMPTY = new UserValue(new JSONObject(), "");
+
+    /** decodes a JSON object */
+    public static final ValueDecoder<UserValue> DECODER = new ValueDecoder<UserValue>(200) {
+        @Override
+        protected UserValue parse(String value) {
+            if(TextUtils.isEmpty(value))
+                return EMPTY;
+            try {
+                return new UserValue(new JSONObject(value), value);
+            } catch (JSONException e) {
+                Log.w("astrid-user", "Invalid user: " + value, e);
+                return EMPTY;
+            }
+        }
+    };
+
+    /** decodes a JSON array of objects */
+    public static final ValueDecoder<List<UserValue>> LIST_DECODER = new ValueDecoder<List<UserValue>>(50) {
+        @Override
+        protected List<UserValue> parse(String value) {
+            if(TextUtils.isEmpty(value))
+                return Collections.emptyList();
+            try {
+                JSONArray array = new JSONArray(value);
+                ArrayList<UserValue> users = new ArrayList<UserValue>(array.length());
+                for(int i = 0; i < array.length(); i++) {
+                    JSONObject user = array.getJSONObject(i);
+                    users.add(new UserValue(user, user.toString()));
+                }
+                return Collections.unmodifiableList(users);
+            } catch (JSONException e) {
+                Log.w("astrid-user", "Invalid users: " + value, e);
+                return Collections.emptyList();
+            }
+        }
+    };
+
+    /** never handed out, so it is not changed */
+    private final JSONObject json;
+    private final String source;
+
+    private UserValue(JSONObject json, String source) {
+        this.json = json;
+        this.source = source;
+    }
+
+    /** @return user copied from the given JSON object */
+    public static UserValue fromJson(JSONObject json) {
+        String source = json.toString();
+        try {
+            return new UserValue(new JSONObject(source), source);
+        } catch (JSONException e) {
+            return EMPTY;
+        }
+    }
+
+    // --- accessors
+
+    public boolean has(String key) {
+        return json.has(key);
+    }
+
+    public long getId(long defaultValue) {
+        return json.optLong("id", defaultValue);
+    }
+
+    public String getName() {
+        return json.optString("name");
+    }
+
+    public String getEmail() {
+        return json.optString("email");
+    }
+
+    public String getPicture() {
+        return json.optString("picture");
+    }
+
+    public String optString(String key) {
+        return json.optString(key);
+    }
+
+    /** @return a copy of this user that may be changed */
+    public JSONObject toJson() {
+        JSONObject copy = new JSONObject();
+        try {
+            for(Iterator<?> keys = json.keys(); keys.hasNext(); ) {
+                String key = (String) keys.next();
+                copy.put(key, json.get(key));
+            }
+        } catch (JSONException e) {
+            throw new RuntimeException(e);
+        }
+        return copy;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof UserValue && source.equals(((UserValue) other).source);
+    }
+
+    @Override
+    public int hashCode() {
+        return source.hashCode();
+    }
+
+    /** @return the JSON this user was decoded from */
+    @Override
+    public String toString() {
+        return source;
+    }
+
+}
@@ -1,6 +1,7 @@
 package com.timsu.astrid;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -24,6 +25,7 @@ import com.todoroo.andlib.service.NotificationManager.AndroidNotificationManager
 import com.todoroo.andlib.sql.Query;
 import com.todoroo.andlib.sql.QueryTemplate;
 import com.todoroo.andlib.utility.AndroidUtilities;
+import com.todoroo.andlib.utility.CoalescingExecutor;
 import com.todoroo.andlib.utility.DateUtilities;
 import com.todoroo.andlib.utility.Preferences;
 import com.todoroo.astrid.actfm.TagViewFragment;
@@ -59,6 +61,30 @@ public class C2DMReceiver extends BroadcastReceiver {
 
     private static final long MIN_MILLIS_BETWEEN_FULL_SYNCS = DateUtilities.ONE_HOUR;
 
+    /** threads handling pushes */
+    private static final int PUSH_THREADS = 2;
+
+    /** distinct tasks and lists that may wait to be fetched */
+    private static final int PUSH_MAX_PENDING = 64;
+
+    /** time a push waits for repeats about the same task or list */
+    private static final long PUSH_WINDOW = 2000L;
+
+    /** whether a handled push changed data shown in the task list */
+    private static final AtomicBoolean refreshNeeded = new AtomicBoolean(false);
+
+    /** handles pushes, sending one refresh broadcast once a burst is done */
+    private static final CoalescingExecutor pushQueue = new CoalescingExecutor("c2dm",
+            PUSH_THREADS, PUSH_MAX_PENDING, PUSH_WINDOW, new Runnable() {
+        @Override
+        public void run() {
+            if(refreshNeeded.getAndSet(false)) {
+                Intent broadcastIntent = new Intent(AstridApiConstants.BROADCAST_EVENT_REFRESH);
+                ContextManager.getContext().sendBroadcast(broadcastIntent, AstridApiConstants.PERMISSION_READ);
+            }
+        }
+    });
+
     @Autowired TaskService taskService;
     @Autowired TagDataService tagDataService;
     @Autowired UpdateDao updateDao;
@@ -103,7 +129,7 @@ public class C2DMReceiver extends BroadcastReceiver {
         if (intent.getAction().equals("com.google.android.c2dm.intent.REGISTRATION")) {
             handleRegistration(intent);
         } else if (intent.getAction().equals("com.google.android.c2dm.intent.RECEIVE")) {
-            new Thread(new Runnable() {
+            pushQueue.submit(pushKey(intent), new Runnable() {
                 @Override
                 public void run() {
                     if (actFmPreferenceService.isLoggedIn()) {
@@ -116,13 +142,37 @@ public class C2DMReceiver extends BroadcastReceiver {
                             handleMessage(intent);
                     }
                 }
-            }).start();
+            });
          }
      }
 
+    /**
+     * Key under which a push is queued. Web updates about the same task or
+     * list collapse into one fetch, messages about it into one notification.
+     */
+    static String pushKey(Intent intent) {
+        String prefix = intent.hasExtra("web_update") ? "update:" : "message:";
+        if(intent.hasExtra("tag_id"))
+            return prefix + "tag:" + intent.getStringExtra("tag_id");
+        if(intent.hasExtra("task_id"))
+            return prefix + "task:" + intent.getStringExtra("task_id");
+        return prefix;
+    }
+
+    /** Fetch a task or list in the background, unless a fetch is already queued */
+    private void queueFetch(String key, final Runnable fetch) {
+        pushQueue.submit("update:" + key, new Runnable() {
+            @Override
+            public void run() {
+                fetch.run();
+                refreshNeeded.set(true);
+            }
+        });
+    }
+
     // --- web update handling
 
-    /** Handle web task or list changed */
+    /** Handle web task or list changed. Run on the push queue. */
     protected void handleWebUpdate(Intent intent) {
         try {
             if(intent.hasExtra("tag_id")) {
@@ -167,8 +217,7 @@ public class C2DMReceiver extends BroadcastReceiver {
                 }
             }
 
-            Intent broadcastIntent = new Intent(AstridApiConstants.BROADCAST_EVENT_REFRESH);
-            ContextManager.getContext().sendBroadcast(broadcastIntent, AstridApiConstants.PERMISSION_READ);
+            refreshNeeded.set(true);
 
         } catch (IOException e) {
             Log.e("c2dm-tag-rx", "io-exception", e);
@@ -180,7 +229,7 @@ public class C2DMReceiver extends BroadcastReceiver {
 
     // --- message handling
 
-    /** Handle message. Run on separate thread. */
+    /** Handle message. Run on the push queue. */
     private void handleMessage(Intent intent) {
         String message = intent.getStringExtra("alert");
         Context context = ContextManager.getContext();
@@ -209,16 +258,11 @@ public class C2DMReceiver extends BroadcastReceiver {
         // unregister
         if (!actFmPreferenceService.isLoggedIn() || user_id != ActFmPreferenceService.userId()) {
 
-            new Thread() {
-                @Override
-                public void run() {
-                    try {
-                        actFmSyncService.invoke("user_unset_c2dm", "tid", token_id, "oid", user_id);
-                    } catch (IOException e) {
-                        //
-                    }
-                }
-            }.start();
+            try {
+                actFmSyncService.invoke("user_unset_c2dm", "tid", token_id, "oid", user_id);
+            } catch (IOException e) {
+                //
+            }
             return;
         }
 
@@ -303,7 +347,7 @@ public class C2DMReceiver extends BroadcastReceiver {
                 task.putTransitory(SyncFlags.ACTFM_SUPPRESS_SYNC, true);
                 taskService.save(task);
 
-                new Thread(new Runnable() {
+                queueFetch("task:" + intent.getStringExtra("task_id"), new Runnable() {
                     @Override
                     public void run() {
                         try {
@@ -314,7 +358,7 @@ public class C2DMReceiver extends BroadcastReceiver {
                             Log.e("c2dm-task-rx", "json-exception", e);
                         }
                     }
-                }).start();
+                });
             } else {
                 cursor.moveToNext();
                 task.readFromCursor(cursor);
@@ -343,7 +387,7 @@ public class C2DMReceiver extends BroadcastReceiver {
                 tagData.putTransitory(SyncFlags.ACTFM_SUPPRESS_SYNC, true);
                 tagDataService.save(tagData);
 
-                new Thread(new Runnable() {
+                queueFetch("tag:" + intent.getStringExtra("tag_id"), new Runnable() {
                     @Override
                     public void run() {
                         try {
@@ -354,7 +398,7 @@ public class C2DMReceiver extends BroadcastReceiver {
                             Log.e("c2dm-tag-rx", "json-exception", e);
                         }
                     }
-                }).start();
+                });
             } else {
                 cursor.moveToNext();
                 tagData.readFromCursor(cursor);
@@ -422,7 +466,7 @@ public class C2DMReceiver extends BroadcastReceiver {
             // un-registration done
         } else if (registration != null) {
             DependencyInjectionService.getInstance().inject(this);
-            new Thread() {
+            pushQueue.submit("registration", new Runnable() {
                 @Override
                 public void run() {
                     try {
@@ -436,7 +480,7 @@ public class C2DMReceiver extends BroadcastReceiver {
                         Log.e("astrid-actfm", "error-c2dm-transfer", e);
                     }
                 }
-            }.start();
+            });
         }
     }
 
@@ -78,6 +78,7 @@ import com.todoroo.astrid.actfm.sync.ActFmPreferenceService;
 import com.todoroo.astrid.activity.Eula;
 import com.todoroo.astrid.gtasks.auth.ModernAuthManager;
 import com.todoroo.astrid.service.AstridDependencyInjector;
+import com.todoroo.astrid.service.FilterExposerRegistry;
 import com.todoroo.astrid.service.StatisticsConstants;
 import com.todoroo.astrid.service.StatisticsService;
 import com.todoroo.astrid.service.SyncV2Service;
@@ -527,6 +528,7 @@ public class ActFmLoginActivity extends FragmentActivity implements AuthListener
                 result.optString("email"));
         Preferences.setString(ActFmPreferenceService.PREF_PICTURE,
                 result.optString("picture"));
+        FilterExposerRegistry.getInstance().onSettingsChanged();
 
         setResult(RESULT_OK);
         finish();
@@ -57,7 +57,9 @@ import com.todoroo.astrid.data.Metadata;
 import com.todoroo.astrid.data.TagData;
 import com.todoroo.astrid.data.Task;
 import com.todoroo.astrid.data.User;
+import com.todoroo.astrid.data.UserValue;
 import com.todoroo.astrid.helper.AsyncImageView;
+import com.todoroo.astrid.helper.TaskEditMetadata;
 import com.todoroo.astrid.service.AstridDependencyInjector;
 import com.todoroo.astrid.service.MetadataService;
 import com.todoroo.astrid.service.TagDataService;
@@ -235,11 +237,9 @@ public class EditPeopleControlSet extends PopupControlSet {
                 @Override
                 public void run() {
                     ArrayList<JSONObject> collaborators = new ArrayList<JSONObject>();
-                    TodorooCursor<Metadata> tags = TagService.getInstance().getTags(task.getId());
                     try {
-                        Metadata metadata = new Metadata();
-                        for(tags.moveToFirst(); !tags.isAfterLast(); tags.moveToNext()) {
-                            metadata.readFromCursor(tags);
+                        List<Metadata> tags = readTags(task);
+                        for(Metadata metadata : tags) {
                             final String tag = metadata.getValue(TagService.TAG);
                             TagData tagData = tagDataService.getTag(tag, TagData.MEMBER_COUNT, TagData.MEMBERS, TagData.USER);
                             if(tagData != null && tagData.getValue(TagData.MEMBER_COUNT) > 0) {
@@ -253,7 +253,7 @@ public class EditPeopleControlSet extends PopupControlSet {
                             }
                         }
 
-                        if (includeTag != null && tags.getCount() == 0) {
+                        if (includeTag != null && tags.size() == 0) {
                             try {
                                 addMembersFromTagData(includeTag, null, sharedPeople, collaborators);
                             } catch (JSONException e) {
@@ -265,7 +265,6 @@ public class EditPeopleControlSet extends PopupControlSet {
                             buildCollaborators(collaborators);
                         buildAssignedToSpinner(task, sharedPeople);
                     } finally {
-                        tags.close();
                         loadedUI = true;
                     }
                 }
@@ -276,19 +275,35 @@ public class EditPeopleControlSet extends PopupControlSet {
         }
     }
 
+    /** @return tag metadata of the given task */
+    private List<Metadata> readTags(Task task) {
+        TaskEditMetadata editMetadata = getEditMetadata(task);
+        if(editMetadata != null)
+            return editMetadata.get(TagService.KEY);
+
+        ArrayList<Metadata> result = new ArrayList<Metadata>();
+        TodorooCursor<Metadata> tags = TagService.getInstance().getTags(task.getId());
+        try {
+            for(tags.moveToFirst(); !tags.isAfterLast(); tags.moveToNext())
+                result.add(new Metadata(tags));
+        } finally {
+            tags.close();
+        }
+        return result;
+    }
+
     @SuppressWarnings("nls")
     private static void addMembersFromTagData(TagData tagData, String tag, ArrayList<JSONObject> sharedPeople, ArrayList<JSONObject> collaborators) throws JSONException {
-        JSONArray members = new JSONArray(tagData.getValue(TagData.MEMBERS));
         if (tag == null)
             tag = tagData.getValue(TagData.NAME);
-        for(int i = 0; i < members.length(); i++) {
-            JSONObject user = members.getJSONObject(i);
+        for(UserValue member : tagData.getMembers()) {
+            JSONObject user = member.toJson();
             user.put("tag", tag);
             sharedPeople.add(user);
             collaborators.add(user);
         }
         if(!TextUtils.isEmpty(tagData.getValue(TagData.USER))) {
-            JSONObject user = new JSONObject(tagData.getValue(TagData.USER));
+            JSONObject user = tagData.getUser().toJson();
             user.put("tag", tag);
             sharedPeople.add(user);
             collaborators.add(user);
@@ -373,7 +388,7 @@ public class EditPeopleControlSet extends PopupControlSet {
             }
 
             if(t.getValue(Task.USER_ID) > 0) {
-                JSONObject user = new JSONObject(t.getValue(Task.USER));
+                JSONObject user = t.getUser().toJson();
                 coreUsersJson.add(0, user);
             }
 
@@ -492,9 +507,9 @@ public class EditPeopleControlSet extends PopupControlSet {
     private int findAssignedIndex(Task t, ArrayList<AssignedToUser>... userLists) throws JSONException {
         String assignedStr = t.getValue(Task.USER);
         if (!TextUtils.isEmpty(assignedStr)) {
-            JSONObject assigned = new JSONObject(assignedStr);
-            long assignedId = assigned.optLong("id", -2);
-            String assignedEmail = assigned.optString("email");
+            UserValue assigned = t.getUser();
+            long assignedId = assigned.getId(-2);
+            String assignedEmail = assigned.getEmail();
 
             int index = 0;
             for (ArrayList<AssignedToUser> userList : userLists) {
@@ -716,12 +731,10 @@ public class EditPeopleControlSet extends PopupControlSet {
 
                 long taskUserId = -2;
                 String taskUserEmail = "";
-                try {
-                    JSONObject taskUser = new JSONObject(task.getValue(Task.USER));
-                    taskUserId = taskUser.optLong("id", Task.USER_ID_EMAIL);
-                    taskUserEmail = taskUser.optString("email");
-                } catch (JSONException e) {
-                    // sad times
+                UserValue taskUser = task.getUser();
+                if(taskUser != UserValue.EMPTY) {
+                    taskUserId = taskUser.getId(Task.USER_ID_EMAIL);
+                    taskUserEmail = taskUser.getEmail();
                 }
                 long userId = userJson.optLong("id", Task.USER_ID_EMAIL);
                 String userEmail = userJson.optString("email");
@@ -842,12 +855,11 @@ public class EditPeopleControlSet extends PopupControlSet {
                 values.add(task.getValue(Task.USER_ID));
             } else {
                 values.add("assign_email");
-                JSONObject user = new JSONObject(task.getValue(Task.USER));
-                String userEmail = user.getString("email");
+                String userEmail = task.getUser().getEmail();
                 if (userEmail.indexOf('@') == -1)
                     values.add("");
                 else
-                    values.add(user.getString("email"));
+                    values.add(userEmail);
             }
         }
 
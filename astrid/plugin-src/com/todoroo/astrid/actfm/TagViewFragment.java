@@ -1,6 +1,7 @@
 package com.todoroo.astrid.actfm;
 
-import org.json.JSONArray;
+import java.util.List;
+
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -49,6 +50,7 @@ import com.todoroo.astrid.dao.TaskDao.TaskCriteria;
 import com.todoroo.astrid.data.TagData;
 import com.todoroo.astrid.data.Task;
 import com.todoroo.astrid.data.Update;
+import com.todoroo.astrid.data.UserValue;
 import com.todoroo.astrid.helper.AsyncImageView;
 import com.todoroo.astrid.helper.ProgressBarSyncResultCallback;
 import com.todoroo.astrid.service.SyncV2Service;
@@ -295,19 +297,16 @@ public class TagViewFragment extends TaskListFragment {
         LinearLayout membersView = (LinearLayout)getView().findViewById(R.id.shared_with);
         membersView.setOnClickListener(settingsListener);
         try {
-            String membersString = tagData.getValue(TagData.MEMBERS);
-            JSONArray members = new JSONArray(membersString);
-            if (members.length() > 0) {
+            List<UserValue> members = tagData.getMembers();
+            if (members.size() > 0) {
                 membersView.setOnClickListener(null);
                 membersView.removeAllViews();
-                for (int i = 0; i < members.length(); i++) {
-                    JSONObject member = members.getJSONObject(i);
-                    addImageForMember(membersView, member);
-                }
+                for (UserValue member : members)
+                    addImageForMember(membersView, member.toJson());
                 // Handle creator
                 JSONObject owner;
                 if(tagData.getValue(TagData.USER_ID) != 0) {
-                     owner = new JSONObject(tagData.getValue(TagData.USER));
+                     owner = tagData.getUser().toJson();
                 } else {
                     owner = ActFmPreferenceService.thisUser();
                 }
@@ -9,6 +9,7 @@ import com.timsu.astrid.R;
 import com.todoroo.andlib.utility.Preferences;
 import com.todoroo.astrid.data.RemoteModel;
 import com.todoroo.astrid.data.Update;
+import com.todoroo.astrid.data.UserValue;
 import com.todoroo.astrid.service.StatisticsConstants;
 import com.todoroo.astrid.service.StatisticsService;
 import com.todoroo.astrid.sync.SyncProviderUtilities;
@@ -74,31 +75,28 @@ public class ActFmPreferenceService extends SyncProviderUtilities {
 
     private static JSONObject user = null;
 
+    private static UserValue userValue = null;
+
     @Override
     protected void reportLastErrorImpl(String lastError, String type) {
         StatisticsService.reportEvent(StatisticsConstants.ACTFM_SYNC_ERROR, "type", type); //$NON-NLS-1$
     }
 
     /**
-     * Return JSON object user, either yourself or the user of the model
+     * Return user, either yourself or the user of the model
      * @param update
      * @return
      */
-    public static JSONObject userFromModel(RemoteModel model) {
+    public static UserValue userFromModel(RemoteModel model) {
         if(model.getValue(RemoteModel.USER_ID_PROPERTY) == 0)
-            return thisUser();
-        else {
-            try {
-                return new JSONObject(model.getValue(RemoteModel.USER_JSON_PROPERTY));
-            } catch (JSONException e) {
-                return new JSONObject();
-            }
-        }
+            return thisUserValue();
+        else
+            return model.getUser();
     }
 
     @SuppressWarnings("nls")
     public static String updateToString(Update update) {
-        JSONObject updateUser = ActFmPreferenceService.userFromModel(update);
+        UserValue updateUser = ActFmPreferenceService.userFromModel(update);
         String description = update.getValue(Update.ACTION);
         String message = update.getValue(Update.MESSAGE);
         if(update.getValue(Update.ACTION_CODE).equals("task_comment") ||
@@ -106,7 +104,7 @@ public class ActFmPreferenceService extends SyncProviderUtilities {
             description = message;
         else if(!TextUtils.isEmpty(message))
             description += " " + message;
-        return String.format("%s: %s", updateUser.optString("name"), description);
+        return String.format("%s: %s", updateUser.getName(), description);
     }
 
     @SuppressWarnings("nls")
@@ -125,6 +123,13 @@ public class ActFmPreferenceService extends SyncProviderUtilities {
         return user;
     }
 
+    /** @return yourself, as returned by {@link #thisUser()} */
+    public synchronized static UserValue thisUserValue() {
+        if(userValue == null)
+            userValue = UserValue.fromJson(thisUser());
+        return userValue;
+    }
+
     @Override
     public String getLoggedInUserName() {
         return Preferences.getStringValue(PREF_NAME);
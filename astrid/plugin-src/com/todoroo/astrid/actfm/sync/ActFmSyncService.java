@@ -33,6 +33,7 @@ import android.widget.Toast;
 import com.timsu.astrid.R;
 import com.todoroo.andlib.data.AbstractModel;
 import com.todoroo.andlib.data.DatabaseDao;
+import com.todoroo.andlib.data.DatabaseDao.BatchUpdateListener;
 import com.todoroo.andlib.data.DatabaseDao.ModelUpdateListener;
 import com.todoroo.andlib.data.Property.LongProperty;
 import com.todoroo.andlib.data.Property.StringProperty;
@@ -123,18 +124,32 @@ public final class ActFmSyncService {
     public void initialize() {
         initializeRetryRunnable();
 
-        taskDao.addListener(new ModelUpdateListener<Task>() {
+        taskDao.addListener(new BatchUpdateListener<Task>() {
             @Override
             public void onModelUpdated(final Task model) {
-                if(model.checkAndClearTransitory(SyncFlags.ACTFM_SUPPRESS_SYNC))
-                    return;
-                if (actFmPreferenceService.isOngoing() && model.getTransitory(TaskService.TRANS_EDIT_SAVE) == null)
-                    return;
-                final ContentValues setValues = model.getSetValues();
-                if(setValues == null || !checkForToken() ||
-                        setValues.containsKey(RemoteModel.REMOTE_ID_PROPERTY_NAME))
-                    return;
-                if(completedRepeatingTask(model))
+                onModelsUpdated(Collections.singletonList(model));
+            }
+
+            /** tasks saved together are pushed one after another by one thread */
+            @Override
+            public void onModelsUpdated(List<Task> models) {
+                final ArrayList<Task> toPush = new ArrayList<Task>(models.size());
+                final ArrayList<ContentValues> pushValues = new ArrayList<ContentValues>(models.size());
+                for(Task model : models) {
+                    if(model.checkAndClearTransitory(SyncFlags.ACTFM_SUPPRESS_SYNC))
+                        continue;
+                    if (actFmPreferenceService.isOngoing() && model.getTransitory(TaskService.TRANS_EDIT_SAVE) == null)
+                        continue;
+                    ContentValues setValues = model.getSetValues();
+                    if(setValues == null || !checkForToken() ||
+                            setValues.containsKey(RemoteModel.REMOTE_ID_PROPERTY_NAME))
+                        continue;
+                    if(completedRepeatingTask(model))
+                        continue;
+                    toPush.add(model);
+                    pushValues.add(setValues);
+                }
+                if(toPush.isEmpty())
                     return;
 
                 new Thread(new Runnable() {
@@ -145,7 +160,8 @@ public final class ActFmSyncService {
                         // sleep so metadata associated with task is saved
                         try {
                             AndroidUtilities.sleepDeep(1000L);
-                            pushTaskOnSave(model, setValues);
+                            for(int i = 0; i < toPush.size(); i++)
+                                pushTaskOnSave(toPush.get(i), pushValues.get(i));
                         } finally {
                             if (taskPushThreads.decrementAndGet() == 0) {
                                 waitUntilEmpty.open();
@@ -380,15 +396,10 @@ public final class ActFmSyncService {
 
         if(values.containsKey(Task.USER_ID.name) && task.getTransitory(TaskService.TRANS_ASSIGNED) != null) {
             if(task.getValue(Task.USER_ID) == Task.USER_ID_EMAIL) {
-                try {
-                    JSONObject user = new JSONObject(task.getValue(Task.USER));
-                    String userEmail = user.optString("email");
-                    if (!TextUtils.isEmpty(userEmail)) {
-                        params.add("user_email");
-                        params.add(userEmail);
-                    }
-                } catch (JSONException e) {
-                    Log.e("Error parsing user", task.getValue(Task.USER), e);
+                String userEmail = task.getUser().getEmail();
+                if (!TextUtils.isEmpty(userEmail)) {
+                    params.add("user_email");
+                    params.add(userEmail);
                 }
             } else {
                 params.add("user_id");
@@ -399,7 +410,8 @@ public final class ActFmSyncService {
             }
         }
 
-        if(Flags.checkAndClear(Flags.TAGS_CHANGED) || newlyCreated) {
+        if(Flags.checkAndClear(Flags.TAGS_CHANGED) || newlyCreated ||
+                task.checkAndClearTransitory(SyncFlags.TAGS_CHANGED)) {
             TodorooCursor<Metadata> cursor = TagService.getInstance().getTags(task.getId());
             try {
                 if(cursor.getCount() == 0) {
@@ -892,6 +904,7 @@ public final class ActFmSyncService {
                     updateDao.saveExisting(remote);
                 remote.clear();
             }
+            updateDao.backfillLocalTaskIds();
         }
 
         @Override
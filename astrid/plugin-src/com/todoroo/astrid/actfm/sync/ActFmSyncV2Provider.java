@@ -26,6 +26,7 @@ import com.todoroo.astrid.data.RemoteModel;
 import com.todoroo.astrid.data.TagData;
 import com.todoroo.astrid.data.Task;
 import com.todoroo.astrid.service.AstridDependencyInjector;
+import com.todoroo.astrid.service.FilterExposerRegistry;
 import com.todoroo.astrid.service.TagDataService;
 import com.todoroo.astrid.service.TaskService;
 import com.todoroo.astrid.sync.SyncResultCallback;
@@ -96,6 +97,7 @@ public class ActFmSyncV2Provider extends SyncV2Provider {
     public void signOut() {
         actFmPreferenceService.setToken(null);
         actFmPreferenceService.clearLastSyncDate();
+        FilterExposerRegistry.getInstance().onSettingsChanged();
         C2DMReceiver.unregister();
     }
 
@@ -1,5 +1,7 @@
 package com.todoroo.astrid.alarms;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.LinkedHashSet;
 
@@ -17,6 +19,7 @@ import com.todoroo.andlib.utility.DateUtilities;
 import com.todoroo.astrid.data.Metadata;
 import com.todoroo.astrid.data.Task;
 import com.todoroo.astrid.helper.TaskEditControlSet;
+import com.todoroo.astrid.helper.TaskEditMetadata;
 import com.todoroo.astrid.ui.DateAndTimeDialog;
 import com.todoroo.astrid.ui.DateAndTimeDialog.DateAndTimeDialogListener;
 
@@ -41,6 +44,17 @@ public final class AlarmControlSet extends TaskEditControlSet {
     @Override
     protected void readFromTaskOnInitialize() {
         alertsContainer.removeAllViews();
+        TaskEditMetadata editMetadata = getEditMetadata();
+        if(editMetadata != null) {
+            ArrayList<Long> times = new ArrayList<Long>();
+            for(Metadata alarm : editMetadata.get(AlarmFields.METADATA_KEY))
+                times.add(alarm.getValue(AlarmFields.TIME));
+            Collections.sort(times);
+            for(Long time : times)
+                addAlarm(new Date(time));
+            return;
+        }
+
         TodorooCursor<Metadata> cursor = AlarmService.getInstance().getAlarms(model.getId());
         try {
             for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext())
@@ -0,0 +1,58 @@
+/**
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.backup;
+
+import android.content.ContentValues;
+
+import com.todoroo.andlib.data.AbstractDatabase.TableUpdateListener;
+import com.todoroo.andlib.utility.Preferences;
+import com.todoroo.astrid.data.Metadata;
+import com.todoroo.astrid.data.Task;
+
+/**
+ * Counts changes to tasks and metadata, so the automatic backup can tell
+ * whether anything changed since it last ran without reading them. The
+ * count is kept in preferences and bumped at most once between backups.
+ */
+public final class BackupChangeCounter implements TableUpdateListener {
+
+    private static final String PREF_CHANGES = "backup_changes"; //$NON-NLS-1$
+
+    private static final BackupChangeCounter INSTANCE = new BackupChangeCounter();
+
+    public static BackupChangeCounter getInstance() {
+        return INSTANCE;
+    }
+
+    /** whether the count was bumped since the last {@link #snapshot()} */
+    private boolean bumped = false;
+
+    BackupChangeCounter() {
+        // use getInstance()
+    }
+
+    @Override
+    public void onTableUpdated(String table, ContentValues values) {
+        if(!Task.TABLE.name.equals(table) && !Metadata.TABLE.name.equals(table))
+            return;
+        synchronized(this) {
+            if(bumped)
+                return;
+            bumped = true;
+            Preferences.setLong(PREF_CHANGES, Preferences.getLong(PREF_CHANGES, 0) + 1);
+        }
+    }
+
+    /**
+     * Take the count before reading tasks for a backup. Changes made after
+     * this call bump it again.
+     *
+     * @return current count
+     */
+    public synchronized long snapshot() {
+        bumped = false;
+        return Preferences.getLong(PREF_CHANGES, 0);
+    }
+
+}
@@ -28,11 +28,17 @@ public class BackupConstants {
     /** Attribute indicating backup file format */
     public static final String ASTRID_ATTR_FORMAT = "format";
 
+    /** Attribute of a delta backup naming the full backup it is based on */
+    public static final String ASTRID_ATTR_BASE = "base";
+
     // --- format 2
 
     /** Tag containing a task */
     public static final String TASK_TAG = "task";
 
+    /** Attribute of a task holding its id when it was backed up */
+    public static final String TASK_ATTR_ID = "exported_id";
+
     /** Tag containing a metadata item */
     public static final String METADATA_TAG = "metadata";
 
@@ -56,6 +62,8 @@ public class BackupConstants {
 
     public static final String BACKUP_FILE_NAME = "auto.%s.xml";
 
+    public static final String BACKUP_DELTA_FILE_NAME = "auto.%s.delta.xml";
+
     public static final String UPGRADE_FILE_NAME = "upgradefrom.%s.xml";
 
     // --- methods
@@ -0,0 +1,155 @@
+/**
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.backup;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map.Entry;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.todoroo.andlib.data.AbstractModel;
+import com.todoroo.andlib.data.Property;
+
+/**
+ * State of the automatic backup chain: the full snapshot that deltas are
+ * written against and a content hash of every task and its metadata as
+ * last backed up. Kept in private storage, so the backup directory only
+ * holds backups.
+ */
+public class BackupIndex {
+
+    private static final String FILE_NAME = "backup-index"; //$NON-NLS-1$
+
+    private static final int VERSION = 3;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /** directory the chain was written to */
+    public String directory;
+
+    /** file name of the full snapshot deltas are based on */
+    public String base;
+
+    /** time the full snapshot was written */
+    public long baseDate;
+
+    /** number of deltas written since the full snapshot */
+    public int deltas;
+
+    /** {@link BackupChangeCounter} count taken when the backup was written */
+    public long changes;
+
+    /** content hash of each backed up task, by task id */
+    public final HashMap<Long, Long> hashes = new HashMap<Long, Long>();
+
+    // --- persistence
+
+    /**
+     * @return index of the last automatic backup, or null if there is none
+     * or it can not be read
+     */
+    public static BackupIndex read(Context context) {
+        DataInputStream in;
+        try {
+            in = new DataInputStream(new BufferedInputStream(context.openFileInput(FILE_NAME)));
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+        try {
+            if(in.readInt() != VERSION)
+                return null;
+            BackupIndex index = new BackupIndex();
+            index.directory = in.readUTF();
+            index.base = in.readUTF();
+            index.baseDate = in.readLong();
+            index.deltas = in.readInt();
+            index.changes = in.readLong();
+            int count = in.readInt();
+            for(int i = 0; i < count; i++)
+                index.hashes.put(in.readLong(), in.readLong());
+            return index;
+        } catch (IOException e) {
+            Log.e("astrid-backup", "Unable to read backup index", e); //$NON-NLS-1$ //$NON-NLS-2$
+            return null;
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    public void write(Context context) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                context.openFileOutput(FILE_NAME, Context.MODE_PRIVATE)));
+        try {
+            out.writeInt(VERSION);
+            out.writeUTF(directory);
+            out.writeUTF(base);
+            out.writeLong(baseDate);
+            out.writeInt(deltas);
+            out.writeLong(changes);
+            out.writeInt(hashes.size());
+            for(Entry<Long, Long> entry : hashes.entrySet()) {
+                out.writeLong(entry.getKey());
+                out.writeLong(entry.getValue());
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /** Forget the chain, so the next automatic backup is a full one */
+    public static void clear(Context context) {
+        context.deleteFile(FILE_NAME);
+    }
+
+    // --- hashing
+
+    /** @return initial value for {@link #hash(long, AbstractModel, Property[], Property...)} */
+    public static long newHash() {
+        return FNV_OFFSET;
+    }
+
+    /**
+     * Add the given properties of a model to a content hash
+     * @return new hash
+     */
+    public static long hash(long hash, AbstractModel model, Property<?>[] properties,
+            Property<?>... excludes) {
+        outer: for(Property<?> property : properties) {
+            for(Property<?> exclude : excludes)
+                if(property.name.equals(exclude.name))
+                    continue outer;
+
+            hash = hash(hash, property.name);
+            try {
+                hash = hash(hash, String.valueOf(model.getValue(property)));
+            } catch (UnsupportedOperationException e) {
+                // not set, hashed as the name alone
+            }
+        }
+        return hash(hash, ""); //$NON-NLS-1$
+    }
+
+    /** FNV-1a over the characters of a string and a terminator */
+    private static long hash(long hash, String value) {
+        for(int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        hash ^= 0xffff;
+        return hash * FNV_PRIME;
+    }
+
+}
@@ -2,6 +2,7 @@ package com.todoroo.astrid.backup;
 
 import java.io.File;
 import java.io.FileFilter;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 
@@ -37,7 +38,16 @@ public class BackupService extends Service {
     private static final long BACKUP_INTERVAL = AlarmManager.INTERVAL_DAY;
     public static final String BACKUP_ACTION = "backup"; //$NON-NLS-1$
     public static final String BACKUP_FILE_NAME_REGEX = "auto\\.[-\\d]+\\.xml"; //$NON-NLS-1$
-    private static final int DAYS_TO_KEEP_BACKUP = 7;
+    public static final String BACKUP_DELTA_FILE_NAME_REGEX = "auto\\.[-\\d]+\\.delta\\.xml"; //$NON-NLS-1$
+
+    /** full backups to keep, each with its deltas */
+    private static final int BACKUPS_TO_KEEP = 7;
+
+    /** age after which a backup and its deltas are deleted */
+    private static final long MAX_BACKUP_AGE = 8 * DateUtilities.ONE_WEEK;
+
+    /** total size of backups above which the oldest are deleted */
+    private static final long MAX_BACKUP_SIZE = 20 * 1024 * 1024L;
 
     @Override
     public IBinder onBind(Intent intent) {
@@ -111,34 +121,73 @@ public class BackupService extends Service {
         return intent;
     }
 
+    /**
+     * Delete old backups. A full backup and the deltas written after it
+     * are kept or deleted together. The newest backup is always kept; older
+     * ones go once there are too many, they are too old, or the backups
+     * take up too much space.
+     */
     private void deleteOldBackups() {
         FileFilter backupFileFilter = new FileFilter() {
             @Override
             public boolean accept(File file) {
-                if (file.getName().matches(BACKUP_FILE_NAME_REGEX)) {
-                    return true;
-                }
-                return false;
+                String name = file.getName();
+                return name.matches(BACKUP_FILE_NAME_REGEX) ||
+                        name.matches(BACKUP_DELTA_FILE_NAME_REGEX);
             }
         };
         File astridDir = backupDirectorySetting.getBackupDirectory();
         if(astridDir == null)
             return;
 
-        // grab all backup files, sort by modified date, delete old ones
         File[] files = astridDir.listFiles(backupFileFilter);
         if(files == null)
             return;
 
+        // group files into chains, oldest first. deltas without a full
+        // backup before them can not be restored
         Arrays.sort(files, new Comparator<File>() {
             @Override
             public int compare(File file1, File file2) {
-                return -Long.valueOf(file1.lastModified()).compareTo(Long.valueOf(file2.lastModified()));
+                return Long.valueOf(file1.lastModified()).compareTo(Long.valueOf(file2.lastModified()));
             }
         });
-        for(int i = DAYS_TO_KEEP_BACKUP; i < files.length; i++) {
-            if(!files[i].delete())
-                Log.i("astrid-backups", "Unable to delete: " + files[i]); //$NON-NLS-1$ //$NON-NLS-2$
+        ArrayList<ArrayList<File>> chains = new ArrayList<ArrayList<File>>();
+        ArrayList<File> orphans = new ArrayList<File>();
+        for(File file : files) {
+            if(file.getName().matches(BACKUP_FILE_NAME_REGEX))
+                chains.add(new ArrayList<File>());
+            if(chains.isEmpty())
+                orphans.add(file);
+            else
+                chains.get(chains.size() - 1).add(file);
+        }
+        chains.add(0, orphans);
+
+        // walk from newest to oldest, keeping chains within the limits
+        long now = DateUtilities.now();
+        long size = 0;
+        int kept = 0;
+        for(int i = chains.size() - 1; i >= 0; i--) {
+            ArrayList<File> chain = chains.get(i);
+            if(chain.isEmpty())
+                continue;
+            long chainSize = 0;
+            for(File file : chain)
+                chainSize += file.length();
+            long newest = chain.get(chain.size() - 1).lastModified();
+
+            boolean keep = chain != orphans && (kept == 0 || (kept < BACKUPS_TO_KEEP &&
+                    now - newest < MAX_BACKUP_AGE && size + chainSize <= MAX_BACKUP_SIZE));
+            if(keep) {
+                kept++;
+                size += chainSize;
+                continue;
+            }
+            for(File file : chain) {
+                if(!file.delete())
+                    Log.i("astrid-backups", "Unable to delete: " + file); //$NON-NLS-1$ //$NON-NLS-2$
+            }
         }
     }
 
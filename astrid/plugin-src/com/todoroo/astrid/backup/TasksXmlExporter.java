@@ -3,6 +3,7 @@ package com.todoroo.astrid.backup;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 
 import org.xmlpull.v1.XmlSerializer;
 
@@ -26,7 +27,6 @@ import com.todoroo.andlib.utility.DateUtilities;
 import com.todoroo.andlib.utility.DialogUtilities;
 import com.todoroo.andlib.utility.Preferences;
 import com.todoroo.astrid.core.PluginServices;
-import com.todoroo.astrid.dao.MetadataDao.MetadataCriteria;
 import com.todoroo.astrid.data.Metadata;
 import com.todoroo.astrid.data.Task;
 import com.todoroo.astrid.service.MetadataService;
@@ -61,9 +61,18 @@ public class TasksXmlExporter {
 
     private static final int FORMAT = 2;
 
+    /** time after which the next automatic backup is a full one */
+    private static final long FULL_BACKUP_INTERVAL = DateUtilities.ONE_WEEK;
+
+    /** deltas written on top of a full backup before the next full one */
+    private static final int MAX_DELTAS = 6;
+
     private final Context context;
     private int exportCount = 0;
     private XmlSerializer xml;
+    private FileOutputStream fos;
+    private String xmlFile;
+    private String xmlBase;
     private final TaskService taskService = PluginServices.getTaskService();
     private final MetadataService metadataService = PluginServices.getMetadataService();
     private final ExceptionService exceptionService = PluginServices.getExceptionService();
@@ -108,12 +117,15 @@ public class TasksXmlExporter {
             @Override
             public void run() {
                 try {
-                    String output = setupFile(backupDirectory,
-                            exportType);
-                    int tasks = taskService.countTasks();
-
-                    if(tasks > 0)
-                        doTasksExport(output);
+                    String output = null;
+
+                    if(exportType == ExportType.EXPORT_TYPE_SERVICE) {
+                        output = doIncrementalExport();
+                    } else {
+                        output = setupFile(backupDirectory, exportType, false);
+                        if(taskService.countTasks() > 0)
+                            doTasksExport(output, null, null, null);
+                    }
 
                     Preferences.setLong(BackupPreferences.PREF_BACKUP_LAST_DATE,
                             DateUtilities.now());
@@ -145,11 +157,90 @@ public class TasksXmlExporter {
     }
 
 
+    /**
+     * Write a delta holding the tasks that changed since the last automatic
+     * backup, or a full backup if there is no chain to add to or a new one
+     * is due. Deleted tasks are not recorded, as imports only add tasks.
+     * If no task or metadata was written since the last backup, returns
+     * before reading any.
+     *
+     * @return file written, or null if nothing changed
+     */
+    private String doIncrementalExport() throws IOException {
+        long changes = BackupChangeCounter.getInstance().snapshot();
+        BackupIndex previous = BackupIndex.read(context);
+        if(previous != null && (backupDirectory == null ||
+                !backupDirectory.getAbsolutePath().equals(previous.directory) ||
+                !new File(backupDirectory, previous.base).exists()))
+            previous = null;
+
+        if(previous != null && (previous.deltas >= MAX_DELTAS ||
+                DateUtilities.now() - previous.baseDate > FULL_BACKUP_INTERVAL))
+            previous = null;
+
+        if(previous != null && previous.changes == changes)
+            return null;
+        if(taskService.countTasks() == 0)
+            return null;
+
+        boolean delta = previous != null;
+        String output = setupFile(backupDirectory, ExportType.EXPORT_TYPE_SERVICE, delta);
+
+        BackupIndex next = new BackupIndex();
+        next.directory = backupDirectory.getAbsolutePath();
+        next.changes = changes;
+        if(delta) {
+            next.base = previous.base;
+            next.baseDate = previous.baseDate;
+            next.deltas = previous.deltas + 1;
+        } else {
+            next.base = new File(output).getName();
+            next.baseDate = DateUtilities.now();
+            next.deltas = 0;
+        }
+
+        if(!doTasksExport(output, previous, next, next.base)) {
+            // nothing changed since the last backup
+            next.deltas = previous.deltas;
+            output = null;
+        }
+        next.write(context);
+        return output;
+    }
+
+    /**
+     * @param previous index of the full backup to write a delta against,
+     * or null to write every task
+     * @param next index to fill with the hashes of the tasks, or null
+     * @param base file name of the full backup of a delta, or null
+     * @return false if this was a delta with no changed tasks, in which case
+     * no file was created
+     */
+    private boolean doTasksExport(String output, BackupIndex previous, BackupIndex next,
+            String base) throws IOException {
+        this.xml = null;
+        this.xmlFile = output;
+        this.xmlBase = previous == null ? null : base;
+        if(previous == null)
+            startDocument();
+
+        serializeTasks(previous, next);
+        if(xml == null)
+            return false;
+
+        xml.endTag(null, BackupConstants.ASTRID_TAG);
+        xml.endDocument();
+        xml.flush();
+        fos.close();
+        return true;
+    }
+
+    /** Create the output file and write the document header */
     @SuppressWarnings("nls")
-    private void doTasksExport(String output) throws IOException {
-        File xmlFile = new File(output);
-        xmlFile.createNewFile();
-        FileOutputStream fos = new FileOutputStream(xmlFile);
+    private void startDocument() throws IOException {
+        File file = new File(xmlFile);
+        file.createNewFile();
+        fos = new FileOutputStream(file);
         xml = Xml.newSerializer();
         xml.setOutput(fos, BackupConstants.XML_ENCODING);
 
@@ -161,52 +252,82 @@ public class TasksXmlExporter {
                 Integer.toString(AstridPreferences.getCurrentVersion()));
         xml.attribute(null, BackupConstants.ASTRID_ATTR_FORMAT,
                 Integer.toString(FORMAT));
-
-        serializeTasks();
-
-        xml.endTag(null, BackupConstants.ASTRID_TAG);
-        xml.endDocument();
-        xml.flush();
-        fos.close();
+        if(xmlBase != null)
+            xml.attribute(null, BackupConstants.ASTRID_ATTR_BASE, xmlBase);
     }
 
-    private void serializeTasks() throws IOException {
+    /**
+     * Write tasks with their metadata. Metadata is read in one pass ordered
+     * by task, alongside the tasks. Tasks whose hash matches the one in the
+     * previous index are skipped, and a delta's file is only created once
+     * a task is written.
+     */
+    private void serializeTasks(BackupIndex previous, BackupIndex next) throws IOException {
         TodorooCursor<Task> cursor = taskService.query(Query.select(
                 Task.PROPERTIES).orderBy(Order.asc(Task.ID)));
+        TodorooCursor<Metadata> metadataCursor = metadataService.query(Query.select(
+                Metadata.PROPERTIES).orderBy(Order.asc(Metadata.TASK), Order.asc(Metadata.ID)));
         try {
             Task task = new Task();
+            ArrayList<Metadata> metadata = new ArrayList<Metadata>();
+            metadataCursor.moveToFirst();
             int length = cursor.getCount();
             for(int i = 0; i < length; i++) {
                 cursor.moveToNext();
                 task.readFromCursor(cursor);
+                readMetadata(metadataCursor, task.getId(), metadata);
 
                 setProgress(i, length);
 
+                if(next != null) {
+                    long hash = BackupIndex.hash(BackupIndex.newHash(), task,
+                            Task.PROPERTIES, Task.ID);
+                    for(Metadata item : metadata)
+                        hash = BackupIndex.hash(hash, item, Metadata.PROPERTIES,
+                                Metadata.ID, Metadata.TASK);
+                    next.hashes.put(task.getId(), hash);
+
+                    Long previousHash = previous == null ? null : previous.hashes.get(task.getId());
+                    if(previousHash != null && previousHash == hash)
+                        continue;
+                }
+
+                if(xml == null)
+                    startDocument();
                 xml.startTag(null, BackupConstants.TASK_TAG);
+                xml.attribute(null, BackupConstants.TASK_ATTR_ID, Long.toString(task.getId()));
                 serializeModel(task, Task.PROPERTIES, Task.ID);
-                serializeMetadata(task);
+                serializeMetadata(metadata);
                 xml.endTag(null, BackupConstants.TASK_TAG);
                 this.exportCount++;
             }
         } finally {
             cursor.close();
+            metadataCursor.close();
         }
     }
 
-    private synchronized void serializeMetadata(Task task) throws IOException {
-        TodorooCursor<Metadata> cursor = metadataService.query(Query.select(
-                Metadata.PROPERTIES).where(MetadataCriteria.byTask(task.getId())));
-        try {
+    /** Advance the metadata cursor past the given task, collecting its rows */
+    private void readMetadata(TodorooCursor<Metadata> cursor, long taskId,
+            ArrayList<Metadata> result) {
+        result.clear();
+        for(; !cursor.isAfterLast(); cursor.moveToNext()) {
+            long metadataTask = cursor.get(Metadata.TASK);
+            if(metadataTask > taskId)
+                break;
+            if(metadataTask < taskId)
+                continue;
             Metadata metadata = new Metadata();
-            for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
-                metadata.readFromCursor(cursor);
+            metadata.readFromCursor(cursor);
+            result.add(metadata);
+        }
+    }
 
-                xml.startTag(null, BackupConstants.METADATA_TAG);
-                serializeModel(metadata, Metadata.PROPERTIES, Metadata.ID, Metadata.TASK);
-                xml.endTag(null, BackupConstants.METADATA_TAG);
-            }
-        } finally {
-            cursor.close();
+    private void serializeMetadata(ArrayList<Metadata> metadata) throws IOException {
+        for(Metadata item : metadata) {
+            xml.startTag(null, BackupConstants.METADATA_TAG);
+            serializeModel(item, Metadata.PROPERTIES, Metadata.ID, Metadata.TASK);
+            xml.endTag(null, BackupConstants.METADATA_TAG);
         }
     }
 
@@ -332,10 +453,11 @@ public class TasksXmlExporter {
     /**
      * Creates directories if necessary and returns fully qualified file
      * @param directory
+     * @param delta whether an automatic backup is a delta
      * @return output file name
      * @throws IOException
      */
-    private String setupFile(File directory, ExportType exportType) throws IOException {
+    private String setupFile(File directory, ExportType exportType, boolean delta) throws IOException {
         File astridDir = directory;
         if (astridDir != null) {
             // Check for /sdcard/astrid directory. If it doesn't exist, make it.
@@ -343,7 +465,8 @@ public class TasksXmlExporter {
                 String fileName = ""; //$NON-NLS-1$
                 switch(exportType) {
                 case EXPORT_TYPE_SERVICE:
-                    fileName = String.format(BackupConstants.BACKUP_FILE_NAME, BackupDateUtilities.getDateForExport());
+                    fileName = String.format(delta ? BackupConstants.BACKUP_DELTA_FILE_NAME :
+                        BackupConstants.BACKUP_FILE_NAME, BackupDateUtilities.getDateForExport());
                     break;
                 case EXPORT_TYPE_MANUAL:
                     fileName = String.format(BackupConstants.EXPORT_FILE_NAME, BackupDateUtilities.getDateForExport());
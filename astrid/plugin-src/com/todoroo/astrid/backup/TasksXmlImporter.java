@@ -1,8 +1,12 @@
 package com.todoroo.astrid.backup;
 
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.StringTokenizer;
 
@@ -36,6 +40,7 @@ import com.todoroo.andlib.utility.DateUtilities;
 import com.todoroo.andlib.utility.DialogUtilities;
 import com.todoroo.astrid.api.AstridApiConstants;
 import com.todoroo.astrid.core.PluginServices;
+import com.todoroo.astrid.dao.MetadataDao.MetadataCriteria;
 import com.todoroo.astrid.data.Metadata;
 import com.todoroo.astrid.data.Task;
 import com.todoroo.astrid.legacy.LegacyImportance;
@@ -70,6 +75,9 @@ public class TasksXmlImporter {
     private int errorCount = 0;
     private final String input;
 
+    /** local id of each imported task, by its id when it was backed up */
+    private final HashMap<Long, Long> exportedIds = new HashMap<Long, Long>();
+
     private final Context context;
     private final TaskService taskService = PluginServices.getTaskService();
     private final MetadataService metadataService = PluginServices.getMetadataService();
@@ -125,11 +133,80 @@ public class TasksXmlImporter {
         }).start();
     }
 
-    @SuppressWarnings("nls")
     private void performImport() throws IOException, XmlPullParserException {
+        try {
+            for(String file : resolveChain(input))
+                importFile(file);
+        } finally {
+            Intent broadcastIntent = new Intent(AstridApiConstants.BROADCAST_EVENT_REFRESH);
+            ContextManager.getContext().sendBroadcast(broadcastIntent, AstridApiConstants.PERMISSION_READ);
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if(progressDialog.isShowing() && context instanceof Activity)
+                       DialogUtilities.dismissDialog((Activity) context, progressDialog);
+                    showSummary();
+                }
+            });
+        }
+    }
+
+    /**
+     * @return files to import for the given one. A delta backup is restored
+     * by importing its full backup, then each delta of that backup up to
+     * and including the given one, oldest first.
+     */
+    private ArrayList<String> resolveChain(String file) throws IOException, XmlPullParserException {
+        ArrayList<String> files = new ArrayList<String>();
+        String base = readBase(file);
+        if(base == null) {
+            files.add(file);
+            return files;
+        }
+
+        File directory = new File(file).getParentFile();
+        File baseFile = new File(directory, base);
+        if(baseFile.exists())
+            files.add(baseFile.getAbsolutePath());
+        else
+            Log.w("astrid-importer", "Missing full backup " + base); //$NON-NLS-1$ //$NON-NLS-2$
+
+        String name = new File(file).getName();
+        String[] names = directory.list();
+        Arrays.sort(names);
+        for(String other : names) {
+            if(!other.matches(BackupService.BACKUP_DELTA_FILE_NAME_REGEX) || other.compareTo(name) > 0)
+                continue;
+            String path = new File(directory, other).getAbsolutePath();
+            if(base.equals(readBase(path)))
+                files.add(path);
+        }
+        return files;
+    }
+
+    /** @return full backup a delta backup is based on, or null if not a delta */
+    private String readBase(String file) throws IOException, XmlPullParserException {
+        FileReader reader = new FileReader(file);
+        try {
+            XmlPullParser xpp = XmlPullParserFactory.newInstance().newPullParser();
+            xpp.setInput(reader);
+            while (xpp.next() != XmlPullParser.END_DOCUMENT) {
+                if (xpp.getEventType() == XmlPullParser.START_TAG)
+                    return BackupConstants.ASTRID_TAG.equals(xpp.getName()) ?
+                            xpp.getAttributeValue(null, BackupConstants.ASTRID_ATTR_BASE) : null;
+            }
+            return null;
+        } finally {
+            reader.close();
+        }
+    }
+
+    @SuppressWarnings("nls")
+    private void importFile(String file) throws IOException, XmlPullParserException {
         XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
         XmlPullParser xpp = factory.newPullParser();
-        xpp.setInput(new FileReader(input));
+        FileReader reader = new FileReader(file);
+        xpp.setInput(reader);
 
         try {
             while (xpp.next() != XmlPullParser.END_DOCUMENT) {
@@ -154,16 +231,7 @@ public class TasksXmlImporter {
                 }
             }
         } finally {
-            Intent broadcastIntent = new Intent(AstridApiConstants.BROADCAST_EVENT_REFRESH);
-            ContextManager.getContext().sendBroadcast(broadcastIntent, AstridApiConstants.PERMISSION_READ);
-            handler.post(new Runnable() {
-                @Override
-                public void run() {
-                    if(progressDialog.isShowing() && context instanceof Activity)
-                       DialogUtilities.dismissDialog((Activity) context, progressDialog);
-                    showSummary();
-                }
-            });
+            reader.close();
         }
     }
 
@@ -199,6 +267,8 @@ public class TasksXmlImporter {
     private class Format2TaskImporter {
 
         private int version;
+        /** whether this is a delta backup, whose tasks replace existing ones */
+        private final boolean delta;
         private final XmlPullParser xpp;
         private final Task currentTask = new Task();
         private final Metadata metadata = new Metadata();
@@ -212,6 +282,7 @@ public class TasksXmlImporter {
                 // can't read version, assume max version
                 this.version = Integer.MAX_VALUE;
             }
+            this.delta = xpp.getAttributeValue(null, BackupConstants.ASTRID_ATTR_BASE) != null;
 
             while (xpp.next() != XmlPullParser.END_DOCUMENT) {
                 String tag = xpp.getName();
@@ -253,14 +324,17 @@ public class TasksXmlImporter {
                 return;
             }
 
-            // if the task's name and creation date match an existing task, skip
+            // if the task matches an existing task, skip
+            long exportedId = parseId(xpp.getAttributeValue(null, BackupConstants.TASK_ATTR_ID));
             long existingTask = 0;
             TodorooCursor<Task> cursor = taskService.query(Query.select(Task.ID,
                         Task.COMPLETION_DATE, Task.DELETION_DATE).
-                    where(Criterion.and(Task.TITLE.eq(title), Task.CREATION_DATE.eq(created))));
+                    where(matchExisting(exportedId, title, created)));
             try {
                 if(cursor.getCount() > 0) {
                     cursor.moveToNext();
+                    if(exportedId > 0)
+                        exportedIds.put(exportedId, cursor.get(Task.ID));
 
                     // fix for failed migration in 4.0.6
                     if(version < UpgradeService.V4_0_6) {
@@ -273,6 +347,9 @@ public class TasksXmlImporter {
                             existingTask = cursor.get(Task.ID);
                     }
 
+                    if(delta)
+                        existingTask = cursor.get(Task.ID);
+
                     if(existingTask == 0) {
                         skipCount++;
                         return;
@@ -287,16 +364,47 @@ public class TasksXmlImporter {
             if(version < UpgradeService.V4_0_6)
                 adjustDueDateScheme(currentTask);
 
-            if(existingTask > 0)
+            if(existingTask > 0) {
                 currentTask.setId(existingTask);
-            else
+                if(delta)
+                    metadataService.deleteWhere(MetadataCriteria.byTask(existingTask));
+            } else
                 currentTask.setId(Task.NO_ID);
 
             // Save the task to the database.
             taskService.save(currentTask);
+            if(exportedId > 0)
+                exportedIds.put(exportedId, currentTask.getId());
             importCount++;
         }
 
+        /**
+         * @return criterion for the existing task a backed up task is. A
+         * delta matches its task in the chain by the id it was backed up
+         * with, or by remote id, as its title may have been edited.
+         */
+        private Criterion matchExisting(long exportedId, String title, String created) {
+            if(exportedIds.containsKey(exportedId))
+                return Task.ID.eq(exportedIds.get(exportedId));
+            if(delta) {
+                long remoteId = parseId(xpp.getAttributeValue(null, Task.REMOTE_ID.name));
+                if(remoteId > 0)
+                    return Criterion.and(Task.REMOTE_ID.eq(remoteId), Task.CREATION_DATE.eq(created));
+            }
+            return Criterion.and(Task.TITLE.eq(title), Task.CREATION_DATE.eq(created));
+        }
+
+        /** @return id in the given attribute value, or 0 if there is none */
+        private long parseId(String value) {
+            if(value == null || TasksXmlExporter.XML_NULL.equals(value))
+                return 0;
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+
         private void adjustDueDateScheme(Task model) {
             long dueDate = model.getValue(Task.DUE_DATE);
 
@@ -36,12 +36,20 @@ public class LinkActionExposer {
     private PackageManager pm;
 
     public List<TaskAction> getActionsForTask(Context context, long taskId) {
-        List<TaskAction> result = new ArrayList<TaskAction>();
         if(taskId == -1)
-            return result;
+            return new ArrayList<TaskAction>();
 
         Task task = PluginServices.getTaskService().fetchById(taskId, Task.ID, Task.TITLE);
-        if (task == null) return result;
+        if (task == null)
+            return new ArrayList<TaskAction>();
+        return getActionsForTask(context, task);
+    }
+
+    /**
+     * @param task task with its title already read
+     */
+    public List<TaskAction> getActionsForTask(Context context, Task task) {
+        List<TaskAction> result = new ArrayList<TaskAction>();
 
         Spannable titleSpan = Spannable.Factory.getInstance().newSpannable(task.getValue(Task.TITLE));
         Linkify.addLinks(titleSpan, Linkify.ALL);
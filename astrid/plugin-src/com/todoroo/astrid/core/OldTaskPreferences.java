@@ -18,7 +18,6 @@ import com.todoroo.andlib.service.Autowired;
 import com.todoroo.andlib.service.DependencyInjectionService;
 import com.todoroo.andlib.sql.Criterion;
 import com.todoroo.andlib.sql.Query;
-import com.todoroo.andlib.utility.DateUtilities;
 import com.todoroo.andlib.utility.DialogUtilities;
 import com.todoroo.andlib.utility.Preferences;
 import com.todoroo.andlib.utility.TodorooPreferenceActivity;
@@ -137,24 +136,7 @@ public class OldTaskPreferences extends TodorooPreferenceActivity {
                         pd = DialogUtilities.runWithProgressDialog(OldTaskPreferences.this, new Runnable() {
                             @Override
                             public void run() {
-                                TodorooCursor<Task> cursor = taskService.query(Query.select(Task.ID, Task.CALENDAR_URI).where(
-                                        Criterion.and(Task.COMPLETION_DATE.gt(0), Task.CALENDAR_URI.isNotNull())));
-                                try {
-                                    Task task = new Task();
-                                    int length = cursor.getCount();
-                                    for(int i = 0; i < length; i++) {
-                                        cursor.moveToNext();
-                                        task.readFromCursor(cursor);
-                                        GCalHelper.deleteTaskEvent(task);
-                                    }
-                                } finally {
-                                    cursor.close();
-                                }
-                                Task template = new Task();
-                                template.setValue(Task.DELETION_DATE,
-                                        DateUtilities.now());
-                                int result = taskService.update(
-                                        Task.COMPLETION_DATE.gt(0), template);
+                                int result = taskService.deleteAll(Task.COMPLETION_DATE.gt(0));
                                 showResult(
                                         R.string.EPr_manage_delete_completed_status,
                                         result);
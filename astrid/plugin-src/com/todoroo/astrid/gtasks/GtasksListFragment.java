@@ -1,5 +1,7 @@
 package com.todoroo.astrid.gtasks;
 
+import java.util.ArrayList;
+
 import android.app.Activity;
 import android.app.ProgressDialog;
 import android.content.Intent;
@@ -136,6 +138,7 @@ public class GtasksListFragment extends SubtasksListFragment {
             public void run() {
                 String listId = null;
                 try {
+                    ArrayList<Long> completed = new ArrayList<Long>();
                     for (tasks.moveToFirst(); !tasks.isAfterLast(); tasks.moveToNext()) {
                         Task t = new Task(tasks);
                         if (t.isCompleted()) {
@@ -143,10 +146,11 @@ public class GtasksListFragment extends SubtasksListFragment {
                                 listId = gtasksMetadataService.getTaskMetadata(
                                         t.getId()).getValue(GtasksMetadata.LIST_ID);
                             }
-                            t.setValue(Task.DELETION_DATE, DateUtilities.now());
-                            taskService.save(t);
+                            completed.add(t.getId());
                         }
                     }
+                    if (!completed.isEmpty())
+                        taskService.deleteAll(Task.ID.in(completed.toArray(new Long[completed.size()])));
                 } finally {
                     tasks.close();
                     DialogUtilities.dismissDialog(getActivity(), pd);
@@ -7,8 +7,6 @@ import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
 
-import org.json.JSONObject;
-
 import android.app.Activity;
 import android.content.Intent;
 import android.database.sqlite.SQLiteException;
@@ -58,6 +56,7 @@ import com.todoroo.astrid.data.Metadata;
 import com.todoroo.astrid.data.SyncFlags;
 import com.todoroo.astrid.data.Task;
 import com.todoroo.astrid.data.Update;
+import com.todoroo.astrid.data.UserValue;
 import com.todoroo.astrid.helper.AsyncImageView;
 import com.todoroo.astrid.helper.ImageDiskCache;
 import com.todoroo.astrid.helper.ProgressBarSyncResultCallback;
@@ -495,12 +494,12 @@ public class EditNoteActivity extends LinearLayout implements TimerActionListene
 
         @SuppressWarnings("nls")
         public static NoteOrUpdate fromUpdate(Update u, String linkColor) {
-            JSONObject user = ActFmPreferenceService.userFromModel(u);
+            UserValue user = ActFmPreferenceService.userFromModel(u);
 
             String commentPicture = u.getValue(Update.PICTURE);
 
             Spanned title = UpdateAdapter.getUpdateComment(null, u, user, linkColor, UpdateAdapter.FROM_TASK_VIEW);
-            return new NoteOrUpdate(user.optString("picture"),
+            return new NoteOrUpdate(user.getPicture(),
                     title,
                     commentPicture,
                     u.getValue(Update.CREATION_DATE));
@@ -26,6 +26,7 @@ import com.todoroo.astrid.data.Metadata;
 import com.todoroo.astrid.data.MetadataApiDao.MetadataCriteria;
 import com.todoroo.astrid.data.StoreObject;
 import com.todoroo.astrid.data.Task;
+import com.todoroo.astrid.helper.TaskEditMetadata;
 import com.todoroo.astrid.service.MetadataService;
 import com.todoroo.astrid.ui.PopupControlSet;
 
@@ -222,7 +223,12 @@ public class OpencrxControlSet extends PopupControlSet {
     protected void readFromTaskOnInitialize() {
 
 
-        Metadata metadata = getTaskMetadata(model.getId());
+        TaskEditMetadata editMetadata = getEditMetadata();
+        Metadata metadata;
+        if(editMetadata != null)
+            metadata = editMetadata.getFirst(OpencrxCoreUtils.OPENCRX_ACTIVITY_METADATA_KEY);
+        else
+            metadata = getTaskMetadata(model.getId());
         if(metadata == null)
             metadata = OpencrxCoreUtils.INSTANCE.newMetadata(model.getId());
 
@@ -27,6 +27,7 @@ import com.todoroo.andlib.utility.Preferences;
 import com.todoroo.astrid.data.Metadata;
 import com.todoroo.astrid.data.StoreObject;
 import com.todoroo.astrid.data.Task;
+import com.todoroo.astrid.helper.TaskEditMetadata;
 import com.todoroo.astrid.producteev.sync.ProducteevDashboard;
 import com.todoroo.astrid.producteev.sync.ProducteevDataService;
 import com.todoroo.astrid.producteev.sync.ProducteevSyncProvider;
@@ -65,7 +66,7 @@ public class ProducteevControlSet extends PopupControlSet {
      * @param newUsers the new userlist to show in the responsibleSelector
      */
     private void refreshResponsibleSpinner(ArrayList<ProducteevUser> newUsers) {
-        Metadata metadata = ProducteevDataService.getInstance().getTaskMetadata(model.getId());
+        Metadata metadata = readTaskMetadata();
         long responsibleId = -1;
         if(metadata != null && metadata.containsNonNullValue(ProducteevTask.RESPONSIBLE_ID))
             responsibleId = metadata.getValue(ProducteevTask.RESPONSIBLE_ID);
@@ -104,9 +105,19 @@ public class ProducteevControlSet extends PopupControlSet {
         responsibleSelector.setSelection(responsibleSpinnerIndex);
     }
 
+    /**
+     * @return producteev metadata of the task being edited, or null
+     */
+    private Metadata readTaskMetadata() {
+        TaskEditMetadata editMetadata = getEditMetadata();
+        if(editMetadata != null)
+            return editMetadata.getFirst(ProducteevTask.METADATA_KEY);
+        return ProducteevDataService.getInstance().getTaskMetadata(model.getId());
+    }
+
     @Override
     protected void readFromTaskOnInitialize() {
-        Metadata metadata = ProducteevDataService.getInstance().getTaskMetadata(model.getId());
+        Metadata metadata = readTaskMetadata();
         if(metadata == null)
             metadata = ProducteevTask.newMetadata();
 
@@ -15,20 +15,28 @@ import org.json.JSONObject;
 
 import android.text.TextUtils;
 
+import com.todoroo.andlib.utility.AndroidUtilities;
 import com.todoroo.andlib.utility.Pair;
 
 @SuppressWarnings("nls")
 public class ProducteevInvoker {
 
-    private final String URL = "https://api.producteev.com/";
+    private static final String URL = "https://api.producteev.com/";
 
+    /** number of attempts for a single call that fails with a network error */
+    private static final int MAX_ATTEMPTS = 3;
+
+    /** delay before retrying a failed call, multiplied by the attempt */
+    private static final long RETRY_DELAY = 1000L;
+
+    private final String url;
     private final String apiKey;
     private final String apiSecret;
 
     /** saved credentials in case we need to re-log in */
     private String retryEmail;
     private String retryPassword;
-    private String token = null;
+    private volatile String token = null;
 
     /**
      * Create new producteev service
@@ -36,8 +44,19 @@ public class ProducteevInvoker {
      * @param apiSecret
      */
     public ProducteevInvoker(String apiKey, String apiSecret) {
+        this(apiKey, apiSecret, URL);
+    }
+
+    /**
+     * Create new producteev service talking to the given server
+     * @param apiKey
+     * @param apiSecret
+     * @param url base url, ending with a slash
+     */
+    public ProducteevInvoker(String apiKey, String apiSecret, String url) {
         this.apiKey = apiKey;
         this.apiSecret = apiSecret;
+        this.url = url;
     }
 
     // --- authentication and time
@@ -550,19 +569,16 @@ public class ProducteevInvoker {
             String request = createFetchUrl(method, getParameters);
             String response = null;
             try {
-                response = restClient.get(request);
+                response = getWithRetry(method, request);
             } catch (ApiSignatureException e) {
                 // clear cookies, get new token, retry
-                String oldToken = token;
-                restClient.reset();
-                authenticate(retryEmail, retryPassword);
-                for(int i = 0; i < getParameters.length; i++)
-                    if(oldToken.equals(getParameters[i])) {
-                        getParameters[i] = getToken();
+                for(int i = 0; i < getParameters.length - 1; i += 2)
+                    if("token".equals(getParameters[i])) {
+                        getParameters[i + 1] = refreshToken((String) getParameters[i + 1]);
                     }
                 request = createFetchUrl(method, getParameters);
                 try {
-                    response = restClient.get(request);
+                    response = getWithRetry(method, request);
                 } catch (ApiSignatureException newException) {
                     //
                 }
@@ -588,6 +604,40 @@ public class ProducteevInvoker {
         }
     }
 
+    /**
+     * Log in again after the server rejected the given token. Requests
+     * running in parallel share the new token instead of each logging in.
+     *
+     * @return new token
+     */
+    private synchronized String refreshToken(String expiredToken) throws IOException, ApiServiceException {
+        if(token != null && !token.equals(expiredToken))
+            return token;
+        restClient.reset();
+        authenticate(retryEmail, retryPassword);
+        return token;
+    }
+
+    /**
+     * Issue a GET, retrying only this request when the network fails.
+     * Errors returned by the server are not retried, and neither are calls
+     * that create objects, as the first attempt may have reached the server.
+     */
+    private String getWithRetry(String method, String request) throws IOException {
+        int attempts = method.endsWith("create.json") ? 1 : MAX_ATTEMPTS;
+        for(int attempt = 1; ; attempt++) {
+            try {
+                return restClient.get(request);
+            } catch (ApiServiceException e) {
+                throw e;
+            } catch (IOException e) {
+                if(attempt >= attempts)
+                    throw e;
+                AndroidUtilities.sleepDeep(RETRY_DELAY * attempt);
+            }
+        }
+    }
+
     /**
      * Invokes API method using HTTP GET
      *
@@ -600,7 +650,7 @@ public class ProducteevInvoker {
     JSONObject invokeGet(String method, Object... getParameters) throws IOException, ApiServiceException {
         try {
             String request = createFetchUrl(method, getParameters);
-            String response = restClient.get(request);
+            String response = getWithRetry(method, request);
             if(response.startsWith("DEBUG MESSAGE")) {
                 System.err.println(response);
                 return new JSONObject();
@@ -635,7 +685,7 @@ public class ProducteevInvoker {
             }
         });
 
-        StringBuilder requestBuilder = new StringBuilder(URL).append(method).append('?');
+        StringBuilder requestBuilder = new StringBuilder(url).append(method).append('?');
         StringBuilder sigBuilder = new StringBuilder();
         for(Pair<String, Object> entry : params) {
             if(entry.getRight() == null)
@@ -11,7 +11,15 @@ import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.conn.params.ConnManagerPNames;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
 import org.apache.http.params.BasicHttpParams;
 import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
@@ -36,6 +44,9 @@ public class ProducteevRestClient implements RestClient {
 
     private static final int TIMEOUT_MILLIS = 30000;
 
+    /** maximum number of requests in flight at the same time */
+    public static final int MAX_CONNECTIONS = 4;
+
     private static HttpClient httpClient = null;
 
     private static String convertStreamToString(InputStream is) {
@@ -66,13 +77,24 @@ public class ProducteevRestClient implements RestClient {
         return sb.toString();
     }
 
-    private synchronized static void initializeHttpClient() {
+    @SuppressWarnings("nls")
+    private synchronized static HttpClient getHttpClient() {
         if (httpClient == null) {
+            SchemeRegistry schemeRegistry = new SchemeRegistry();
+            schemeRegistry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
+            schemeRegistry.register(new Scheme("https", SSLSocketFactory.getSocketFactory(), 443));
+
             HttpParams params = new BasicHttpParams();
             HttpConnectionParams.setConnectionTimeout(params, TIMEOUT_MILLIS);
             HttpConnectionParams.setSoTimeout(params, TIMEOUT_MILLIS);
-            httpClient = new DefaultHttpClient(params);
+            params.setParameter(ConnManagerPNames.MAX_TOTAL_CONNECTIONS, MAX_CONNECTIONS);
+            params.setParameter(ConnManagerPNames.MAX_CONNECTIONS_PER_ROUTE, new ConnPerRouteBean(MAX_CONNECTIONS));
+            DefaultHttpClient client = new DefaultHttpClient(new ThreadSafeClientConnManager(params, schemeRegistry), params);
+            // failed calls are retried individually by the invoker
+            client.setHttpRequestRetryHandler(new DefaultHttpRequestRetryHandler(0, false));
+            httpClient = client;
         }
+        return httpClient;
     }
 
     private String processHttpResponse(HttpResponse response) throws IOException, ApiServiceException {
@@ -123,15 +145,15 @@ public class ProducteevRestClient implements RestClient {
      * @return response, or null if there was no response
      * @throws IOException
      */
-    public synchronized String get(String url) throws IOException {
-        initializeHttpClient();
+    public String get(String url) throws IOException {
+        HttpClient client = getHttpClient();
 
         if(Constants.DEBUG)
             System.err.println("GET: " + url); //$NON-NLS-1$ // (debug)
 
         try {
             HttpGet httpGet = new HttpGet(url);
-            HttpResponse response = httpClient.execute(httpGet);
+            HttpResponse response = client.execute(httpGet);
 
             return processHttpResponse(response);
         } catch (IOException e) {
@@ -152,8 +174,8 @@ public class ProducteevRestClient implements RestClient {
      * @param headers
      * @throws IOException
      */
-    public synchronized String post(String url, HttpEntity data, Header... headers) throws IOException {
-        initializeHttpClient();
+    public String post(String url, HttpEntity data, Header... headers) throws IOException {
+        HttpClient client = getHttpClient();
 
         if(Constants.DEBUG)
             System.err.println("POST: " + url); //$NON-NLS-1$ // (debug)
@@ -161,7 +183,7 @@ public class ProducteevRestClient implements RestClient {
         try {
             HttpPost httpPost = new HttpPost(url);
             httpPost.setEntity(data);
-            HttpResponse response = httpClient.execute(httpPost);
+            HttpResponse response = client.execute(httpPost);
 
             return processHttpResponse(response);
         } catch (IOException e) {
@@ -177,7 +199,9 @@ public class ProducteevRestClient implements RestClient {
      * Destroy and re-create http client
      */
     public void reset() {
-        httpClient = null;
+        synchronized(ProducteevRestClient.class) {
+            httpClient = null;
+        }
     }
 
 }
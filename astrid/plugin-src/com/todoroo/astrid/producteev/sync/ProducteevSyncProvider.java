@@ -7,6 +7,11 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -49,6 +54,7 @@ import com.todoroo.astrid.producteev.api.ApiResponseParseException;
 import com.todoroo.astrid.producteev.api.ApiServiceException;
 import com.todoroo.astrid.producteev.api.ApiUtilities;
 import com.todoroo.astrid.producteev.api.ProducteevInvoker;
+import com.todoroo.astrid.producteev.api.ProducteevRestClient;
 import com.todoroo.astrid.service.AstridDependencyInjector;
 import com.todoroo.astrid.service.StatisticsConstants;
 import com.todoroo.astrid.service.StatisticsService;
@@ -62,6 +68,10 @@ import com.todoroo.astrid.utility.Constants;
 public class ProducteevSyncProvider extends SyncProvider<ProducteevTaskContainer> {
 
     private static final long TASK_ID_UNSYNCED = 1L;
+
+    /** number of tasks read from producteev at the same time */
+    private static final int PUSH_THREADS = ProducteevRestClient.MAX_CONNECTIONS;
+
     private ProducteevDataService dataService = null;
     private ProducteevInvoker invoker = null;
     private final ProducteevUtilities preferences = ProducteevUtilities.INSTANCE;
@@ -84,6 +94,13 @@ public class ProducteevSyncProvider extends SyncProvider<ProducteevTaskContainer
         DependencyInjectionService.getInstance().inject(this);
     }
 
+    /** Create a provider that talks to the server through the given invoker */
+    ProducteevSyncProvider(ProducteevInvoker invoker) {
+        this();
+        this.invoker = invoker;
+        this.dataService = ProducteevDataService.getInstance();
+    }
+
     // ----------------------------------------------------------------------
     // ------------------------------------------------------ utility methods
     // ----------------------------------------------------------------------
@@ -256,6 +273,83 @@ public class ProducteevSyncProvider extends SyncProvider<ProducteevTaskContainer
         }
     }
 
+    /**
+     * Push locally updated tasks. Tasks that did not change remotely are
+     * read from the server on a bounded pool ahead of their push, as that
+     * only needs the network. Parsing, pushing and writing, which use the
+     * database and the state of this provider, run in order on the sync
+     * thread.
+     */
+    @Override
+    protected void sendLocallyUpdated(SyncData<ProducteevTaskContainer> data) throws IOException {
+        int length = data.localUpdated.getCount();
+        ArrayList<ProducteevTaskContainer> locals = new ArrayList<ProducteevTaskContainer>(length);
+        ArrayList<Future<JSONObject>> fetches = new ArrayList<Future<JSONObject>>(length);
+        int[] remoteIndices = new int[length];
+
+        ExecutorService executor = Executors.newFixedThreadPool(PUSH_THREADS);
+        try {
+            for(int i = 0; i < length; i++) {
+                data.localUpdated.moveToNext();
+                ProducteevTaskContainer local = read(data.localUpdated);
+                locals.add(local);
+                fetches.add(null);
+                if(local.task == null)
+                    continue;
+
+                // if there is a conflict, merge
+                remoteIndices[i] = matchTask(data.remoteUpdated, local);
+                if(remoteIndices[i] == -1 && willPull(local)) {
+                    final long idTask = local.pdvTask.getValue(ProducteevTask.ID);
+                    fetches.set(i, executor.submit(new Callable<JSONObject>() {
+                        public JSONObject call() throws Exception {
+                            return invoker.tasksView(idTask);
+                        }
+                    }));
+                }
+            }
+
+            for(int i = 0; i < length; i++) {
+                ProducteevTaskContainer local = locals.get(i);
+                if(local.task == null)
+                    continue;
+                try {
+                    ProducteevTaskContainer remote = remoteIndices[i] == -1 ? null :
+                        data.remoteUpdated.get(remoteIndices[i]);
+                    Future<JSONObject> fetch = fetches.get(i);
+                    if(fetch != null)
+                        remote = parseRemoteTask(fetch.get());
+
+                    remote = push(local, remote);
+                    if(remoteIndices[i] != -1) {
+                        // re-read remote task after merge (with local's title)
+                        remote.task.setId(local.task.getId());
+                        data.remoteUpdated.set(remoteIndices[i], remote);
+                    }
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    handleException("sync-local-updated", cause instanceof Exception ?
+                            (Exception) cause : e, false);
+                } catch (InterruptedException e) {
+                    handleException("sync-local-updated", e, false);
+                } catch (JSONException e) {
+                    handleException("sync-local-updated", new ApiResponseParseException(e), false);
+                } catch (IOException e) {
+                    handleException("sync-local-updated", e, false);
+                }
+                write(local);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /** @return true if pushing the task without a remote task reads it first */
+    private boolean willPull(ProducteevTaskContainer local) {
+        return local.pdvTask.getValue(ProducteevTask.DASHBOARD_ID) != ProducteevUtilities.DASHBOARD_NO_SYNC &&
+            local.pdvTask.containsNonNullValue(ProducteevTask.ID);
+    }
+
     private void checkForCreatedDuringSync() {
         TodorooCursor<Task> localCreated = dataService.getLocallyCreated(PROPERTIES);
         try {
@@ -441,11 +535,12 @@ public class ProducteevSyncProvider extends SyncProvider<ProducteevTaskContainer
     /**
      * Send changes for the given Task across the wire. If a remoteTask is
      * supplied, we attempt to intelligently only transmit the values that
-     * have changed.
+     * have changed, and skip re-reading the task if nothing was sent.
      */
     @Override
     protected ProducteevTaskContainer push(ProducteevTaskContainer local, ProducteevTaskContainer remote) throws IOException {
         boolean remerge = false;
+        boolean changed = false;
 
         long idTask = local.pdvTask.getValue(ProducteevTask.ID);
         long idDashboard = local.pdvTask.getValue(ProducteevTask.DASHBOARD_ID);
@@ -462,6 +557,7 @@ public class ProducteevSyncProvider extends SyncProvider<ProducteevTaskContainer
 
         // either delete or re-create if necessary
         if(shouldTransmit(local, Task.DELETION_DATE, remote)) {
+            changed = true;
             if(local.task.getValue(Task.DELETION_DATE) > 0)
                 invoker.tasksDelete(idTask);
             else {
@@ -477,23 +573,31 @@ public class ProducteevSyncProvider extends SyncProvider<ProducteevTaskContainer
         if(remote != null && idDashboard != remote.pdvTask.getValue(ProducteevTask.DASHBOARD_ID)) {
             invoker.tasksSetWorkspace(idTask, idDashboard);
             remote = pull(local);
+            changed = true;
         } else if(remote == null && idTask == TASK_ID_UNSYNCED) {
             // was un-synced, create remote
             remote = create(local);
+            changed = true;
         }
 
         // responsible
         if(remote != null && idResponsible !=
                 remote.pdvTask.getValue(ProducteevTask.RESPONSIBLE_ID)) {
             invoker.tasksSetResponsible(idTask, idResponsible);
+            changed = true;
         }
 
         // core properties
-        if(shouldTransmit(local, Task.TITLE, remote))
+        if(shouldTransmit(local, Task.TITLE, remote)) {
             invoker.tasksSetTitle(idTask, local.task.getValue(Task.TITLE));
-        if(shouldTransmit(local, Task.IMPORTANCE, remote))
+            changed = true;
+        }
+        if(shouldTransmit(local, Task.IMPORTANCE, remote)) {
             invoker.tasksSetStar(idTask, createStars(local.task));
+            changed = true;
+        }
         if(shouldTransmit(local, Task.DUE_DATE, remote)) {
+            changed = true;
             if(local.task.hasDueDate())
                 invoker.tasksSetDeadline(idTask, createDeadline(local.task), local.task.hasDueTime() ? 0 : 1);
             else
@@ -511,10 +615,12 @@ public class ProducteevSyncProvider extends SyncProvider<ProducteevTaskContainer
         if (isAstridRepeating && isPDVRepeating) {
             // Astrid-repeat overrides PDV-repeat
             invoker.tasksUnsetRepeating(idTask);
+            changed = true;
         }
 
         if(shouldTransmit(local, Task.COMPLETION_DATE, remote)) {
             invoker.tasksSetStatus(idTask, local.task.isCompleted() ? 2 : 1);
+            changed = true;
             if (local.task.isCompleted() && !isAstridRepeating &&
                     isPDVRepeating) {
                 local.task.setValue(Task.COMPLETION_DATE, 0L);
@@ -525,7 +631,7 @@ public class ProducteevSyncProvider extends SyncProvider<ProducteevTaskContainer
 
         try {
             // tags
-            transmitTags(local, remote, idTask, idDashboard);
+            changed |= transmitTags(local, remote, idTask, idDashboard);
 
             // notes
             if(!TextUtils.isEmpty(local.task.getValue(Task.NOTES))) {
@@ -533,8 +639,13 @@ public class ProducteevSyncProvider extends SyncProvider<ProducteevTaskContainer
                 JSONObject result = invoker.tasksNoteCreate(idTask, note);
                 local.metadata.add(ApiUtilities.createNoteMetadata(result.getJSONObject("note"), null));
                 local.task.setValue(Task.NOTES, "");
+                changed = true;
             }
 
+            // nothing was sent, the remote task we compared against is current
+            if(!changed && remote != null)
+                return remote;
+
             remote = pull(local);
             remote.task.setId(local.task.getId());
             if(remerge) {
@@ -557,6 +668,7 @@ public class ProducteevSyncProvider extends SyncProvider<ProducteevTaskContainer
     /**
      * Transmit tags
      *
+     * @return true if labels were changed remotely
      * @param local
      * @param remote
      * @param idTask
@@ -565,7 +677,7 @@ public class ProducteevSyncProvider extends SyncProvider<ProducteevTaskContainer
      * @throws JSONException
      * @throws IOException
      */
-    private void transmitTags(ProducteevTaskContainer local,
+    private boolean transmitTags(ProducteevTaskContainer local,
             ProducteevTaskContainer remote, long idTask, long idDashboard) throws ApiServiceException, JSONException, IOException {
         HashSet<String> localTags = new HashSet<String>();
         HashSet<String> remoteTags = new HashSet<String>();
@@ -592,7 +704,9 @@ public class ProducteevSyncProvider extends SyncProvider<ProducteevTaskContainer
                 labels[index++] = id;
             }
             invoker.tasksChangeLabel(idTask, labels);
+            return true;
         }
+        return false;
     }
 
     // ----------------------------------------------------------------------
@@ -423,6 +423,14 @@ public class Notifications extends BroadcastReceiver {
         notificationManager.cancel((int)taskId);
     }
 
+    /**
+     * Cancels notifications of all of the given tasks
+     */
+    public static void cancelNotifications(long[] taskIds) {
+        for(long taskId : taskIds)
+            cancelNotifications(taskId);
+    }
+
     // --- notification manager
 
     public static void setNotificationManager(
@@ -39,7 +39,8 @@ public final class ReminderService  {
 
     // --- constants
 
-    private static final Property<?>[] PROPERTIES = new Property<?>[] {
+    /** properties a task needs to have its alarms scheduled */
+    public static final Property<?>[] PROPERTIES = new Property<?>[] {
         Task.ID,
         Task.CREATION_DATE,
         Task.COMPLETION_DATE,
@@ -122,6 +123,20 @@ public final class ReminderService  {
      */
     public void scheduleAllAlarms() {
         TodorooCursor<Task> cursor = getTasksWithReminders(PROPERTIES);
+        try {
+            scheduleAlarms(cursor);
+        } catch (Exception e) {
+            // suppress
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Schedules alarms for all tasks of the given cursor, which must have
+     * been read with {@link #PROPERTIES}
+     */
+    public void scheduleAlarms(TodorooCursor<Task> cursor) {
         try {
             Task task = new Task();
             now = DateUtilities.now(); // Before mass scheduling, initialize now variable
@@ -129,10 +144,7 @@ public final class ReminderService  {
                 task.readFromCursor(cursor);
                 scheduleAlarm(task, false);
             }
-        } catch (Exception e) {
-            // suppress
         } finally {
-            cursor.close();
             now = -1; // Signal done with now variable
         }
     }
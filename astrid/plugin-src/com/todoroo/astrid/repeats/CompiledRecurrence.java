@@ -0,0 +1,329 @@
+package com.todoroo.astrid.repeats;
+
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.TimeZone;
+
+import com.google.ical.iter.RecurrenceIterator;
+import com.google.ical.iter.RecurrenceIteratorFactory;
+import com.google.ical.values.DateTimeValueImpl;
+import com.google.ical.values.DateValue;
+import com.google.ical.values.DateValueImpl;
+import com.google.ical.values.Frequency;
+import com.google.ical.values.RRule;
+import com.google.ical.values.WeekdayNum;
+import com.todoroo.andlib.utility.DateUtilities;
+import com.todoroo.astrid.data.Task;
+
+/**
+ * A {@link Task#RECURRENCE} string parsed once into an immutable rule.
+ * Instances are shared through a bounded cache keyed by the recurrence
+ * string, so repeated completions and saves of the same kind of repeating
+ * task never re-parse the RRULE.
+ */
+public final class CompiledRecurrence {
+
+    /** maximum number of distinct recurrence strings kept in memory */
+    private static final int CACHE_SIZE = 64;
+
+    /** number of iterations before we give up finding the next date */
+    private static final int MAX_TRIES = 10;
+
+    private static final LinkedHashMap<String, CompiledRecurrence> cache =
+        new LinkedHashMap<String, CompiledRecurrence>(16, 0.75f, true) {
+            private static final long serialVersionUID = 5052155745133046549L;
+
+            @Override
+            protected boolean removeEldestEntry(Entry<String, CompiledRecurrence> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        };
+
+    /**
+     * Parse the given recurrence, re-using a previously compiled rule if
+     * one exists
+     *
+     * @param recurrence ical RRULE string
+     * @return compiled rule
+     * @throws ParseException if the rule could not be parsed
+     */
+    public static CompiledRecurrence compile(String recurrence) throws ParseException {
+        synchronized(cache) {
+            CompiledRecurrence compiled = cache.get(recurrence);
+            if(compiled != null)
+                return compiled;
+        }
+
+        CompiledRecurrence compiled = new CompiledRecurrence(recurrence);
+        synchronized(cache) {
+            cache.put(recurrence, compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * Compute the occurrence following the given due date for the given
+     * recurrence, for storing in {@link Task#NEXT_OCCURRENCE}
+     *
+     * @return next occurrence, or 0 if the task does not repeat or the
+     *         recurrence could not be parsed
+     */
+    public static long computeNextOccurrence(String recurrence, long dueDate) {
+        if(recurrence == null || recurrence.length() == 0 || dueDate <= 0)
+            return 0;
+        try {
+            return compile(recurrence).nextOccurrence(dueDate);
+        } catch (ParseException e) {
+            return 0;
+        }
+    }
+
+    /** Empty the compiled rule cache */
+    public static void clearCache() {
+        synchronized(cache) {
+            cache.clear();
+        }
+    }
+
+    // --- instance
+
+    /** parsed rule. never modified after construction */
+    private final RRule rrule;
+
+    private final Frequency frequency;
+
+    private final int interval;
+
+    /** BYDAY values as java day numbers, sorted ascending */
+    private final int[] weekdays;
+
+    private CompiledRecurrence(String recurrence) throws ParseException {
+        rrule = new RRule(recurrence);
+
+        // handle the iCalendar "byDay" field differently depending on if
+        // we are weekly or otherwise
+        if(rrule.getFreq() != Frequency.WEEKLY)
+            rrule.setByDay(Collections.<WeekdayNum>emptyList());
+
+        frequency = rrule.getFreq();
+        interval = rrule.getInterval();
+
+        List<WeekdayNum> byDay = rrule.getByDay();
+        weekdays = new int[byDay.size()];
+        for(int i = 0; i < weekdays.length; i++)
+            weekdays[i] = byDay.get(i).wday.javaDayNum;
+        Arrays.sort(weekdays);
+    }
+
+    public Frequency getFrequency() {
+        return frequency;
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * Compute the due date the given task receives when it is completed.
+     * Requires DUE_DATE, COMPLETION_DATE and FLAGS
+     *
+     * @return new due date, or -1 if the rule has no further occurrences
+     */
+    public long nextDueDate(Task task) {
+        boolean repeatAfterCompletion = task.getFlag(Task.FLAGS, Task.FLAG_REPEAT_AFTER_COMPLETION);
+        Date original = setUpStartDate(task, repeatAfterCompletion);
+        boolean hasDueTime = task.hasDueTime();
+
+        if(isSubday())
+            return handleSubdayRepeat(original);
+        else if(frequency == Frequency.WEEKLY && weekdays.length > 0 && repeatAfterCompletion)
+            return handleWeeklyRepeatAfterComplete(original, hasDueTime);
+        else
+            return invokeRecurrence(original, setUpStartDateAsDV(original, hasDueTime));
+    }
+
+    /**
+     * Compute the next occurrences of this rule following the given due
+     * date, as if the task repeated from its due date.
+     *
+     * @param dueDate due date to start from
+     * @param count maximum number of occurrences to return
+     * @return ascending due dates, may be shorter than count if the rule ends
+     */
+    public long[] nextOccurrences(long dueDate, int count) {
+        if(dueDate <= 0 || count <= 0)
+            return new long[0];
+
+        long[] result = new long[count];
+        if(isSubday()) {
+            long last = dueDate;
+            for(int i = 0; i < count; i++) {
+                last = handleSubdayRepeat(new Date(last));
+                result[i] = last;
+            }
+            return result;
+        }
+
+        Date original = new Date(dueDate);
+        DateValue startDateAsDV = setUpStartDateAsDV(original, Task.hasDueTime(dueDate));
+        RecurrenceIterator iterator = RecurrenceIteratorFactory.createRecurrenceIterator(rrule,
+                startDateAsDV, TimeZone.getDefault());
+
+        int found = 0;
+        long last = dueDate;
+        for(int i = 0; found < count && i < count + MAX_TRIES && iterator.hasNext(); i++) {
+            DateValue nextDate = iterator.next();
+            if(nextDate.compareTo(startDateAsDV) == 0)
+                continue;
+            long next = buildNewDueDate(original, nextDate);
+            if(next <= last)
+                continue;
+            result[found++] = next;
+            last = next;
+        }
+
+        if(found < count) {
+            long[] truncated = new long[found];
+            System.arraycopy(result, 0, truncated, 0, found);
+            return truncated;
+        }
+        return result;
+    }
+
+    /**
+     * @return the occurrence following the given due date, or 0 if none
+     */
+    public long nextOccurrence(long dueDate) {
+        long[] next = nextOccurrences(dueDate, 1);
+        return next.length == 0 ? 0 : next[0];
+    }
+
+    // --- implementation
+
+    private boolean isSubday() {
+        return frequency == Frequency.HOURLY || frequency == Frequency.MINUTELY;
+    }
+
+    private long handleWeeklyRepeatAfterComplete(Date original, boolean hasDueTime) {
+        long newDate = original.getTime();
+        newDate += DateUtilities.ONE_WEEK * (interval - 1);
+        Calendar date = Calendar.getInstance();
+        date.setTimeInMillis(newDate);
+
+        int today = date.get(Calendar.DAY_OF_WEEK);
+        int next = weekdays[0];
+        for(int weekday : weekdays) {
+            if(weekday > today) {
+                next = weekday;
+                break;
+            }
+        }
+
+        do {
+            date.add(Calendar.DATE, 1);
+        } while (date.get(Calendar.DAY_OF_WEEK) != next);
+
+        long time = date.getTimeInMillis();
+        if(hasDueTime)
+            return Task.createDueDate(Task.URGENCY_SPECIFIC_DAY_TIME, time);
+        else
+            return Task.createDueDate(Task.URGENCY_SPECIFIC_DAY, time);
+    }
+
+    private long invokeRecurrence(Date original, DateValue startDateAsDV) {
+        long newDueDate = -1;
+        RecurrenceIterator iterator = RecurrenceIteratorFactory.createRecurrenceIterator(rrule,
+                startDateAsDV, TimeZone.getDefault());
+        DateValue nextDate = startDateAsDV;
+
+        for(int i = 0; i < MAX_TRIES; i++) { // ten tries then we give up
+            if(!iterator.hasNext())
+                return -1;
+            nextDate = iterator.next();
+
+            if(nextDate.compareTo(startDateAsDV) == 0)
+                continue;
+
+            newDueDate = buildNewDueDate(original, nextDate);
+
+            // detect if we finished
+            if(newDueDate > original.getTime())
+                break;
+        }
+        return newDueDate;
+    }
+
+    /** Compute long due date from DateValue */
+    private static long buildNewDueDate(Date original, DateValue nextDate) {
+        long newDueDate;
+        if(nextDate instanceof DateTimeValueImpl) {
+            DateTimeValueImpl newDateTime = (DateTimeValueImpl)nextDate;
+            Date date = new Date(Date.UTC(newDateTime.year() - 1900, newDateTime.month() - 1,
+                    newDateTime.day(), newDateTime.hour(),
+                    newDateTime.minute(), newDateTime.second()));
+            // time may be inaccurate due to DST, force time to be same
+            date.setHours(original.getHours());
+            date.setMinutes(original.getMinutes());
+            newDueDate = Task.createDueDate(Task.URGENCY_SPECIFIC_DAY_TIME,
+                    date.getTime());
+        } else {
+            newDueDate = Task.createDueDate(Task.URGENCY_SPECIFIC_DAY,
+                    new Date(nextDate.year() - 1900, nextDate.month() - 1,
+                            nextDate.day()).getTime());
+        }
+        return newDueDate;
+    }
+
+    /** Set up repeat start date */
+    private Date setUpStartDate(Task task, boolean repeatAfterCompletion) {
+        Date startDate = new Date();
+        if(task.hasDueDate()) {
+            Date dueDate = new Date(task.getValue(Task.DUE_DATE));
+            if(repeatAfterCompletion)
+                startDate = new Date(task.getValue(Task.COMPLETION_DATE));
+            else
+                startDate = dueDate;
+
+            if(task.hasDueTime() && !isSubday()) {
+                startDate.setHours(dueDate.getHours());
+                startDate.setMinutes(dueDate.getMinutes());
+                startDate.setSeconds(dueDate.getSeconds());
+            }
+        }
+        return startDate;
+    }
+
+    private static DateValue setUpStartDateAsDV(Date startDate, boolean hasDueTime) {
+        if(hasDueTime)
+            return new DateTimeValueImpl(startDate.getYear() + 1900,
+                    startDate.getMonth() + 1, startDate.getDate(),
+                    startDate.getHours(), startDate.getMinutes(), startDate.getSeconds());
+        else
+            return new DateValueImpl(startDate.getYear() + 1900,
+                    startDate.getMonth() + 1, startDate.getDate());
+    }
+
+    private long handleSubdayRepeat(Date startDate) {
+        long millis;
+        switch(frequency) {
+        case HOURLY:
+            millis = DateUtilities.ONE_HOUR;
+            break;
+        case MINUTELY:
+            millis = DateUtilities.ONE_MINUTE;
+            break;
+        default:
+            throw new RuntimeException("Error handing subday repeat: " + frequency); //$NON-NLS-1$
+        }
+        long newDueDate = startDate.getTime() + millis * interval;
+        return Task.createDueDate(Task.URGENCY_SPECIFIC_DAY_TIME,
+                newDueDate);
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.todoroo.astrid.repeats;
+
+import com.todoroo.andlib.data.Migration;
+import com.todoroo.andlib.data.MigrationRunner;
+import com.todoroo.andlib.data.TodorooCursor;
+import com.todoroo.andlib.service.Autowired;
+import com.todoroo.andlib.service.DependencyInjectionService;
+import com.todoroo.andlib.sql.Criterion;
+import com.todoroo.andlib.sql.Order;
+import com.todoroo.andlib.sql.Query;
+import com.todoroo.andlib.utility.Preferences;
+import com.todoroo.astrid.dao.Database;
+import com.todoroo.astrid.dao.TaskDao;
+import com.todoroo.astrid.data.Task;
+
+/**
+ * Fills in {@link Task#NEXT_OCCURRENCE} for repeating tasks that were
+ * created before the column existed. Tasks saved afterwards are kept up
+ * to date by {@link TaskDao}.
+ */
+public class NextOccurrenceMigrator {
+
+    @Autowired Database database;
+
+    @Autowired TaskDao taskDao;
+
+    private static final String PREF_MIGRATED_NEXT_OCCURRENCE = "migrated_next_occurrence";  //$NON-NLS-1$
+
+    public NextOccurrenceMigrator() {
+        DependencyInjectionService.getInstance().inject(this);
+    }
+
+    /** @return true if the migration is finished */
+    public boolean migrateNextOccurrences() {
+        if (Preferences.getBoolean(PREF_MIGRATED_NEXT_OCCURRENCE, false))
+            return true;
+
+        if(!new MigrationRunner(database).run(new NextOccurrenceMigration()))
+            return false;
+        Preferences.setBoolean(PREF_MIGRATED_NEXT_OCCURRENCE, true);
+        return true;
+    }
+
+    /** Fills in repeating tasks in chunks ordered by id */
+    private class NextOccurrenceMigration extends Migration {
+
+        public NextOccurrenceMigration() {
+            super("next-occurrence"); //$NON-NLS-1$
+        }
+
+        @Override
+        @SuppressWarnings("nls")
+        protected long migrateChunk(long checkpoint, int limit) {
+            TodorooCursor<Task> cursor = taskDao.query(Query.select(Task.ID, Task.RECURRENCE, Task.DUE_DATE).where(
+                    Criterion.and(Task.ID.gt(checkpoint), Task.RECURRENCE.isNotNull(),
+                            Task.RECURRENCE.neq(""), Task.DUE_DATE.gt(0))).
+                    orderBy(Order.asc(Task.ID)).limit(limit));
+            try {
+                if(cursor.getCount() == 0)
+                    return DONE;
+
+                Task curr = new Task();
+                Task template = new Task();
+                for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                    curr.readFromCursor(cursor);
+                    long next = CompiledRecurrence.computeNextOccurrence(curr.getValue(Task.RECURRENCE),
+                            curr.getValue(Task.DUE_DATE));
+                    if(next == 0)
+                        continue;
+                    template.clear();
+                    template.setValue(Task.NEXT_OCCURRENCE, next);
+                    // write the column directly, this is not a user modification
+                    taskDao.update(Task.ID.eq(curr.getId()), template);
+                }
+                return curr.getId();
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+
+}
@@ -27,7 +27,6 @@ import com.todoroo.andlib.data.Property;
 import com.todoroo.andlib.data.TodorooCursor;
 import com.todoroo.andlib.service.Autowired;
 import com.todoroo.andlib.service.DependencyInjectionService;
-import com.todoroo.andlib.utility.DateUtilities;
 import com.todoroo.andlib.utility.DialogUtilities;
 import com.todoroo.andlib.utility.Preferences;
 import com.todoroo.astrid.activity.TaskListFragment;
@@ -262,20 +261,12 @@ public class OrderedListFragmentHelper<LIST> {
     private void setCompletedForItemAndSubtasks(final Task item, final boolean completedState) {
         final long itemId = item.getId();
 
-        final Task model = new Task();
-        final long completionDate = completedState ? DateUtilities.now() : 0;
-
         if(completedState == false) {
             ArrayList<Long> chained = chainedCompletions.get(itemId);
             if(chained != null) {
-                for(Long taskId : chained) {
-                    model.setId(taskId);
-                    model.setValue(Task.COMPLETION_DATE, completionDate);
-                    taskService.save(model);
-                    model.clear();
-
+                taskService.completeAll(Task.ID.in(chained.toArray(new Long[chained.size()])), false);
+                for(Long taskId : chained)
                     taskAdapter.getCompletedItems().put(taskId, false);
-                }
                 taskAdapter.notifyDataSetInvalidated();
             }
             return;
@@ -293,17 +284,13 @@ public class OrderedListFragmentHelper<LIST> {
                     metadataService.save(metadata);
                 }
 
-                model.setId(node.taskId);
-                model.setValue(Task.COMPLETION_DATE, completionDate);
-                taskService.save(model);
-                model.clear();
-
                 taskAdapter.getCompletedItems().put(node.taskId, true);
                 chained.add(node.taskId);
             }
         });
 
         if(chained.size() > 0) {
+            taskService.completeAll(Task.ID.in(chained.toArray(new Long[chained.size()])), true);
             chainedCompletions.put(itemId, chained);
             taskAdapter.notifyDataSetInvalidated();
         }
@@ -31,7 +31,6 @@ import com.todoroo.andlib.utility.DateUtilities;
 import com.todoroo.andlib.utility.DialogUtilities;
 import com.todoroo.astrid.actfm.TagViewFragment;
 import com.todoroo.astrid.api.AstridApiConstants;
-import com.todoroo.astrid.api.AstridFilterExposer;
 import com.todoroo.astrid.api.Filter;
 import com.todoroo.astrid.api.FilterCategory;
 import com.todoroo.astrid.api.FilterListItem;
@@ -44,6 +43,7 @@ import com.todoroo.astrid.data.Metadata;
 import com.todoroo.astrid.data.TagData;
 import com.todoroo.astrid.gtasks.GtasksPreferenceService;
 import com.todoroo.astrid.service.AstridDependencyInjector;
+import com.todoroo.astrid.service.FilterExposerRegistry.SummarizedFilterExposer;
 import com.todoroo.astrid.service.TagDataService;
 import com.todoroo.astrid.service.ThemeService;
 import com.todoroo.astrid.subtasks.SubtasksTagListFragment;
@@ -56,7 +56,7 @@ import com.todoroo.astrid.utility.AstridPreferences;
  * @author Tim Su <tim@todoroo.com>
  *
  */
-public class TagFilterExposer extends BroadcastReceiver implements AstridFilterExposer {
+public class TagFilterExposer extends BroadcastReceiver implements SummarizedFilterExposer {
 
     private static final String TAG = "tag"; //$NON-NLS-1$
     public static final String TAG_SQL = "tagSql"; //$NON-NLS-1$
@@ -340,4 +340,28 @@ public class TagFilterExposer extends BroadcastReceiver implements AstridFilterE
         return prepareFilters(ContextManager.getContext());
     }
 
+    /**
+     * The filters only change with the tag summary and the settings read
+     * when building them, so task writes that don't change any tag keep
+     * the filters
+     */
+    @SuppressWarnings("nls")
+    @Override
+    public Object getSummary() {
+        Context context = ContextManager.getContext();
+        if (context == null)
+            return null;
+        DependencyInjectionService.getInstance().inject(this);
+
+        StringBuilder summary = new StringBuilder();
+        summary.append(gtasksPreferenceService.isLoggedIn()).append('|');
+        summary.append(AstridPreferences.getPublicPrefs(context).getInt(SortHelper.PREF_SORT_FLAGS, 0));
+        for(Tag tag : TagService.getInstance().getTagList()) {
+            summary.append('\n').append(tag.tag).append('|').append(tag.count).
+                append('|').append(tag.remoteId).append('|').append(tag.image).
+                append('|').append(tag.updateText);
+        }
+        return summary.toString();
+    }
+
 }
@@ -1,15 +1,12 @@
 package com.todoroo.astrid.tags;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 
-import android.text.TextUtils;
-
 import com.timsu.astrid.R;
+import com.todoroo.andlib.data.DatabaseDao;
 import com.todoroo.andlib.data.Property.CountProperty;
 import com.todoroo.andlib.data.Property.LongProperty;
 import com.todoroo.andlib.data.Property.StringProperty;
@@ -23,7 +20,7 @@ import com.todoroo.andlib.sql.Join;
 import com.todoroo.andlib.sql.Order;
 import com.todoroo.andlib.sql.Query;
 import com.todoroo.andlib.sql.QueryTemplate;
-import com.todoroo.astrid.actfm.sync.ActFmPreferenceService;
+import com.todoroo.andlib.utility.DateUtilities;
 import com.todoroo.astrid.core.PluginServices;
 import com.todoroo.astrid.dao.MetadataDao;
 import com.todoroo.astrid.dao.MetadataDao.MetadataCriteria;
@@ -32,7 +29,6 @@ import com.todoroo.astrid.data.Metadata;
 import com.todoroo.astrid.data.TagData;
 import com.todoroo.astrid.data.Task;
 import com.todoroo.astrid.data.TaskApiDao;
-import com.todoroo.astrid.data.Update;
 import com.todoroo.astrid.service.MetadataService;
 import com.todoroo.astrid.service.TagDataService;
 import com.todoroo.astrid.service.TaskService;
@@ -178,7 +174,10 @@ public final class TagService {
     }
 
     /**
-     * Return all tags ordered by given clause
+     * Return all tags ordered by given clause. This runs the grouped query
+     * each time. Tags of active, visible tasks are also kept by the
+     * {@link TagSummary}, see {@link #getActiveTags()}; this is for callers
+     * that need tags of other tasks, such as completed ones.
      *
      * @param order ordering
      * @param activeStatus criterion for specifying completed or uncompleted
@@ -214,6 +213,38 @@ public final class TagService {
         return metadataDao.query(query);
     }
 
+    /**
+     * Return tags of each of the given tasks with one query per chunk of
+     * ids, instead of one {@link #getTags(long)} query per task
+     *
+     * @param taskIds
+     * @return tag names by task id, in the order of {@link #getTags(long)}.
+     * Tasks without tags are left out
+     */
+    public HashMap<Long, ArrayList<String>> getTagsByTask(long[] taskIds) {
+        HashMap<Long, ArrayList<String>> result = new HashMap<Long, ArrayList<String>>();
+        // all tags of a task are in the same chunk, so they stay sorted
+        for(int start = 0; start < taskIds.length; start += DatabaseDao.IDS_PER_STATEMENT) {
+            Query query = Query.select(Metadata.TASK, TAG).where(Criterion.and(MetadataCriteria.withKey(KEY),
+                    Metadata.TASK.in(DatabaseDao.idChunk(taskIds, start)))).orderBy(Order.asc(Functions.upper(TAG)));
+            TodorooCursor<Metadata> cursor = metadataDao.query(query);
+            try {
+                for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                    Long taskId = cursor.get(Metadata.TASK);
+                    ArrayList<String> tags = result.get(taskId);
+                    if(tags == null) {
+                        tags = new ArrayList<String>();
+                        result.put(taskId, tags);
+                    }
+                    tags.add(cursor.get(TAG));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return result;
+    }
+
     /**
      * Return tags as a comma-separated list of strings
      *
@@ -254,42 +285,17 @@ public final class TagService {
      * @return
      */
     public ArrayList<Tag> getTagList() {
-        HashMap<String, Tag> tags = new HashMap<String, Tag>();
-
-        Tag[] tagsByAlpha = getGroupedTags(TagService.GROUPED_TAGS_BY_ALPHA,
-                TaskCriteria.activeAndVisible());
-        for(Tag tag : tagsByAlpha)
-            if(!TextUtils.isEmpty(tag.tag))
-                tags.put(tag.tag, tag);
+        return TagSummary.getInstance().getTagList(this);
+    }
 
-        TodorooCursor<TagData> cursor = tagDataService.query(Query.select(TagData.PROPERTIES));
-        try {
-            TagData tagData = new TagData();
-            for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
-                tagData.readFromCursor(cursor);
-                String tagName = tagData.getValue(TagData.NAME).trim();
-                Tag tag = new Tag(tagData);
-                if(tagData.getValue(TagData.DELETION_DATE) > 0 && !tags.containsKey(tagName)) continue;
-                if(TextUtils.isEmpty(tag.tag))
-                    continue;
-                tags.put(tagName, tag);
-
-                Update update = tagDataService.getLatestUpdate(tagData);
-                if(update != null)
-                    tag.updateText = ActFmPreferenceService.updateToString(update);
-            }
-        } finally {
-            cursor.close();
-        }
-        ArrayList<Tag> tagList = new ArrayList<Tag>(tags.values());
-        Collections.sort(tagList,
-                new Comparator<Tag>() {
-            @Override
-            public int compare(Tag object1, Tag object2) {
-                return object1.tag.compareToIgnoreCase(object2.tag);
-            }
-        });
-        return tagList;
+    /**
+     * Return tags of active, visible tasks, largest first, from the
+     * {@link TagSummary}
+     *
+     * @return empty array if no tags, otherwise array
+     */
+    public Tag[] getActiveTags() {
+        return TagSummary.getInstance().getActiveTags(this);
     }
 
     /**
@@ -320,6 +326,51 @@ public final class TagService {
         return service.synchronizeMetadata(taskId, metadata, Metadata.KEY.eq(KEY));
     }
 
+    /**
+     * Take the given tasks out of one tag and put them in another. Tasks
+     * that already have the new tag keep their metadata for it.
+     * @param taskIds
+     * @param fromTag tag to remove, or null to only add the new tag
+     * @param toTag
+     */
+    public void moveTasks(long[] taskIds, String fromTag, String toTag) {
+        if(taskIds.length == 0)
+            return;
+
+        String tagWithCase = getTagWithCase(toTag);
+        HashSet<Long> tagged = new HashSet<Long>();
+        for(int start = 0; start < taskIds.length; start += DatabaseDao.IDS_PER_STATEMENT) {
+            Long[] ids = DatabaseDao.idChunk(taskIds, start);
+            if(fromTag != null && !fromTag.equalsIgnoreCase(tagWithCase))
+                metadataDao.deleteWhere(tagEqIgnoreCase(fromTag, Metadata.TASK.in(ids)));
+
+            TodorooCursor<Metadata> cursor = metadataDao.query(Query.select(Metadata.TASK).where(
+                    tagEqIgnoreCase(tagWithCase, Metadata.TASK.in(ids))));
+            try {
+                for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext())
+                    tagged.add(cursor.get(Metadata.TASK));
+            } finally {
+                cursor.close();
+            }
+        }
+
+        Metadata item = new Metadata();
+        TagData tagData = tagDataService.getTag(tagWithCase, TagData.REMOTE_ID);
+        long now = DateUtilities.now();
+        for(long taskId : taskIds) {
+            if(tagged.contains(taskId))
+                continue;
+            item.clear();
+            item.setValue(Metadata.CREATION_DATE, now);
+            item.setValue(Metadata.KEY, KEY);
+            item.setValue(Metadata.TASK, taskId);
+            item.setValue(TAG, tagWithCase);
+            if(tagData != null)
+                item.setValue(REMOTE_ID, tagData.getValue(TagData.REMOTE_ID));
+            metadataDao.createNew(item);
+        }
+    }
+
     /**
      * If a tag already exists in the database that case insensitively matches the
      * given tag, return that. Otherwise, return the argument
@@ -0,0 +1,314 @@
+/**
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.tags;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import android.content.ContentValues;
+import android.text.TextUtils;
+
+import com.todoroo.andlib.data.AbstractDatabase.TableUpdateListener;
+import com.todoroo.andlib.data.Property.IntegerFunctionProperty;
+import com.todoroo.andlib.data.Property.LongFunctionProperty;
+import com.todoroo.andlib.data.TodorooCursor;
+import com.todoroo.andlib.sql.Criterion;
+import com.todoroo.andlib.sql.Functions;
+import com.todoroo.andlib.sql.Join;
+import com.todoroo.andlib.sql.Query;
+import com.todoroo.andlib.utility.DateUtilities;
+import com.todoroo.astrid.actfm.sync.ActFmPreferenceService;
+import com.todoroo.astrid.dao.MetadataDao.MetadataCriteria;
+import com.todoroo.astrid.dao.TaskDao.TaskCriteria;
+import com.todoroo.astrid.data.Metadata;
+import com.todoroo.astrid.data.TagData;
+import com.todoroo.astrid.data.Task;
+import com.todoroo.astrid.data.Update;
+import com.todoroo.astrid.tags.TagService.Tag;
+
+/**
+ * Summary of the tags shown in the tag list: name, remote id, number of
+ * active tasks and text of the latest update. Each part is kept until the
+ * tables it was read from change, so building the tag list takes at most
+ * one query per stale part instead of one query per tag.
+ * <p>
+ * This is kept in memory rather than in a table because the counts only
+ * include visible tasks, which changes with time as hidden tasks come up.
+ * Counts are read again once the next hidden task becomes visible.
+ */
+@SuppressWarnings("nls")
+public final class TagSummary implements TableUpdateListener {
+
+    private static final TagSummary INSTANCE = new TagSummary();
+
+    public static TagSummary getInstance() {
+        return INSTANCE;
+    }
+
+    /** number of visible tasks, evaluated against the time the query is built */
+    private static IntegerFunctionProperty visibleCount(long now) {
+        return new IntegerFunctionProperty("SUM(" + Functions.caseStatement(
+                Task.HIDE_UNTIL.lt(now), 1, 0) + ")", "visible");
+    }
+
+    /** earliest time a hidden task becomes visible */
+    private static LongFunctionProperty nextVisible(long now) {
+        return new LongFunctionProperty("MIN(" + Functions.caseStatement(
+                Task.HIDE_UNTIL.gte(now), Task.HIDE_UNTIL, "NULL") + ")", "nextVisible");
+    }
+
+    private static final Comparator<Tag> BY_NAME = new Comparator<Tag>() {
+        @Override
+        public int compare(Tag object1, Tag object2) {
+            return object1.tag.compareToIgnoreCase(object2.tag);
+        }
+    };
+
+    private static final Comparator<Tag> BY_SIZE = new Comparator<Tag>() {
+        @Override
+        public int compare(Tag object1, Tag object2) {
+            if(object1.count != object2.count)
+                return object2.count - object1.count;
+            return BY_NAME.compare(object1, object2);
+        }
+    };
+
+    // --- state, guarded by this
+
+    /** tags with visible tasks, or null if they must be read */
+    private Tag[] counts = null;
+
+    /** time at which counts become stale, or 0 if never */
+    private long countsExpire = 0;
+
+    private int countsGeneration = 0;
+
+    /** tag data rows, or null if they must be read */
+    private TagData[] tagData = null;
+
+    private int tagDataGeneration = 0;
+
+    /** latest update text by tag remote id, or null if all must be read */
+    private HashMap<Long, String> updateText = null;
+
+    /** remote ids of tags whose latest update must be read again */
+    private final HashSet<Long> staleUpdates = new HashSet<Long>();
+
+    private int updatesGeneration = 0;
+
+    TagSummary() {
+        // use getInstance()
+    }
+
+    // --- invalidation
+
+    @Override
+    public synchronized void onTableUpdated(String table, ContentValues values) {
+        if(Task.TABLE.name.equals(table)) {
+            invalidateCounts();
+        } else if(Metadata.TABLE.name.equals(table)) {
+            String key = values == null ? null : values.getAsString(Metadata.KEY.name);
+            if(key == null || TagService.KEY.equals(key))
+                invalidateCounts();
+        } else if(TagData.TABLE.name.equals(table)) {
+            tagData = null;
+            tagDataGeneration++;
+            // tags may have received remote ids
+            updateText = null;
+            updatesGeneration++;
+        } else if(Update.TABLE.name.equals(table)) {
+            String tags = values == null ? null : values.getAsString(Update.TAGS.name);
+            if(tags == null) {
+                updateText = null;
+            } else {
+                for(String tag : tags.split(",")) {
+                    try {
+                        if(tag.length() > 0)
+                            staleUpdates.add(Long.valueOf(tag));
+                    } catch (NumberFormatException e) {
+                        // not a tag id
+                    }
+                }
+            }
+            updatesGeneration++;
+        }
+    }
+
+    private void invalidateCounts() {
+        counts = null;
+        countsGeneration++;
+    }
+
+    /**
+     * Forget everything, e.g. when the database has been replaced
+     */
+    public synchronized void invalidate() {
+        invalidateCounts();
+        tagData = null;
+        tagDataGeneration++;
+        updateText = null;
+        updatesGeneration++;
+    }
+
+    // --- reading
+
+    /**
+     * Return all tags (including metadata tags and TagData tags) sorted
+     * by name, reading only the parts of the summary that are stale
+     *
+     * @return new list of new tags, which callers are free to modify
+     */
+    public ArrayList<Tag> getTagList(TagService service) {
+        Tag[] currentCounts = readCounts(service);
+        TagData[] currentTagData = readTagData(service);
+        Map<Long, String> currentUpdates = readUpdates(service, currentTagData);
+
+        HashMap<String, Tag> tags = new HashMap<String, Tag>();
+        for(Tag tag : currentCounts)
+            if(!TextUtils.isEmpty(tag.tag))
+                tags.put(tag.tag, new Tag(tag.tag, tag.count, tag.remoteId));
+
+        for(TagData item : currentTagData) {
+            String tagName = item.getValue(TagData.NAME).trim();
+            if(item.getValue(TagData.DELETION_DATE) > 0 && !tags.containsKey(tagName))
+                continue;
+            Tag tag = new Tag(item);
+            if(TextUtils.isEmpty(tag.tag))
+                continue;
+            tags.put(tagName, tag);
+            tag.updateText = currentUpdates.get(item.getValue(TagData.REMOTE_ID));
+        }
+
+        ArrayList<Tag> tagList = new ArrayList<Tag>(tags.values());
+        Collections.sort(tagList, BY_NAME);
+        return tagList;
+    }
+
+    /**
+     * Return tags of active, visible tasks with their number of tasks,
+     * largest first, reading the counts only if they are stale
+     *
+     * @return new array of new tags, which callers are free to modify
+     */
+    public Tag[] getActiveTags(TagService service) {
+        Tag[] currentCounts = readCounts(service);
+        ArrayList<Tag> tags = new ArrayList<Tag>(currentCounts.length);
+        for(Tag tag : currentCounts)
+            tags.add(new Tag(tag.tag, tag.count, tag.remoteId));
+        Collections.sort(tags, BY_SIZE);
+        return tags.toArray(new Tag[tags.size()]);
+    }
+
+    private Tag[] readCounts(TagService service) {
+        int generation;
+        synchronized(this) {
+            if(counts != null && (countsExpire == 0 || DateUtilities.now() < countsExpire))
+                return counts;
+            generation = countsGeneration;
+        }
+
+        long now = DateUtilities.now();
+        IntegerFunctionProperty visible = visibleCount(now);
+        LongFunctionProperty next = nextVisible(now);
+        Query query = Query.select(TagService.TAG, TagService.REMOTE_ID, visible, next).
+            join(Join.inner(Task.TABLE, Metadata.TASK.eq(Task.ID))).
+            where(Criterion.and(TaskCriteria.isActive(), MetadataCriteria.withKey(TagService.KEY))).
+            groupBy(TagService.TAG);
+        ArrayList<Tag> result = new ArrayList<Tag>();
+        long expire = 0;
+        TodorooCursor<Metadata> cursor = service.metadataDao.query(query);
+        try {
+            for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                int count = cursor.get(visible);
+                if(count > 0)
+                    result.add(new Tag(cursor.get(TagService.TAG), count, cursor.get(TagService.REMOTE_ID)));
+                long becomesVisible = cursor.get(next);
+                if(becomesVisible > 0 && (expire == 0 || becomesVisible < expire))
+                    expire = becomesVisible;
+            }
+        } finally {
+            cursor.close();
+        }
+
+        Tag[] loaded = result.toArray(new Tag[result.size()]);
+        synchronized(this) {
+            if(generation == countsGeneration) {
+                counts = loaded;
+                countsExpire = expire;
+            }
+        }
+        return loaded;
+    }
+
+    private TagData[] readTagData(TagService service) {
+        int generation;
+        synchronized(this) {
+            if(tagData != null)
+                return tagData;
+            generation = tagDataGeneration;
+        }
+
+        ArrayList<TagData> result = new ArrayList<TagData>();
+        TodorooCursor<TagData> cursor = service.tagDataService.query(Query.select(TagData.ID,
+                TagData.NAME, TagData.REMOTE_ID, TagData.TASK_COUNT, TagData.PICTURE,
+                TagData.DELETION_DATE));
+        try {
+            for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext())
+                result.add(new TagData(cursor));
+        } finally {
+            cursor.close();
+        }
+
+        TagData[] loaded = result.toArray(new TagData[result.size()]);
+        synchronized(this) {
+            if(generation == tagDataGeneration)
+                tagData = loaded;
+        }
+        return loaded;
+    }
+
+    private Map<Long, String> readUpdates(TagService service, TagData[] currentTagData) {
+        HashSet<Long> toRead;
+        boolean all;
+        int generation;
+        synchronized(this) {
+            all = updateText == null;
+            if(!all && staleUpdates.isEmpty())
+                return updateText;
+            generation = updatesGeneration;
+            if(all) {
+                toRead = new HashSet<Long>();
+                for(TagData item : currentTagData)
+                    if(item.getValue(TagData.REMOTE_ID) > 0)
+                        toRead.add(item.getValue(TagData.REMOTE_ID));
+            } else {
+                toRead = new HashSet<Long>(staleUpdates);
+            }
+        }
+
+        HashMap<Long, Update> latest = service.tagDataService.getLatestUpdates(toRead);
+
+        synchronized(this) {
+            HashMap<Long, String> loaded = all || updateText == null ?
+                    new HashMap<Long, String>() : new HashMap<Long, String>(updateText);
+            for(Long remoteId : toRead) {
+                Update update = latest.get(remoteId);
+                if(update == null)
+                    loaded.remove(remoteId);
+                else
+                    loaded.put(remoteId, ActFmPreferenceService.updateToString(update));
+            }
+            if(generation == updatesGeneration) {
+                updateText = loaded;
+                staleUpdates.clear();
+            }
+            return loaded;
+        }
+    }
+
+}
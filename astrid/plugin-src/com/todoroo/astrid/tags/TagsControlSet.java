@@ -1,6 +1,7 @@
 package com.todoroo.astrid.tags;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 
@@ -26,6 +27,7 @@ import com.todoroo.andlib.service.DependencyInjectionService;
 import com.todoroo.andlib.utility.DateUtilities;
 import com.todoroo.astrid.data.Metadata;
 import com.todoroo.astrid.data.Task;
+import com.todoroo.astrid.helper.TaskEditMetadata;
 import com.todoroo.astrid.tags.TagService.Tag;
 import com.todoroo.astrid.ui.PopupControlSet;
 import com.todoroo.astrid.utility.Flags;
@@ -223,15 +225,25 @@ public final class TagsControlSet extends PopupControlSet {
     public void readFromTask(Task task) {
         super.readFromTask(task);
         if(model.getId() != AbstractModel.NO_ID) {
-            TodorooCursor<Metadata> cursor = tagService.getTags(model.getId());
-            LinkedHashSet<String> tags = new LinkedHashSet<String>(cursor.getCount());
-            try {
-                for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
-                    String tag = cursor.get(TagService.TAG);
-                    tags.add(tag);
+            LinkedHashSet<String> tags;
+            TaskEditMetadata editMetadata = getEditMetadata();
+            if(editMetadata != null) {
+                ArrayList<String> names = new ArrayList<String>();
+                for(Metadata tag : editMetadata.get(TagService.KEY))
+                    names.add(tag.getValue(TagService.TAG));
+                Collections.sort(names, String.CASE_INSENSITIVE_ORDER);
+                tags = new LinkedHashSet<String>(names);
+            } else {
+                TodorooCursor<Metadata> cursor = tagService.getTags(model.getId());
+                tags = new LinkedHashSet<String>(cursor.getCount());
+                try {
+                    for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                        String tag = cursor.get(TagService.TAG);
+                        tags.add(tag);
+                    }
+                } finally {
+                    cursor.close();
                 }
-            } finally {
-                cursor.close();
             }
             model.putTransitory(TRANSITORY_TAGS, tags);
             refreshDisplayView();
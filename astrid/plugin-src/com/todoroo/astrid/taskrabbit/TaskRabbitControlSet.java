@@ -25,8 +25,10 @@ import com.todoroo.andlib.service.RestClient;
 import com.todoroo.andlib.utility.Preferences;
 import com.todoroo.astrid.actfm.EditPeopleControlSet.AssignedChangedListener;
 import com.todoroo.astrid.activity.TaskEditFragment;
+import com.todoroo.astrid.data.Metadata;
 import com.todoroo.astrid.data.Task;
 import com.todoroo.astrid.helper.TaskEditControlSet;
+import com.todoroo.astrid.helper.TaskEditMetadata;
 
 public class TaskRabbitControlSet extends TaskEditControlSet implements AssignedChangedListener {
 
@@ -89,7 +91,16 @@ public class TaskRabbitControlSet extends TaskEditControlSet implements Assigned
     @Override
     public void readFromTask(Task task) {
         model = task;
-        taskRabbitTask = TaskRabbitDataService.getInstance().getContainerForTask(model);
+        TaskEditMetadata editMetadata = getEditMetadata();
+        if(editMetadata == null)
+            taskRabbitTask = TaskRabbitDataService.getInstance().getContainerForTask(model);
+        else {
+            Metadata trTask = editMetadata.getFirst(TaskRabbitMetadata.METADATA_KEY);
+            if(trTask == null)
+                taskRabbitTask = new TaskRabbitTaskContainer(model);
+            else
+                taskRabbitTask = new TaskRabbitTaskContainer(model, trTask);
+        }
         updateTaskRow(taskRabbitTask);
 
     }
@@ -20,6 +20,7 @@
 package org.weloveastrid.rmilk.api;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.security.MessageDigest;
@@ -27,6 +28,7 @@ import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -36,12 +38,16 @@ import org.apache.http.HttpStatus;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.xml.sax.SAXException;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
 
 import android.util.Log;
+import android.util.Xml;
 
 /**
  * Handles the details of invoking a method on the RTM REST API.
@@ -79,28 +85,57 @@ public class Invoker {
 
   private static final String API_SIG_PARAM = "api_sig"; //$NON-NLS-1$
 
+  /** number of calls that may be made back to back */
+  private static final int INVOCATION_BURST = 3;
+
+  /** average time between calls */
   private static final long INVOCATION_INTERVAL = 400;
 
-  private long lastInvocation;
+  /** shared by every invoker, as RTM limits calls per application */
+  private static final RateLimiter limiter = new RateLimiter(INVOCATION_BURST, INVOCATION_INTERVAL);
+
+  /** attempts made for a call failing with a transient error */
+  private static final int MAX_ATTEMPTS = 3;
+
+  /** base delay before retrying, doubled on each attempt */
+  private static final long RETRY_DELAY = 1500;
+
+  private static final Random random = new Random();
 
   private final ApplicationInfo applicationInfo;
 
   private final MessageDigest digest;
 
+  private final String serviceUrl;
+
   private final String serviceRelativeUri;
 
   private final HttpClient httpClient;
 
-  public Invoker(@SuppressWarnings("unused") String serverHostName,
-          @SuppressWarnings("unused") int serverPortNumber,
+  /**
+   * Reads the data element of a successful response as it is streamed
+   */
+  public interface ResponseParser<T> {
+      /**
+       * @param parser positioned on the start tag of the data element. Must
+       *        be left on the matching end tag
+       */
+      public T parse(XmlPullParser parser) throws XmlPullParserException, IOException;
+  }
+
+  public Invoker(String serverHostName, int serverPortNumber,
             String serviceRelativeUri, ApplicationInfo applicationInfo)
             throws ServiceInternalException {
 
+        this.serviceUrl = "http://" + serverHostName + //$NON-NLS-1$
+            (serverPortNumber == 80 ? "" : ":" + serverPortNumber);
         this.serviceRelativeUri = serviceRelativeUri;
 
-        httpClient = new DefaultHttpClient();
+        DefaultHttpClient client = new DefaultHttpClient();
+        // failed calls are retried by invoke(), with backoff
+        client.setHttpRequestRetryHandler(new DefaultHttpRequestRetryHandler(0, false));
+        httpClient = client;
 
-        lastInvocation = System.currentTimeMillis();
         this.applicationInfo = applicationInfo;
 
         try {
@@ -138,133 +173,231 @@ public class Invoker {
         return invoke(false, params);
     }
 
-  public Element invoke(boolean repeat, Param... params)
+    /**
+     * Invoke a method, returning the data element of the response
+     *
+     * @param repeat true if this call should not be retried on failure
+     */
+    public Element invoke(boolean repeat, Param... params)
             throws ServiceException {
-        long timeSinceLastInvocation = System.currentTimeMillis() -
-            lastInvocation;
-        if (timeSinceLastInvocation < INVOCATION_INTERVAL) {
-            // In order not to invoke the RTM service too often
-            try {
-                Thread.sleep(INVOCATION_INTERVAL - timeSinceLastInvocation);
-            } catch (InterruptedException e) {
-                return null;
+        return execute(repeat, new ResponseReader<Element>() {
+            public Element read(InputStream content) throws ServiceException, IOException {
+                return readDocument(content);
+            }
+        }, params);
+    }
+
+    /**
+     * Invoke a method, streaming the data element of the response through
+     * the given parser instead of building a document
+     */
+    public <T> T invoke(final ResponseParser<T> responseParser, Param... params)
+            throws ServiceException {
+        return execute(false, new ResponseReader<T>() {
+            public T read(InputStream content) throws ServiceException, IOException {
+                return readStream(content, responseParser);
             }
+        }, params);
+    }
+
+    // --- implementation
+
+    /** reads a successful http response */
+    private interface ResponseReader<T> {
+        public T read(InputStream content) throws ServiceException, IOException;
+    }
+
+    /** thrown by readers for errors worth retrying */
+    private static class TransientException extends ServiceInternalException {
+        private static final long serialVersionUID = 2587263123414356092L;
+
+        /** error to report if retries are exhausted, or null for this */
+        private final ServiceException error;
+
+        public TransientException(String message, Exception exception) {
+            super(message, exception);
+            this.error = null;
         }
 
-        // We compute the URI
-        final StringBuffer requestUri = computeRequestUri(params);
-        HttpResponse response = null;
+        public TransientException(ServiceException error) {
+            super(error.getMessage(), error);
+            this.error = error;
+        }
+    }
 
-        final HttpGet request = new HttpGet("http://" //$NON-NLS-1$
-            + ServiceImpl.SERVER_HOST_NAME + requestUri.toString());
-        final String methodUri = request.getRequestLine().getUri();
+    private <T> T execute(boolean repeat, ResponseReader<T> reader, Param... params)
+            throws ServiceException {
+        // We compute the URI
+        final String requestUri = serviceUrl + computeRequestUri(params).toString();
+        final int attempts = repeat ? 1 : MAX_ATTEMPTS;
 
-        Element result;
         try {
-            Log.i(TAG, "Executing the method:" + methodUri); //$NON-NLS-1$
-            response = httpClient.execute(request);
-            lastInvocation = System.currentTimeMillis();
+            for(int attempt = 1; ; attempt++) {
+                // In order not to invoke the RTM service too often
+                try {
+                    limiter.acquire();
+                } catch (InterruptedException e) {
+                    return null;
+                }
 
-            final int statusCode = response.getStatusLine().getStatusCode();
-            if (statusCode != HttpStatus.SC_OK) {
-                Log.e(TAG, "Method failed: " + response.getStatusLine()); //$NON-NLS-1$
+                final HttpGet request = new HttpGet(requestUri);
+                try {
+                    Log.i(TAG, "Executing the method:" + request.getRequestLine().getUri()); //$NON-NLS-1$
+                    HttpResponse response = httpClient.execute(request);
+
+                    final int statusCode = response.getStatusLine().getStatusCode();
+                    if (statusCode != HttpStatus.SC_OK) {
+                        Log.e(TAG, "Method failed: " + response.getStatusLine()); //$NON-NLS-1$
+                        response.getEntity().consumeContent();
+                        throw new TransientException("method failed: "
+                                + response.getStatusLine(), null);
+                    }
 
-                // Tim: HTTP error. Let's wait a little bit
-                if (!repeat) {
+                    InputStream content = response.getEntity().getContent();
                     try {
-                        Thread.sleep(1500);
-                    } catch (InterruptedException e) {
-                        // ignore
+                        return reader.read(content);
+                    } finally {
+                        content.close();
                     }
-                    response.getEntity().consumeContent();
-                    return invoke(true, params);
+                } catch (TransientException e) {
+                    if(attempt >= attempts)
+                        throw e.error == null ? e : e.error;
+                    backoff(attempt);
+                } catch (ServiceException e) {
+                    throw e;
+                } catch (IOException e) {
+                    throw new ServiceInternalException("Error making connection: " +
+                            e.getMessage(), e);
                 }
+            }
+        } finally {
+            httpClient.getConnectionManager().closeExpiredConnections();
+        }
+    }
+
+    /**
+     * Wait before retrying. The delay grows with each attempt and is
+     * randomized so that clients failing together do not retry together.
+     */
+    private static void backoff(int attempt) {
+        long delay = RETRY_DELAY << (attempt - 1);
+        double jitter;
+        synchronized(random) {
+            jitter = 0.5 + random.nextDouble();
+        }
+        try {
+            Thread.sleep((long) (delay * jitter));
+        } catch (InterruptedException e) {
+            // ignore
+        }
+    }
 
-                throw new ServiceInternalException("method failed: "
-                    + response.getStatusLine());
+    private Element readDocument(InputStream content) throws ServiceException, IOException {
+        final Document responseDoc;
+        try {
+            synchronized(builder) {
+                responseDoc = builder.parse(content);
             }
+        } catch (SAXException e) {
+            throw new TransientException("Error parsing response. " +
+                    "Please try sync again!", e);
+        }
 
-            final Document responseDoc = builder.parse(response.getEntity()
-                    .getContent());
-            final Element wrapperElt = responseDoc.getDocumentElement();
-            if (!wrapperElt.getNodeName().equals("rsp")) {
+        final Element wrapperElt = responseDoc.getDocumentElement();
+        if (!wrapperElt.getNodeName().equals("rsp")) {
+            throw new ServiceInternalException(
+                    "unexpected response returned by RTM service: "
+                        + wrapperElt.getNodeName());
+        }
+
+        String stat = wrapperElt.getAttribute("stat");
+        if (stat.equals("fail")) {
+            Node errElt = wrapperElt.getFirstChild();
+            while (errElt != null
+                && (errElt.getNodeType() != Node.ELEMENT_NODE || !errElt
+                        .getNodeName().equals("err"))) {
+                errElt = errElt.getNextSibling();
+            }
+            if (errElt == null) {
                 throw new ServiceInternalException(
                         "unexpected response returned by RTM service: "
-                            + wrapperElt.getNodeName());
-            } else {
-                String stat = wrapperElt.getAttribute("stat");
-                if (stat.equals("fail")) {
-                    Node errElt = wrapperElt.getFirstChild();
-                    while (errElt != null
-                        && (errElt.getNodeType() != Node.ELEMENT_NODE || !errElt
-                                .getNodeName().equals("err"))) {
-                        errElt = errElt.getNextSibling();
-                    }
-                    if (errElt == null) {
-                        throw new ServiceInternalException(
-                                "unexpected response returned by RTM service: "
-                                    + wrapperElt.getNodeValue());
-                    } else {
-                        if (SERVICE_UNAVAILABLE_CODE.equals(((Element) errElt)
-                                        .getAttribute("code")) && !repeat) {
-                            try {
-                                Thread.sleep(1500);
-                            } catch (InterruptedException e) {
-                                // ignore
-                            }
-                            return invoke(true, params);
-                        }
-
-                        throw new ServiceException(Integer
-                                .parseInt(((Element) errElt)
-                                        .getAttribute("code")),
-                                ((Element) errElt).getAttribute("msg"));
-                    }
+                            + wrapperElt.getNodeValue());
+            }
+            throw serviceError(((Element) errElt).getAttribute("code"),
+                    ((Element) errElt).getAttribute("msg"));
+        }
+
+        Node dataElt = wrapperElt.getFirstChild();
+        while (dataElt != null
+            && (dataElt.getNodeType() != Node.ELEMENT_NODE || dataElt
+                    .getNodeName().equals("transaction") == true)) {
+            try {
+                Node nextSibling = dataElt.getNextSibling();
+                if (nextSibling == null) {
+                    break;
                 } else {
-                    Node dataElt = wrapperElt.getFirstChild();
-                    while (dataElt != null
-                        && (dataElt.getNodeType() != Node.ELEMENT_NODE || dataElt
-                                .getNodeName().equals("transaction") == true)) {
-                        try {
-                            Node nextSibling = dataElt.getNextSibling();
-                            if (nextSibling == null) {
-                                break;
-                            } else {
-                                dataElt = nextSibling;
-                            }
-                        } catch (IndexOutOfBoundsException exception) {
-                            // Some implementation may throw this exception,
-                            // instead of returning a null sibling
-                            break;
-                        }
-                    }
-                    if (dataElt == null) {
-                        throw new ServiceInternalException(
-                                "unexpected response returned by RTM service: "
-                                    + wrapperElt.getNodeValue());
-                    } else {
-                        result = (Element) dataElt;
-                    }
+                    dataElt = nextSibling;
                 }
+            } catch (IndexOutOfBoundsException exception) {
+                // Some implementation may throw this exception,
+                // instead of returning a null sibling
+                break;
             }
-        } catch (IOException e) {
-            throw new ServiceInternalException("Error making connection: " +
-                    e.getMessage(), e);
-        } catch (SAXException e) {
-            // repeat call if possible.
-            if(!repeat)
-                return invoke(true, params);
-            else
-                throw new ServiceInternalException("Error parsing response. " +
-                		"Please try sync again!", e);
-        } finally {
-            httpClient.getConnectionManager().closeExpiredConnections();
         }
+        if (dataElt == null) {
+            throw new ServiceInternalException(
+                    "unexpected response returned by RTM service: "
+                        + wrapperElt.getNodeValue());
+        }
+        return (Element) dataElt;
+    }
 
-        return result;
+    private <T> T readStream(InputStream content, ResponseParser<T> responseParser)
+            throws ServiceException, IOException {
+        try {
+            XmlPullParser parser = Xml.newPullParser();
+            parser.setInput(content, ENCODING);
+            parser.nextTag();
+            if (!"rsp".equals(parser.getName())) {
+                throw new ServiceInternalException(
+                        "unexpected response returned by RTM service: "
+                            + parser.getName());
+            }
+
+            boolean failed = "fail".equals(parser.getAttributeValue(null, "stat"));
+            for(int event = parser.next(); event != XmlPullParser.END_DOCUMENT; event = parser.next()) {
+                if(event != XmlPullParser.START_TAG)
+                    continue;
+                String name = parser.getName();
+                if(failed && "err".equals(name)) {
+                    throw serviceError(parser.getAttributeValue(null, "code"),
+                            parser.getAttributeValue(null, "msg"));
+                } else if(!failed && !"transaction".equals(name)) {
+                    return responseParser.parse(parser);
+                }
+            }
+            throw new ServiceInternalException(
+                    "unexpected response returned by RTM service: no data");
+        } catch (XmlPullParserException e) {
+            throw new TransientException("Error parsing response. " +
+                    "Please try sync again!", e);
+        }
+    }
+
+    private static ServiceException serviceError(String code, String message) {
+        ServiceException error = new ServiceException(Integer.parseInt(code), message);
+        if (SERVICE_UNAVAILABLE_CODE.equals(code))
+            return new TransientException(error);
+        return error;
     }
 
     final String calcApiSig(Param... params) throws ServiceInternalException {
+        synchronized(digest) {
+            return calcApiSigInternal(params);
+        }
+    }
+
+    private String calcApiSigInternal(Param... params) throws ServiceInternalException {
         try {
             digest.reset();
             digest.update(applicationInfo.getSharedSecret().getBytes(ENCODING));
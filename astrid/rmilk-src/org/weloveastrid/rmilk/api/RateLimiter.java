@@ -0,0 +1,58 @@
+/**
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package org.weloveastrid.rmilk.api;
+
+/**
+ * Token bucket limiting how often the RTM service is called. Up to
+ * <code>capacity</code> calls may be made back to back, after which callers
+ * wait for tokens that are added back at a fixed interval. Safe to share
+ * between threads.
+ */
+public class RateLimiter {
+
+    private final int capacity;
+
+    private final long interval;
+
+    private double tokens;
+
+    private long lastRefill;
+
+    /**
+     * @param capacity largest burst of calls allowed
+     * @param interval milliseconds needed to earn one token
+     */
+    public RateLimiter(int capacity, long interval) {
+        this.capacity = capacity;
+        this.interval = interval;
+        this.tokens = capacity;
+        this.lastRefill = System.currentTimeMillis();
+    }
+
+    /**
+     * Take a token, waiting until one is available
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized void acquire() throws InterruptedException {
+        while(true) {
+            refill();
+            if(tokens >= 1) {
+                tokens -= 1;
+                return;
+            }
+            long wait = (long) Math.ceil((1 - tokens) * interval);
+            wait(Math.max(wait, 1));
+        }
+    }
+
+    private void refill() {
+        long now = System.currentTimeMillis();
+        if(now > lastRefill) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) / (double) interval);
+            lastRefill = now;
+        }
+    }
+
+}
@@ -19,6 +19,7 @@
  */
 package org.weloveastrid.rmilk.api;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
@@ -40,6 +41,8 @@ import org.weloveastrid.rmilk.api.data.RtmTaskNote;
 import org.weloveastrid.rmilk.api.data.RtmTaskSeries;
 import org.weloveastrid.rmilk.api.data.RtmTasks;
 import org.weloveastrid.rmilk.api.data.RtmTimeline;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
 
 
 /**
@@ -59,6 +62,13 @@ public class ServiceImpl
 
   public final static String REST_SERVICE_URL_POSTFIX = "/services/rest/"; //$NON-NLS-1$
 
+  /** task lists can be large, so they are built while the response streams in */
+  static final Invoker.ResponseParser<RtmTasks> TASKS_PARSER = new Invoker.ResponseParser<RtmTasks>() {
+      public RtmTasks parse(XmlPullParser parser) throws XmlPullParserException, IOException {
+          return new RtmTasks(parser);
+      }
+  };
+
   private final ApplicationInfo applicationInfo;
 
   private final Invoker invoker;
@@ -358,7 +368,7 @@ public class ServiceImpl
     }
     params.add(new Param("auth_token", currentAuthToken));
     params.add(new Param("api_key", applicationInfo.getApiKey()));
-    return new RtmTasks(invoker.invoke(params.toArray(new Param[params.size()])));
+    return invoker.invoke(TASKS_PARSER, params.toArray(new Param[params.size()]));
   }
 
   public RtmTaskSeries tasks_getTask(String taskName)
@@ -375,7 +385,7 @@ public class ServiceImpl
     params.add(new Param("auth_token", currentAuthToken));
     params.add(new Param("api_key", applicationInfo.getApiKey()));
     params.add(new Param("filter", "name:\"" + taskName+"\""));
-    RtmTasks rtmTasks = new RtmTasks(invoker.invoke(params.toArray(new Param[params.size()])));
+    RtmTasks rtmTasks = invoker.invoke(TASKS_PARSER, params.toArray(new Param[params.size()]));
     return findTask(taskSeriesId, rtmTasks);
   }
 
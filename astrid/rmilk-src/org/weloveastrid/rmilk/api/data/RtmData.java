@@ -19,6 +19,7 @@
  */
 package org.weloveastrid.rmilk.api.data;
 
+import java.io.IOException;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -30,6 +31,8 @@ import java.util.TimeZone;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
 
 /**
  *
@@ -100,6 +103,76 @@ public abstract class RtmData
     return result.toString();
   }
 
+  /**
+   * @return value of the attribute on the parser's current tag, or an empty
+   *         string if it is missing (matching {@link Element#getAttribute})
+   */
+  public static String attribute(XmlPullParser parser, String name)
+  {
+    String value = parser.getAttributeValue(null, name);
+    return value == null ? "" : value;
+  }
+
+  /**
+   * Advance to the next child element of the element the parser is in.
+   *
+   * @return true if positioned on a child start tag, false if the parent's
+   *         end tag was reached
+   */
+  public static boolean nextChild(XmlPullParser parser) throws XmlPullParserException, IOException
+  {
+    while (true)
+    {
+      switch (parser.next())
+      {
+      case XmlPullParser.START_TAG:
+        return true;
+      case XmlPullParser.END_TAG:
+      case XmlPullParser.END_DOCUMENT:
+        return false;
+      default:
+        break;
+      }
+    }
+  }
+
+  /**
+   * Skip the element the parser is positioned on, including its children
+   */
+  public static void skip(XmlPullParser parser) throws XmlPullParserException, IOException
+  {
+    while (nextChild(parser))
+    {
+      skip(parser);
+    }
+  }
+
+  /**
+   * Read the text content of the current element, leaving the parser on
+   * its end tag
+   */
+  protected static String text(XmlPullParser parser) throws XmlPullParserException, IOException
+  {
+    StringBuilder result = new StringBuilder();
+    while (true)
+    {
+      switch (parser.next())
+      {
+      case XmlPullParser.TEXT:
+        result.append(parser.getText());
+        break;
+      case XmlPullParser.START_TAG:
+        skip(parser);
+        break;
+      case XmlPullParser.END_TAG:
+      case XmlPullParser.END_DOCUMENT:
+        return result.toString();
+      default:
+        break;
+      }
+    }
+  }
+
   public synchronized static Date parseDate(String s)
   {
     try
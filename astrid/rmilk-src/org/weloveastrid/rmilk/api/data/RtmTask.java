@@ -19,9 +19,12 @@
  */
 package org.weloveastrid.rmilk.api.data;
 
+import java.io.IOException;
 import java.util.Date;
 
 import org.w3c.dom.Element;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
 
 import android.util.Log;
 
@@ -98,51 +101,68 @@ public class RtmTask
   public RtmTask(Element elt)
   {
     id = elt.getAttribute("id");
-    String dueStr = elt.getAttribute("due");
-    due = (dueStr == null || dueStr.length() == 0) ? null : parseDate(dueStr);
+    due = parseOptionalDate(elt.getAttribute("due"));
     hasDueTime = Integer.parseInt(elt.getAttribute("has_due_time")) != 0;
-    String addedStr = elt.getAttribute("added");
-    added = (addedStr == null || addedStr.length() == 0) ? null : parseDate(addedStr);
-    String completedStr = elt.getAttribute("completed");
-    completed = (completedStr == null || completedStr.length() == 0) ? null : parseDate(completedStr);
-    String deletedStr = elt.getAttribute("deleted");
-    deleted = (deletedStr == null || deletedStr.length() == 0) ? null : parseDate(deletedStr);
-    String priorityStr = elt.getAttribute("priority");
-    if (priorityStr.length() > 0)
-    {
-      switch (priorityStr.charAt(0))
-      {
-      case 'N':
-      case 'n':
-        priority = Priority.None;
-        break;
-      case '3':
-        priority = Priority.Low;
-        break;
-      case '2':
-        priority = Priority.Medium;
-        break;
-      case '1':
-        priority = Priority.High;
-        break;
-      default:
-        System.err.println("Unrecognized RTM task priority: '" + priorityStr + "'");
-        priority = Priority.Medium;
-      }
-    }
-    else
+    added = parseOptionalDate(elt.getAttribute("added"));
+    completed = parseOptionalDate(elt.getAttribute("completed"));
+    deleted = parseOptionalDate(elt.getAttribute("deleted"));
+    priority = parsePriority(elt.getAttribute("priority"));
+    postponed = parsePostponed(elt.getAttribute("postponed"));
+    estimate = elt.getAttribute("estimate");
+  }
+
+  /**
+   * Read the task element the parser is positioned on
+   */
+  public RtmTask(XmlPullParser parser) throws XmlPullParserException, IOException
+  {
+    id = attribute(parser, "id");
+    due = parseOptionalDate(attribute(parser, "due"));
+    hasDueTime = Integer.parseInt(attribute(parser, "has_due_time")) != 0;
+    added = parseOptionalDate(attribute(parser, "added"));
+    completed = parseOptionalDate(attribute(parser, "completed"));
+    deleted = parseOptionalDate(attribute(parser, "deleted"));
+    priority = parsePriority(attribute(parser, "priority"));
+    postponed = parsePostponed(attribute(parser, "postponed"));
+    estimate = attribute(parser, "estimate");
+    skip(parser);
+  }
+
+  private static Date parseOptionalDate(String value)
+  {
+    return (value == null || value.length() == 0) ? null : parseDate(value);
+  }
+
+  private static Priority parsePriority(String priorityStr)
+  {
+    if (priorityStr.length() == 0)
     {
-      priority = Priority.None;
+      return Priority.None;
     }
-    if (elt.hasAttribute("postponed") == true && elt.getAttribute("postponed").length() > 0)
+    switch (priorityStr.charAt(0))
     {
-      postponed = Integer.parseInt(elt.getAttribute("postponed"));
+    case 'N':
+    case 'n':
+      return Priority.None;
+    case '3':
+      return Priority.Low;
+    case '2':
+      return Priority.Medium;
+    case '1':
+      return Priority.High;
+    default:
+      System.err.println("Unrecognized RTM task priority: '" + priorityStr + "'");
+      return Priority.Medium;
     }
-    else
+  }
+
+  private static int parsePostponed(String postponedStr)
+  {
+    if (postponedStr.length() > 0)
     {
-      postponed = 0;
+      return Integer.parseInt(postponedStr);
     }
-    estimate = elt.getAttribute("estimate");
+    return 0;
   }
 
   public String getId()
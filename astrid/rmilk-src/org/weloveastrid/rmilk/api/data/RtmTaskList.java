@@ -19,11 +19,14 @@
  */
 package org.weloveastrid.rmilk.api.data;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 import org.w3c.dom.Element;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
 
 /**
  * 
@@ -51,6 +54,22 @@ public class RtmTaskList extends RtmData {
     if (id == null || id.length() == 0) { throw new RuntimeException("No id found in task list."); }
   }
 
+  /**
+   * Read the list element the parser is positioned on
+   */
+  public RtmTaskList(XmlPullParser parser) throws XmlPullParserException, IOException {
+    id = attribute(parser, "id");
+    series = new ArrayList<RtmTaskSeries>();
+    while (nextChild(parser)) {
+      if ("taskseries".equals(parser.getName()))
+        series.add(new RtmTaskSeries(this, parser));
+      else
+        skip(parser);
+    }
+
+    if (id.length() == 0) { throw new RuntimeException("No id found in task list."); }
+  }
+
   public String getId() {
     return id;
   }
@@ -19,9 +19,12 @@
  */
 package org.weloveastrid.rmilk.api.data;
 
+import java.io.IOException;
 import java.util.Date;
 
 import org.w3c.dom.Element;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
 import org.w3c.dom.EntityReference;
 import org.w3c.dom.Text;
 
@@ -78,6 +81,20 @@ public class RtmTaskNote
     }
   }
 
+  /**
+   * Read the note element the parser is positioned on
+   */
+  public RtmTaskNote(XmlPullParser parser) throws XmlPullParserException, IOException
+  {
+    id = attribute(parser, "id");
+    created = parseDate(attribute(parser, "created"));
+    modified = parseDate(attribute(parser, "modified"));
+    title = attribute(parser, "title");
+
+    String body = text(parser);
+    text = body.length() == 0 ? null : body;
+  }
+
   public String getId()
   {
     return id;
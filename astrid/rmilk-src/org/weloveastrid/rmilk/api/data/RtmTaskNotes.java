@@ -19,10 +19,13 @@
  */
 package org.weloveastrid.rmilk.api.data;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.w3c.dom.Element;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
 
 /**
  * Represents the notes of a task.
@@ -37,6 +40,14 @@ public class RtmTaskNotes
 
   private List<RtmTaskNote> notes;
 
+  /**
+   * Notes of a task that has none
+   */
+  public RtmTaskNotes()
+  {
+    notes = new ArrayList<RtmTaskNote>();
+  }
+
   public RtmTaskNotes(Element element)
   {
     notes = new ArrayList<RtmTaskNote>();
@@ -46,6 +57,21 @@ public class RtmTaskNotes
     }
   }
 
+  /**
+   * Read the notes element the parser is positioned on
+   */
+  public RtmTaskNotes(XmlPullParser parser) throws XmlPullParserException, IOException
+  {
+    notes = new ArrayList<RtmTaskNote>();
+    while (nextChild(parser))
+    {
+      if ("note".equals(parser.getName()))
+        notes.add(new RtmTaskNote(parser));
+      else
+        skip(parser);
+    }
+  }
+
   public List<RtmTaskNote> getNotes()
   {
     return notes;
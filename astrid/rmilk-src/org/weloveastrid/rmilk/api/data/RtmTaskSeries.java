@@ -19,11 +19,15 @@
  */
 package org.weloveastrid.rmilk.api.data;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
 
 import org.w3c.dom.Element;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
 
 /**
  *
@@ -114,6 +118,61 @@ public class RtmTaskSeries extends RtmData {
         }
     }
 
+    /**
+     * Read the taskseries element the parser is positioned on
+     */
+    public RtmTaskSeries(RtmTaskList list, XmlPullParser parser) throws XmlPullParserException, IOException {
+        this.list = list;
+        id = attribute(parser, "id");
+        created = parseDate(attribute(parser, "created"));
+        modified = parseDate(attribute(parser, "modified"));
+        name = attribute(parser, "name");
+        source = attribute(parser, "source");
+        locationId = attribute(parser, "location_id");
+        url = attribute(parser, "url");
+
+        ArrayList<RtmTask> tasks = new ArrayList<RtmTask>();
+        RtmTaskNotes readNotes = new RtmTaskNotes();
+        LinkedList<String> readTags = null;
+        boolean readRecurrence = false;
+        while (nextChild(parser)) {
+            String tag = parser.getName();
+            if ("task".equals(tag)) {
+                tasks.add(new RtmTask(parser));
+            } else if ("notes".equals(tag)) {
+                readNotes = new RtmTaskNotes(parser);
+            } else if ("tags".equals(tag)) {
+                while (nextChild(parser)) {
+                    if ("tag".equals(parser.getName())) {
+                        if (readTags == null)
+                            readTags = new LinkedList<String>();
+                        readTags.add(text(parser));
+                    } else
+                        skip(parser);
+                }
+            } else {
+                if ("rrule".equals(tag))
+                    readRecurrence = true;
+                skip(parser);
+            }
+        }
+
+        // for repeating tasks, pick the first one that is not completed
+        RtmTask selectedTask = tasks.isEmpty() ? null : tasks.get(0);
+        if (tasks.size() > 1) {
+            for (RtmTask childTask : tasks) {
+                if (childTask.getCompleted() == null) {
+                    selectedTask = childTask;
+                    break;
+                }
+            }
+        }
+        task = selectedTask;
+        notes = readNotes;
+        tags = readTags;
+        hasRecurrence = readRecurrence;
+    }
+
     public String getId() {
         return id;
     }
@@ -19,11 +19,14 @@
  */
 package org.weloveastrid.rmilk.api.data;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 import org.w3c.dom.Element;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
 
 /**
  * 
@@ -45,6 +48,19 @@ public class RtmTasks extends RtmData {
     }
   }
 
+  /**
+   * Read the tasks element the parser is positioned on
+   */
+  public RtmTasks(XmlPullParser parser) throws XmlPullParserException, IOException {
+    this.lists = new ArrayList<RtmTaskList>();
+    while (nextChild(parser)) {
+      if ("list".equals(parser.getName()))
+        lists.add(new RtmTaskList(parser));
+      else
+        skip(parser);
+    }
+  }
+
   public List<RtmTaskList> getLists() {
     return Collections.unmodifiableList(lists);
   }
@@ -32,6 +32,7 @@ import android.widget.Toast;
 import com.crittercism.NewFeedbackSpringboardActivity;
 import com.crittercism.app.Crittercism;
 import com.timsu.astrid.R;
+import com.todoroo.andlib.data.QueryStatistics;
 import com.todoroo.andlib.service.Autowired;
 import com.todoroo.andlib.service.ContextManager;
 import com.todoroo.andlib.service.DependencyInjectionService;
@@ -302,6 +303,23 @@ public class EditPreferences extends TodorooPreferenceActivity {
         });
         group.addPreference(preference);
 
+        final CheckBoxPreference profile = new CheckBoxPreference(this);
+        profile.setTitle("Profile SQL");
+        profile.setPersistent(false);
+        profile.setChecked(QueryStatistics.isEnabled());
+        profile.setOnPreferenceChangeListener(new OnPreferenceChangeListener() {
+            public boolean onPreferenceChange(Preference p, Object value) {
+                QueryStatistics.setEnabled((Boolean) value);
+                return true;
+            }
+        });
+        group.addPreference(profile);
+
+        preference = new Preference(this);
+        preference.setTitle("SQL statistics");
+        preference.setIntent(new Intent(this, SqlStatisticsActivity.class));
+        group.addPreference(preference);
+
         preference = new Preference(this);
         preference.setTitle("Make lots of contacts");
         preference.setOnPreferenceClickListener(new OnPreferenceClickListener() {
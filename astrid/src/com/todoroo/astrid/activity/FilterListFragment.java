@@ -50,6 +50,7 @@ import com.todoroo.astrid.adapter.FilterAdapter;
 import com.todoroo.astrid.api.AstridApiConstants;
 import com.todoroo.astrid.api.Filter;
 import com.todoroo.astrid.api.FilterListItem;
+import com.todoroo.astrid.service.FilterExposerRegistry;
 import com.todoroo.astrid.service.StatisticsService;
 import com.todoroo.astrid.tags.TagService;
 import com.todoroo.astrid.tags.TagsPlugin;
@@ -477,6 +478,10 @@ public class FilterListFragment extends ListFragment {
             if(intent == null || !AstridApiConstants.BROADCAST_EVENT_REFRESH.equals(intent.getAction()))
                 return;
 
+            // settings such as sync logins don't show up as table changes,
+            // exposers built from tables are reloaded as those change
+            FilterExposerRegistry.getInstance().onSettingsChanged();
+
             Activity activity = getActivity();
             if (activity != null) {
                 activity.runOnUiThread(new Runnable() {
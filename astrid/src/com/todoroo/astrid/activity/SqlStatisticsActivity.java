@@ -0,0 +1,105 @@
+/**
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.activity;
+
+import java.io.File;
+import java.io.IOException;
+
+import android.app.Activity;
+import android.graphics.Typeface;
+import android.os.Bundle;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.widget.ScrollView;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import com.todoroo.andlib.data.QueryStatistics;
+import com.todoroo.andlib.utility.DateUtilities;
+import com.todoroo.astrid.backup.BackupConstants;
+
+/**
+ * Debug screen listing the SQL statement templates that took the most
+ * time, with their latency percentiles and captured query plans. Only
+ * reachable from the debug section of the preferences.
+ */
+@SuppressWarnings("nls")
+public class SqlStatisticsActivity extends Activity {
+
+    private static final int MENU_REFRESH = Menu.FIRST;
+    private static final int MENU_EXPORT = Menu.FIRST + 1;
+    private static final int MENU_RESET = Menu.FIRST + 2;
+
+    private TextView report;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setTitle("SQL statistics");
+
+        report = new TextView(this);
+        report.setTypeface(Typeface.MONOSPACE);
+        report.setTextSize(10);
+        report.setPadding(5, 5, 5, 5);
+        ScrollView scroll = new ScrollView(this);
+        scroll.addView(report);
+        setContentView(scroll);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        refresh();
+    }
+
+    private void refresh() {
+        String dump = QueryStatistics.dump();
+        if(dump.length() == 0)
+            dump = QueryStatistics.isEnabled() ? "No statements recorded yet" :
+                "SQL profiling is off. Turn it on in the debug preferences";
+        report.setText(dump);
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        menu.add(Menu.NONE, MENU_REFRESH, 0, "Refresh");
+        menu.add(Menu.NONE, MENU_EXPORT, 0, "Export");
+        menu.add(Menu.NONE, MENU_RESET, 0, "Reset");
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        switch(item.getItemId()) {
+        case MENU_REFRESH:
+            refresh();
+            return true;
+        case MENU_EXPORT:
+            export();
+            return true;
+        case MENU_RESET:
+            QueryStatistics.reset();
+            refresh();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    private void export() {
+        File directory = BackupConstants.defaultExportDirectory();
+        if(directory == null) {
+            Toast.makeText(this, "No SD card", Toast.LENGTH_LONG).show();
+            return;
+        }
+        directory.mkdirs();
+        File file = new File(directory, "sql." + DateUtilities.now() + ".txt");
+        try {
+            QueryStatistics.dump(file);
+            Toast.makeText(this, "Saved to " + file, Toast.LENGTH_LONG).show();
+        } catch (IOException e) {
+            Toast.makeText(this, e.toString(), Toast.LENGTH_LONG).show();
+        }
+    }
+
+}
@@ -72,6 +72,7 @@ import com.todoroo.astrid.actfm.sync.ActFmPreferenceService;
 import com.todoroo.astrid.data.Task;
 import com.todoroo.astrid.gcal.GCalControlSet;
 import com.todoroo.astrid.helper.TaskEditControlSet;
+import com.todoroo.astrid.helper.TaskEditMetadata;
 import com.todoroo.astrid.notes.EditNoteActivity;
 import com.todoroo.astrid.opencrx.OpencrxControlSet;
 import com.todoroo.astrid.opencrx.OpencrxCoreUtils;
@@ -203,6 +204,7 @@ ViewPager.OnPageChangeListener, EditNoteActivity.UpdatesChangedListener {
     private HideUntilControlSet hideUntilControls = null;
     private TagsControlSet tagsControlSet = null;
     private TimerActionControlSet timerAction;
+    private EditTitleControlSet editTitle;
     private EditText title;
     private TaskEditMoreControls moreControls;
     private EditNoteActivity editNotes;
@@ -220,6 +222,16 @@ ViewPager.OnPageChangeListener, EditNoteActivity.UpdatesChangedListener {
 
     private final List<TaskEditControlSet> controls = Collections.synchronizedList(new ArrayList<TaskEditControlSet>());
 
+    private final HashMap<String, TaskEditControlSet> controlSetMap = new HashMap<String, TaskEditControlSet>();
+
+    /** items of the more section, which is filled in when first shown */
+    private final ArrayList<String> moreSectionItems = new ArrayList<String>();
+
+    private boolean moreSectionLoaded = false;
+
+    /** metadata of the task being edited, shared by all control sets */
+    private TaskEditMetadata editMetadata = null;
+
     // --- other instance variables
 
     /** true if editing started with a new task */
@@ -447,10 +459,12 @@ ViewPager.OnPageChangeListener, EditNoteActivity.UpdatesChangedListener {
 
         constructWhenDialog(whenDialogView);
 
-        HashMap<String, TaskEditControlSet> controlSetMap = new HashMap<String, TaskEditControlSet>();
+        controlSetMap.clear();
+        moreSectionItems.clear();
+        moreSectionLoaded = false;
 
         // populate control set
-        EditTitleControlSet editTitle = new EditTitleControlSet(getActivity(),
+        editTitle = new EditTitleControlSet(getActivity(),
                 R.layout.control_set_title, R.id.title);
         title = (EditText) editTitle.getView().findViewById(R.id.title);
         controls.add(editTitle);
@@ -510,12 +524,7 @@ ViewPager.OnPageChangeListener, EditNoteActivity.UpdatesChangedListener {
         repeatControls.addListener(editTitle);
         controls.add(gcalControl);
 
-        ImportanceControlSet importanceControl = new ImportanceControlSet(
-                getActivity(), R.layout.control_set_importance);
-        controls.add(importanceControl);
-        importanceControl.addListener(editTitle);
-        controlSetMap.put(getString(R.string.TEA_ctrl_importance_pref),
-                importanceControl);
+        // importance and timer controls are created in createDeferredControlSet
 
         notesControlSet = new EditNotesControlSet(getActivity(),
                 R.layout.control_set_notes, R.layout.control_set_notes_display);
@@ -542,14 +551,6 @@ ViewPager.OnPageChangeListener, EditNoteActivity.UpdatesChangedListener {
         // TODO: Fix the fact that hideUntil doesn't update accordingly with date changes when lazy loaded. Until then, don't lazy load.
         hideUntilControls.getView();
 
-        TimerControlSet timerControl = new TimerControlSet(getActivity(),
-                R.layout.control_set_timers,
-                R.layout.control_set_default_display,
-                R.string.TEA_timer_controls);
-        timerAction.addListener(timerControl);
-        controls.add(timerControl);
-        controlSetMap.put(getString(R.string.TEA_ctrl_timer_pref), timerControl);
-
         try {
             if (ProducteevUtilities.INSTANCE.isLoggedIn()) {
                 ProducteevControlSet producteevControl = new ProducteevControlSet(
@@ -586,33 +587,18 @@ ViewPager.OnPageChangeListener, EditNoteActivity.UpdatesChangedListener {
             itemOrder = getResources().getStringArray(
                     R.array.TEA_control_sets_prefs);
         String moreSectionTrigger = getString(R.string.TEA_ctrl_more_pref);
-        String shareViewDescriptor = getString(R.string.TEA_ctrl_share_pref);
-        LinearLayout section = basicControls;
+        boolean inMoreSection = false;
 
         for (int i = 0; i < itemOrder.length; i++) {
             String item = itemOrder[i];
             if (item.equals(moreSectionTrigger)) {
-                section = moreControls;
-                if (taskRabbitControl != null) {
-                    taskRabbitControl.getDisplayView().setVisibility(View.GONE);
-                    section.addView(taskRabbitControl.getDisplayView());
-                }
-
+                inMoreSection = true;
+            } else if (inMoreSection) {
+                // set up when the more section is first shown
+                moreSectionItems.add(item);
             } else {
-                View control_set = null;
-                TaskEditControlSet curr = controlSetMap.get(item);
-
-                if (item.equals(shareViewDescriptor))
-                    control_set = peopleControlSet.getSharedWithRow();
-                else if (curr != null)
-                    control_set = (LinearLayout) curr.getDisplayView();
-
-                if (control_set != null) {
-                    if ((i + 1 >= itemOrder.length || itemOrder[i + 1].equals(moreSectionTrigger))) {
-                        removeTeaSeparator(control_set);
-                    }
-                    section.addView(control_set);
-                }
+                boolean last = i + 1 >= itemOrder.length || itemOrder[i + 1].equals(moreSectionTrigger);
+                addControlSetView(basicControls, item, last);
             }
         }
 
@@ -620,6 +606,73 @@ ViewPager.OnPageChangeListener, EditNoteActivity.UpdatesChangedListener {
         new TaskEditBackgroundLoader().start();
     }
 
+    /**
+     * Fills in the more section the first time it is shown, creating any
+     * control sets that were not needed until now
+     */
+    private void loadMoreSection() {
+        if (moreSectionLoaded)
+            return;
+        moreSectionLoaded = true;
+
+        if (taskRabbitControl != null) {
+            taskRabbitControl.getDisplayView().setVisibility(View.GONE);
+            moreControls.addView(taskRabbitControl.getDisplayView());
+        }
+        for (int i = 0; i < moreSectionItems.size(); i++)
+            addControlSetView(moreControls, moreSectionItems.get(i),
+                    i + 1 == moreSectionItems.size());
+    }
+
+    private void addControlSetView(LinearLayout section, String item, boolean last) {
+        View control_set = null;
+        TaskEditControlSet curr = controlSetMap.get(item);
+        if (curr == null)
+            curr = createDeferredControlSet(item);
+
+        if (item.equals(getString(R.string.TEA_ctrl_share_pref)))
+            control_set = peopleControlSet.getSharedWithRow();
+        else if (curr != null)
+            control_set = (LinearLayout) curr.getDisplayView();
+
+        if (control_set != null) {
+            if (last)
+                removeTeaSeparator(control_set);
+            section.addView(control_set);
+        }
+    }
+
+    /**
+     * Creates control sets that nothing else depends on, which are only
+     * constructed once their section is shown
+     *
+     * @return control set, or null if the item is not one of these
+     */
+    private TaskEditControlSet createDeferredControlSet(String item) {
+        TaskEditControlSet controlSet;
+        if (item.equals(getString(R.string.TEA_ctrl_importance_pref))) {
+            ImportanceControlSet importanceControl = new ImportanceControlSet(
+                    getActivity(), R.layout.control_set_importance);
+            importanceControl.addListener(editTitle);
+            controlSet = importanceControl;
+        } else if (item.equals(getString(R.string.TEA_ctrl_timer_pref))) {
+            TimerControlSet timerControl = new TimerControlSet(getActivity(),
+                    R.layout.control_set_timers,
+                    R.layout.control_set_default_display,
+                    R.string.TEA_timer_controls);
+            timerAction.addListener(timerControl);
+            controlSet = timerControl;
+        } else {
+            return null;
+        }
+
+        controls.add(controlSet);
+        controlSetMap.put(item, controlSet);
+        if (model != null)
+            controlSet.readFromTask(model, editMetadata);
+        return controlSet;
+    }
+
     private void removeTeaSeparator(View view) {
 
         View teaSeparator = view.findViewById(R.id.TEA_Separator);
@@ -784,9 +837,11 @@ ViewPager.OnPageChangeListener, EditNoteActivity.UpdatesChangedListener {
     public void populateFields(Intent intent) {
         loadItem(intent);
 
+        // metadata is read on first use, in one query for all control sets
+        editMetadata = new TaskEditMetadata(model.getId());
         synchronized (controls) {
             for (TaskEditControlSet controlSet : controls)
-                controlSet.readFromTask(model);
+                controlSet.readFromTask(model, editMetadata);
         }
 
     }
@@ -1139,6 +1194,7 @@ ViewPager.OnPageChangeListener, EditNoteActivity.UpdatesChangedListener {
     public View getPageView(int position) {
         switch(getTabForPosition(position)) {
         case TAB_VIEW_MORE:
+            loadMoreSection();
             moreControls.setLayoutParams(mPager.getLayoutParams());
             setViewHeightBasedOnChildren(moreControls);
             return moreControls;
@@ -3,6 +3,7 @@
  */
 package com.todoroo.astrid.adapter;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -15,6 +16,7 @@ import android.app.Activity;
 import android.app.PendingIntent;
 import android.app.PendingIntent.CanceledException;
 import android.content.BroadcastReceiver;
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
@@ -43,7 +45,6 @@ import com.todoroo.andlib.service.DependencyInjectionService;
 import com.todoroo.astrid.activity.AstridActivity;
 import com.todoroo.astrid.activity.FilterListFragment;
 import com.todoroo.astrid.api.AstridApiConstants;
-import com.todoroo.astrid.api.AstridFilterExposer;
 import com.todoroo.astrid.api.Filter;
 import com.todoroo.astrid.api.FilterCategory;
 import com.todoroo.astrid.api.FilterCategoryWithNewButton;
@@ -51,6 +52,7 @@ import com.todoroo.astrid.api.FilterListHeader;
 import com.todoroo.astrid.api.FilterListItem;
 import com.todoroo.astrid.api.FilterWithUpdate;
 import com.todoroo.astrid.helper.AsyncImageView;
+import com.todoroo.astrid.service.FilterExposerRegistry;
 import com.todoroo.astrid.service.TaskService;
 import com.todoroo.astrid.tags.TagService;
 
@@ -81,8 +83,9 @@ public class FilterAdapter extends ArrayAdapter<Filter> {
 
     /** receiver for new filters */
     private final FilterReceiver filterReceiver = new FilterReceiver();
-    private final BladeFilterReceiver bladeFilterReceiver = new BladeFilterReceiver();
-    private boolean shouldUseBladeFilter = true;
+
+    /** filter exposers of add-ons that are not served by the registry */
+    private final List<ResolveInfo> externalExposers = new ArrayList<ResolveInfo>();
 
     /** row layout to inflate */
     private final int layout;
@@ -346,7 +349,6 @@ public class FilterAdapter extends ArrayAdapter<Filter> {
                 extras.setClassLoader(FilterListHeader.class.getClassLoader());
                 final Parcelable[] filters = extras.getParcelableArray(AstridApiConstants.EXTRAS_RESPONSE);
                 populateFiltersToAdapter(filters);
-                shouldUseBladeFilter = false;
             } catch (Exception e) {
                 Log.e("receive-filter-" +  //$NON-NLS-1$
                         intent.getStringExtra(AstridApiConstants.EXTRAS_ADDON),
@@ -383,50 +385,6 @@ public class FilterAdapter extends ArrayAdapter<Filter> {
         }
     }
 
-    /**
-     * Receiver which gets called after the FilterReceiver
-     * and checks if the filters are populated.
-     * If they aren't (e.g. due to the bug in the ZTE Blade's Parcelable-system throwing a
-     * ClassNotFoundExeption), the filters are fetched manually.
-     *
-     * @author Arne Jans <arne@astrid.com>
-     *
-     */
-    public class BladeFilterReceiver extends FilterReceiver {
-        private final List<ResolveInfo> filterExposerList;
-
-        public BladeFilterReceiver() {
-            // query astrids AndroidManifest.xml for all registered default-receivers to expose filters
-            PackageManager pm = ContextManager.getContext().getPackageManager();
-            filterExposerList = pm.queryBroadcastReceivers(
-                    new Intent(AstridApiConstants.BROADCAST_REQUEST_FILTERS),
-                    PackageManager.MATCH_DEFAULT_ONLY);
-        }
-
-        @SuppressWarnings("nls")
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            if (shouldUseBladeFilter && getCount() == 0 && filterExposerList != null && filterExposerList.size()>0) {
-                try {
-                    for (ResolveInfo filterExposerInfo : filterExposerList) {
-                        Log.d("BladeFilterReceiver", filterExposerInfo.toString());
-                        String className = filterExposerInfo.activityInfo.name;
-                        AstridFilterExposer filterExposer = null;
-                            filterExposer = (AstridFilterExposer) Class.forName(className, true, FilterAdapter.class.getClassLoader()).newInstance();
-
-                        if (filterExposer != null) {
-                            populateFiltersToAdapter(filterExposer.getFilters());
-                        }
-                    }
-                } catch (Exception e) {
-                    Log.e("receive-bladefilter-" +  //$NON-NLS-1$
-                            intent.getStringExtra(AstridApiConstants.EXTRAS_ADDON),
-                            e.toString(), e);
-                }
-            }
-        }
-    }
-
     @Override
     public void notifyDataSetChanged() {
         super.notifyDataSetChanged();
@@ -435,21 +393,46 @@ public class FilterAdapter extends ArrayAdapter<Filter> {
     }
 
     /**
-     * Broadcast a request for lists. The request is sent to every
-     * application registered to listen for this broadcast. Each application
-     * can then add lists to this activity
+     * Request lists. Filters built into Astrid are read from the
+     * {@link FilterExposerRegistry}, then every add-on registered to
+     * listen for this broadcast is asked to add its lists to this activity
      */
     public void getLists() {
-        Intent broadcastIntent = new Intent(AstridApiConstants.BROADCAST_REQUEST_FILTERS);
-//        activity.sendOrderedBroadcast(broadcastIntent, AstridApiConstants.PERMISSION_READ);
-        // the bladeFilterReceiver will be called after the usual FilterReceiver has finished (to handle the empty list)
-        activity.sendOrderedBroadcast(broadcastIntent,
-                AstridApiConstants.PERMISSION_READ,
-                bladeFilterReceiver,
-                null,
-                Activity.RESULT_OK,
-                null,
-                null);
+        filterExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                final FilterListItem[] filters = FilterExposerRegistry.getInstance().getFilters();
+                activity.runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        filterReceiver.populateFiltersToAdapter(filters);
+                        requestExternalLists();
+                    }
+                });
+            }
+        });
+    }
+
+    private void requestExternalLists() {
+        if(externalExposers.isEmpty()) {
+            PackageManager pm = ContextManager.getContext().getPackageManager();
+            List<ResolveInfo> exposers = pm.queryBroadcastReceivers(
+                    new Intent(AstridApiConstants.BROADCAST_REQUEST_FILTERS),
+                    PackageManager.MATCH_DEFAULT_ONLY);
+            if(exposers == null)
+                return;
+            FilterExposerRegistry registry = FilterExposerRegistry.getInstance();
+            for(ResolveInfo exposer : exposers)
+                if(!registry.isRegistered(exposer.activityInfo.name))
+                    externalExposers.add(exposer);
+        }
+
+        for(ResolveInfo exposer : externalExposers) {
+            Intent broadcastIntent = new Intent(AstridApiConstants.BROADCAST_REQUEST_FILTERS);
+            broadcastIntent.setComponent(new ComponentName(exposer.activityInfo.packageName,
+                    exposer.activityInfo.name));
+            activity.sendBroadcast(broadcastIntent, AstridApiConstants.PERMISSION_READ);
+        }
     }
 
     /**
@@ -459,9 +442,6 @@ public class FilterAdapter extends ArrayAdapter<Filter> {
         IntentFilter regularFilter = new IntentFilter(AstridApiConstants.BROADCAST_SEND_FILTERS);
         regularFilter.setPriority(2);
         activity.registerReceiver(filterReceiver, regularFilter);
-        IntentFilter bladeFilter = new IntentFilter(AstridApiConstants.BROADCAST_SEND_FILTERS);
-        bladeFilter.setPriority(1);
-        activity.registerReceiver(bladeFilterReceiver, bladeFilter);
         getLists();
     }
 
@@ -470,7 +450,6 @@ public class FilterAdapter extends ArrayAdapter<Filter> {
      */
     public void unregisterRecevier() {
         activity.unregisterReceiver(filterReceiver);
-        activity.unregisterReceiver(bladeFilterReceiver);
     }
 
     /**
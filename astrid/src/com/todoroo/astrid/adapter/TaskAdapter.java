@@ -1,17 +1,14 @@
 package com.todoroo.astrid.adapter;
 
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicReference;
 
-import org.json.JSONException;
-import org.json.JSONObject;
-
 import android.app.Activity;
 import android.app.PendingIntent.CanceledException;
 import android.content.Context;
@@ -27,6 +24,7 @@ import android.text.Html.TagHandler;
 import android.text.Spannable;
 import android.text.SpannableStringBuilder;
 import android.text.Spanned;
+import android.text.SpannedString;
 import android.text.TextUtils;
 import android.util.DisplayMetrics;
 import android.util.Log;
@@ -54,7 +52,6 @@ import com.todoroo.andlib.data.TodorooCursor;
 import com.todoroo.andlib.service.Autowired;
 import com.todoroo.andlib.service.ContextManager;
 import com.todoroo.andlib.service.DependencyInjectionService;
-import com.todoroo.andlib.utility.AndroidUtilities;
 import com.todoroo.andlib.utility.DateUtilities;
 import com.todoroo.andlib.utility.Pair;
 import com.todoroo.andlib.utility.Preferences;
@@ -67,6 +64,7 @@ import com.todoroo.astrid.core.LinkActionExposer;
 import com.todoroo.astrid.data.Task;
 import com.todoroo.astrid.helper.AsyncImageView;
 import com.todoroo.astrid.helper.TaskAdapterAddOnManager;
+import com.todoroo.astrid.helper.TaskRowCache;
 import com.todoroo.astrid.notes.NotesDecorationExposer;
 import com.todoroo.astrid.service.StatisticsConstants;
 import com.todoroo.astrid.service.StatisticsService;
@@ -159,8 +157,7 @@ public class TaskAdapter extends CursorAdapter implements Filterable {
     public boolean isFling = false;
     private final int resource;
     private final LayoutInflater inflater;
-    private DetailLoaderThread detailLoader;
-    private ActionsLoaderThread actionsLoader;
+    private final TaskRowLoader rowLoader;
     private int fontSize;
     protected int applyListeners = APPLY_LISTENERS_PARENT;
     private long mostRecentlyMade = -1;
@@ -213,27 +210,45 @@ public class TaskAdapter extends CursorAdapter implements Filterable {
 
         this.minRowHeight = (int) (45 * displayMetrics.density);
 
-        startDetailThread();
-        startTaskActionsThread();
-
         decorationManager = new DecorationManager();
 
+        rowLoader = new TaskRowLoader(taskService);
+        rowLoader.addEnricher(new DetailEnricher());
+        rowLoader.addEnricher(new ActionEnricher());
+        rowLoader.addEnricher(decorationManager);
+        startRowLoader();
+
         scaleAnimation = new ScaleAnimation(1.4f, 1.0f, 1.4f, 1.0f,
                 Animation.RELATIVE_TO_SELF, 0.5f, Animation.RELATIVE_TO_SELF, 0.5f);
         scaleAnimation.setDuration(100);
 
     }
 
-    private void startDetailThread() {
-        if (Preferences.getBoolean(R.string.p_showNotes, false)) {
-            detailLoader = new DetailLoaderThread();
-            detailLoader.start();
-        }
+    private void startRowLoader() {
+        rowLoader.start(query.get(), new Runnable() {
+            @Override
+            public void run() {
+                Activity activity = fragment.getActivity();
+                if (activity != null) {
+                    activity.runOnUiThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            notifyDataSetChanged();
+                        }
+                    });
+                }
+            }
+        });
     }
 
-    private void startTaskActionsThread() {
-        actionsLoader = new ActionsLoaderThread();
-        actionsLoader.start();
+    /**
+     * Rows of the previous cursor no longer need loading
+     */
+    @Override
+    public void changeCursor(Cursor cursor) {
+        super.changeCursor(cursor);
+        if (rowLoader != null)
+            startRowLoader();
     }
 
     /* ======================================================================
@@ -431,12 +446,7 @@ public class TaskAdapter extends CursorAdapter implements Filterable {
                         pictureView.setDefaultImageResource(R.drawable.icn_anyone_transparent);
                     else {
                         pictureView.setDefaultImageResource(R.drawable.icn_default_person_image);
-                        try {
-                            JSONObject user = new JSONObject(task.getValue(Task.USER));
-                            pictureView.setUrl(user.optString("picture")); //$NON-NLS-1$
-                        } catch (JSONException e) {
-                            Log.w("astrid", "task-adapter-image", e); //$NON-NLS-1$ //$NON-NLS-2$
-                        }
+                        pictureView.setUrl(task.getUser().getPicture());
                     }
                 }
             }
@@ -472,10 +482,13 @@ public class TaskAdapter extends CursorAdapter implements Filterable {
             }
         }
 
+        TaskRowLoader.Row row = rowLoader.get(task.getId(), TaskRowCache.stamp(task));
+
         String details;
         if(viewHolder.details1 != null) {
-            if(taskDetailLoader.containsKey(task.getId()))
-                details = taskDetailLoader.get(task.getId()).toString();
+            StringBuilder loadedDetails = row == null ? null : row.details;
+            if(loadedDetails != null)
+                details = loadedDetails.toString();
             else
                 details = task.getValue(Task.DETAILS);
             if(TextUtils.isEmpty(details) || DETAIL_SEPARATOR.equals(details) || task.isCompleted()) {
@@ -490,16 +503,16 @@ public class TaskAdapter extends CursorAdapter implements Filterable {
                         buffer.delete(0, length);
                     details = buffer.toString(); //details.substring(DETAIL_SEPARATOR.length());
                 }
-                drawDetails(viewHolder, details, dueDateTextWidth);
+                drawDetails(viewHolder, task, details, dueDateTextWidth);
             }
         }
 
         // Task action
         ImageView taskAction = viewHolder.taskActionIcon;
         if (taskAction != null) {
-            if (taskActionLoader.containsKey(task.getId())) {
+            TaskAction action = row == null ? null : row.action;
+            if (action != null) {
                 taskAction.setVisibility(View.VISIBLE);
-                TaskAction action = taskActionLoader.get(task.getId());
                 taskAction.setImageBitmap(action.icon);
                 taskAction.setTag(action);
             } else {
@@ -521,18 +534,42 @@ public class TaskAdapter extends CursorAdapter implements Filterable {
     }
 
     @SuppressWarnings("nls")
-    private void drawDetails(ViewHolder viewHolder, String details, float rightWidth) {
-        SpannableStringBuilder prospective = new SpannableStringBuilder();
-        SpannableStringBuilder actual = new SpannableStringBuilder();
-
-        details = details.trim().replace("\n", "<br>");
-        String[] splitDetails = details.split("\\|");
+    private void drawDetails(ViewHolder viewHolder, Task task, String details, float rightWidth) {
         viewHolder.completeBox.measure(View.MeasureSpec.UNSPECIFIED, View.MeasureSpec.UNSPECIFIED);
         rightWidth = rightWidth + viewHolder.dueDate.getPaddingRight();
         float left = viewHolder.completeBox.getMeasuredWidth() +
         ((MarginLayoutParams)viewHolder.completeBox.getLayoutParams()).leftMargin;
         int availableWidth = (int) (displayMetrics.widthPixels - left - (rightWidth + 16) * displayMetrics.density);
 
+        long stamp = TaskRowCache.stamp(task);
+        RenderedDetails rendered = renderedDetails.get(task.getId(), stamp);
+        if(rendered == null || !rendered.matches(details, availableWidth, fontSize)) {
+            rendered = renderDetails(viewHolder, details, rightWidth, availableWidth);
+            renderedDetails.put(task.getId(), stamp, rendered);
+        }
+
+        viewHolder.details1.setText(rendered.line1);
+        if(rendered.line2 == null) {
+            viewHolder.details2.setVisibility(View.GONE);
+        } else {
+            viewHolder.details2.setVisibility(View.VISIBLE);
+            viewHolder.details2.setText(rendered.line2);
+        }
+    }
+
+    /**
+     * Split details into what fits next to the due date and the rest,
+     * measuring with the given row's views
+     */
+    @SuppressWarnings("nls")
+    private RenderedDetails renderDetails(ViewHolder viewHolder, String source,
+            float rightWidth, int availableWidth) {
+        SpannableStringBuilder prospective = new SpannableStringBuilder();
+        SpannableStringBuilder actual = new SpannableStringBuilder();
+
+        String details = source.trim().replace("\n", "<br>");
+        String[] splitDetails = details.split("\\|");
+
         int i = 0;
         for(; i < splitDetails.length; i++) {
             Spanned spanned = convertToHtml(splitDetails[i] + "  ", detailImageGetter, null);
@@ -545,19 +582,14 @@ public class TaskAdapter extends CursorAdapter implements Filterable {
 
             actual.insert(actual.length(), spanned);
         }
-        viewHolder.details1.setText(actual);
-        actual.clear();
-
-        if(i >= splitDetails.length) {
-            viewHolder.details2.setVisibility(View.GONE);
-            return;
-        } else {
-            viewHolder.details2.setVisibility(View.VISIBLE);
-        }
+        CharSequence line1 = new SpannedString(actual);
+        if(i >= splitDetails.length)
+            return new RenderedDetails(source, availableWidth, fontSize, line1, null);
 
+        actual.clear();
         for(; i < splitDetails.length; i++)
             actual.insert(actual.length(), convertToHtml(splitDetails[i] + "  ", detailImageGetter, null));
-        viewHolder.details2.setText(actual);
+        return new RenderedDetails(source, availableWidth, fontSize, line1, new SpannedString(actual));
     }
 
     protected TaskRowListener listener = new TaskRowListener();
@@ -601,27 +633,92 @@ public class TaskAdapter extends CursorAdapter implements Filterable {
      * ============================================================== details
      * ====================================================================== */
 
-    private final HashMap<String, Spanned> htmlCache = new HashMap<String, Spanned>(8);
+    /** characters of details kept rendered */
+    private static final int MAX_RENDERED_DETAILS = 32 * 1024;
+
+    /** detail fragments kept parsed */
+    private static final int MAX_CACHED_HTML = 200;
+
+    /** due and completion dates kept formatted */
+    private static final int MAX_CACHED_DATES = 200;
+
+    /** Detail lines of a task, as drawn for the given details and width */
+    private static final class RenderedDetails {
+        final String details;
+        final int availableWidth;
+        final int fontSize;
+        final CharSequence line1;
+        /** null if the details fit on the first line */
+        final CharSequence line2;
+
+        RenderedDetails(String details, int availableWidth, int fontSize,
+                CharSequence line1, CharSequence line2) {
+            this.details = details;
+            this.availableWidth = availableWidth;
+            this.fontSize = fontSize;
+            this.line1 = line1;
+            this.line2 = line2;
+        }
+
+        boolean matches(String otherDetails, int otherWidth, int otherFontSize) {
+            return availableWidth == otherWidth && fontSize == otherFontSize &&
+                details.equals(otherDetails);
+        }
+    }
+
+    private final TaskRowCache<RenderedDetails> renderedDetails =
+        new TaskRowCache<RenderedDetails>("details", MAX_RENDERED_DETAILS) { //$NON-NLS-1$
+        @Override
+        protected int sizeOf(RenderedDetails value) {
+            return value.details.length();
+        }
+    };
+
+    private final LinkedHashMap<String, Spanned> htmlCache =
+        new LinkedHashMap<String, Spanned>(16, 0.75f, true) {
+        private static final long serialVersionUID = 3181930564326408723L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Spanned> eldest) {
+            return size() > MAX_CACHED_HTML;
+        }
+    };
 
     private Spanned convertToHtml(String string, ImageGetter imageGetter, TagHandler tagHandler) {
-        if(!htmlCache.containsKey(string)) {
-            Spanned html;
+        Spanned html = htmlCache.get(string);
+        if(html == null) {
             try {
                 html = Html.fromHtml(string, imageGetter, tagHandler);
             } catch (RuntimeException e) {
                 html = Spannable.Factory.getInstance().newSpannable(string);
             }
             htmlCache.put(string, html);
-            return html;
         }
-        return htmlCache.get(string);
+        return html;
     }
 
-    private final HashMap<Long, String> dateCache = new HashMap<Long, String>(8);
+    /** formatted dates, relative to today so only valid until midnight */
+    private final LinkedHashMap<Long, String> dateCache =
+        new LinkedHashMap<Long, String>(16, 0.75f, true) {
+        private static final long serialVersionUID = -7254611984407612380L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+            return size() > MAX_CACHED_DATES;
+        }
+    };
+
+    private long dateCacheExpiry = 0;
 
     private String formatDate(long date) {
-        if(dateCache.containsKey(date))
-            return dateCache.get(date);
+        long now = DateUtilities.now();
+        if(now >= dateCacheExpiry) {
+            dateCache.clear();
+            dateCacheExpiry = DateUtilities.getStartOfDay(now) + DateUtilities.ONE_DAY;
+        }
+        String cached = dateCache.get(date);
+        if(cached != null)
+            return cached;
 
         String string = DateUtilities.getRelativeDay(fragment.getActivity(), date);
         if(Task.hasDueTime(date))
@@ -632,69 +729,47 @@ public class TaskAdapter extends CursorAdapter implements Filterable {
         return string;
     }
 
-    // implementation note: this map is really costly if users have
-    // a large number of tasks to load, since it all goes into memory.
-    // it's best to do this, though, in order to append details to each other
-    private final Map<Long, StringBuilder> taskDetailLoader = Collections.synchronizedMap(new HashMap<Long, StringBuilder>(0));
-
-    public class DetailLoaderThread extends Thread {
-        @Override
-        public void run() {
-            // for all of the tasks returned by our cursor, verify details
-            AndroidUtilities.sleepDeep(500L);
-            TodorooCursor<Task> fetchCursor = taskService.fetchFiltered(
-                    query.get(), null, Task.ID, Task.TITLE, Task.DETAILS, Task.DETAILS_DATE,
-                    Task.MODIFICATION_DATE, Task.COMPLETION_DATE);
-            try {
-                Random random = new Random();
-
-                Task task = new Task();
-
-                for(fetchCursor.moveToFirst(); !fetchCursor.isAfterLast(); fetchCursor.moveToNext()) {
-                    task.clear();
-                    task.readFromCursor(fetchCursor);
-                    if(task.isCompleted())
-                        continue;
-
-                    if(detailsAreRecentAndUpToDate(task)) {
-                        // even if we are up to date, randomly load a fraction
-                        if(random.nextFloat() < 0.1) {
-                            taskDetailLoader.put(task.getId(),
-                                    new StringBuilder(task.getValue(Task.DETAILS)));
-                            requestNewDetails(task);
-                            if(Constants.DEBUG)
-                                System.err.println("Refreshing details: " + task.getId()); //$NON-NLS-1$
-                        }
-                        continue;
-                    } else if(Constants.DEBUG) {
-                        System.err.println("Forced loading of details: " + task.getId() + //$NON-NLS-1$
-                                "\n  details: " + new Date(task.getValue(Task.DETAILS_DATE)) + //$NON-NLS-1$
-                                "\n  modified: " + new Date(task.getValue(Task.MODIFICATION_DATE))); //$NON-NLS-1$
-                    }
-                    addTaskToLoadingArray(task);
+    /**
+     * Loads details for tasks whose details are older than the task, asking
+     * add-ons for new ones
+     */
+    private class DetailEnricher implements TaskRowLoader.Enricher {
+        private final Random random = new Random();
 
-                    task.setValue(Task.DETAILS, DETAIL_SEPARATOR);
-                    task.setValue(Task.DETAILS_DATE, DateUtilities.now());
-                    taskService.save(task);
+        public boolean enrich(List<Task> batch) {
+            if (!Preferences.getBoolean(R.string.p_showNotes, false))
+                return false;
 
-                    requestNewDetails(task);
-                }
-                if(taskDetailLoader.size() > 0) {
-                    Activity activity = fragment.getActivity();
-                    if (activity != null) {
-                        activity.runOnUiThread(new Runnable() {
-                            @Override
-                            public void run() {
-                                notifyDataSetChanged();
-                            }
-                        });
+            boolean changed = false;
+            for(Task task : batch) {
+                if(task.isCompleted())
+                    continue;
+
+                if(detailsAreRecentAndUpToDate(task)) {
+                    // even if we are up to date, randomly load a fraction
+                    if(random.nextFloat() < 0.1) {
+                        rowLoader.getOrCreate(task).details = new StringBuilder(task.getValue(Task.DETAILS));
+                        requestNewDetails(task);
+                        changed = true;
+                        if(Constants.DEBUG)
+                            System.err.println("Refreshing details: " + task.getId()); //$NON-NLS-1$
                     }
+                    continue;
+                } else if(Constants.DEBUG) {
+                    System.err.println("Forced loading of details: " + task.getId() + //$NON-NLS-1$
+                            "\n  details: " + new Date(task.getValue(Task.DETAILS_DATE)) + //$NON-NLS-1$
+                            "\n  modified: " + new Date(task.getValue(Task.MODIFICATION_DATE))); //$NON-NLS-1$
                 }
-            } catch (Exception e) {
-                // suppress silently
-            } finally {
-                fetchCursor.close();
+                rowLoader.getOrCreate(task).details = new StringBuilder();
+                changed = true;
+
+                task.setValue(Task.DETAILS, DETAIL_SEPARATOR);
+                task.setValue(Task.DETAILS_DATE, DateUtilities.now());
+                taskService.save(task);
+
+                requestNewDetails(task);
             }
+            return changed;
         }
 
         private boolean detailsAreRecentAndUpToDate(Task task) {
@@ -702,11 +777,6 @@ public class TaskAdapter extends CursorAdapter implements Filterable {
             !TextUtils.isEmpty(task.getValue(Task.DETAILS));
         }
 
-        private void addTaskToLoadingArray(Task task) {
-            StringBuilder detailStringBuilder = new StringBuilder();
-            taskDetailLoader.put(task.getId(), detailStringBuilder);
-        }
-
         private void requestNewDetails(Task task) {
             Intent broadcastIntent = new Intent(AstridApiConstants.BROADCAST_REQUEST_DETAILS);
             broadcastIntent.putExtra(AstridApiConstants.EXTRAS_TASK_ID, task.getId());
@@ -716,45 +786,26 @@ public class TaskAdapter extends CursorAdapter implements Filterable {
         }
     }
 
-
-    private final Map<Long, TaskAction> taskActionLoader = Collections.synchronizedMap(new HashMap<Long, TaskAction>());
-    public class ActionsLoaderThread extends Thread {
-        @Override
-        public void run() {
-            AndroidUtilities.sleepDeep(500L);
-            final TodorooCursor<Task> fetchCursor = taskService.fetchFiltered(
-                    query.get(), null, Task.ID, Task.TITLE, Task.DETAILS, Task.DETAILS_DATE,
-                    Task.MODIFICATION_DATE, Task.COMPLETION_DATE);
-
-            final Activity activity = fragment.getActivity();
-            if (activity != null) {
-                activity.runOnUiThread(new Runnable() {
-                    @Override
-                    public void run() {
-                        try {
-                            Task task = new Task();
-                            LinkActionExposer linkActionExposer = new LinkActionExposer();
-
-                            for(fetchCursor.moveToFirst(); !fetchCursor.isAfterLast(); fetchCursor.moveToNext()) {
-                                task.clear();
-                                task.readFromCursor(fetchCursor);
-                                if(task.isCompleted())
-                                    continue;
-
-                                List<TaskAction> actions = linkActionExposer.
-                                        getActionsForTask(ContextManager.getContext(), task.getId());
-                                if (actions.size() > 0)
-                                    taskActionLoader.put(task.getId(), actions.get(0));
-                            }
-                            if(taskActionLoader.size() > 0) {
-                                notifyDataSetChanged();
-                            }
-                        } finally {
-                            fetchCursor.close();
-                        }
-                    }
-                });
+    /**
+     * Loads the first link action of each task
+     */
+    private class ActionEnricher implements TaskRowLoader.Enricher {
+        private final LinkActionExposer linkActionExposer = new LinkActionExposer();
+
+        public boolean enrich(List<Task> batch) {
+            boolean changed = false;
+            for(Task task : batch) {
+                if(task.isCompleted())
+                    continue;
+
+                List<TaskAction> actions = linkActionExposer.
+                        getActionsForTask(ContextManager.getContext(), task);
+                if (actions.size() > 0) {
+                    rowLoader.getOrCreate(task).action = actions.get(0);
+                    changed = true;
+                }
             }
+            return changed;
         }
     }
 
@@ -765,7 +816,8 @@ public class TaskAdapter extends CursorAdapter implements Filterable {
      * @param detail
      */
     public void addDetails(long id, String detail) {
-        final StringBuilder details = taskDetailLoader.get(id);
+        TaskRowLoader.Row row = rowLoader.get(id);
+        final StringBuilder details = row == null ? null : row.details;
         if(details == null)
             return;
         synchronized(details) {
@@ -825,15 +877,23 @@ public class TaskAdapter extends CursorAdapter implements Filterable {
      * ====================================================================== */
 
     /**
-     * Called to tell the cache to be cleared
+     * Called when the list is refreshed. Cached rows are only valid for
+     * the version of the task they were made for, so rows of unchanged
+     * tasks are kept and the row loader reloads the others.
      */
     public void flushCaches() {
         completedItems.clear();
-        decorationManager.clearCache();
-        taskDetailLoader.clear();
-        taskActionLoader.clear();
-        startDetailThread();
-        startTaskActionsThread();
+        if(Constants.DEBUG)
+            Log.d("task-adapter", getCacheStatistics()); //$NON-NLS-1$
+        startRowLoader();
+    }
+
+    /**
+     * @return sizes and hit rates of the row caches
+     */
+    public String getCacheStatistics() {
+        return renderedDetails + ", " + decorationManager.getCacheStatistics() + //$NON-NLS-1$
+            ", " + rowLoader; //$NON-NLS-1$
     }
 
     /**
@@ -842,8 +902,8 @@ public class TaskAdapter extends CursorAdapter implements Filterable {
     public void flushSpecific(long taskId) {
         completedItems.put(taskId, null);
         decorationManager.clearCache(taskId);
-        taskDetailLoader.remove(taskId);
-        taskActionLoader.remove(taskId);
+        renderedDetails.remove(taskId);
+        rowLoader.remove(taskId);
     }
 
     public HashMap<Long, Boolean> getCompletedItems() {
@@ -851,12 +911,15 @@ public class TaskAdapter extends CursorAdapter implements Filterable {
     }
 
     /**
-     * AddOnManager for TaskDecorations
+     * AddOnManager for TaskDecorations. Built-in decorations are loaded by
+     * the row loader, and only exposed while binding rows it has not
+     * reached yet.
      *
      * @author Tim Su <tim@todoroo.com>
      *
      */
-    public class DecorationManager extends TaskAdapterAddOnManager<TaskDecoration> {
+    public class DecorationManager extends TaskAdapterAddOnManager<TaskDecoration>
+            implements TaskRowLoader.Enricher {
 
         public DecorationManager() {
             super(fragment);
@@ -875,7 +938,8 @@ public class TaskAdapter extends CursorAdapter implements Filterable {
         public boolean request(ViewHolder viewHolder) {
             long taskId = viewHolder.task.getId();
 
-            Collection<TaskDecoration> list = initialize(taskId);
+            long stamp = TaskRowCache.stamp(viewHolder.task);
+            Collection<TaskDecoration> list = initialize(taskId, stamp);
             if(list != null) {
                 draw(viewHolder, taskId, list);
                 return false;
@@ -884,6 +948,14 @@ public class TaskAdapter extends CursorAdapter implements Filterable {
             // request details
             draw(viewHolder, taskId, get(taskId));
 
+            TaskRowLoader.Row row = rowLoader.get(taskId, stamp);
+            Map<String, TaskDecoration> loaded = row == null ? null : row.decorations;
+            if(loaded != null) {
+                for(Map.Entry<String, TaskDecoration> entry : loaded.entrySet())
+                    addNew(taskId, entry.getKey(), entry.getValue(), viewHolder);
+                return true;
+            }
+
             for(TaskDecorationExposer exposer : exposers) {
                 TaskDecoration deco = exposer.expose(viewHolder.task);
                 if(deco != null) {
@@ -894,6 +966,25 @@ public class TaskAdapter extends CursorAdapter implements Filterable {
             return true;
         }
 
+        public boolean enrich(List<Task> batch) {
+            if (!Preferences.getBoolean(R.string.p_default_showdecorations_key, false))
+                return false;
+
+            for(Task task : batch) {
+                LinkedHashMap<String, TaskDecoration> decorations =
+                    new LinkedHashMap<String, TaskDecoration>(exposers.length);
+                for(TaskDecorationExposer exposer : exposers) {
+                    TaskDecoration deco = exposer.expose(task);
+                    if(deco != null)
+                        decorations.put(exposer.getAddon(), deco);
+                }
+                rowLoader.getOrCreate(task).setDecorations(decorations);
+            }
+
+            // rows pick these up when they are next bound
+            return false;
+        }
+
         @Override
         protected void draw(ViewHolder viewHolder, long taskId, Collection<TaskDecoration> decorations) {
             if(decorations == null || viewHolder.task.getId() != taskId)
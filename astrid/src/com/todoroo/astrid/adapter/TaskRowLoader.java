@@ -0,0 +1,261 @@
+/**
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.adapter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.todoroo.andlib.data.Property;
+import com.todoroo.andlib.data.TodorooCursor;
+import com.todoroo.andlib.utility.AndroidUtilities;
+import com.todoroo.astrid.api.TaskAction;
+import com.todoroo.astrid.api.TaskDecoration;
+import com.todoroo.astrid.data.Task;
+import com.todoroo.astrid.helper.TaskRowCache;
+import com.todoroo.astrid.service.TaskService;
+
+/**
+ * Loads what task list rows show beyond their own columns (details,
+ * actions and decorations) on a background thread. Each load runs the
+ * list's filter query once and hands its tasks to every {@link Enricher}
+ * in batches. Results are kept per task id, and only returned for the
+ * {@link TaskRowCache#stamp(Task)} they were loaded for. Each complete
+ * load drops rows of tasks no longer in the list.
+ */
+public class TaskRowLoader {
+
+    /** tasks handed to enrichers at a time */
+    private static final int BATCH_SIZE = 25;
+
+    /** columns read by the loader query */
+    public static final Property<?>[] PROPERTIES = new Property<?>[] {
+        Task.ID,
+        Task.TITLE,
+        Task.DETAILS,
+        Task.DETAILS_DATE,
+        Task.MODIFICATION_DATE,
+        Task.COMPLETION_DATE,
+        Task.NOTES,
+        Task.ELAPSED_SECONDS,
+        Task.TIMER_START
+    };
+
+    /**
+     * Loads one kind of row data for a batch of tasks. Called on the
+     * loader thread.
+     */
+    public interface Enricher {
+        /**
+         * @param batch tasks read with {@link TaskRowLoader#PROPERTIES}
+         * @return true if rows changed and the list should be redrawn
+         */
+        public boolean enrich(List<Task> batch);
+    }
+
+    /**
+     * Loaded data for one task. Fields are replaced as a whole, so readers
+     * on the UI thread need no locking.
+     */
+    public static final class Row {
+        public final long id;
+        /** see {@link TaskRowCache#stamp(Task)} */
+        public final long stamp;
+
+        /** details, appended to as add-ons respond */
+        public volatile StringBuilder details = null;
+        public volatile TaskAction action = null;
+        /** decorations by add-on, unmodifiable */
+        public volatile Map<String, TaskDecoration> decorations = null;
+
+        Row(long id, long stamp) {
+            this.id = id;
+            this.stamp = stamp;
+        }
+
+        /** Replace decorations with the given ones */
+        public void setDecorations(LinkedHashMap<String, TaskDecoration> newDecorations) {
+            decorations = Collections.unmodifiableMap(newDecorations);
+        }
+    }
+
+    private final ConcurrentHashMap<Long, Row> rows = new ConcurrentHashMap<Long, Row>();
+
+    private final AtomicInteger hitCount = new AtomicInteger();
+    private final AtomicInteger missCount = new AtomicInteger();
+
+    private final TaskService taskService;
+
+    private final ArrayList<Enricher> enrichers = new ArrayList<Enricher>();
+
+    private LoaderThread loader = null;
+
+    public TaskRowLoader(TaskService taskService) {
+        this.taskService = taskService;
+    }
+
+    public synchronized void addEnricher(Enricher enricher) {
+        enrichers.add(enricher);
+    }
+
+    // --- cache
+
+    /**
+     * @return row of the given task if it was loaded for this stamp,
+     * otherwise null
+     */
+    public Row get(long taskId, long stamp) {
+        Row row = rows.get(taskId);
+        if(row == null || row.stamp != stamp) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return row;
+    }
+
+    /**
+     * @return row of the given task whatever it was loaded for, or null
+     */
+    public Row get(long taskId) {
+        return rows.get(taskId);
+    }
+
+    /**
+     * @return row for this version of the task, replacing any row loaded
+     * for another version
+     */
+    public Row getOrCreate(Task task) {
+        long stamp = TaskRowCache.stamp(task);
+        Long id = task.getId();
+        while(true) {
+            Row row = rows.get(id);
+            if(row != null && row.stamp == stamp)
+                return row;
+            Row newRow = new Row(id, stamp);
+            if(row == null ? rows.putIfAbsent(id, newRow) == null : rows.replace(id, row, newRow))
+                return newRow;
+        }
+    }
+
+    public void remove(long taskId) {
+        rows.remove(taskId);
+    }
+
+    public void clear() {
+        rows.clear();
+    }
+
+    public int size() {
+        return rows.size();
+    }
+
+    @Override
+    @SuppressWarnings("nls")
+    public String toString() {
+        int hits = hitCount.get();
+        int accesses = hits + missCount.get();
+        int hitRate = accesses == 0 ? 0 : 100 * hits / accesses;
+        return String.format("TaskRowLoader[rows=%d,hits=%d,misses=%d,hitRate=%d%%]",
+                rows.size(), hits, accesses - hits, hitRate);
+    }
+
+    // --- loading
+
+    /**
+     * Start loading rows for the given filter query, cancelling any load
+     * still running. Rows of unchanged tasks are kept and handed to the
+     * enrichers again, which only replace what changed.
+     *
+     * @param sql filter query
+     * @param onChanged run on the loader thread when rows changed
+     */
+    public synchronized void start(String sql, Runnable onChanged) {
+        cancel();
+        if(enrichers.isEmpty())
+            return;
+        loader = new LoaderThread(sql, onChanged,
+                enrichers.toArray(new Enricher[enrichers.size()]));
+        loader.start();
+    }
+
+    /**
+     * Stop the running load, e.g. because the list's cursor changed. Rows
+     * already loaded stay valid.
+     */
+    public synchronized void cancel() {
+        if(loader != null) {
+            loader.cancelled = true;
+            loader = null;
+        }
+    }
+
+    private class LoaderThread extends Thread {
+
+        private final String sql;
+        private final Runnable onChanged;
+        private final Enricher[] loaderEnrichers;
+
+        volatile boolean cancelled = false;
+
+        public LoaderThread(String sql, Runnable onChanged, Enricher[] enrichers) {
+            super("task-row-loader"); //$NON-NLS-1$
+            this.sql = sql;
+            this.onChanged = onChanged;
+            this.loaderEnrichers = enrichers;
+        }
+
+        @Override
+        public void run() {
+            // let the list draw first
+            AndroidUtilities.sleepDeep(500L);
+            if(cancelled)
+                return;
+
+            TodorooCursor<Task> cursor = taskService.fetchFiltered(sql, null, PROPERTIES);
+            try {
+                ArrayList<Task> batch = new ArrayList<Task>(BATCH_SIZE);
+                HashSet<Long> loaded = new HashSet<Long>(cursor.getCount());
+                boolean notified = false;
+                boolean changed = false;
+                for(cursor.moveToFirst(); !cursor.isAfterLast() && !cancelled; cursor.moveToNext()) {
+                    Task task = new Task(cursor);
+                    loaded.add(task.getId());
+                    batch.add(task);
+                    if(batch.size() < BATCH_SIZE && !cursor.isLast())
+                        continue;
+
+                    for(Enricher enricher : loaderEnrichers)
+                        if(!cancelled && enricher.enrich(batch))
+                            changed = true;
+                    batch.clear();
+
+                    // redraw as soon as the first screen is loaded, then at the end
+                    if(changed && !notified && !cancelled) {
+                        onChanged.run();
+                        notified = true;
+                        changed = false;
+                    }
+                }
+                if(cancelled)
+                    return;
+
+                // rows of tasks that left the list would otherwise pile up
+                rows.keySet().retainAll(loaded);
+                if(changed)
+                    onChanged.run();
+            } catch (Exception e) {
+                // suppress silently
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+
+}
@@ -1,12 +1,14 @@
 package com.todoroo.astrid.adapter;
 
-import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import org.json.JSONException;
-import org.json.JSONObject;
-
 import android.app.AlertDialog;
 import android.content.Context;
 import android.content.DialogInterface;
@@ -33,12 +35,14 @@ import com.timsu.astrid.R;
 import com.todoroo.andlib.data.TodorooCursor;
 import com.todoroo.andlib.service.ContextManager;
 import com.todoroo.andlib.service.DependencyInjectionService;
+import com.todoroo.andlib.utility.CoalescingExecutor;
 import com.todoroo.andlib.utility.DateUtilities;
 import com.todoroo.astrid.actfm.sync.ActFmPreferenceService;
 import com.todoroo.astrid.activity.AstridActivity;
 import com.todoroo.astrid.core.PluginServices;
 import com.todoroo.astrid.data.Task;
 import com.todoroo.astrid.data.Update;
+import com.todoroo.astrid.data.UserValue;
 import com.todoroo.astrid.helper.AsyncImageView;
 import com.todoroo.astrid.helper.ImageDiskCache;
 
@@ -60,6 +64,63 @@ public class UpdateAdapter extends CursorAdapter {
     private final String linkColor;
     private final String fromView;
 
+    /** number of remote task ids remembered by this adapter */
+    private static final int TASK_ID_CACHE_SIZE = 500;
+
+    /** number of remote task ids remembered as not existing locally */
+    private static final int MISS_CACHE_SIZE = 100;
+
+    /** time after which a task that did not exist locally is looked up again */
+    private static final long MISS_EXPIRY = DateUtilities.ONE_MINUTE;
+
+    /** delay in millis to collect the ids of rows bound in one pass */
+    private static final long LOOKUP_WINDOW = 100;
+
+    /** resolves task ids of all adapters, one lookup at a time */
+    private static final CoalescingExecutor lookupQueue = new CoalescingExecutor(
+            "update-tasks", 1, 20, LOOKUP_WINDOW, null); //$NON-NLS-1$
+
+    private static final AtomicInteger adapterCount = new AtomicInteger();
+
+    /**
+     * remote task id => local task id, for rows without
+     * {@link Update#TASK_LOCAL}. Filled in bulk in the background as rows
+     * are bound, so binding a row never touches the database.
+     */
+    private final Map<Long, Long> taskIdCache = new LinkedHashMap<Long, Long>(16, 0.75f, true) {
+        private static final long serialVersionUID = -4529480938524311046L;
+
+        @Override
+        protected boolean removeEldestEntry(Entry<Long, Long> eldest) {
+            return size() > TASK_ID_CACHE_SIZE;
+        }
+    };
+
+    /**
+     * remote task id => time it was not found locally. Such tasks are
+     * looked up again once they may have been synced. Guarded by
+     * taskIdCache.
+     */
+    private final Map<Long, Long> missCache = new LinkedHashMap<Long, Long>(16, 0.75f, true) {
+        private static final long serialVersionUID = 6052301957164530158L;
+
+        @Override
+        protected boolean removeEldestEntry(Entry<Long, Long> eldest) {
+            return size() > MISS_CACHE_SIZE;
+        }
+    };
+
+    /** remote task ids waiting to be looked up, guarded by taskIdCache */
+    private final HashSet<Long> pendingTaskIds = new HashSet<Long>();
+
+    /** whether a lookup is queued, guarded by taskIdCache */
+    private boolean lookupQueued = false;
+
+    /** incremented when the cursor changes, so stale lookups do not rebind */
+    private volatile int generation = 0;
+
+    private final String lookupKey = "update-adapter-" + adapterCount.incrementAndGet(); //$NON-NLS-1$
+
     private static final String TARGET_LINK_PREFIX = "$link_"; //$NON-NLS-1$
     private static final Pattern TARGET_LINK_PATTERN = Pattern.compile("\\" + TARGET_LINK_PREFIX + "(\\w*)");  //$NON-NLS-1$//$NON-NLS-2$
     private static final String TASK_LINK_TYPE = "task"; //$NON-NLS-1$
@@ -110,6 +171,69 @@ public class UpdateAdapter extends CursorAdapter {
         this.activity = (AstridActivity) fragment.getActivity();
     }
 
+    @Override
+    public void changeCursor(Cursor cursor) {
+        generation++;
+        super.changeCursor(cursor);
+    }
+
+    /**
+     * Queue a lookup of the local id of the task an update refers to by
+     * remote id, unless it is known or already queued. Ids of the rows
+     * bound in one pass are looked up in a single query in the background,
+     * and rows are bound again if any were found.
+     */
+    private void requestTaskId(Update update) {
+        Long localId = update.getValue(Update.TASK_LOCAL);
+        Long remoteId = update.getValue(Update.TASK);
+        if((localId != null && localId > 0) || remoteId == null || remoteId <= 0)
+            return;
+        synchronized(taskIdCache) {
+            if(taskIdCache.containsKey(remoteId) || pendingTaskIds.contains(remoteId))
+                return;
+            Long missed = missCache.get(remoteId);
+            if(missed != null && DateUtilities.now() - missed < MISS_EXPIRY)
+                return;
+            pendingTaskIds.add(remoteId);
+            if(lookupQueued)
+                return;
+            lookupQueued = lookupQueue.submit(lookupKey, lookupTaskIds);
+        }
+    }
+
+    private final Runnable lookupTaskIds = new Runnable() {
+        public void run() {
+            int lookupGeneration = generation;
+            HashSet<Long> remoteIds;
+            synchronized(taskIdCache) {
+                lookupQueued = false;
+                remoteIds = new HashSet<Long>(pendingTaskIds);
+            }
+            HashMap<Long, Long> found = new HashMap<Long, Long>();
+            try {
+                found = PluginServices.getTaskService().fetchLocalIdsByRemoteIds(remoteIds);
+            } finally {
+                long now = DateUtilities.now();
+                synchronized(taskIdCache) {
+                    taskIdCache.putAll(found);
+                    for(Long remoteId : remoteIds) {
+                        if(!found.containsKey(remoteId))
+                            missCache.put(remoteId, now);
+                    }
+                    pendingTaskIds.removeAll(remoteIds);
+                }
+            }
+            if(found.isEmpty() || lookupGeneration != generation)
+                return;
+            activity.runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    notifyDataSetChanged();
+                }
+            });
+        }
+    };
+
     public static String getLinkColor(Fragment f) {
         TypedValue colorType = new TypedValue();
         f.getActivity().getTheme().resolveAttribute(R.attr.asDetailsColor, colorType, false);
@@ -140,6 +264,7 @@ public class UpdateAdapter extends CursorAdapter {
         Update update = ((Update) view.getTag());
         update.clear();
         update.readFromCursor(cursor);
+        requestTaskId(update);
 
         setFieldContentsAndVisibility(view, update);
     }
@@ -147,11 +272,11 @@ public class UpdateAdapter extends CursorAdapter {
     /** Helper method to set the contents and visibility of each field */
     @SuppressWarnings("nls")
     public synchronized void setFieldContentsAndVisibility(View view, Update update) {
-        JSONObject user = ActFmPreferenceService.userFromModel(update);
+        UserValue user = ActFmPreferenceService.userFromModel(update);
 
         // picture
         final AsyncImageView pictureView = (AsyncImageView)view.findViewById(R.id.picture); {
-            String pictureUrl = user.optString("picture");
+            String pictureUrl = user.getPicture();
             pictureView.setUrl(pictureUrl);
         }
 
@@ -163,7 +288,7 @@ public class UpdateAdapter extends CursorAdapter {
 
         // name
         final TextView nameView = (TextView)view.findViewById(R.id.title); {
-            nameView.setText(getUpdateComment(activity, update, user, linkColor, fromView));
+            nameView.setText(getUpdateComment(activity, update, user, linkColor, fromView, taskIdCache));
             nameView.setMovementMethod(new LinkMovementMethod());
         }
 
@@ -187,19 +312,9 @@ public class UpdateAdapter extends CursorAdapter {
             final String message, final Fragment fragment, ImageDiskCache imageCache) {
         if (!TextUtils.isEmpty(updatePicture) && !"null".equals(updatePicture)) { //$NON-NLS-1$
             commentPictureView.setVisibility(View.VISIBLE);
+            // reads from the disk and memory caches before going to the network
             commentPictureView.setUrl(updatePicture);
 
-            if(imageCache.contains(updatePicture)) {
-                try {
-                    commentPictureView.setDefaultImageBitmap(imageCache.get(updatePicture));
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
-            else {
-                commentPictureView.setUrl(updatePicture);
-            }
-
             view.setOnClickListener(new OnClickListener() {
                 @Override
                 public void onClick(View v) {
@@ -229,26 +344,36 @@ public class UpdateAdapter extends CursorAdapter {
         return String.format("<font color=%s>%s</font>", linkColor, string);  //$NON-NLS-1$
     }
 
+    public static Spanned getUpdateComment (final AstridActivity activity, Update update, UserValue user, String linkColor, String fromView) {
+        return getUpdateComment(activity, update, user, linkColor, fromView, null);
+    }
+
+    /**
+     * @param taskIds remote task id => local task id cache. If null, task
+     *        links are resolved against the database
+     */
     @SuppressWarnings("nls")
-    public static Spanned getUpdateComment (final AstridActivity activity, Update update, JSONObject user, String linkColor, String fromView) {
+    private static Spanned getUpdateComment (final AstridActivity activity, Update update, UserValue user, String linkColor, String fromView,
+            Map<Long, Long> taskIds) {
         if (user == null) {
             user = ActFmPreferenceService.userFromModel(update);
         }
-        JSONObject otherUser = null;
-        try {
-            otherUser = new JSONObject(update.getValue(Update.OTHER_USER));
-        } catch (JSONException e) {
-            otherUser = new JSONObject();
-        }
+        UserValue otherUser = update.getOtherUser();
 
         return getUpdateComment(activity, update, update.getValue(Update.ACTION_CODE),
-                user.optString("name"), update.getValue(Update.TARGET_NAME),
-                update.getValue(Update.MESSAGE), otherUser.optString("name"),
-                update.getValue(Update.ACTION), linkColor, fromView);
+                user.getName(), update.getValue(Update.TARGET_NAME),
+                update.getValue(Update.MESSAGE), otherUser.getName(),
+                update.getValue(Update.ACTION), linkColor, fromView, taskIds);
     }
 
     public static Spanned getUpdateComment (final AstridActivity activity, Update update, String actionCode, String user, String targetName,
             String message, String otherUser, String action, String linkColor, String fromView) {
+        return getUpdateComment(activity, update, actionCode, user, targetName, message, otherUser,
+                action, linkColor, fromView, null);
+    }
+
+    private static Spanned getUpdateComment (final AstridActivity activity, Update update, String actionCode, String user, String targetName,
+            String message, String otherUser, String action, String linkColor, String fromView, Map<Long, Long> taskIds) {
         if (TextUtils.isEmpty(user)) {
             user = ContextManager.getString(R.string.ENA_no_user);
         }
@@ -332,7 +457,7 @@ public class UpdateAdapter extends CursorAdapter {
 
                 String linkType = m.group(1);
                 CharSequence link = getLinkSpan(activity, update, actionCode, user,
-                        targetName, message, otherUser, action, linkColor, linkType);
+                        targetName, message, otherUser, action, linkColor, linkType, taskIds);
                 if (link != null) {
                     builder.append(link);
                     if (!m.hitEnd()) {
@@ -353,10 +478,16 @@ public class UpdateAdapter extends CursorAdapter {
     }
 
     private static CharSequence getLinkSpan(final AstridActivity activity, Update update, String actionCode, String user, String targetName,
-            String message, String otherUser, String action, String linkColor, String linkType) {
+            String message, String otherUser, String action, String linkColor, String linkType, Map<Long, Long> taskIds) {
         if (TASK_LINK_TYPE.equals(linkType)) {
             long taskId = update.getValue(Update.TASK_LOCAL);
-            if (taskId <= 0) {
+            if (taskId <= 0 && taskIds != null) {
+                synchronized(taskIds) {
+                    Long local = taskIds.get(update.getValue(Update.TASK));
+                    if (local != null)
+                        taskId = local;
+                }
+            } else if (taskId <= 0) {
                 Task local = PluginServices.getTaskService().fetchByRemoteId(update.getValue(Update.TASK), Task.ID);
                 if (local != null)
                     taskId = local.getId();
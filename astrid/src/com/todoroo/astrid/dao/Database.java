@@ -13,6 +13,7 @@ import com.todoroo.andlib.data.AbstractModel;
 import com.todoroo.andlib.data.Property;
 import com.todoroo.andlib.data.Table;
 import com.todoroo.andlib.service.ContextManager;
+import com.todoroo.astrid.backup.BackupChangeCounter;
 import com.todoroo.astrid.data.Metadata;
 import com.todoroo.astrid.data.StoreObject;
 import com.todoroo.astrid.data.TagData;
@@ -21,6 +22,8 @@ import com.todoroo.astrid.data.Update;
 import com.todoroo.astrid.data.User;
 import com.todoroo.astrid.provider.Astrid2TaskProvider;
 import com.todoroo.astrid.provider.Astrid3ContentProvider;
+import com.todoroo.astrid.service.FilterExposerRegistry;
+import com.todoroo.astrid.tags.TagSummary;
 import com.todoroo.astrid.widget.TasksWidget;
 
 /**
@@ -38,7 +41,7 @@ public class Database extends AbstractDatabase {
      * Database version number. This variable must be updated when database
      * tables are updated, as it determines whether a database needs updating.
      */
-    public static final int VERSION = 23;
+    public static final int VERSION = 25;
 
     /**
      * Database name (must be unique)
@@ -70,6 +73,9 @@ public class Database extends AbstractDatabase {
                 TasksWidget.updateWidgets(ContextManager.getContext());
             }
         });
+        addTableListener(FilterExposerRegistry.getInstance());
+        addTableListener(TagSummary.getInstance());
+        addTableListener(BackupChangeCounter.getInstance());
     }
 
     // --- implementation
@@ -152,6 +158,15 @@ public class Database extends AbstractDatabase {
         append(')');
         database.execSQL(sql.toString());
         sql.setLength(0);
+
+        sql.append("CREATE INDEX IF NOT EXISTS t_next ON ").
+        append(Task.TABLE).append('(').
+        append(Task.NEXT_OCCURRENCE.name).
+        append(')');
+        database.execSQL(sql.toString());
+        sql.setLength(0);
+
+        UpdateDao.createTagIndex(database);
     }
 
     @Override
@@ -309,6 +324,19 @@ public class Database extends AbstractDatabase {
         } catch (SQLiteException e) {
             Log.e("astrid", "db-upgrade-" + oldVersion + "-" + newVersion, e);
         }
+        case 23: try {
+            database.execSQL("ALTER TABLE " + Task.TABLE.name + " ADD " +
+                    Task.NEXT_OCCURRENCE.accept(visitor, null) + " DEFAULT 0");
+            onCreateTables();
+        } catch (SQLiteException e) {
+            Log.e("astrid", "db-upgrade-" + oldVersion + "-" + newVersion, e);
+        }
+        case 24: try {
+            UpdateDao.createTagIndex(database);
+            UpdateDao.rebuildTagIndex(database);
+        } catch (SQLiteException e) {
+            Log.e("astrid", "db-upgrade-" + oldVersion + "-" + newVersion, e);
+        }
 
         return true;
         }
@@ -97,5 +97,14 @@ public class MetadataDao extends DatabaseDao<Metadata> {
         return new TodorooCursor<Metadata>(cursor, properties);
     }
 
+    /**
+     * Delete metadata whose task no longer exists with a single statement
+     * @return number of rows deleted
+     */
+    public int deleteDangling() {
+        return deleteWhere(Criterion.or(Metadata.TASK.isNull(),
+                Criterion.not(Metadata.TASK.in(Query.select(Task.ID).from(Task.TABLE)))));
+    }
+
 }
 
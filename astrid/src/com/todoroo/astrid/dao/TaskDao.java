@@ -21,10 +21,12 @@ import com.todoroo.andlib.sql.Query;
 import com.todoroo.andlib.utility.DateUtilities;
 import com.todoroo.andlib.utility.Preferences;
 import com.todoroo.astrid.dao.MetadataDao.MetadataCriteria;
+import com.todoroo.astrid.data.Metadata;
 import com.todoroo.astrid.data.Task;
 import com.todoroo.astrid.data.TaskApiDao;
 import com.todoroo.astrid.reminders.Notifications;
 import com.todoroo.astrid.reminders.ReminderService;
+import com.todoroo.astrid.repeats.CompiledRecurrence;
 import com.todoroo.astrid.service.StatisticsConstants;
 import com.todoroo.astrid.service.StatisticsService;
 import com.todoroo.astrid.utility.AstridPreferences;
@@ -135,6 +137,11 @@ public class TaskDao extends DatabaseDao<Task> {
     	    return Criterion.and(Task.COMPLETION_DATE.gt(0), Task.COMPLETION_DATE.lt(Functions.now()));
     	}
 
+        /** @return repeating tasks whose next occurrence is before the given unixtime */
+        public static Criterion nextOccurrenceBefore(long time) {
+            return Criterion.and(Task.NEXT_OCCURRENCE.gt(0), Task.NEXT_OCCURRENCE.lt(time));
+        }
+
     	/** @return tasks that have a blank or null title */
     	@SuppressWarnings("nls")
         public static Criterion hasNoTitle() {
@@ -145,6 +152,21 @@ public class TaskDao extends DatabaseDao<Task> {
 
     // --- custom operations
 
+    /**
+     * @return ids of all tasks matching the given criterion
+     */
+    public long[] fetchIds(Criterion criterion) {
+        TodorooCursor<Task> cursor = query(Query.select(Task.ID).where(criterion));
+        try {
+            long[] ids = new long[cursor.getCount()];
+            int i = 0;
+            for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext())
+                ids[i++] = cursor.getLong(0);
+            return ids;
+        } finally {
+            cursor.close();
+        }
+    }
 
     // --- delete
 
@@ -169,6 +191,27 @@ public class TaskDao extends DatabaseDao<Task> {
         return true;
     }
 
+    /**
+     * Delete the given items and their metadata, one statement per chunk
+     * of ids. Their notifications are cancelled and the task list change
+     * is broadcast once.
+     *
+     * @return # of deleted items
+     */
+    public int deleteMultiple(long[] ids) {
+        int result = 0;
+        for(int start = 0; start < ids.length; start += IDS_PER_STATEMENT) {
+            Long[] chunk = idChunk(ids, start);
+            result += deleteWhere(Task.ID.in(chunk));
+            metadataDao.deleteWhere(Metadata.TASK.in(chunk));
+        }
+        if(result > 0) {
+            Notifications.cancelNotifications(ids);
+            TaskApiDao.afterTaskListChanged();
+        }
+        return result;
+    }
+
     // --- save
 
     /**
@@ -205,6 +248,70 @@ public class TaskDao extends DatabaseDao<Task> {
 
     @Override
     public boolean createNew(Task item) {
+        setNewTaskDefaults(item);
+
+        ContentValues values = item.getSetValues();
+        boolean result = super.createNew(item);
+        if(result) {
+            userRetentionMetrics();
+            afterSave(item, values);
+        }
+        return result;
+    }
+
+    /**
+     * Creates all of the given tasks. Task hooks run once for all of them:
+     * alarms are scheduled in one pass and the task list change is
+     * broadcast once. If a task cannot be created, creation stops without
+     * running any hooks, so callers should run this in a transaction.
+     *
+     * @return true if all tasks were created
+     */
+    public boolean createNewMultiple(Task[] items) {
+        ContentValues[] values = new ContentValues[items.length];
+        for(int i = 0; i < items.length; i++) {
+            setNewTaskDefaults(items[i]);
+            values[i] = items[i].getSetValues();
+            if(!super.createNew(items[i]))
+                return false;
+        }
+        if(items.length == 0)
+            return true;
+
+        userRetentionMetrics();
+
+        long[] reminderIds = new long[items.length];
+        int reminderCount = 0;
+        boolean significant = false;
+        for(int i = 0; i < items.length; i++) {
+            Task item = items[i];
+            item.markSaved();
+            if(values[i].containsKey(Task.COMPLETION_DATE.name) && item.isCompleted())
+                TaskApiDao.afterCompleted(item, values[i]);
+            else if(affectsReminders(values[i]))
+                reminderIds[reminderCount++] = item.getId();
+            significant |= !TaskApiDao.insignificantChange(values[i]);
+        }
+
+        long[] ids = new long[reminderCount];
+        System.arraycopy(reminderIds, 0, ids, 0, reminderCount);
+        for(int start = 0; start < ids.length; start += IDS_PER_STATEMENT) {
+            TodorooCursor<Task> cursor = query(Query.select(ReminderService.PROPERTIES).
+                    where(idIn(ids, start)));
+            try {
+                ReminderService.getInstance().scheduleAlarms(cursor);
+            } finally {
+                cursor.close();
+            }
+        }
+
+        if(significant)
+            TaskApiDao.afterTaskListChanged();
+        return true;
+    }
+
+    /** Sets the values a task gets when it is created */
+    private void setNewTaskDefaults(Task item) {
         if(!item.containsValue(Task.CREATION_DATE))
             item.setValue(Task.CREATION_DATE, DateUtilities.now());
         item.setValue(Task.MODIFICATION_DATE, DateUtilities.now());
@@ -222,13 +329,7 @@ public class TaskDao extends DatabaseDao<Task> {
 
         setDefaultReminders(item);
 
-        ContentValues values = item.getSetValues();
-        boolean result = super.createNew(item);
-        if(result) {
-            userRetentionMetrics();
-            afterSave(item, values);
-        }
-        return result;
+        updateNextOccurrence(item);
     }
 
     public static void createDefaultHideUntil(Task item) {
@@ -288,12 +389,111 @@ public class TaskDao extends DatabaseDao<Task> {
             if(!values.containsKey(Task.MODIFICATION_DATE.name))
                 item.setValue(Task.MODIFICATION_DATE, DateUtilities.now());
         }
+        updateNextOccurrence(item);
         boolean result = super.saveExisting(item);
         if(result)
             afterSave(item, values);
         return result;
     }
 
+    /**
+     * Saves the values set on the template to all of the given tasks at
+     * once. Task hooks still run for every task, but the columns reminders
+     * need are read in one query per chunk of ids and the task list change
+     * is broadcast only once.
+     */
+    @Override
+    public int saveExistingMultiple(long[] ids, Task template) {
+        ContentValues values = template.getSetValues();
+        if(ids.length == 0 || values == null || values.size() == 0)
+            return 0;
+
+        // next occurrence depends on the recurrence or due date of each task
+        if(values.containsKey(Task.RECURRENCE.name) != values.containsKey(Task.DUE_DATE.name)) {
+            int result = 0;
+            for(long id : ids) {
+                Task item = new Task();
+                item.mergeWith(values);
+                item.setId(id);
+                if(saveExisting(item))
+                    result++;
+            }
+            return result;
+        }
+
+        if(!TaskApiDao.insignificantChange(values)) {
+            template.setValue(Task.DETAILS, null);
+            if(!values.containsKey(Task.MODIFICATION_DATE.name))
+                template.setValue(Task.MODIFICATION_DATE, DateUtilities.now());
+        }
+        updateNextOccurrence(template);
+        int result = super.saveExistingMultiple(ids, template);
+        template.markSaved();
+        if(result > 0)
+            afterSaveMultiple(ids, template, values);
+        return result;
+    }
+
+    /**
+     * Runs the hooks of {@link #afterSave(Task, ContentValues)} for the
+     * given tasks, which were all saved with the same values: notifications
+     * are cancelled in one batch, alarms rescheduled in one pass and the
+     * task list change broadcast once
+     */
+    private void afterSaveMultiple(long[] ids, Task template, ContentValues values) {
+        boolean completed = values.containsKey(Task.COMPLETION_DATE.name) && template.isCompleted();
+        boolean deleted = values.containsKey(Task.DELETION_DATE.name) && template.isDeleted();
+        if(completed || deleted)
+            Notifications.cancelNotifications(ids);
+
+        if(completed) {
+            // each task is announced, e.g. so that repeating tasks repeat
+            Task task = new Task();
+            task.setValue(Task.COMPLETION_DATE, template.getValue(Task.COMPLETION_DATE));
+            for(long id : ids) {
+                task.setId(id);
+                TaskApiDao.afterCompleted(task, values);
+            }
+        } else if(affectsReminders(values)) {
+            for(int start = 0; start < ids.length; start += IDS_PER_STATEMENT) {
+                TodorooCursor<Task> cursor = query(Query.select(ReminderService.PROPERTIES).
+                        where(idIn(ids, start)));
+                try {
+                    ReminderService.getInstance().scheduleAlarms(cursor);
+                } finally {
+                    cursor.close();
+                }
+            }
+        }
+
+        if(!TaskApiDao.insignificantChange(values))
+            TaskApiDao.afterTaskListChanged();
+    }
+
+    /**
+     * Recomputes {@link Task#NEXT_OCCURRENCE} if the recurrence or due date
+     * of this task is about to be written. Missing values are read from
+     * the database.
+     */
+    private void updateNextOccurrence(Task item) {
+        ContentValues values = item.getSetValues();
+        if(values == null || !(values.containsKey(Task.RECURRENCE.name) ||
+                values.containsKey(Task.DUE_DATE.name)))
+            return;
+
+        Task source = item;
+        if(item.isSaved() && !(item.containsValue(Task.RECURRENCE) &&
+                item.containsValue(Task.DUE_DATE))) {
+            source = fetch(item.getId(), Task.RECURRENCE, Task.DUE_DATE);
+            if(source == null)
+                return;
+            source.mergeWith(values);
+        }
+
+        item.setValue(Task.NEXT_OCCURRENCE, CompiledRecurrence.computeNextOccurrence(
+                source.getValue(Task.RECURRENCE), source.getValue(Task.DUE_DATE)));
+    }
+
     private static final Property<?>[] SQL_CONSTRAINT_MERGE_PROPERTIES = new Property<?>[] {
         Task.ID,
         Task.REMOTE_ID,
@@ -374,11 +574,7 @@ public class TaskDao extends DatabaseDao<Task> {
         if(values.containsKey(Task.COMPLETION_DATE.name) && task.isCompleted())
             afterComplete(task, values);
         else {
-            if(values.containsKey(Task.DUE_DATE.name) ||
-                    values.containsKey(Task.REMINDER_FLAGS.name) ||
-                    values.containsKey(Task.REMINDER_PERIOD.name) ||
-                    values.containsKey(Task.REMINDER_LAST.name) ||
-                    values.containsKey(Task.REMINDER_SNOOZE.name))
+            if(affectsReminders(values))
                 ReminderService.getInstance().scheduleAlarm(task);
         }
 
@@ -386,6 +582,15 @@ public class TaskDao extends DatabaseDao<Task> {
         TaskApiDao.afterSave(task, values);
     }
 
+    /** @return true if the given values require alarms to be rescheduled */
+    private static boolean affectsReminders(ContentValues values) {
+        return values.containsKey(Task.DUE_DATE.name) ||
+                values.containsKey(Task.REMINDER_FLAGS.name) ||
+                values.containsKey(Task.REMINDER_PERIOD.name) ||
+                values.containsKey(Task.REMINDER_LAST.name) ||
+                values.containsKey(Task.REMINDER_SNOOZE.name);
+    }
+
     /**
      * Called after the task was just completed
      *
@@ -5,9 +5,21 @@
  */
 package com.todoroo.astrid.dao;
 
+import java.util.ArrayList;
+import java.util.Set;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.text.TextUtils;
+
 import com.todoroo.andlib.data.DatabaseDao;
+import com.todoroo.andlib.data.TodorooCursor;
 import com.todoroo.andlib.service.Autowired;
 import com.todoroo.andlib.service.DependencyInjectionService;
+import com.todoroo.andlib.sql.Criterion;
+import com.todoroo.andlib.sql.Query;
+import com.todoroo.astrid.data.Task;
 import com.todoroo.astrid.data.Update;
 
 /**
@@ -16,8 +28,22 @@ import com.todoroo.astrid.data.Update;
  * @author Tim Su <tim@todoroo.com>
  *
  */
+@SuppressWarnings("nls")
 public class UpdateDao extends DatabaseDao<Update> {
 
+    // --- tag index
+
+    /**
+     * Table with one row per tag remote id named in {@link Update#TAGS},
+     * so the updates of a tag can be found through an index instead of
+     * matching the tags of every update. Kept up to date by this dao.
+     */
+    public static final String TAG_INDEX = "update_tags";
+
+    private static final String TAG_INDEX_TAG = "tag";
+    private static final String TAG_INDEX_UPDATE = "updateId";
+    private static final String TAG_INDEX_CREATED = "created";
+
     @Autowired Database database;
 
     @edu.umd.cs.findbugs.annotations.SuppressWarnings(value="UR_UNINIT_READ")
@@ -27,5 +53,163 @@ public class UpdateDao extends DatabaseDao<Update> {
         setDatabase(database);
     }
 
+    /**
+     * Fill in {@link Update#TASK_LOCAL} for updates that only know the
+     * remote id of their task, using a single set-based statement. Lets
+     * activity lists link to tasks without resolving remote ids per row.
+     */
+    @SuppressWarnings("nls")
+    public void backfillLocalTaskIds() {
+        String sql = String.format("UPDATE %1$s SET %2$s = (SELECT %4$s.%5$s FROM %4$s WHERE %4$s.%6$s = %1$s.%3$s) " +
+                "WHERE (%2$s IS NULL OR %2$s <= 0) AND %3$s > 0 AND %3$s IN (SELECT %6$s FROM %4$s WHERE %6$s > 0)",
+                Update.TABLE.name, Update.TASK_LOCAL.name, Update.TASK.name,
+                Task.TABLE.name, Task.ID.name, Task.REMOTE_ID.name);
+        database.getDatabase().execSQL(sql);
+    }
+
+    // --- tag index maintenance
+
+    /** Create the tag index table and its index if they don't exist */
+    public static void createTagIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TAG_INDEX + " (" +
+                TAG_INDEX_TAG + " INTEGER, " + TAG_INDEX_UPDATE + " INTEGER, " +
+                TAG_INDEX_CREATED + " INTEGER)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS ut_tag ON " + TAG_INDEX + "(" +
+                TAG_INDEX_TAG + "," + TAG_INDEX_CREATED + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS ut_uid ON " + TAG_INDEX + "(" +
+                TAG_INDEX_UPDATE + ")");
+    }
+
+    /** Fill the tag index from all updates, e.g. after it was created */
+    public static void rebuildTagIndex(SQLiteDatabase db) {
+        db.execSQL("DELETE FROM " + TAG_INDEX);
+        Cursor cursor = db.rawQuery("SELECT " + Update.ID.name + ", " +
+                Update.TAGS.name + ", " + Update.CREATION_DATE.name + " FROM " +
+                Update.TABLE.name + " WHERE " + Update.TAGS.name + " LIKE '%,%,%'", null);
+        try {
+            for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext())
+                insertTags(db, cursor.getLong(0), cursor.getString(1), cursor.getLong(2));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void insertTags(SQLiteDatabase db, long updateId, String tags, long created) {
+        if(TextUtils.isEmpty(tags))
+            return;
+        ContentValues values = new ContentValues();
+        for(String tag : tags.split(",")) {
+            if(tag.length() == 0)
+                continue;
+            try {
+                values.put(TAG_INDEX_TAG, Long.valueOf(tag));
+            } catch (NumberFormatException e) {
+                continue; // not a tag id
+            }
+            values.put(TAG_INDEX_UPDATE, updateId);
+            values.put(TAG_INDEX_CREATED, created);
+            db.insert(TAG_INDEX, null, values);
+        }
+    }
+
+    /** Write the tags of the given updates to the index again */
+    private void reindexTags(long[] ids) {
+        SQLiteDatabase db = database.getDatabase();
+        for(int start = 0; start < ids.length; start += IDS_PER_STATEMENT) {
+            db.delete(TAG_INDEX, TAG_INDEX_UPDATE + " IN (" +
+                    TextUtils.join(",", idChunk(ids, start)) + ")", null);
+            TodorooCursor<Update> cursor = query(Query.select(Update.ID, Update.TAGS,
+                    Update.CREATION_DATE).where(idIn(ids, start)));
+            try {
+                for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext())
+                    insertTags(db, cursor.get(Update.ID), cursor.get(Update.TAGS),
+                            cursor.get(Update.CREATION_DATE));
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+
+    private static boolean affectsTagIndex(ContentValues values) {
+        return values != null && (values.containsKey(Update.TAGS.name) ||
+                values.containsKey(Update.CREATION_DATE.name));
+    }
+
+    /**
+     * Query the latest update of each of the given tags, in one query that
+     * reads the tag index. Updates created at the same time are all
+     * returned.
+     *
+     * @param remoteIds remote ids of the tags
+     * @return cursor. PLEASE CLOSE THE CURSOR!
+     */
+    public TodorooCursor<Update> queryLatestByTags(Set<Long> remoteIds) {
+        String selection = String.format("%1$s IN (SELECT t.%3$s FROM %2$s t WHERE t.%4$s IN (%6$s) " +
+                "AND t.%5$s = (SELECT MAX(m.%5$s) FROM %2$s m WHERE m.%4$s = t.%4$s))",
+                Update.ID.name, TAG_INDEX, TAG_INDEX_UPDATE, TAG_INDEX_TAG, TAG_INDEX_CREATED,
+                TextUtils.join(",", remoteIds));
+        return rawQuery(selection, null, Update.PROPERTIES);
+    }
+
+    // --- writes that keep the tag index up to date
+
+    @Override
+    public boolean createNew(Update item) {
+        boolean result = super.createNew(item);
+        if(result && item.containsNonNullValue(Update.TAGS))
+            insertTags(database.getDatabase(), item.getId(), item.getValue(Update.TAGS),
+                    item.containsNonNullValue(Update.CREATION_DATE) ?
+                            item.getValue(Update.CREATION_DATE) : 0);
+        return result;
+    }
+
+    @Override
+    public boolean saveExisting(Update item) {
+        boolean reindex = affectsTagIndex(item.getSetValues());
+        boolean result = super.saveExisting(item);
+        if(result && reindex)
+            reindexTags(new long[] { item.getId() });
+        return result;
+    }
+
+    @Override
+    public int update(Criterion where, Update template) {
+        if(!affectsTagIndex(template.getSetValues()))
+            return super.update(where, template);
+
+        // the criterion may not match once tags are changed
+        ArrayList<Long> matching = new ArrayList<Long>();
+        TodorooCursor<Update> cursor = query(Query.select(Update.ID).where(where));
+        try {
+            for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext())
+                matching.add(cursor.get(Update.ID));
+        } finally {
+            cursor.close();
+        }
+        int result = super.update(where, template);
+        long[] ids = new long[matching.size()];
+        for(int i = 0; i < ids.length; i++)
+            ids[i] = matching.get(i);
+        reindexTags(ids);
+        return result;
+    }
+
+    @Override
+    public boolean delete(long id) {
+        boolean result = super.delete(id);
+        if(result)
+            database.getDatabase().delete(TAG_INDEX, TAG_INDEX_UPDATE + " = " + id, null);
+        return result;
+    }
+
+    @Override
+    public int deleteWhere(Criterion where) {
+        int result = super.deleteWhere(where);
+        if(result > 0)
+            database.getDatabase().delete(TAG_INDEX, TAG_INDEX_UPDATE + " NOT IN (SELECT " +
+                    Update.ID.name + " FROM " + Update.TABLE.name + ")", null);
+        return result;
+    }
+
 }
 
@@ -1,5 +1,7 @@
 package com.todoroo.astrid.helper;
 
+import greendroid.image.ImageCache;
+
 import java.io.IOException;
 
 import android.content.Context;
@@ -40,7 +42,13 @@ public class AsyncImageView extends greendroid.widget.AsyncImageView {
         }
         else if(imageDiskCache != null && imageDiskCache.contains(url)) {
             try {
-                cacheImage = imageDiskCache.get(url);
+                // share decoded pictures between views instead of hitting the disk each time
+                ImageCache memoryCache = ImageCache.from(getContext());
+                cacheImage = memoryCache.get(url);
+                if(cacheImage == null) {
+                    cacheImage = imageDiskCache.get(url);
+                    memoryCache.put(url, cacheImage);
+                }
                 setImageBitmap(cacheImage);
                 cacheURL = url;
                 return;
@@ -27,18 +27,20 @@ import java.io.OutputStream;
 import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
 
 import android.util.Log;
 
 /**
- * A simple disk cache.
+ * A simple disk cache. If a maximum size is set, the least recently used
+ * files are deleted whenever the cache grows past it.
  *
  * @author <a href="mailto:spomeroy@mit.edu">Steve Pomeroy</a>
  *
  * @param <K> the key to store/retrieve the value
  * @param <V> the value that will be stored to disk
  */
-// TODO add automatic cache cleanup so low disk conditions can be met
 @SuppressWarnings("nls")
 public abstract class DiskCache<K, V> {
     private static final String TAG = "DiskCache";
@@ -48,6 +50,12 @@ public abstract class DiskCache<K, V> {
 	private final File mCacheBase;
 	private final String mCachePrefix, mCacheSuffix;
 
+	/** maximum size in bytes, 0 for unbounded */
+	private long mMaxSize = 0;
+
+	/** size of the cache files in bytes, -1 until the directory has been scanned */
+	private long mSize = -1;
+
 	/**
 	 * Creates a new disk cache with no cachePrefix or cacheSuffix
 	 *
@@ -83,6 +91,16 @@ public abstract class DiskCache<K, V> {
 		}
 	}
 
+	/**
+	 * Sets the maximum number of bytes this cache may hold on disk.
+	 *
+	 * @param maxSize size in bytes, or 0 for no limit
+	 */
+	public void setMaxSize(long maxSize) {
+		mMaxSize = maxSize;
+		trimToSize();
+	}
+
 	/**
 	 * Gets the cache filename for the given key.
 	 *
@@ -105,10 +123,13 @@ public abstract class DiskCache<K, V> {
 	 */
 	public void put(K key, V value) throws IOException, FileNotFoundException {
 		final File saveHere = getFile(key);
+		final long previous = saveHere.length();
 
 		final OutputStream os = new FileOutputStream(saveHere);
 		toDisk(key, value, os);
 		os.close();
+		addSize(saveHere.length() - previous);
+		trimToSize();
 	}
 
 	/**
@@ -123,11 +144,14 @@ public abstract class DiskCache<K, V> {
 	 */
 	public void putRaw(K key, InputStream value) throws IOException, FileNotFoundException {
 		final File saveHere = getFile(key);
+		final long previous = saveHere.length();
 
 		final OutputStream os = new FileOutputStream(saveHere);
 
 		inputStreamToOutputStream(value, os);
 		os.close();
+		addSize(saveHere.length() - previous);
+		trimToSize();
 	}
 
 	/**
@@ -150,7 +174,9 @@ public abstract class DiskCache<K, V> {
 	public boolean move(K from, K to) {
         final File moveFrom = getFile(from);
         final File moveTo = getFile(to);
-	    moveFrom.renameTo(moveTo);
+        final long replaced = moveTo.length();
+	    if (moveFrom.renameTo(moveTo))
+	        addSize(-replaced);
 	    return true;
 	}
 
@@ -168,6 +194,7 @@ public abstract class DiskCache<K, V> {
 			return null;
 		}
 
+		readFrom.setLastModified(System.currentTimeMillis());
 		final InputStream is = new FileInputStream(readFrom);
 		final V out = fromDisk(key, is);
 		is.close();
@@ -199,7 +226,11 @@ public abstract class DiskCache<K, V> {
 			return true;
 		}
 
-		return readFrom.delete();
+		final long length = readFrom.length();
+		if (!readFrom.delete())
+			return false;
+		addSize(-length);
+		return true;
 	}
 
 	/**
@@ -219,6 +250,9 @@ public abstract class DiskCache<K, V> {
 				success = false;
 			}
 		}
+		synchronized (this) {
+			mSize = -1;
+		}
 		return success;
 	}
 
@@ -229,6 +263,82 @@ public abstract class DiskCache<K, V> {
 		return mCacheBase.listFiles(mCacheFileFilter).length;
 	}
 
+	/**
+	 * Deletes the least recently used cache files until the cache fits in
+	 * its maximum size.
+	 */
+	public synchronized void trimToSize() {
+		if (mMaxSize <= 0) {
+			return;
+		}
+		if (mSize < 0) {
+			mSize = scanSize();
+		}
+		if (mSize <= mMaxSize) {
+			return;
+		}
+		final File[] files = mCacheBase.listFiles(mCacheFileFilter);
+		if (files == null) {
+			return;
+		}
+
+		Arrays.sort(files, new Comparator<File>() {
+			@Override
+			public int compare(File lhs, File rhs) {
+				final long l = lhs.lastModified(), r = rhs.lastModified();
+				return l < r ? -1 : (l == r ? 0 : 1);
+			}
+		});
+		for (int i = 0; i < files.length && mSize > mMaxSize; i++) {
+			if (!isEvictable(files[i])) {
+				continue;
+			}
+			final long length = files[i].length();
+			if (files[i].delete()) {
+				mSize -= length;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of bytes held by the cache files, kept as files
+	 *         are written and deleted so the directory is only scanned once
+	 */
+	public synchronized long getCacheBytes() {
+		if (mSize < 0) {
+			mSize = scanSize();
+		}
+		return mSize;
+	}
+
+	private long scanSize() {
+		long size = 0;
+		final File[] files = mCacheBase.listFiles(mCacheFileFilter);
+		if (files != null) {
+			for (final File file : files) {
+				size += file.length();
+			}
+		}
+		return size;
+	}
+
+	private synchronized void addSize(long delta) {
+		if (mSize >= 0) {
+			mSize += delta;
+		}
+	}
+
+	/**
+	 * Override to keep files that cannot be downloaded again out of
+	 * eviction.
+	 *
+	 * @param file a cache file
+	 * @return true if the file may be deleted when the cache is too large
+	 */
+	protected boolean isEvictable(File file) {
+		return true;
+	}
+
 	private final CacheFileFilter mCacheFileFilter = new CacheFileFilter();
 
 	private class CacheFileFilter implements FileFilter {
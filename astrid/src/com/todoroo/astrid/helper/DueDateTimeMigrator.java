@@ -2,19 +2,27 @@ package com.todoroo.astrid.helper;
 
 import java.util.Date;
 
+import android.content.ContentValues;
+
+import com.todoroo.andlib.data.Migration;
+import com.todoroo.andlib.data.MigrationRunner;
 import com.todoroo.andlib.data.TodorooCursor;
 import com.todoroo.andlib.service.Autowired;
 import com.todoroo.andlib.service.DependencyInjectionService;
 import com.todoroo.andlib.sql.Criterion;
 import com.todoroo.andlib.sql.Functions;
+import com.todoroo.andlib.sql.Order;
 import com.todoroo.andlib.sql.Query;
 import com.todoroo.andlib.utility.Preferences;
+import com.todoroo.astrid.dao.Database;
 import com.todoroo.astrid.dao.TaskDao;
 import com.todoroo.astrid.data.SyncFlags;
 import com.todoroo.astrid.data.Task;
 
 public class DueDateTimeMigrator {
 
+    @Autowired Database database;
+
     @Autowired TaskDao taskDao;
 
     private static final String PREF_MIGRATED_DUE_TIMES = "migrated_due_times";  //$NON-NLS-1$
@@ -29,54 +37,71 @@ public class DueDateTimeMigrator {
         public void adjust(Date date);
     }
 
-    public void migrateDueTimes() {
+    /** @return true if the migration is finished */
+    public boolean migrateDueTimes() {
         if (!Preferences.getBoolean(PREF_MIGRATED_DUE_TIMES, false)) {
-            // Get tasks with due time (i.e. due date != 23:59:59)
-            TodorooCursor<Task> tasksWithDueTime = taskDao.query(Query.select(Task.ID, Task.DUE_DATE, Task.MODIFICATION_DATE).where(
-                    Criterion.and(Task.DUE_DATE.gt(0),
-                            Functions.strftime(Task.DUE_DATE, STRFTIME_FORMAT).neq(LEGACY_NO_TIME_STRING))));
-            try {
-
-                // Get tasks with no due time (i.e. due date = 23:59:59)
-                TodorooCursor<Task> tasksWithoutDueTime = taskDao.query(Query.select(Task.ID, Task.DUE_DATE, Task.MODIFICATION_DATE).where(
-                        Criterion.and(Task.DUE_DATE.gt(0),
-                                Functions.strftime(Task.DUE_DATE, STRFTIME_FORMAT).eq(LEGACY_NO_TIME_STRING))));
-
-                tasksWithoutDueTime.getCount();
-                tasksWithDueTime.getCount();
-
-                try {
-                    // Set tasks without time to 12:00:00
-                    processCursor(tasksWithoutDueTime, new TaskDateAdjuster() {
-                        @Override
-                        public void adjust(Date date) {
-                            date.setHours(12);
-                            date.setMinutes(0);
-                            date.setSeconds(0);
-                        }
-                    });
-
-                } finally {
-                    tasksWithoutDueTime.close();
+            // Set tasks with time (i.e. due date != 23:59:59) to have time HH:MM:01.
+            // This runs first, so tasks moved to 12:00:00 below are not matched
+            Migration withTime = new DueDateMigration("due-times-with-time", //$NON-NLS-1$
+                    Functions.strftime(Task.DUE_DATE, STRFTIME_FORMAT).neq(LEGACY_NO_TIME_STRING),
+                    new TaskDateAdjuster() {
+                @Override
+                public void adjust(Date date) {
+                    date.setSeconds(1);
                 }
+            });
+
+            // Set tasks without time (i.e. due date = 23:59:59) to 12:00:00
+            Migration withoutTime = new DueDateMigration("due-times-without-time", //$NON-NLS-1$
+                    Functions.strftime(Task.DUE_DATE, STRFTIME_FORMAT).eq(LEGACY_NO_TIME_STRING),
+                    new TaskDateAdjuster() {
+                @Override
+                public void adjust(Date date) {
+                    date.setHours(12);
+                    date.setMinutes(0);
+                    date.setSeconds(0);
+                }
+            });
 
-                // Set tasks with time to have time HH:MM:01
-                processCursor(tasksWithDueTime, new TaskDateAdjuster() {
-                    @Override
-                    public void adjust(Date date) {
-                        date.setSeconds(1);
-                    }
-                });
+            if(!new MigrationRunner(database).run(withTime, withoutTime))
+                return false;
+            Preferences.setBoolean(PREF_MIGRATED_DUE_TIMES, true);
+        }
+        return true;
+    }
 
+    /**
+     * Adjusts the due dates of tasks matching a criterion, in chunks
+     * ordered by id
+     */
+    private class DueDateMigration extends Migration {
+
+        private final Criterion criterion;
+        private final TaskDateAdjuster adjuster;
+
+        public DueDateMigration(String name, Criterion criterion, TaskDateAdjuster adjuster) {
+            super(name);
+            this.criterion = criterion;
+            this.adjuster = adjuster;
+        }
+
+        @Override
+        protected long migrateChunk(long checkpoint, int limit) {
+            TodorooCursor<Task> cursor = taskDao.query(Query.select(Task.ID, Task.DUE_DATE, Task.MODIFICATION_DATE).where(
+                    Criterion.and(Task.ID.gt(checkpoint), Task.DUE_DATE.gt(0), criterion)).
+                    orderBy(Order.asc(Task.ID)).limit(limit));
+            try {
+                if(cursor.getCount() == 0)
+                    return DONE;
+                return processCursor(cursor, adjuster);
             } finally {
-                tasksWithDueTime.close();
+                cursor.close();
             }
-
-            Preferences.setBoolean(PREF_MIGRATED_DUE_TIMES, true);
         }
     }
 
-    private void processCursor(TodorooCursor<Task> cursor, TaskDateAdjuster adjuster) {
+    /** @return id of the last task processed */
+    private long processCursor(TodorooCursor<Task> cursor, TaskDateAdjuster adjuster) {
         Task curr = new Task();
         for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
             curr.readFromCursor(cursor);
@@ -84,11 +109,14 @@ public class DueDateTimeMigrator {
             Date date = new Date(time);
             adjuster.adjust(date);
             curr.setValue(Task.DUE_DATE, date.getTime());
-            curr.getSetValues().put(Task.MODIFICATION_DATE.name, curr.getValue(Task.MODIFICATION_DATE)); // Don't change modification date
+            ContentValues unchanged = new ContentValues();
+            unchanged.put(Task.MODIFICATION_DATE.name, curr.getValue(Task.MODIFICATION_DATE));
+            curr.mergeWith(unchanged); // Don't change modification date
             curr.putTransitory(SyncFlags.ACTFM_SUPPRESS_SYNC, true);
             curr.putTransitory(SyncFlags.GTASKS_SUPPRESS_SYNC, true);
             taskDao.save(curr);
         }
+        return curr.getId();
     }
 
 }
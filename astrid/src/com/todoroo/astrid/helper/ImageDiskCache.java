@@ -55,6 +55,18 @@ public class ImageDiskCache extends DiskCache<String, Bitmap> {
     private static final String TAG = ImageDiskCache.class.getSimpleName();
     public static final String CACHED_IDENTIFIER = "cached::";
 
+    /** maximum size of the cache on disk */
+    private static final long MAX_SIZE = 10 * 1024 * 1024;
+
+    /**
+     * file name prefix of pictures that have not been uploaded yet. These
+     * are only evicted once their upload has been given up on
+     */
+    private static final String PENDING_PREFIX = "pending_";
+
+    /** time after which a picture that was not uploaded may be evicted */
+    private static final long PENDING_EXPIRY = 2 * DateUtilities.ONE_WEEK;
+
     static final boolean DEBUG = false;
 
 
@@ -85,6 +97,7 @@ public class ImageDiskCache extends DiskCache<String, Bitmap> {
 
         mCompressFormat = format;
         mQuality = quality;
+        setMaxSize(MAX_SIZE);
     }
     private static String getExtension(CompressFormat format) {
         String extension;
@@ -185,6 +198,32 @@ public class ImageDiskCache extends DiskCache<String, Bitmap> {
         // TODO actually make it possible to cancel tasks
     }
 
+    @Override
+    protected File getFile(String key) {
+        File file = super.getFile(key);
+        if (key == null || !key.startsWith(CACHED_IDENTIFIER))
+            return file;
+
+        // pictures cached before pending files were marked keep their name
+        File pending = new File(file.getParentFile(), PENDING_PREFIX + file.getName());
+        if (file.exists() && !pending.exists())
+            return file;
+        return pending;
+    }
+
+    @Override
+    protected boolean isEvictable(File file) {
+        return isEvictable(file.getName(), file.lastModified(), DateUtilities.now());
+    }
+
+    /**
+     * @return true if a file with the given name and modification time may
+     * be evicted at the given time
+     */
+    static boolean isEvictable(String name, long lastModified, long now) {
+        return !name.startsWith(PENDING_PREFIX) || now - lastModified > PENDING_EXPIRY;
+    }
+
     @Override
     public boolean contains(String key) {
         return !TextUtils.isEmpty(key) && key.startsWith(CACHED_IDENTIFIER) && super.contains(key);
@@ -4,10 +4,7 @@
 package com.todoroo.astrid.helper;
 
 import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
-import java.util.Map;
 
 import android.content.Intent;
 import android.support.v4.app.ListFragment;
@@ -28,8 +25,11 @@ abstract public class TaskAdapterAddOnManager<TYPE> {
         this.fragment = fragment;
     }
 
-    private final Map<Long, LinkedHashMap<String, TYPE>> cache =
-        Collections.synchronizedMap(new HashMap<Long, LinkedHashMap<String, TYPE>>(0));
+    /** tasks whose add-ons are kept */
+    private static final int MAX_CACHED_TASKS = 500;
+
+    private final TaskRowCache<LinkedHashMap<String, TYPE>> cache =
+        new TaskRowCache<LinkedHashMap<String, TYPE>>("add-ons", MAX_CACHED_TASKS); //$NON-NLS-1$
 
     // --- interface
 
@@ -40,7 +40,7 @@ abstract public class TaskAdapterAddOnManager<TYPE> {
     public boolean request(ViewHolder viewHolder) {
         long taskId = viewHolder.task.getId();
 
-        Collection<TYPE> list = initialize(taskId);
+        Collection<TYPE> list = initialize(taskId, TaskRowCache.stamp(viewHolder.task));
         if(list != null) {
             draw(viewHolder, taskId, list);
             return false;
@@ -88,7 +88,8 @@ abstract public class TaskAdapterAddOnManager<TYPE> {
     }
 
     /**
-     * Clears the cache
+     * Clears the cache. Not needed on refresh, as add-ons of tasks that
+     * changed since they were cached are requested again anyway.
      */
     public void clearCache() {
         cache.clear();
@@ -104,15 +105,17 @@ abstract public class TaskAdapterAddOnManager<TYPE> {
     // --- internal goodies
 
     /**
-     * Retrieves a list. If it doesn't exist, list is created, but
-     * the method will return null
+     * Retrieves a list. If it doesn't exist for this version of the task,
+     * list is created, but the method will return null
      * @param taskId
+     * @param stamp see {@link TaskRowCache#stamp(Task)}
      * @return list if there was already one
      */
-    protected synchronized Collection<TYPE> initialize(long taskId) {
-        if(cache.containsKey(taskId) && cache.get(taskId) != null)
-            return get(taskId);
-        cache.put(taskId, new LinkedHashMap<String, TYPE>(0));
+    protected synchronized Collection<TYPE> initialize(long taskId, long stamp) {
+        LinkedHashMap<String, TYPE> list = cache.get(taskId, stamp);
+        if(list != null)
+            return list.values();
+        cache.put(taskId, stamp, new LinkedHashMap<String, TYPE>(0));
         return null;
     }
 
@@ -124,7 +127,7 @@ abstract public class TaskAdapterAddOnManager<TYPE> {
      */
     protected synchronized Collection<TYPE> addIfNotExists(long taskId, String addOn,
             TYPE item) {
-        LinkedHashMap<String, TYPE> list = cache.get(taskId);
+        LinkedHashMap<String, TYPE> list = cache.peek(taskId);
         if(list == null)
             return null;
         if(list.containsValue(item))
@@ -139,9 +142,17 @@ abstract public class TaskAdapterAddOnManager<TYPE> {
      * @return
      */
     protected Collection<TYPE> get(long taskId) {
-        if(cache.get(taskId) == null)
+        LinkedHashMap<String, TYPE> list = cache.peek(taskId);
+        if(list == null)
             return null;
-        return cache.get(taskId).values();
+        return list.values();
+    }
+
+    /**
+     * @return cache size and hit rate
+     */
+    public String getCacheStatistics() {
+        return cache.toString();
     }
 
 }
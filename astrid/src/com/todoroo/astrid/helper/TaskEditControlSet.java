@@ -17,6 +17,7 @@ public abstract class TaskEditControlSet {
     private final int viewLayout;
     private View view;
     protected Task model;
+    private TaskEditMetadata editMetadata;
     protected boolean initialized = false;
 
     public TaskEditControlSet(Activity activity, int viewLayout) {
@@ -43,6 +44,15 @@ public abstract class TaskEditControlSet {
         return getView();
     }
 
+    /**
+     * Read data from model to update the control set, reading metadata
+     * from the given snapshot instead of querying for it
+     */
+    public void readFromTask(Task task, TaskEditMetadata metadata) {
+        this.editMetadata = metadata;
+        readFromTask(task);
+    }
+
     /**
      * Read data from model to update the control set
      */
@@ -53,6 +63,23 @@ public abstract class TaskEditControlSet {
     }
 
 
+    /**
+     * @return metadata snapshot of the task being edited, or null if
+     * metadata should be queried directly
+     */
+    protected TaskEditMetadata getEditMetadata() {
+        return getEditMetadata(model);
+    }
+
+    /**
+     * @return metadata snapshot if it belongs to the given task, or null
+     */
+    protected TaskEditMetadata getEditMetadata(Task task) {
+        if(editMetadata != null && task != null && editMetadata.getTaskId() == task.getId())
+            return editMetadata;
+        return null;
+    }
+
     /**
      * Called once to setup the ui with data from the task
      */
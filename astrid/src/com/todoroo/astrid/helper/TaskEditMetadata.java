@@ -0,0 +1,84 @@
+package com.todoroo.astrid.helper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import com.todoroo.andlib.data.TodorooCursor;
+import com.todoroo.andlib.service.Autowired;
+import com.todoroo.andlib.service.DependencyInjectionService;
+import com.todoroo.andlib.sql.Order;
+import com.todoroo.andlib.sql.Query;
+import com.todoroo.astrid.dao.MetadataDao.MetadataCriteria;
+import com.todoroo.astrid.data.Metadata;
+import com.todoroo.astrid.service.MetadataService;
+
+/**
+ * Snapshot of the metadata of a task being edited. All of the task's
+ * metadata is read in one query the first time a control set asks for it,
+ * and then shared by every control set for the rest of the edit.
+ * <p>
+ * Control sets should treat the returned metadata as read-only.
+ */
+public class TaskEditMetadata {
+
+    @Autowired
+    private MetadataService metadataService;
+
+    private final long taskId;
+
+    private HashMap<String, ArrayList<Metadata>> byKey = null;
+
+    public TaskEditMetadata(long taskId) {
+        DependencyInjectionService.getInstance().inject(this);
+        this.taskId = taskId;
+    }
+
+    public long getTaskId() {
+        return taskId;
+    }
+
+    /**
+     * @return all metadata with the given key, in the order it was created
+     */
+    public synchronized List<Metadata> get(String key) {
+        if(byKey == null)
+            load();
+        ArrayList<Metadata> list = byKey.get(key);
+        if(list == null)
+            return Collections.emptyList();
+        return list;
+    }
+
+    /**
+     * @return first metadata with the given key, or null if there is none
+     */
+    public Metadata getFirst(String key) {
+        List<Metadata> list = get(key);
+        if(list.isEmpty())
+            return null;
+        return list.get(0);
+    }
+
+    private void load() {
+        byKey = new HashMap<String, ArrayList<Metadata>>();
+        TodorooCursor<Metadata> cursor = metadataService.query(Query.select(Metadata.PROPERTIES).
+                where(MetadataCriteria.byTask(taskId)).orderBy(Order.asc(Metadata.ID)));
+        try {
+            for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                Metadata metadata = new Metadata(cursor);
+                String key = metadata.getValue(Metadata.KEY);
+                ArrayList<Metadata> list = byKey.get(key);
+                if(list == null) {
+                    list = new ArrayList<Metadata>();
+                    byKey.put(key, list);
+                }
+                list.add(metadata);
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+}
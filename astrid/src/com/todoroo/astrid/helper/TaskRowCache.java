@@ -0,0 +1,148 @@
+/**
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.helper;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.todoroo.astrid.data.Task;
+
+/**
+ * Least recently used cache of values computed for task list rows, keyed
+ * by task id. Each value remembers the {@link #stamp(Task)} of the task it
+ * was computed for and is only returned for that stamp, so values of
+ * unchanged tasks survive list refreshes. The cache is bounded by the
+ * total {@link #sizeOf(Object)} of its values.
+ *
+ * @param <V> cached value type
+ */
+public class TaskRowCache<V> {
+
+    private static final class Entry<V> {
+        final long stamp;
+        final V value;
+        final int size;
+
+        Entry(long stamp, V value, int size) {
+            this.stamp = stamp;
+            this.value = value;
+            this.size = size;
+        }
+    }
+
+    private final LinkedHashMap<Long, Entry<V>> entries =
+        new LinkedHashMap<Long, Entry<V>>(16, 0.75f, true);
+
+    private final String name;
+    private final int maxSize;
+    private int size = 0;
+
+    private int hitCount = 0;
+    private int missCount = 0;
+
+    /**
+     * @param name shown in statistics
+     * @param maxSize bound on the total size of cached values
+     */
+    public TaskRowCache(String name, int maxSize) {
+        this.name = name;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Version of a task as far as its list row is concerned. Timer changes
+     * are saved without a new modification date, so they are part of it.
+     * The task must have been read with these three columns.
+     */
+    public static long stamp(Task task) {
+        long stamp = task.getValue(Task.MODIFICATION_DATE);
+        stamp = 31 * stamp + task.getValue(Task.TIMER_START);
+        return 31 * stamp + task.getValue(Task.ELAPSED_SECONDS);
+    }
+
+    /** Size of the given value, 1 unless overridden */
+    protected int sizeOf(V value) {
+        return 1;
+    }
+
+    // --- cache
+
+    /**
+     * @return value computed for this version of the task, or null.
+     * Values of other versions are dropped.
+     */
+    public synchronized V get(long taskId, long stamp) {
+        Entry<V> entry = entries.get(taskId);
+        if(entry != null && entry.stamp == stamp) {
+            hitCount++;
+            return entry.value;
+        }
+        if(entry != null)
+            remove(taskId);
+        missCount++;
+        return null;
+    }
+
+    /**
+     * @return value of the task whatever version it was computed for, or
+     * null. Does not count towards statistics.
+     */
+    public synchronized V peek(long taskId) {
+        Entry<V> entry = entries.get(taskId);
+        return entry == null ? null : entry.value;
+    }
+
+    public synchronized void put(long taskId, long stamp, V value) {
+        Entry<V> entry = new Entry<V>(stamp, value, sizeOf(value));
+        Entry<V> old = entries.put(taskId, entry);
+        if(old != null)
+            size -= old.size;
+        size += entry.size;
+        trim();
+    }
+
+    public synchronized void remove(long taskId) {
+        Entry<V> old = entries.remove(taskId);
+        if(old != null)
+            size -= old.size;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<Long, Entry<V>>> iterator = entries.entrySet().iterator();
+        while(size > maxSize && iterator.hasNext()) {
+            size -= iterator.next().getValue().size;
+            iterator.remove();
+        }
+    }
+
+    // --- statistics
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    @Override
+    @SuppressWarnings("nls")
+    public synchronized String toString() {
+        int accesses = hitCount + missCount;
+        int hitRate = accesses == 0 ? 0 : 100 * hitCount / accesses;
+        return String.format("TaskRowCache[%s: entries=%d,size=%d/%d,hits=%d,misses=%d,hitRate=%d%%]",
+                name, entries.size(), size, maxSize, hitCount, missCount, hitRate);
+    }
+
+}
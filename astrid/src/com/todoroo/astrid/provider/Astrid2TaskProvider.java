@@ -3,6 +3,8 @@ package com.todoroo.astrid.provider;
 import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
 
 import android.content.ContentProvider;
 import android.content.ContentValues;
@@ -22,7 +24,6 @@ import com.todoroo.andlib.sql.Query;
 import com.todoroo.andlib.utility.DateUtilities;
 import com.todoroo.astrid.core.SortHelper;
 import com.todoroo.astrid.dao.TaskDao.TaskCriteria;
-import com.todoroo.astrid.data.Metadata;
 import com.todoroo.astrid.data.Task;
 import com.todoroo.astrid.service.AstridDependencyInjector;
 import com.todoroo.astrid.service.StatisticsConstants;
@@ -137,6 +138,8 @@ public class Astrid2TaskProvider extends ContentProvider {
 	 */
 	public Cursor getTags() {
 
+		// not served from the tag summary: this lists the tags of every
+		// task, including completed and hidden ones the summary skips
 		Tag[] tags = TagService.getInstance().getGroupedTags(TagService.GROUPED_TAGS_BY_SIZE,
 		        Criterion.all);
 
@@ -188,20 +191,26 @@ public class Astrid2TaskProvider extends ContentProvider {
                         TaskCriteria.isVisible())).
 		        orderBy(SortHelper.defaultTaskOrder()).limit(MAX_NUMBER_OF_TASKS));
 		try {
+		    // read all tags in one query rather than one per task
+		    long[] taskIds = new long[cursor.getCount()];
+		    for(int i = 0; i < taskIds.length; i++) {
+		        cursor.moveToNext();
+		        taskIds[i] = cursor.get(Task.ID);
+		    }
+		    HashMap<Long, ArrayList<String>> tagsByTask = TagService.getInstance().getTagsByTask(taskIds);
+
     		int[] importanceColors = Task.getImportanceColors(ctx.getResources());
     		Task task = new Task();
+    		cursor.moveToPosition(-1);
     		for (int i = 0; i < cursor.getCount(); i++) {
     			cursor.moveToNext();
     			task.readFromCursor(cursor);
 
     			StringBuilder taskTags = new StringBuilder();
-    			TodorooCursor<Metadata> tagCursor = TagService.getInstance().getTags(task.getId());
-    			try {
-    			    for(tagCursor.moveToFirst(); !tagCursor.isAfterLast(); tagCursor.moveToNext())
-    			        taskTags.append(tagCursor.get(TagService.TAG)).append(TAG_SEPARATOR);
-    			} finally {
-    			    tagCursor.close();
-    			}
+    			ArrayList<String> tags = tagsByTask.get(task.getId());
+    			if(tags != null)
+    			    for(String tag : tags)
+    			        taskTags.append(tag).append(TAG_SEPARATOR);
 
     			Object[] values = new Object[7];
     			values[0] = task.getValue(Task.TITLE);
@@ -3,14 +3,18 @@
  */
 package com.todoroo.astrid.provider;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Map.Entry;
-import java.util.Set;
+import java.util.concurrent.Callable;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.SQLException;
@@ -57,6 +61,9 @@ import com.todoroo.astrid.service.AstridDependencyInjector;
  * <li>/groupby/title - query with SQL "group by" (query)
  * </ul>
  * <p>
+ * {@link #bulkInsert} and {@link #applyBatch} run in a single transaction
+ * and notify observers once at the end.
+ * <p>
  * If you are writing a third-party application to access this data, you may
  * also consider using one of the Api DAO objects like {@link TaskApiDao}.
  *
@@ -83,6 +90,10 @@ public class Astrid3ContentProvider extends ContentProvider {
 
     private static AbstractDatabase databaseOverride;
 
+    /** uris to notify when the batch running on this thread completes */
+    private static final ThreadLocal<HashSet<Uri>> batchNotifications =
+        new ThreadLocal<HashSet<Uri>>();
+
     // --- instance variables
 
 
@@ -165,9 +176,9 @@ public class Astrid3ContentProvider extends ContentProvider {
             return dao.createNew(model);
         }
 
-        /** updates from given model */
-        public void update() {
-            dao.saveExisting(model);
+        /** updates given items from model in one statement */
+        public int update(long[] ids) {
+            return dao.saveExistingMultiple(ids, model);
         }
 
     }
@@ -206,6 +217,52 @@ public class Astrid3ContentProvider extends ContentProvider {
         return database;
     }
 
+    /**
+     * Runs the given body in a single transaction. Observers are notified
+     * once it completes rather than after each change.
+     */
+    private <T> T runInBatch(Callable<T> body) {
+        if(batchNotifications.get() != null) {
+            try {
+                return body.call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        HashSet<Uri> pending = new HashSet<Uri>();
+        batchNotifications.set(pending);
+        T result;
+        try {
+            result = getDatabase().runInTransaction(body);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        } finally {
+            batchNotifications.set(null);
+        }
+
+        ContentResolver resolver = getContext().getContentResolver();
+        for(Uri uri : pending)
+            resolver.notifyChange(uri, null);
+        return result;
+    }
+
+    /**
+     * Notify observers of the given uri, or of batchUri once the current
+     * batch completes if one is running
+     */
+    private void notifyChange(Uri uri, Uri batchUri) {
+        HashSet<Uri> pending = batchNotifications.get();
+        if(pending != null)
+            pending.add(batchUri);
+        else
+            getContext().getContentResolver().notifyChange(uri, null);
+    }
+
     /* ======================================================================
      * =========================================================== delete ===
      * ====================================================================== */
@@ -269,13 +326,12 @@ public class Astrid3ContentProvider extends ContentProvider {
         // valid operations
 
         case URI_DIR: {
-            helper.model.mergeWith(values);
-            readTransitoriesFromModelContentValues(helper.model);
+            mergeWithTransitories(helper.model, values);
             if(!helper.create())
                 throw new SQLException("Could not insert row into database (constraint failed?)");
 
             Uri newUri = ContentUris.withAppendedId(uri, helper.model.getId());
-            getContext().getContentResolver().notifyChange(newUri, null);
+            notifyChange(newUri, uri);
             return newUri;
         }
 
@@ -284,14 +340,78 @@ public class Astrid3ContentProvider extends ContentProvider {
         }
     }
 
+    /**
+     * Insert all rows in a single transaction. If any row fails, none are
+     * inserted. Task save hooks run once for all inserted tasks.
+     * @return number of rows inserted
+     */
+    @Override
+    public int bulkInsert(final Uri uri, final ContentValues[] values) {
+        if(uriMatcher.match(uri) == URI_DIR &&
+                uri.toString().startsWith(Task.CONTENT_URI.toString()))
+            return bulkInsertTasks(uri, values);
+
+        return runInBatch(new Callable<Integer>() {
+            public Integer call() {
+                for(ContentValues row : values)
+                    insert(uri, row);
+                return values.length;
+            }
+        });
+    }
+
+    private int bulkInsertTasks(final Uri uri, final ContentValues[] values) {
+        final Task[] tasks = new Task[values.length];
+        for(int i = 0; i < values.length; i++) {
+            tasks[i] = new Task();
+            mergeWithTransitories(tasks[i], values[i]);
+        }
+
+        return runInBatch(new Callable<Integer>() {
+            public Integer call() {
+                taskDao.setDatabase(getDatabase());
+                if(!taskDao.createNewMultiple(tasks))
+                    throw new SQLException("Could not insert row into database (constraint failed?)");
+                notifyChange(uri, uri);
+                return tasks.length;
+            }
+        });
+    }
+
+    /**
+     * Apply all operations in a single transaction. If any operation fails,
+     * none are applied.
+     */
+    @Override
+    public ContentProviderResult[] applyBatch(
+            final ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        try {
+            return runInBatch(new Callable<ContentProviderResult[]>() {
+                public ContentProviderResult[] call() throws OperationApplicationException {
+                    return Astrid3ContentProvider.super.applyBatch(operations);
+                }
+            });
+        } catch (RuntimeException e) {
+            if(e.getCause() instanceof OperationApplicationException)
+                throw (OperationApplicationException) e.getCause();
+            throw e;
+        }
+    }
+
     /* ======================================================================
      * =========================================================== update ===
      * ====================================================================== */
 
+    /**
+     * Update all matching rows with one statement. Per-item save hooks are
+     * run by the dao for all updated items together.
+     * @return number of rows updated
+     */
     @Override
-    public int update(Uri uri, ContentValues values, String selection,
-            String[] selectionArgs) {
-        UriHelper<?> helper = generateHelper(uri, true);
+    public int update(final Uri uri, final ContentValues values, String selection,
+            final String[] selectionArgs) {
+        final UriHelper<?> helper = generateHelper(uri, true);
 
         switch (uriMatcher.match(uri)) {
 
@@ -320,44 +440,47 @@ public class Astrid3ContentProvider extends ContentProvider {
             throw new IllegalArgumentException("Unknown URI " + uri + " (" + uriMatcher.match(uri) + ")");
         }
 
-        Cursor cursor = query(uri, new String[] { AbstractModel.ID_PROPERTY.name },
-                selection, selectionArgs, null);
-        try {
-            for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
-                long id = cursor.getLong(0);
-                helper.model.mergeWith(values);
-                readTransitoriesFromModelContentValues(helper.model);
-                helper.model.setId(id);
-                helper.update();
-                helper.model.clear();
-            }
+        final String where = selection;
+        return runInBatch(new Callable<Integer>() {
+            public Integer call() {
+                long[] ids;
+                Cursor cursor = query(uri, new String[] { AbstractModel.ID_PROPERTY.name },
+                        where, selectionArgs, null);
+                try {
+                    ids = new long[cursor.getCount()];
+                    int i = 0;
+                    for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext())
+                        ids[i++] = cursor.getLong(0);
+                } finally {
+                    cursor.close();
+                }
 
-            getContext().getContentResolver().notifyChange(uri, null);
-            return cursor.getCount();
-        } finally {
-            cursor.close();
-        }
-    }
+                mergeWithTransitories(helper.model, values);
+                helper.update(ids);
 
-    private void readTransitoriesFromModelContentValues(AbstractModel model) {
-        ContentValues setValues = model.getSetValues();
-        if (setValues != null) {
-            Set<Entry<String, Object>> entries = setValues.valueSet();
-            Set<String> keysToRemove = new HashSet<String>();
-            for (Entry<String, Object> entry: entries) {
-                String key = entry.getKey();
-                if (key.startsWith(AbstractModel.RETAIN_TRANSITORY_PREFIX)) {
-                    String newKey = key.substring(AbstractModel.RETAIN_TRANSITORY_PREFIX.length());
-                    Object value = setValues.get(key);
-                    model.putTransitory(newKey, value);
-                    keysToRemove.add(key);
-                }
+                notifyChange(uri, uri);
+                return ids.length;
             }
+        });
+    }
 
-            for (String key : keysToRemove) {
-                setValues.remove(key);
+    /**
+     * Merges the given values into the model, reading keys written by
+     * ContentResolverDao for retained transitories back into transitories
+     */
+    private void mergeWithTransitories(AbstractModel model, ContentValues values) {
+        ContentValues modelValues = values;
+        for (Entry<String, Object> entry : values.valueSet()) {
+            String key = entry.getKey();
+            if (key.startsWith(AbstractModel.RETAIN_TRANSITORY_PREFIX)) {
+                String newKey = key.substring(AbstractModel.RETAIN_TRANSITORY_PREFIX.length());
+                model.putTransitory(newKey, entry.getValue());
+                if (modelValues == values)
+                    modelValues = new ContentValues(values);
+                modelValues.remove(key);
             }
         }
+        model.mergeWith(modelValues);
     }
 
     /* ======================================================================
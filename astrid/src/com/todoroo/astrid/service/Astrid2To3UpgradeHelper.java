@@ -1,5 +1,6 @@
 package com.todoroo.astrid.service;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map.Entry;
@@ -20,14 +21,15 @@ import com.timsu.astrid.R;
 import com.timsu.astrid.utilities.LegacyTasksXmlExporter;
 import com.todoroo.andlib.data.AbstractModel;
 import com.todoroo.andlib.data.DatabaseDao;
+import com.todoroo.andlib.data.InsertSelectMigration;
+import com.todoroo.andlib.data.Migration;
+import com.todoroo.andlib.data.MigrationRunner;
 import com.todoroo.andlib.data.Property;
 import com.todoroo.andlib.data.Property.PropertyVisitor;
-import com.todoroo.andlib.data.TodorooCursor;
 import com.todoroo.andlib.service.Autowired;
 import com.todoroo.andlib.service.ContextManager;
 import com.todoroo.andlib.service.DependencyInjectionService;
 import com.todoroo.andlib.service.ExceptionService;
-import com.todoroo.andlib.sql.Query;
 import com.todoroo.andlib.utility.DateUtilities;
 import com.todoroo.andlib.utility.Preferences;
 import com.todoroo.astrid.alarms.AlarmFields;
@@ -46,6 +48,12 @@ import com.todoroo.astrid.tags.TagService;
 
 public class Astrid2To3UpgradeHelper {
 
+    /** legacy rows migrated per transaction */
+    private static final int CHUNK_SIZE = 500;
+
+    /** first migration of the upgrade from Astrid 2 */
+    private static final String MIGRATE_TASKS = "2to3-tasks"; //$NON-NLS-1$
+
     @Autowired
     private TaskDao taskDao;
 
@@ -112,13 +120,14 @@ public class Astrid2To3UpgradeHelper {
      * @param context
      * @param upgradeService
      * @param from
+     * @return true if there was nothing to upgrade or the upgrade finished
      */
-    public void upgrade3To3_1(final Context context, final int from) {
+    public boolean upgrade3To3_1(final Context context, final int from) {
         if(!checkIfDatabaseExists(context, alertsTable))
-            return;
+            return true;
 
         database.openForWriting();
-        migrateAlarmsToMetadata();
+        return migrateAlarmsToMetadata();
     }
 
     // ----------------------------------------------------------------- 2 => 3
@@ -126,27 +135,40 @@ public class Astrid2To3UpgradeHelper {
     /**
      * Perform the upgrade from Astrid 2 to Astrid 3
      * @param context2
+     * @return true if there was nothing to upgrade, the upgrade finished or
+     * the backup was restored in its place, false if it stopped and is to
+     * be resumed
      */
     @SuppressWarnings("deprecation")
-    public void upgrade2To3(final Context context, final int from) {
+    public boolean upgrade2To3(final Context context, final int from) {
 
         // if from < 1 (we don't know what version, and database exists, leave it alone)
         if(from < 1 && checkIfDatabaseExists(context, database.getName()))
-            return;
+            return true;
 
         // if you don't have a legacy task table, skip this step
         if(!checkIfDatabaseExists(context, tasksTable))
-            return;
-
-        // else, if there's already a database table, clear it out (!!!)
-        if(checkIfDatabaseExists(context, database.getName()))
-            context.deleteDatabase(database.getName());
+            return true;
+
+        // else, if there's already a database table, clear it out (!!!),
+        // unless it holds an upgrade that was interrupted
+        boolean resuming = false;
+        if(checkIfDatabaseExists(context, database.getName())) {
+            database.openForWriting();
+            resuming = new MigrationRunner(database).isStarted(MIGRATE_TASKS);
+            if(!resuming) {
+                database.close();
+                context.deleteDatabase(database.getName());
+            }
+        }
         database.openForWriting();
 
-        // initiate a backup
-        String backupFile = legacyBackup();
+        // initiate a backup, which was already made if we are resuming
+        String backupFile = resuming ? null : legacyBackup();
 
+        boolean success = false, restored = false;
         try {
+            ArrayList<Migration> migrations = new ArrayList<Migration>();
 
             // --- upgrade tasks table
             HashMap<String, Property<?>> propertyMap =
@@ -170,25 +192,45 @@ public class Astrid2To3UpgradeHelper {
             propertyMap.put(LegacyTaskModel.COMPLETION_DATE, Task.COMPLETION_DATE);
             propertyMap.put(LegacyTaskModel.CALENDAR_URI, Task.CALENDAR_URI);
             propertyMap.put(LegacyTaskModel.FLAGS, Task.FLAGS);
-            upgradeTable(context, tasksTable,
-                    propertyMap, new Task(), taskDao);
+            migrations.add(new LegacyTableMigration<Task>(MIGRATE_TASKS, context,
+                    tasksTable, propertyMap, new Task(), taskDao));
 
             // --- upgrade tags tables
-            migrateTagsToMetadata();
-
-            // --- upgrade alerts
-            AlarmDatabase alarmsDatabase = new AlarmDatabase();
-            alarmsDatabase.openForWriting();
-            propertyMap.clear();
-            propertyMap.put("_id", TransitionalAlarm.ID); //$NON-NLS-1$
-            propertyMap.put(LegacyAlertModel.TASK, TransitionalAlarm.TASK);
-            propertyMap.put(LegacyAlertModel.DATE, TransitionalAlarm.TIME);
-            upgradeTable(context, alertsTable, propertyMap, new TransitionalAlarm(),
-                    alarmsDatabase.getDao());
-            alarmsDatabase.close();
+            if(checkIfDatabaseExists(context, tagsTable) &&
+                    checkIfDatabaseExists(context, tagTaskTable))
+                migrations.add(migrateTagsToMetadata(context));
 
             // --- upgrade RTM sync mappings
-            migrateSyncMappingToMetadata();
+            if(checkIfDatabaseExists(context, syncTable))
+                migrations.add(new SyncMappingMigration(context));
+
+            if(!new MigrationRunner(database, CHUNK_SIZE).run(
+                    migrations.toArray(new Migration[migrations.size()]))) {
+                // resumed from its checkpoints, so the backup is not restored over it
+                backupFile = null;
+                return false;
+            }
+
+            // --- upgrade alerts, tracked in the alarm database they go to
+            if(checkIfDatabaseExists(context, alertsTable)) {
+                AlarmDatabase alarmsDatabase = new AlarmDatabase();
+                alarmsDatabase.openForWriting();
+                try {
+                    HashMap<String, Property<?>> alarmMap = new HashMap<String, Property<?>>();
+                    alarmMap.put("_id", TransitionalAlarm.ID); //$NON-NLS-1$
+                    alarmMap.put(LegacyAlertModel.TASK, TransitionalAlarm.TASK);
+                    alarmMap.put(LegacyAlertModel.DATE, TransitionalAlarm.TIME);
+                    if(!new MigrationRunner(alarmsDatabase, CHUNK_SIZE).run(
+                            new LegacyTableMigration<TransitionalAlarm>("2to3-alerts", context, //$NON-NLS-1$
+                                    alertsTable, alarmMap, new TransitionalAlarm(),
+                                    alarmsDatabase.getDao()))) {
+                        backupFile = null;
+                        return false;
+                    }
+                } finally {
+                    alarmsDatabase.close();
+                }
+            }
 
             // --- clean up database
             metadataService.cleanup();
@@ -202,13 +244,18 @@ public class Astrid2To3UpgradeHelper {
                 editor.putString(context.getString(R.string.p_rmd_default_random_hours),
                         Integer.toString(random * 24));
             }
+            success = true;
         } catch (Exception e) {
             exceptionService.reportError("backup-error", e); //$NON-NLS-1$
-            if(backupFile != null) {
+        } finally {
+            if(!success && backupFile != null) {
                 // try to restore the latest XML
                 TasksXmlImporter.importTasks(context, backupFile, null);
+                restored = true;
             }
         }
+        // restored tasks must not be migrated over again
+        return success || restored;
     }
 
     // --- database upgrade helpers
@@ -312,54 +359,80 @@ public class Astrid2To3UpgradeHelper {
     }
 
     /**
-     * Helper that reads entries from legacy database and row-by-row
-     * creates new models and saves them.
-     *
-     * @param context
-     * @param legacyTable
-     * @param propertyMap
-     * @param model
-     * @param dao
+     * Migration that reads entries from a legacy database in chunks ordered
+     * by id, and creates new models from them.
      */
-    @SuppressWarnings("nls")
-    private static final <TYPE extends AbstractModel> void upgradeTable(Context context, String legacyTable,
-            HashMap<String, Property<?>> propertyMap, TYPE model,
-            DatabaseDao<TYPE> dao) {
-
-        if(!checkIfDatabaseExists(context, legacyTable))
-            return;
-
-        SQLiteDatabase upgradeDb = new Astrid2UpgradeHelper(context, legacyTable,
-                null, 1).getReadableDatabase();
-
-        Cursor cursor = upgradeDb.rawQuery("SELECT * FROM " + legacyTable, null);
-        UpgradeVisitorContainer<TYPE> container = new UpgradeVisitorContainer<TYPE>();
-        container.cursor = cursor;
-        container.model = model;
-        ColumnUpgradeVisitor visitor = new ColumnUpgradeVisitor();
-        for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
-            model.clear();
-            for(Entry<String, Property<?>> entry : propertyMap.entrySet()) {
-                container.columnIndex = cursor.getColumnIndex(entry.getKey());
-                entry.getValue().accept(visitor, container);
-            }
+    private static class LegacyTableMigration<TYPE extends AbstractModel> extends Migration {
+
+        private final Context context;
+        private final String legacyTable;
+        private final HashMap<String, Property<?>> propertyMap;
+        private final DatabaseDao<TYPE> dao;
+        private final UpgradeVisitorContainer<TYPE> container = new UpgradeVisitorContainer<TYPE>();
+        private final ColumnUpgradeVisitor visitor = new ColumnUpgradeVisitor();
+        private SQLiteDatabase upgradeDb;
+
+        public LegacyTableMigration(String name, Context context, String legacyTable,
+                HashMap<String, Property<?>> propertyMap, TYPE model, DatabaseDao<TYPE> dao) {
+            super(name);
+            this.context = context;
+            this.legacyTable = legacyTable;
+            this.propertyMap = propertyMap;
+            this.dao = dao;
+            container.model = model;
+        }
 
-            // special tweak for adding upgrade notes to tasks
-            if(container.upgradeNotes != null) {
-                if(container.model.getValue(Task.NOTES).length() == 0)
-                    container.model.setValue(Task.NOTES, container.upgradeNotes.toString());
-                else {
-                    container.model.setValue(Task.NOTES,
-                            container.model.getValue(Task.NOTES) + "\n\n" +
-                            container.upgradeNotes);
+        @Override
+        protected void open() {
+            upgradeDb = new Astrid2UpgradeHelper(context, legacyTable,
+                    null, 1).getReadableDatabase();
+        }
+
+        @Override
+        protected void close() {
+            if(upgradeDb != null)
+                upgradeDb.close();
+        }
+
+        @Override
+        @SuppressWarnings("nls")
+        protected long migrateChunk(long checkpoint, int limit) {
+            Cursor cursor = upgradeDb.rawQuery("SELECT * FROM " + legacyTable +
+                    " WHERE _id > " + checkpoint + " ORDER BY _id LIMIT " + limit, null);
+            try {
+                if(cursor.getCount() == 0)
+                    return DONE;
+
+                long last = checkpoint;
+                int idColumn = cursor.getColumnIndex("_id");
+                TYPE model = container.model;
+                container.cursor = cursor;
+                for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                    model.clear();
+                    for(Entry<String, Property<?>> entry : propertyMap.entrySet()) {
+                        container.columnIndex = cursor.getColumnIndex(entry.getKey());
+                        entry.getValue().accept(visitor, container);
+                    }
+
+                    // special tweak for adding upgrade notes to tasks
+                    if(container.upgradeNotes != null) {
+                        if(model.getValue(Task.NOTES).length() == 0)
+                            model.setValue(Task.NOTES, container.upgradeNotes.toString());
+                        else {
+                            model.setValue(Task.NOTES,
+                                    model.getValue(Task.NOTES) + "\n\n" +
+                                    container.upgradeNotes);
+                        }
+                        container.upgradeNotes = null;
+                    }
+                    dao.createNew(model);
+                    last = cursor.getLong(idColumn);
                 }
-                container.upgradeNotes = null;
+                return last;
+            } finally {
+                cursor.close();
             }
-            dao.createNew(container.model);
         }
-        cursor.close();
-
-        upgradeDb.close();
     }
 
     private static boolean checkIfDatabaseExists(Context context, String legacyTable) {
@@ -367,145 +440,110 @@ public class Astrid2To3UpgradeHelper {
     }
 
     /**
-     * Move data from tags tables into metadata table. We do this by looping
-     * through both the tags and tagTaskMap databases, reading data from
-     * both and adding to the Metadata table. This way, we are able to
-     * do everything in one pass without loading too much into memory
+     * Move data from tags tables into metadata table, joining the tag map
+     * with the tags it refers to in one statement per chunk
      */
     @SuppressWarnings("nls")
-    private void migrateTagsToMetadata() {
-        Context context = ContextManager.getContext();
+    private Migration migrateTagsToMetadata(Context context) {
+        String map = "legacy_map." + tagTaskTable;
+        String tags = "legacy_tags." + tagsTable;
+        String insert = String.format("INSERT INTO %s (%s, %s, %s, %s) " +
+                "SELECT %s.task, '%s', %s.name, %d FROM %s JOIN %s ON %s._id = %s.tag WHERE 1",
+                Metadata.TABLE.name, Metadata.TASK.name, Metadata.KEY.name,
+                TagService.TAG.name, Metadata.CREATION_DATE.name,
+                map, TagService.KEY, tags, DateUtilities.now(), map, tags, tags, map);
+        return new InsertSelectMigration("2to3-tags", database, map, insert).
+            attach("legacy_map", context.getDatabasePath(tagTaskTable).getAbsolutePath()).
+            attach("legacy_tags", context.getDatabasePath(tagsTable).getAbsolutePath());
+    }
 
-        if(!checkIfDatabaseExists(context, tagsTable) ||
-                !checkIfDatabaseExists(context, tagTaskTable))
-            return;
+    /**
+     * Move data from sync table into metadata table. Remote ids have to be
+     * split, so rows are converted one by one.
+     */
+    private class SyncMappingMigration extends Migration {
 
-        SQLiteDatabase tagsDb = new Astrid2UpgradeHelper(context, tagsTable,
-                null, 1).getReadableDatabase();
-        SQLiteDatabase tagTaskDb = new Astrid2UpgradeHelper(context, tagTaskTable,
-                null, 1).getReadableDatabase();
+        private final Context context;
+        private SQLiteDatabase syncDb;
 
-        Cursor tagCursor = tagsDb.rawQuery("SELECT _id, name FROM " + tagsTable +
-                " ORDER BY _id ASC", null);
-        Cursor mapCursor = null;
-        try {
-            mapCursor = tagTaskDb.rawQuery("SELECT tag, task FROM " + tagTaskTable +
-                " ORDER BY tag ASC", null);
-            if(tagCursor.getCount() == 0)
-                return;
-
-            Metadata metadata = new Metadata();
-            metadata.setValue(Metadata.KEY, TagService.KEY);
-            long tagId = -1;
-            String tag = null;
-            for(mapCursor.moveToFirst(); !mapCursor.isAfterLast(); mapCursor.moveToNext()) {
-                long mapTagId = mapCursor.getLong(0);
-
-                while(mapTagId > tagId && !tagCursor.isLast()) {
-                    tagCursor.moveToNext();
-                    tagId = tagCursor.getLong(0);
-                    tag = null;
-                }
+        public SyncMappingMigration(Context context) {
+            super("2to3-sync"); //$NON-NLS-1$
+            this.context = context;
+        }
+
+        @Override
+        protected void open() {
+            syncDb = new Astrid2UpgradeHelper(context, syncTable,
+                    null, 1).getReadableDatabase();
+        }
+
+        @Override
+        protected void close() {
+            if(syncDb != null)
+                syncDb.close();
+        }
 
-                if(mapTagId == tagId) {
-                    if(tag == null)
-                        tag = tagCursor.getString(1);
-                    long task = mapCursor.getLong(1);
+        @Override
+        @SuppressWarnings("nls")
+        protected long migrateChunk(long checkpoint, int limit) {
+            Cursor cursor = syncDb.rawQuery("SELECT rowid, task, remoteId FROM " + syncTable +
+                    " WHERE rowid > " + checkpoint + " ORDER BY rowid LIMIT " + limit, null);
+            try {
+                if(cursor.getCount() == 0)
+                    return DONE;
+
+                long last = checkpoint;
+                Metadata metadata = new Metadata();
+                for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                    last = cursor.getLong(0);
+                    long task = cursor.getLong(1);
+                    String id = cursor.getString(2);
+                    if(TextUtils.isEmpty(id))
+                        continue;
+
+                    StringTokenizer strtok = new StringTokenizer(id, "|");
+                    String taskId = strtok.nextToken();
+                    String taskSeriesId = strtok.nextToken();
+                    String listId = strtok.nextToken();
+
+                    metadata.clear();
+                    metadata.setValue(Metadata.KEY, "rmilk");
                     metadata.setValue(Metadata.TASK, task);
-                    metadata.setValue(Metadata.KEY, TagService.KEY);
-                    metadata.setValue(TagService.TAG, tag);
+                    metadata.setValue(Metadata.VALUE1, (listId));
+                    metadata.setValue(Metadata.VALUE2, (taskSeriesId));
+                    metadata.setValue(Metadata.VALUE3, (taskId));
+                    metadata.setValue(Metadata.VALUE4,  "0"); // not accurate, but not important
                     metadataDao.createNew(metadata);
-                    metadata.clearValue(Metadata.ID);
                 }
+                return last;
+            } finally {
+                cursor.close();
             }
-        } finally {
-            tagCursor.close();
-            if(mapCursor != null)
-                mapCursor.close();
-            tagsDb.close();
-            tagTaskDb.close();
         }
     }
 
     /**
-     * Move data from sync table into metadata table.
+     * Move data from alert table into metadata table, in one statement
+     * per chunk
+     * @return true if the migration is finished
      */
     @SuppressWarnings("nls")
-    private void migrateSyncMappingToMetadata() {
-        Context context = ContextManager.getContext();
-
-        if(!checkIfDatabaseExists(context, syncTable))
-            return;
-
-        SQLiteDatabase syncDb = new Astrid2UpgradeHelper(context, syncTable,
-                null, 1).getReadableDatabase();
-
-        Cursor cursor = syncDb.rawQuery("SELECT task, remoteId FROM " + syncTable, null);
-        try {
-            if(cursor.getCount() == 0)
-                return;
-
-            Metadata metadata = new Metadata();
-            metadata.setValue(Metadata.KEY, "rmilk");
-            for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
-                long task = cursor.getLong(0);
-                String id = cursor.getString(1);
-                if(TextUtils.isEmpty(id))
-                    continue;
-
-                StringTokenizer strtok = new StringTokenizer(id, "|");
-                String taskId = strtok.nextToken();
-                String taskSeriesId = strtok.nextToken();
-                String listId = strtok.nextToken();
-
-                metadata.setValue(Metadata.TASK, task);
-                metadata.setValue(Metadata.VALUE1, (listId));
-                metadata.setValue(Metadata.VALUE2, (taskSeriesId));
-                metadata.setValue(Metadata.VALUE3, (taskId));
-                metadata.setValue(Metadata.VALUE4,  "0"); // not accurate, but not important
-                metadataDao.createNew(metadata);
-                metadata.clearValue(Metadata.ID);
-            }
-        } finally {
-            cursor.close();
-            syncDb.close();
-        }
-    }
-
-    /**
-     * Move data from alert table into metadata table.
-     */
-    private void migrateAlarmsToMetadata() {
+    private boolean migrateAlarmsToMetadata() {
         Context context = ContextManager.getContext();
 
         if(!checkIfDatabaseExists(context, AlarmDatabase.NAME))
-            return;
-
-        AlarmDatabase alarmsDatabase = new AlarmDatabase();
-        DatabaseDao<TransitionalAlarm> dao = new DatabaseDao<TransitionalAlarm>(
-                TransitionalAlarm.class, alarmsDatabase);
-
-        TodorooCursor<TransitionalAlarm> cursor = dao.query(Query.select(TransitionalAlarm.PROPERTIES));
-        try {
-            if(cursor.getCount() == 0)
-                return;
-
-            Metadata metadata = new Metadata();
-            metadata.setValue(Metadata.KEY, AlarmFields.METADATA_KEY);
-            for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
-                long task = cursor.get(TransitionalAlarm.TASK);
-                long time = cursor.get(TransitionalAlarm.TIME);
-
-                metadata.setValue(Metadata.TASK, task);
-                metadata.setValue(AlarmFields.TIME, time);
-                metadata.setValue(AlarmFields.TYPE, AlarmFields.TYPE_SINGLE);
-                metadataDao.createNew(metadata);
-                metadata.clearValue(Metadata.ID);
-            }
-        } finally {
-            cursor.close();
-            alarmsDatabase.close();
-        }
+            return true;
+
+        String alarms = "legacy_alarms." + TransitionalAlarm.TABLE.name;
+        String insert = String.format("INSERT INTO %s (%s, %s, %s, %s, %s) " +
+                "SELECT %s, '%s', %s, %d, %d FROM %s WHERE 1",
+                Metadata.TABLE.name, Metadata.TASK.name, Metadata.KEY.name,
+                AlarmFields.TIME.name, AlarmFields.TYPE.name, Metadata.CREATION_DATE.name,
+                TransitionalAlarm.TASK.name, AlarmFields.METADATA_KEY, TransitionalAlarm.TIME.name,
+                AlarmFields.TYPE_SINGLE, DateUtilities.now(), alarms);
+        return new MigrationRunner(database, CHUNK_SIZE).run(
+                new InsertSelectMigration("3to3_1-alarms", database, alarms, insert).
+                attach("legacy_alarms", context.getDatabasePath(AlarmDatabase.NAME).getAbsolutePath()));
     }
 
 
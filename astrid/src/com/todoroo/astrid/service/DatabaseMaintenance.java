@@ -0,0 +1,281 @@
+/**
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.database.Cursor;
+import android.util.Log;
+
+import com.todoroo.andlib.service.Autowired;
+import com.todoroo.andlib.service.DependencyInjectionService;
+import com.todoroo.andlib.service.ExceptionService;
+import com.todoroo.andlib.utility.DateUtilities;
+import com.todoroo.andlib.utility.Preferences;
+import com.todoroo.astrid.dao.Database;
+
+/**
+ * Keeps the database small and fast: deletes orphaned rows, refreshes
+ * planner statistics, checks integrity and returns free pages to the file
+ * system. Each job runs on its own schedule, which is persisted, and gets
+ * a budget limiting the work it does per run. Jobs are run in the
+ * background by {@link DatabaseMaintenanceService}. Work that locks the
+ * database for long, like a full vacuum, waits until the device is idle.
+ */
+@SuppressWarnings("nls")
+public class DatabaseMaintenance {
+
+    /** prefix of the preference holding the last run time of each job */
+    private static final String PREF_LAST_RUN = "db-maint-";
+
+    /** time a run may take before the remaining jobs wait for the next one */
+    private static final long RUN_BUDGET = 30 * 1000L;
+
+    /** free pages needed, in total and as fraction, before vacuuming */
+    private static final long VACUUM_MIN_FREE_PAGES = 64;
+    private static final double VACUUM_FREE_RATIO = 0.2;
+
+    /** value of PRAGMA auto_vacuum in incremental mode */
+    private static final long AUTO_VACUUM_INCREMENTAL = 2;
+
+    private static final String TAG = "astrid-db-maintenance";
+
+    /** returned by jobs that wait for an idle run to do their work */
+    protected static final int DEFERRED = -1;
+
+    @Autowired Database database;
+
+    @Autowired TaskService taskService;
+
+    @Autowired MetadataService metadataService;
+
+    @Autowired ExceptionService exceptionService;
+
+    private final Job[] jobs;
+
+    /** whether the current run may lock the database for long */
+    private boolean idle = false;
+
+    public DatabaseMaintenance() {
+        DependencyInjectionService.getInstance().inject(this);
+        jobs = new Job[] {
+            new CleanupJob(),
+            new AnalyzeJob(),
+            new IntegrityJob(),
+            new VacuumJob(),
+        };
+    }
+
+    // --- jobs
+
+    /**
+     * A maintenance job
+     */
+    public abstract static class Job {
+        public final String name;
+
+        /** time between runs */
+        public final long interval;
+
+        /** limit on the work done per run, meaning depends on the job */
+        public final int budget;
+
+        protected Job(String name, long interval, int budget) {
+            this.name = name;
+            this.interval = interval;
+            this.budget = budget;
+        }
+
+        /**
+         * @return number of rows or pages touched, or {@link #DEFERRED} if
+         * the job did nothing and should run again in an idle run
+         */
+        protected abstract int run();
+    }
+
+    /**
+     * Outcome of one job run
+     */
+    public static final class Result {
+        public final String job;
+        public final long millis;
+        public final int rows;
+
+        public Result(String job, long millis, int rows) {
+            this.job = job;
+            this.millis = millis;
+            this.rows = rows;
+        }
+
+        @Override
+        public String toString() {
+            return job + ": " + rows + " rows in " + millis + "ms";
+        }
+    }
+
+    /** Deletes untitled tasks and metadata of deleted tasks */
+    private class CleanupJob extends Job {
+        public CleanupJob() {
+            super("cleanup", DateUtilities.ONE_DAY, 0);
+        }
+
+        @Override
+        protected int run() {
+            return taskService.cleanup() + metadataService.cleanup();
+        }
+    }
+
+    /** Refreshes statistics the query planner uses to pick indexes */
+    private class AnalyzeJob extends Job {
+        public AnalyzeJob() {
+            super("analyze", DateUtilities.ONE_WEEK, 0);
+        }
+
+        @Override
+        protected int run() {
+            database.execSQL("ANALYZE");
+            return 0;
+        }
+    }
+
+    /** Reports corruption. Budget is the number of problems listed */
+    private class IntegrityJob extends Job {
+        public IntegrityJob() {
+            super("integrity", 4 * DateUtilities.ONE_WEEK, 10);
+        }
+
+        @Override
+        protected int run() {
+            StringBuilder problems = new StringBuilder();
+            int count = 0;
+            Cursor cursor = database.rawQuery("PRAGMA quick_check(" + budget + ")", null);
+            try {
+                for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                    String message = cursor.getString(0);
+                    if("ok".equals(message))
+                        continue;
+                    problems.append(message).append('\n');
+                    count++;
+                }
+            } finally {
+                cursor.close();
+            }
+            if(count > 0)
+                exceptionService.reportError("db-integrity-check",
+                        new IllegalStateException(problems.toString()));
+            return count;
+        }
+    }
+
+    /**
+     * Returns free pages to the file system once enough have piled up.
+     * Budget is the number of pages freed per run. Databases created
+     * without incremental auto vacuum are converted by one full vacuum,
+     * which has no budget and so only runs when the device is idle.
+     */
+    private class VacuumJob extends Job {
+        public VacuumJob() {
+            super("vacuum", DateUtilities.ONE_DAY, 512);
+        }
+
+        @Override
+        protected int run() {
+            long pages = database.simpleQueryForLong("PRAGMA page_count");
+            long free = database.simpleQueryForLong("PRAGMA freelist_count");
+            if(free < VACUUM_MIN_FREE_PAGES || free < pages * VACUUM_FREE_RATIO)
+                return 0;
+
+            if(database.simpleQueryForLong("PRAGMA auto_vacuum") != AUTO_VACUUM_INCREMENTAL) {
+                // the new mode only takes effect after a full vacuum, which
+                // rewrites the whole file while holding the database lock
+                if(!idle)
+                    return DEFERRED;
+                Log.i(TAG, "full vacuum of " + pages + " pages, " + free + " free");
+                long start = System.currentTimeMillis();
+                database.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+                database.execSQL("VACUUM");
+                Log.i(TAG, "full vacuum done in " + (System.currentTimeMillis() - start) + "ms");
+            } else {
+                // the pragma frees one page per result row, so every row
+                // must be stepped through
+                Cursor cursor = database.rawQuery("PRAGMA incremental_vacuum(" + budget + ")", null);
+                try {
+                    while(cursor.moveToNext()) {
+                        // each row is one freed page
+                    }
+                } finally {
+                    cursor.close();
+                }
+            }
+            return (int) (free - database.simpleQueryForLong("PRAGMA freelist_count"));
+        }
+    }
+
+    // --- scheduling
+
+    /**
+     * Run every job whose interval has passed, as when the device is not
+     * idle
+     *
+     * @return results of the jobs that ran
+     */
+    public List<Result> runDueJobs() {
+        return runDueJobs(false);
+    }
+
+    /**
+     * Run every job whose interval has passed, until the run budget is
+     * used up. Jobs that fail are reported and retried on the next run,
+     * jobs that were deferred on the next idle run.
+     *
+     * @param idleRun true if the device is idle, so work that locks the
+     * database for long may run
+     * @return results of the jobs that ran
+     */
+    public List<Result> runDueJobs(boolean idleRun) {
+        idle = idleRun;
+        ArrayList<Result> results = new ArrayList<Result>();
+        long runStart = DateUtilities.now();
+        for(Job job : jobs) {
+            long now = DateUtilities.now();
+            if(now - runStart > RUN_BUDGET)
+                break;
+            if(now - getLastRun(job) < job.interval)
+                continue;
+
+            try {
+                long start = System.currentTimeMillis();
+                int rows = job.run();
+                if(rows == DEFERRED) {
+                    Log.i(TAG, job.name + ": deferred until idle");
+                    continue;
+                }
+                Result result = new Result(job.name, System.currentTimeMillis() - start, rows);
+                Preferences.setLong(PREF_LAST_RUN + job.name, DateUtilities.now());
+                Log.i(TAG, result.toString());
+                results.add(result);
+            } catch (RuntimeException e) {
+                exceptionService.reportError("db-maintenance-" + job.name, e);
+            }
+        }
+        return results;
+    }
+
+    /** @return time the given job last completed, 0 if never */
+    public static long getLastRun(Job job) {
+        return Preferences.getLong(PREF_LAST_RUN + job.name, 0);
+    }
+
+    /** Make every job due, e.g. after restoring a backup */
+    public void resetSchedule() {
+        for(Job job : jobs)
+            Preferences.clear(PREF_LAST_RUN + job.name);
+    }
+
+    public Job[] getJobs() {
+        return jobs;
+    }
+
+}
@@ -0,0 +1,75 @@
+/**
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.service;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.IBinder;
+import android.os.PowerManager;
+
+import com.todoroo.andlib.service.ContextManager;
+import com.todoroo.andlib.utility.DateUtilities;
+import com.todoroo.astrid.core.PluginServices;
+
+/**
+ * Runs {@link DatabaseMaintenance} jobs that are due on a background
+ * thread, some time after startup and then about once a day. Runs while
+ * the device is charging with the screen off count as idle, so they may
+ * lock the database for long.
+ */
+public class DatabaseMaintenanceService extends Service {
+
+    /** time after startup before the first run, so launch is not slowed */
+    private static final long MAINTENANCE_OFFSET = 15 * 60 * 1000L;
+
+    private static final long MAINTENANCE_INTERVAL = AlarmManager.INTERVAL_DAY;
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    @Override
+    public void onStart(Intent intent, final int startId) {
+        ContextManager.setContext(this);
+        final boolean idle = isIdle(this);
+        new Thread(new Runnable() {
+            public void run() {
+                try {
+                    new DatabaseMaintenance().runDueJobs(idle);
+                } catch (Exception e) {
+                    PluginServices.getExceptionService().reportError("db-maintenance", e); //$NON-NLS-1$
+                } finally {
+                    stopSelf(startId);
+                }
+            }
+        }).start();
+    }
+
+    /**
+     * @return true if the screen is off and the device is plugged in, so
+     * nobody waits for the database and long work costs no battery
+     */
+    private static boolean isIdle(Context context) {
+        if(((PowerManager) context.getSystemService(Context.POWER_SERVICE)).isScreenOn())
+            return false;
+        Intent battery = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        return battery != null && battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+    }
+
+    public static void scheduleService(Context context) {
+        AlarmManager am = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        PendingIntent pendingIntent = PendingIntent.getService(context, 0,
+                new Intent(context, DatabaseMaintenanceService.class), PendingIntent.FLAG_UPDATE_CURRENT);
+        // wake up for it, otherwise it only runs once the screen is back on
+        am.setInexactRepeating(AlarmManager.RTC_WAKEUP, DateUtilities.now() + MAINTENANCE_OFFSET,
+                MAINTENANCE_INTERVAL, pendingIntent);
+    }
+
+}
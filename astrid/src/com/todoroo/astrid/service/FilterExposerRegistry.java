@@ -0,0 +1,283 @@
+/**
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+import org.weloveastrid.rmilk.MilkFilterExposer;
+
+import android.content.ContentValues;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.util.Log;
+
+import com.todoroo.andlib.data.AbstractDatabase.TableUpdateListener;
+import com.todoroo.astrid.api.AstridFilterExposer;
+import com.todoroo.astrid.api.FilterListItem;
+import com.todoroo.astrid.core.CoreFilterExposer;
+import com.todoroo.astrid.core.CustomFilterExposer;
+import com.todoroo.astrid.data.Metadata;
+import com.todoroo.astrid.data.StoreObject;
+import com.todoroo.astrid.data.TagData;
+import com.todoroo.astrid.data.Task;
+import com.todoroo.astrid.gtasks.GtasksFilterExposer;
+import com.todoroo.astrid.producteev.ProducteevFilterExposer;
+import com.todoroo.astrid.producteev.sync.ProducteevTask;
+import com.todoroo.astrid.tags.TagFilterExposer;
+import com.todoroo.astrid.timers.TimerFilterExposer;
+
+/**
+ * Registry of the filter exposers that ship with Astrid. Instead of
+ * answering a broadcast each time the filter list is shown, these exposers
+ * are called directly and their output is kept until one of the tables or
+ * metadata keys it was built from changes. Add-ons in other packages are
+ * still asked for their filters by broadcast.
+ * <p>
+ * Exposers that read settings, such as sync logins, depend on
+ * {@link #SETTINGS} and are reloaded by {@link #onSettingsChanged()}.
+ * Exposers built from a cheaper summary implement
+ * {@link SummarizedFilterExposer} and are reloaded when it changes.
+ */
+@SuppressWarnings("nls")
+public class FilterExposerRegistry implements TableUpdateListener {
+
+    /** dependency of exposers that read settings, in place of a table */
+    public static final String SETTINGS = "settings";
+
+    /**
+     * Exposer whose filters are built from a summary that is cheaper to
+     * read than the filters themselves. Its filters are kept as long as
+     * the summary is equal to the one they were built from.
+     */
+    public interface SummarizedFilterExposer extends AstridFilterExposer {
+
+        /**
+         * Runs queries, so this is only called off the UI thread
+         * @return summary of what the filters are built from
+         */
+        public Object getSummary();
+    }
+
+    private static final FilterExposerRegistry INSTANCE = new FilterExposerRegistry();
+
+    static {
+        // same order as the manifest priorities of the broadcast receivers
+        INSTANCE.register(new TimerFilterExposer(), new String[] { Task.TABLE.name });
+        INSTANCE.register(new CoreFilterExposer(), new String[0]);
+        // the assigned-by-me filter reads the act.fm user id
+        INSTANCE.register(new CustomFilterExposer(), new String[] { StoreObject.TABLE.name, SETTINGS });
+        // tag counts, tag metadata and updates are covered by its summary
+        INSTANCE.register(new TagFilterExposer(), new String[] { TagData.TABLE.name });
+        INSTANCE.register(new GtasksFilterExposer(), new String[] { StoreObject.TABLE.name, SETTINGS });
+        INSTANCE.register(new ProducteevFilterExposer(), new String[] { StoreObject.TABLE.name, SETTINGS },
+                ProducteevTask.METADATA_KEY);
+        INSTANCE.register(new MilkFilterExposer(), new String[] { StoreObject.TABLE.name, SETTINGS });
+    }
+
+    public static FilterExposerRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    private final ArrayList<Entry> entries = new ArrayList<Entry>();
+
+    FilterExposerRegistry() {
+        // use getInstance()
+    }
+
+    // --- registration
+
+    /**
+     * Register an exposer. Its filters are added after those of exposers
+     * that were registered earlier.
+     *
+     * @param exposer exposer to call
+     * @param tables tables the exposer reads, and {@link #SETTINGS} if it
+     * reads settings
+     * @param metadataKeys metadata keys the exposer reads
+     */
+    public synchronized void register(AstridFilterExposer exposer, String[] tables,
+            String... metadataKeys) {
+        entries.add(new Entry(exposer, tables, metadataKeys));
+    }
+
+    /**
+     * @param className name of a filter exposer class
+     * @return true if that exposer is served by this registry, so it does
+     * not need to be asked by broadcast
+     */
+    public synchronized boolean isRegistered(String className) {
+        for(Entry entry : entries)
+            if(entry.exposer.getClass().getName().equals(className))
+                return true;
+        return false;
+    }
+
+    // --- filters
+
+    /**
+     * Gets the filters of every registered exposer, calling only those
+     * whose output has been invalidated. Runs queries, so don't call this
+     * from the UI thread.
+     *
+     * @return copies of the filters, which callers are free to modify
+     */
+    public FilterListItem[] getFilters() {
+        ArrayList<Entry> snapshot;
+        synchronized(this) {
+            snapshot = new ArrayList<Entry>(entries);
+        }
+
+        ArrayList<FilterListItem> result = new ArrayList<FilterListItem>();
+        for(Entry entry : snapshot) {
+            FilterListItem[] filters = entry.getFilters();
+            if(filters != null)
+                Collections.addAll(result, filters);
+        }
+        return copy(result.toArray(new FilterListItem[result.size()]));
+    }
+
+    /**
+     * Forget the output of every exposer, e.g. when a setting they read
+     * has changed
+     */
+    public void invalidateAll() {
+        ArrayList<Entry> snapshot;
+        synchronized(this) {
+            snapshot = new ArrayList<Entry>(entries);
+        }
+        for(Entry entry : snapshot)
+            entry.invalidate();
+    }
+
+    /**
+     * Forget the output of exposers that read settings, e.g. after a sync
+     * login. Table changes are picked up on their own.
+     */
+    public void onSettingsChanged() {
+        onTableUpdated(SETTINGS, null);
+    }
+
+    @Override
+    public void onTableUpdated(String table, ContentValues values) {
+        String key = null;
+        if(Metadata.TABLE.name.equals(table) && values != null)
+            key = values.getAsString(Metadata.KEY.name);
+
+        ArrayList<Entry> snapshot;
+        synchronized(this) {
+            snapshot = new ArrayList<Entry>(entries);
+        }
+        for(Entry entry : snapshot) {
+            if(entry.dependsOn(table, key))
+                entry.invalidate();
+        }
+    }
+
+    /**
+     * Deep copy filters by writing them to a parcel, as the broadcast did,
+     * because the filter adapter appends task counts to listing titles
+     */
+    private static FilterListItem[] copy(FilterListItem[] items) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.writeParcelableArray(items, 0);
+            parcel.setDataPosition(0);
+            Parcelable[] read = parcel.readParcelableArray(FilterListItem.class.getClassLoader());
+            FilterListItem[] result = new FilterListItem[read.length];
+            System.arraycopy(read, 0, result, 0, read.length);
+            return result;
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    // --- entries
+
+    /**
+     * Registered exposer and its cached output
+     */
+    private static class Entry {
+        private final AstridFilterExposer exposer;
+        private final String[] tables;
+        private final String[] metadataKeys;
+
+        private FilterListItem[] filters = null;
+        private boolean valid = false;
+
+        /** summary the filters were built from, for summarized exposers */
+        private Object summary = null;
+
+        /** incremented on every invalidation, so stale loads are dropped */
+        private int generation = 0;
+
+        public Entry(AstridFilterExposer exposer, String[] tables, String[] metadataKeys) {
+            this.exposer = exposer;
+            this.tables = tables;
+            this.metadataKeys = metadataKeys;
+        }
+
+        /**
+         * @param key metadata key that was written, or null if unknown
+         */
+        public boolean dependsOn(String table, String key) {
+            for(String dependency : tables)
+                if(dependency.equals(table))
+                    return true;
+            if(metadataKeys.length == 0 || !Metadata.TABLE.name.equals(table))
+                return false;
+            if(key == null)
+                return true;
+            for(String metadataKey : metadataKeys)
+                if(metadataKey.equals(key))
+                    return true;
+            return false;
+        }
+
+        public synchronized void invalidate() {
+            generation++;
+            valid = false;
+            filters = null;
+            summary = null;
+        }
+
+        public FilterListItem[] getFilters() {
+            // exposers keep state in fields, so load one at a time
+            synchronized(exposer) {
+                int loading;
+                Object loadingSummary = null;
+                try {
+                    if(exposer instanceof SummarizedFilterExposer)
+                        loadingSummary = ((SummarizedFilterExposer) exposer).getSummary();
+                } catch (Exception e) {
+                    Log.e("filter-registry", "Error summarizing " + exposer.getClass().getSimpleName(), e);
+                }
+                synchronized(this) {
+                    if(valid && (loadingSummary == null || loadingSummary.equals(summary)))
+                        return filters;
+                    loading = generation;
+                }
+
+                FilterListItem[] loaded;
+                try {
+                    loaded = exposer.getFilters();
+                } catch (Exception e) {
+                    Log.e("filter-registry", "Error loading " + exposer.getClass().getSimpleName(), e);
+                    return null;
+                }
+
+                synchronized(this) {
+                    // a change came in while loading, so load again next time
+                    if(generation == loading) {
+                        filters = loaded;
+                        summary = loadingSummary;
+                        valid = true;
+                    }
+                }
+                return loaded;
+            }
+        }
+    }
+
+}
@@ -35,21 +35,11 @@ public class MetadataService {
     // --- service layer
 
     /**
-     * Clean up metadata. Typically called on startup
+     * Clean up metadata of tasks that no longer exist
+     * @return number of rows deleted
      */
-    public void cleanup() {
-        TodorooCursor<Metadata> cursor = metadataDao.fetchDangling(Metadata.ID);
-        try {
-            if(cursor.getCount() == 0)
-                return;
-
-            for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
-                long id = cursor.getLong(0);
-                metadataDao.delete(id);
-            }
-        } finally {
-            cursor.close();
-        }
+    public int cleanup() {
+        return metadataDao.deleteDangling();
     }
 
     /**
@@ -0,0 +1,83 @@
+/**
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed size log of startup phase timings. Once full, the oldest entries
+ * are overwritten, so the log covers the last few startups of the process.
+ */
+public class StartupLog {
+
+    /**
+     * Timing of one phase
+     */
+    public static final class Entry {
+        public final String phase;
+        public final String stage;
+        public final String thread;
+        /** start of the phase, relative to the start of startup */
+        public final long offset;
+        public final long millis;
+        public final boolean failed;
+
+        public Entry(String phase, String stage, String thread, long offset,
+                long millis, boolean failed) {
+            this.phase = phase;
+            this.stage = stage;
+            this.thread = thread;
+            this.offset = offset;
+            this.millis = millis;
+            this.failed = failed;
+        }
+
+        @Override
+        @SuppressWarnings("nls")
+        public String toString() {
+            return String.format("%s [%s] +%dms %dms on %s%s", phase, stage,
+                    offset, millis, thread, failed ? " FAILED" : "");
+        }
+    }
+
+    private final Entry[] entries;
+    private int next = 0;
+    private int count = 0;
+
+    public StartupLog(int capacity) {
+        entries = new Entry[capacity];
+    }
+
+    public synchronized void add(Entry entry) {
+        entries[next] = entry;
+        next = (next + 1) % entries.length;
+        if(count < entries.length)
+            count++;
+    }
+
+    /** @return entries from oldest to newest */
+    public synchronized List<Entry> getEntries() {
+        ArrayList<Entry> result = new ArrayList<Entry>(count);
+        int first = (next - count + entries.length) % entries.length;
+        for(int i = 0; i < count; i++)
+            result.add(entries[(first + i) % entries.length]);
+        return result;
+    }
+
+    public synchronized void clear() {
+        for(int i = 0; i < entries.length; i++)
+            entries[i] = null;
+        next = count = 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for(Entry entry : getEntries())
+            builder.append(entry).append('\n');
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,231 @@
+/**
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs startup as a graph of named phases. Critical phases run on the
+ * calling thread; deferred phases run on a small background executor
+ * once {@link #startBackground()} is called, e.g. after the first frame,
+ * and idle phases after all deferred ones are done. A phase starts once
+ * the phases it depends on have finished, whether they failed or not.
+ * Each phase's timing is written to a {@link StartupLog}.
+ */
+public class StartupScheduler {
+
+    /** threads running deferred and idle phases */
+    private static final int BACKGROUND_THREADS = 2;
+
+    /** phases that can wait for a background thread */
+    private static final int BACKGROUND_QUEUE_SIZE = 32;
+
+    public enum Stage {
+        /** needed before the task list can be shown */
+        CRITICAL,
+        /** needed soon after, e.g. alarms and sync */
+        DEFERRED,
+        /** can wait until everything else is done */
+        IDLE
+    }
+
+    /**
+     * A startup step
+     */
+    public abstract static class Phase {
+        public final String name;
+        public final Stage stage;
+        final String[] dependencies;
+
+        /**
+         * @param dependencies names of phases that have to finish first.
+         * They must be added before this one and not be in a later stage
+         */
+        public Phase(String name, Stage stage, String... dependencies) {
+            this.name = name;
+            this.stage = stage;
+            this.dependencies = dependencies;
+        }
+
+        protected abstract void run();
+    }
+
+    private final StartupLog log;
+    private final long startTime = System.currentTimeMillis();
+
+    private final LinkedHashMap<String, Phase> phases = new LinkedHashMap<String, Phase>();
+
+    /** unfinished dependencies of each waiting background phase */
+    private final LinkedHashMap<Phase, Integer> waiting = new LinkedHashMap<Phase, Integer>();
+    private final HashMap<String, ArrayList<Phase>> dependents = new HashMap<String, ArrayList<Phase>>();
+    private int deferredRemaining = 0;
+    private int backgroundRemaining = 0;
+
+    private ThreadPoolExecutor executor = null;
+
+    public StartupScheduler(StartupLog log) {
+        this.log = log;
+    }
+
+    @SuppressWarnings("nls")
+    public synchronized void add(Phase phase) {
+        if(phases.containsKey(phase.name))
+            throw new IllegalArgumentException("Duplicate startup phase " + phase.name);
+        for(String dependency : phase.dependencies) {
+            Phase other = phases.get(dependency);
+            if(other == null || other.stage.compareTo(phase.stage) > 0)
+                throw new IllegalArgumentException("Startup phase " + phase.name +
+                        " can not depend on " + dependency);
+        }
+        phases.put(phase.name, phase);
+    }
+
+    /** Called when a phase throws. Does nothing by default */
+    protected void onPhaseFailed(Phase phase, RuntimeException e) {
+        //
+    }
+
+    // --- critical phases
+
+    /**
+     * Run critical phases on this thread, in the order they were added.
+     * An exception thrown by a critical phase stops startup and is passed
+     * on to the caller.
+     */
+    public void runCritical() {
+        for(Phase phase : phases.values()) {
+            if(phase.stage == Stage.CRITICAL)
+                run(phase, true);
+        }
+    }
+
+    /** Record a point in time, such as the first frame being shown */
+    public void mark(String name) {
+        log.add(new StartupLog.Entry(name, Stage.CRITICAL.name(),
+                Thread.currentThread().getName(), 0,
+                System.currentTimeMillis() - startTime, false));
+    }
+
+    private void run(Phase phase, boolean rethrow) {
+        long start = System.currentTimeMillis();
+        boolean failed = true;
+        try {
+            phase.run();
+            failed = false;
+        } catch (RuntimeException e) {
+            onPhaseFailed(phase, e);
+            if(rethrow)
+                throw e;
+        } finally {
+            log.add(new StartupLog.Entry(phase.name, phase.stage.name(),
+                    Thread.currentThread().getName(), start - startTime,
+                    System.currentTimeMillis() - start, failed));
+        }
+    }
+
+    // --- background phases
+
+    /**
+     * Start running deferred and idle phases in the background. Critical
+     * phases must have run.
+     */
+    public synchronized void startBackground() {
+        if(executor != null)
+            return;
+        executor = new ThreadPoolExecutor(BACKGROUND_THREADS, BACKGROUND_THREADS,
+                0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(BACKGROUND_QUEUE_SIZE),
+                new BackgroundThreadFactory(), new ThreadPoolExecutor.CallerRunsPolicy());
+
+        for(Phase phase : phases.values()) {
+            if(phase.stage == Stage.CRITICAL)
+                continue;
+            int count = 0;
+            for(String dependency : phase.dependencies) {
+                if(phases.get(dependency).stage == Stage.CRITICAL)
+                    continue;
+                count++;
+                ArrayList<Phase> list = dependents.get(dependency);
+                if(list == null) {
+                    list = new ArrayList<Phase>();
+                    dependents.put(dependency, list);
+                }
+                list.add(phase);
+            }
+            if(phase.stage == Stage.DEFERRED)
+                deferredRemaining++;
+            waiting.put(phase, count);
+            backgroundRemaining++;
+        }
+
+        if(backgroundRemaining == 0) {
+            executor.shutdown();
+            return;
+        }
+        for(Phase phase : new ArrayList<Phase>(waiting.keySet()))
+            submitIfReady(phase);
+    }
+
+    private void submitIfReady(final Phase phase) {
+        Integer count = waiting.get(phase);
+        if(count == null || count > 0)
+            return;
+        if(phase.stage == Stage.IDLE && deferredRemaining > 0)
+            return;
+        waiting.remove(phase);
+        executor.execute(new Runnable() {
+            public void run() {
+                StartupScheduler.this.run(phase, false);
+                finished(phase);
+            }
+        });
+    }
+
+    private synchronized void finished(Phase phase) {
+        ArrayList<Phase> list = dependents.get(phase.name);
+        if(list != null) {
+            for(Phase dependent : list)
+                waiting.put(dependent, waiting.get(dependent) - 1);
+        }
+        if(phase.stage == Stage.DEFERRED)
+            deferredRemaining--;
+
+        for(Phase next : new ArrayList<Phase>(waiting.keySet()))
+            submitIfReady(next);
+
+        backgroundRemaining--;
+        if(backgroundRemaining == 0)
+            executor.shutdown();
+    }
+
+    /**
+     * Wait for background phases to finish, for tests
+     * @return false if they did not finish in time
+     */
+    public boolean awaitBackground(long timeout) throws InterruptedException {
+        ThreadPoolExecutor current;
+        synchronized(this) {
+            current = executor;
+        }
+        return current != null && current.awaitTermination(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    private static class BackgroundThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "startup-" + count.incrementAndGet()); //$NON-NLS-1$
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    }
+
+}
@@ -18,6 +18,8 @@ import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.database.sqlite.SQLiteException;
 import android.media.AudioManager;
+import android.os.Looper;
+import android.os.MessageQueue.IdleHandler;
 import android.util.Log;
 import android.widget.Toast;
 
@@ -41,6 +43,8 @@ import com.todoroo.astrid.gtasks.sync.GtasksSyncService;
 import com.todoroo.astrid.opencrx.OpencrxCoreUtils;
 import com.todoroo.astrid.producteev.ProducteevUtilities;
 import com.todoroo.astrid.reminders.ReminderStartupReceiver;
+import com.todoroo.astrid.service.StartupScheduler.Phase;
+import com.todoroo.astrid.service.StartupScheduler.Stage;
 import com.todoroo.astrid.service.abtesting.ABChooser;
 import com.todoroo.astrid.service.abtesting.FeatureFlipper;
 import com.todoroo.astrid.utility.AstridPreferences;
@@ -100,6 +104,14 @@ public class StartupService {
         hasStartedUp = true;
     }
 
+    /** timings of the last few startups, see {@link #getStartupLog()} */
+    private static final StartupLog startupLog = new StartupLog(64);
+
+    /** version read by the version phase */
+    private int latestSetVersion = 0;
+    private int version = 0;
+    private String versionName = "0"; //$NON-NLS-1$
+
     /** Called when this application is started up */
     public synchronized void onStartupApplication(final Context context) {
         if(hasStartedUp || context == null)
@@ -108,117 +120,259 @@ public class StartupService {
         // sets up context manager
         ContextManager.setContext(context);
 
-        if(!StatisticsService.dontCollectStatistics()) {
-            Crittercism.init(context.getApplicationContext(), Constants.CRITTERCISM_APP_ID);
-            Crittercism.setShouldUseAmazonMarket(Constants.MARKET_STRATEGY.getClass() ==
-                MarketStrategy.AmazonMarketStrategy.class);
-        }
+        StartupScheduler scheduler = new StartupScheduler(startupLog) {
+            @Override
+            protected void onPhaseFailed(Phase phase, RuntimeException e) {
+                if(phase.stage != Stage.CRITICAL)
+                    exceptionService.reportError("astrid-startup-" + phase.name, e); //$NON-NLS-1$
+            }
+        };
+        addCriticalPhases(scheduler, context);
+        addBackgroundPhases(scheduler, context);
 
         try {
-            database.openForWriting();
+            scheduler.runCritical();
         } catch (SQLiteException e) {
             handleSQLiteColumnMissing(context, e);
             return;
         }
 
-        // show notification if reminders are silenced
-        if(context instanceof Activity) {
-            AudioManager audioManager = (AudioManager)context.getSystemService(
-                Context.AUDIO_SERVICE);
-            if(!Preferences.getBoolean(R.string.p_rmd_enabled, true))
-                Toast.makeText(context, R.string.TLA_notification_disabled, Toast.LENGTH_LONG).show();
-            else if(audioManager.getStreamVolume(AudioManager.STREAM_NOTIFICATION) == 0)
-                Toast.makeText(context, R.string.TLA_notification_volume_low, Toast.LENGTH_LONG).show();
-        }
+        startAfterFirstFrame(scheduler);
 
-        // read current version
-        int latestSetVersion = 0;
-        try {
-            latestSetVersion = AstridPreferences.getCurrentVersion();
-        } catch (Exception e) {
-            exceptionService.reportError("astrid-startup-version-read", e); //$NON-NLS-1$
+        hasStartedUp = true;
+    }
+
+    /**
+     * @return timings of startup phases, oldest first
+     */
+    public static StartupLog getStartupLog() {
+        return startupLog;
+    }
+
+    /**
+     * Start background phases once the main thread has nothing left to
+     * do, i.e. after the first task list has been drawn
+     */
+    private void startAfterFirstFrame(final StartupScheduler scheduler) {
+        if(Looper.myLooper() == null) {
+            scheduler.startBackground();
+            return;
         }
+        Looper.myQueue().addIdleHandler(new IdleHandler() {
+            public boolean queueIdle() {
+                scheduler.mark("first-frame"); //$NON-NLS-1$
+                scheduler.startBackground();
+                return false;
+            }
+        });
+    }
 
-        if (latestSetVersion == 0) {
-            if (Preferences.getLong(AstridPreferences.P_FIRST_LAUNCH, -1) < 0) {
-                Preferences.setLong(AstridPreferences.P_FIRST_LAUNCH, DateUtilities.now());
+    // --- startup phases
+
+    /** Phases needed before the task list can be shown */
+    @SuppressWarnings("nls")
+    private void addCriticalPhases(StartupScheduler scheduler, final Context context) {
+        scheduler.add(new Phase("crash-reporting", Stage.CRITICAL) {
+            @Override
+            protected void run() {
+                if(!StatisticsService.dontCollectStatistics()) {
+                    Crittercism.init(context.getApplicationContext(), Constants.CRITTERCISM_APP_ID);
+                    Crittercism.setShouldUseAmazonMarket(Constants.MARKET_STRATEGY.getClass() ==
+                        MarketStrategy.AmazonMarketStrategy.class);
+                }
             }
-        } else {
-            Preferences.setLong(AstridPreferences.P_FIRST_LAUNCH, 0);
-        }
+        });
 
-        int version = 0;
-        String versionName = "0"; //$NON-NLS-1$
-        try {
-            PackageManager pm = context.getPackageManager();
-            PackageInfo pi = pm.getPackageInfo(Constants.PACKAGE, PackageManager.GET_META_DATA);
-            version = pi.versionCode;
-            versionName = pi.versionName;
-        } catch (Exception e) {
-            exceptionService.reportError("astrid-startup-package-read", e); //$NON-NLS-1$
-        }
+        scheduler.add(new Phase("database", Stage.CRITICAL) {
+            @Override
+            protected void run() {
+                database.openForWriting();
+            }
+        });
 
-        Log.i("astrid", "Astrid Startup. " + latestSetVersion + //$NON-NLS-1$ //$NON-NLS-2$
-                " => " + version); //$NON-NLS-1$
+        // show notification if reminders are silenced
+        scheduler.add(new Phase("reminder-warning", Stage.CRITICAL) {
+            @Override
+            protected void run() {
+                if(!(context instanceof Activity))
+                    return;
+                AudioManager audioManager = (AudioManager)context.getSystemService(
+                    Context.AUDIO_SERVICE);
+                if(!Preferences.getBoolean(R.string.p_rmd_enabled, true))
+                    Toast.makeText(context, R.string.TLA_notification_disabled, Toast.LENGTH_LONG).show();
+                else if(audioManager.getStreamVolume(AudioManager.STREAM_NOTIFICATION) == 0)
+                    Toast.makeText(context, R.string.TLA_notification_volume_low, Toast.LENGTH_LONG).show();
+            }
+        });
+
+        scheduler.add(new Phase("version", Stage.CRITICAL) {
+            @Override
+            protected void run() {
+                readVersion(context);
+            }
+        });
 
-        databaseRestoreIfEmpty(context);
+        scheduler.add(new Phase("restore", Stage.CRITICAL, "database", "version") {
+            @Override
+            protected void run() {
+                databaseRestoreIfEmpty(context);
+            }
+        });
 
         // invoke upgrade service
-        boolean justUpgraded = latestSetVersion != version;
-        if(justUpgraded && version > 0) {
-            if(latestSetVersion > 0) {
-                upgradeService.performUpgrade(context, latestSetVersion);
+        scheduler.add(new Phase("upgrade", Stage.CRITICAL, "restore") {
+            @Override
+            protected void run() {
+                boolean justUpgraded = latestSetVersion != version;
+                if(justUpgraded && version > 0) {
+                    if(latestSetVersion > 0) {
+                        upgradeService.performUpgrade(context, latestSetVersion);
+                    }
+                    AstridPreferences.setCurrentVersion(version);
+                    AstridPreferences.setCurrentVersionName(versionName);
+                    // upgrades must not run twice if we are killed now
+                    Preferences.flush();
+                } else {
+                    upgradeService.resumeMigrations(context);
+                }
+
+                upgradeService.performSecondaryUpgrade(context);
             }
-            AstridPreferences.setCurrentVersion(version);
-            AstridPreferences.setCurrentVersionName(versionName);
-        }
+        });
+
+        scheduler.add(new Phase("preference-defaults", Stage.CRITICAL, "upgrade") {
+            @Override
+            protected void run() {
+                AstridPreferences.setPreferenceDefaults();
+            }
+        });
 
-        upgradeService.performSecondaryUpgrade(context);
+        // check for task killers
+        scheduler.add(new Phase("task-killer-help", Stage.CRITICAL) {
+            @Override
+            protected void run() {
+                if(!Constants.OEM)
+                    showTaskKillerHelp(context);
+            }
+        });
+    }
 
-        // perform startup activities in a background thread
-        final int finalLatestVersion = latestSetVersion;
-        new Thread(new Runnable() {
-            public void run() {
-                // start widget updating alarm
+    /** Phases run in the background after the task list is shown */
+    @SuppressWarnings("nls")
+    private void addBackgroundPhases(StartupScheduler scheduler, final Context context) {
+        // start widget updating alarm
+        scheduler.add(new Phase("widget-alarm", Stage.DEFERRED) {
+            @Override
+            protected void run() {
                 AlarmManager am = (AlarmManager)context.getSystemService(Context.ALARM_SERVICE);
                 Intent intent = new Intent(context, WidgetUpdateService.class);
                 PendingIntent pendingIntent = PendingIntent.getService(context,
                         0, intent, PendingIntent.FLAG_CANCEL_CURRENT);
                 am.setInexactRepeating(AlarmManager.RTC, 0,
                         Constants.WIDGET_UPDATE_INTERVAL, pendingIntent);
+            }
+        });
+
+        scheduler.add(new Phase("reminders", Stage.DEFERRED) {
+            @Override
+            protected void run() {
+                ReminderStartupReceiver.startReminderSchedulingService(context);
+            }
+        });
 
-                taskService.cleanup();
+        scheduler.add(new Phase("backup", Stage.DEFERRED) {
+            @Override
+            protected void run() {
+                BackupService.scheduleService(context);
+            }
+        });
 
-                // if sync ongoing flag was set, clear it
+        // if sync ongoing flag was set, clear it
+        scheduler.add(new Phase("sync-flags", Stage.DEFERRED) {
+            @Override
+            protected void run() {
                 ProducteevUtilities.INSTANCE.stopOngoing();
                 MilkUtilities.INSTANCE.stopOngoing();
                 gtasksPreferenceService.stopOngoing();
                 actFmPreferenceService.stopOngoing();
                 OpencrxCoreUtils.INSTANCE.stopOngoing();
+            }
+        });
 
-                // perform initialization
-                ReminderStartupReceiver.startReminderSchedulingService(context);
-                BackupService.scheduleService(context);
+        scheduler.add(new Phase("actfm-sync", Stage.DEFERRED, "sync-flags") {
+            @Override
+            protected void run() {
                 actFmSyncService.initialize();
+            }
+        });
 
+        scheduler.add(new Phase("gtasks-sync", Stage.DEFERRED, "sync-flags") {
+            @Override
+            protected void run() {
                 gtasksSyncService.initialize();
+            }
+        });
+
+        scheduler.add(new Phase("maintenance", Stage.IDLE) {
+            @Override
+            protected void run() {
+                DatabaseMaintenanceService.scheduleService(context);
+            }
+        });
 
-                // get and display update messages
-                if (finalLatestVersion != 0)
+        // get and display update messages
+        scheduler.add(new Phase("update-messages", Stage.IDLE) {
+            @Override
+            protected void run() {
+                if (latestSetVersion != 0)
                     new UpdateMessageService().processUpdates(context);
+            }
+        });
 
-                // Check for feature flips
+        // Check for feature flips
+        scheduler.add(new Phase("feature-flips", Stage.IDLE) {
+            @Override
+            protected void run() {
                 featureFlipper.updateFeatures();
             }
-        }).start();
+        });
 
-        AstridPreferences.setPreferenceDefaults();
+        scheduler.add(new Phase("report", Stage.IDLE, "maintenance", "update-messages", "feature-flips") {
+            @Override
+            protected void run() {
+                if(Constants.DEBUG)
+                    Log.d("astrid-startup", startupLog.toString());
+            }
+        });
+    }
 
-        // check for task killers
-        if(!Constants.OEM)
-            showTaskKillerHelp(context);
+    /** Read the version we last ran and the installed one */
+    private void readVersion(Context context) {
+        try {
+            latestSetVersion = AstridPreferences.getCurrentVersion();
+        } catch (Exception e) {
+            exceptionService.reportError("astrid-startup-version-read", e); //$NON-NLS-1$
+        }
 
-        hasStartedUp = true;
+        if (latestSetVersion == 0) {
+            if (Preferences.getLong(AstridPreferences.P_FIRST_LAUNCH, -1) < 0) {
+                Preferences.setLong(AstridPreferences.P_FIRST_LAUNCH, DateUtilities.now());
+            }
+        } else {
+            Preferences.setLong(AstridPreferences.P_FIRST_LAUNCH, 0);
+        }
+
+        try {
+            PackageManager pm = context.getPackageManager();
+            PackageInfo pi = pm.getPackageInfo(Constants.PACKAGE, PackageManager.GET_META_DATA);
+            version = pi.versionCode;
+            versionName = pi.versionName;
+        } catch (Exception e) {
+            exceptionService.reportError("astrid-startup-package-read", e); //$NON-NLS-1$
+        }
+
+        Log.i("astrid", "Astrid Startup. " + latestSetVersion + //$NON-NLS-1$ //$NON-NLS-2$
+                " => " + version); //$NON-NLS-1$
     }
 
     /**
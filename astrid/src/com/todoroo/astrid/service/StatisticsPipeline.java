@@ -0,0 +1,291 @@
+/**
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import com.todoroo.astrid.service.abtesting.ABOptions;
+
+/**
+ * Hands statistics events from any thread to a single consumer thread,
+ * which adds A/B test attributes and writes them to an {@link EventSink}
+ * in batches. Producers append to a fixed size ring buffer without
+ * locking; events that find the buffer full are dropped and counted.
+ */
+public class StatisticsPipeline {
+
+    /** time the consumer waits after waking up, so events pile up */
+    private static final long BATCH_DELAY = 2000L * 1000L * 1000L;
+
+    /** events written to the sink per batch */
+    private static final int BATCH_SIZE = 64;
+
+    /**
+     * Receives events on the consumer thread
+     */
+    public interface EventSink {
+        /**
+         * @param attributes event attributes, or null if there are none
+         */
+        public void tagEvent(String event, Map<String, String> attributes);
+    }
+
+    private static final class Event {
+        final String name;
+        final String[] attributes;
+
+        Event(String name, String[] attributes) {
+            this.name = name;
+            this.attributes = attributes;
+        }
+    }
+
+    private final EventSink sink;
+    private final ABOptions abOptions;
+
+    // --- ring buffer
+
+    private final AtomicReferenceArray<Event> slots;
+    private final int mask;
+
+    /** next sequence producers claim */
+    private final AtomicLong head = new AtomicLong();
+
+    /** next sequence the consumer reads, only written by the consumer */
+    private final AtomicLong tail = new AtomicLong();
+
+    // --- counters
+
+    private final AtomicInteger offered = new AtomicInteger();
+    private final AtomicInteger dropped = new AtomicInteger();
+    private final AtomicInteger delivered = new AtomicInteger();
+    private final AtomicInteger batches = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    // --- consumer
+
+    private final AtomicBoolean waiting = new AtomicBoolean(false);
+    private volatile Thread consumer = null;
+
+    /** tasks to run on the consumer thread after its next flush */
+    private final ConcurrentLinkedQueue<Runnable> afterFlush = new ConcurrentLinkedQueue<Runnable>();
+
+    /**
+     * @param sink receives events
+     * @param abOptions source of A/B test attributes
+     * @param capacity events the buffer holds, rounded up to a power of two
+     */
+    public StatisticsPipeline(EventSink sink, ABOptions abOptions, int capacity) {
+        this.sink = sink;
+        this.abOptions = abOptions;
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        slots = new AtomicReferenceArray<Event>(size);
+        mask = size - 1;
+    }
+
+    // --- producers
+
+    /**
+     * Queue an event. Never blocks.
+     *
+     * @param attributes alternating attribute keys and values
+     * @return false if the buffer was full and the event was dropped
+     */
+    public boolean offer(String event, String... attributes) {
+        offered.incrementAndGet();
+        Event item = new Event(event, attributes);
+        while(true) {
+            long sequence = head.get();
+            if(sequence - tail.get() >= slots.length()) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            if(head.compareAndSet(sequence, sequence + 1)) {
+                slots.set((int) (sequence & mask), item);
+                break;
+            }
+        }
+
+        Thread thread = consumer;
+        if(thread != null && waiting.compareAndSet(true, false))
+            LockSupport.unpark(thread);
+        return true;
+    }
+
+    /** @return events waiting to be written */
+    public int pending() {
+        return (int) (head.get() - tail.get());
+    }
+
+    // --- consumer
+
+    /**
+     * Start the consumer thread. Does nothing if it is running already.
+     */
+    public synchronized void start() {
+        if(consumer != null)
+            return;
+        Thread thread = new Thread("statistics") { //$NON-NLS-1$
+            @Override
+            public void run() {
+                consume();
+            }
+        };
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        consumer = thread;
+        thread.start();
+    }
+
+    private void consume() {
+        while(true) {
+            waiting.set(true);
+            if(pending() == 0 && afterFlush.isEmpty())
+                LockSupport.park(this);
+            waiting.set(false);
+
+            // runAfterFlush() cuts the wait short
+            if(afterFlush.isEmpty())
+                LockSupport.parkNanos(this, BATCH_DELAY);
+            flush();
+
+            Runnable task;
+            while((task = afterFlush.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    // keep consuming
+                }
+            }
+        }
+    }
+
+    /**
+     * Write queued events on the consumer thread right away, then run the
+     * given task there, e.g. to close the session without blocking the
+     * caller. Tasks run in the order they were given. Runs both on the
+     * calling thread if the consumer was never started.
+     */
+    public void runAfterFlush(Runnable task) {
+        Thread thread = consumer;
+        if(thread == null) {
+            flush();
+            task.run();
+            return;
+        }
+        afterFlush.add(task);
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Write all queued events to the sink on the calling thread
+     *
+     * @return number of events written
+     */
+    public synchronized int flush() {
+        ArrayList<Event> batch = new ArrayList<Event>(BATCH_SIZE);
+        HashMap<String, String[]> abAttributes = new HashMap<String, String[]>();
+        int written = 0;
+        while(drain(batch) > 0) {
+            for(Event event : batch) {
+                try {
+                    sink.tagEvent(event.name, attributesFor(event, abAttributes));
+                    written++;
+                } catch (RuntimeException e) {
+                    failed.incrementAndGet();
+                }
+            }
+            batch.clear();
+            batches.incrementAndGet();
+        }
+        delivered.addAndGet(written);
+        return written;
+    }
+
+    /**
+     * Move up to {@link #BATCH_SIZE} published events into the batch.
+     * Stops at a claimed slot whose event is not written yet.
+     */
+    private int drain(ArrayList<Event> batch) {
+        long sequence = tail.get();
+        while(batch.size() < BATCH_SIZE) {
+            int index = (int) (sequence & mask);
+            Event event = slots.get(index);
+            if(event == null)
+                break;
+            slots.set(index, null);
+            batch.add(event);
+            sequence++;
+        }
+        tail.set(sequence);
+        return batch.size();
+    }
+
+    /**
+     * Merge caller and A/B test attributes. A/B attributes are looked up
+     * once per event name and flush.
+     */
+    private Map<String, String> attributesFor(Event event,
+            HashMap<String, String[]> abAttributeCache) {
+        String[] abAttributes = abAttributeCache.get(event.name);
+        if(abAttributes == null) {
+            abAttributes = abOptions == null ? new String[0] :
+                abOptions.getLocalyticsAttributeArrayForEvent(event.name);
+            abAttributeCache.put(event.name, abAttributes);
+        }
+
+        String[] attributes = event.attributes;
+        if(attributes.length == 0 && abAttributes.length == 0)
+            return null;
+        HashMap<String, String> attrMap = new HashMap<String, String>();
+        for(int i = 1; i < attributes.length; i += 2) {
+            if(attributes[i] != null)
+                attrMap.put(attributes[i-1], attributes[i]);
+        }
+        for(int i = 1; i < abAttributes.length; i += 2)
+            attrMap.put(abAttributes[i-1], abAttributes[i]);
+        return attrMap;
+    }
+
+    // --- statistics
+
+    public int getOfferedCount() {
+        return offered.get();
+    }
+
+    /** @return events dropped because the buffer was full */
+    public int getDroppedCount() {
+        return dropped.get();
+    }
+
+    public int getDeliveredCount() {
+        return delivered.get();
+    }
+
+    /** @return events the sink threw on */
+    public int getFailedCount() {
+        return failed.get();
+    }
+
+    public int getBatchCount() {
+        return batches.get();
+    }
+
+    @Override
+    @SuppressWarnings("nls")
+    public String toString() {
+        return String.format("StatisticsPipeline[pending=%d/%d,offered=%d,dropped=%d,delivered=%d,failed=%d,batches=%d]",
+                pending(), slots.length(), offered.get(), dropped.get(), delivered.get(),
+                failed.get(), batches.get());
+    }
+
+}
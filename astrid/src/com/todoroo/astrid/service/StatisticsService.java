@@ -4,10 +4,11 @@
 
 package com.todoroo.astrid.service;
 
-import java.util.HashMap;
+import java.util.Map;
 
 import android.app.Activity;
 import android.content.Context;
+import android.util.Log;
 
 import com.localytics.android.LocalyticsSession;
 import com.timsu.astrid.R;
@@ -19,7 +20,12 @@ import com.todoroo.astrid.utility.Constants;
 
 public class StatisticsService {
 
-    private static LocalyticsSession localyticsSession;
+    /** events queued for localytics at most */
+    private static final int PIPELINE_CAPACITY = 256;
+
+    private static volatile LocalyticsSession localyticsSession;
+    private static volatile StatisticsPipeline pipeline;
+
     private static class StatisticsDependencies {
         @Autowired ABOptions abOptions;
         public StatisticsDependencies() {
@@ -27,6 +33,19 @@ public class StatisticsService {
         }
     }
 
+    /** Writes pipeline events to the localytics session */
+    private static class LocalyticsSink implements StatisticsPipeline.EventSink {
+        public void tagEvent(String event, Map<String, String> attributes) {
+            LocalyticsSession session = localyticsSession;
+            if(session == null)
+                return;
+            if(attributes == null)
+                session.tagEvent(event);
+            else
+                session.tagEvent(event, attributes);
+        }
+    }
+
     /**
      * Indicate session started
      *
@@ -37,16 +56,28 @@ public class StatisticsService {
             return;
 
         if(localyticsSession != null) {
-            localyticsSession.open(); // Multiple calls to open are ok, we just need to make sure it gets reopened after pause
+            // Multiple calls to open are ok, we just need to make sure it gets reopened after pause.
+            // Opened on the pipeline thread, after a close still pending from sessionPause()
+            final String screen = context instanceof Activity ? context.getClass().getSimpleName() : null;
+            pipeline.runAfterFlush(new Runnable() {
+                public void run() {
+                    localyticsSession.open();
+                    if(screen != null)
+                        localyticsSession.tagScreen(screen);
+                }
+            });
         } else {
+            pipeline = new StatisticsPipeline(new LocalyticsSink(),
+                    new StatisticsDependencies().abOptions, PIPELINE_CAPACITY);
+            pipeline.start();
+
             localyticsSession = new LocalyticsSession(context.getApplicationContext(),
                     Constants.LOCALYTICS_KEY);
             localyticsSession.open();
             localyticsSession.upload();
+            if (context instanceof Activity)
+                localyticsSession.tagScreen(context.getClass().getSimpleName());
         }
-
-        if (context instanceof Activity)
-            localyticsSession.tagScreen(context.getClass().getSimpleName());
     }
 
     /**
@@ -60,6 +91,9 @@ public class StatisticsService {
 
         if(localyticsSession != null)
             localyticsSession.upload();
+
+        if(Constants.DEBUG && pipeline != null)
+            Log.d("statistics", pipeline.toString()); //$NON-NLS-1$
     }
 
     /**
@@ -70,7 +104,13 @@ public class StatisticsService {
             return;
 
         if(localyticsSession != null) {
-            localyticsSession.close();
+            // events tagged after close are lost, so write them first.
+            // Done on the pipeline thread, as the sink may hit the disk
+            pipeline.runAfterFlush(new Runnable() {
+                public void run() {
+                    localyticsSession.close();
+                }
+            });
         }
     }
 
@@ -85,27 +125,17 @@ public class StatisticsService {
     }
 
     /**
-     * Indicates an event should be reported
+     * Indicates an event should be reported. The event is queued and
+     * written to localytics on a background thread.
      * @param event
      */
     public static void reportEvent(String event, String... attributes) {
         if(dontCollectStatistics())
             return;
 
-        if(localyticsSession != null) {
-            String[] abAttributes = new StatisticsDependencies().abOptions.getLocalyticsAttributeArrayForEvent(event);
-            if(attributes.length > 0 || abAttributes.length > 0) {
-                HashMap<String, String> attrMap = new HashMap<String, String>();
-                for(int i = 1; i < attributes.length; i += 2) {
-                    if(attributes[i] != null)
-                        attrMap.put(attributes[i-1], attributes[i]);
-                }
-                for (int i = 1; i < abAttributes.length; i += 2)
-                    attrMap.put(abAttributes[i-1], abAttributes[i]);
-                localyticsSession.tagEvent(event, attrMap);
-            } else
-                localyticsSession.tagEvent(event);
-        }
+        StatisticsPipeline current = pipeline;
+        if(current != null)
+            current.offer(event, attributes);
     }
 
     public static boolean dontCollectStatistics() {
@@ -1,5 +1,8 @@
 package com.todoroo.astrid.service;
 
+import java.util.HashMap;
+import java.util.Set;
+
 import com.todoroo.andlib.data.Property;
 import com.todoroo.andlib.data.TodorooCursor;
 import com.todoroo.andlib.service.Autowired;
@@ -171,4 +174,50 @@ public class TagDataService {
         }
     }
 
+
+    /**
+     * Return the latest update of each of the given tags, reading them
+     * through the tag index of the updates table in a single query
+     *
+     * @param remoteIds remote ids of the tags to look for
+     * @return map from remote id to update. tags without updates are absent
+     */
+    @SuppressWarnings("nls")
+    public HashMap<Long, Update> getLatestUpdates(Set<Long> remoteIds) {
+        HashMap<Long, Update> latest = new HashMap<Long, Update>();
+        if(remoteIds.isEmpty())
+            return latest;
+
+        TodorooCursor<Update> updates = updateDao.queryLatestByTags(remoteIds);
+        try {
+            for(updates.moveToFirst(); !updates.isAfterLast(); updates.moveToNext()) {
+                Update update = new Update(updates);
+                for(String tag : update.getValue(Update.TAGS).split(",")) {
+                    if(tag.length() == 0)
+                        continue;
+                    try {
+                        Long remoteId = Long.valueOf(tag);
+                        if(!remoteIds.contains(remoteId))
+                            continue;
+                        // an update can be the latest of one tag but not another
+                        Update current = latest.get(remoteId);
+                        if(current == null || isNewer(update, current))
+                            latest.put(remoteId, update);
+                    } catch (NumberFormatException e) {
+                        // not a tag id
+                    }
+                }
+            }
+        } finally {
+            updates.close();
+        }
+        return latest;
+    }
+
+    private static boolean isNewer(Update update, Update other) {
+        long created = update.getValue(Update.CREATION_DATE);
+        long otherCreated = other.getValue(Update.CREATION_DATE);
+        return created > otherCreated || (created == otherCreated && update.getId() > other.getId());
+    }
+
 }
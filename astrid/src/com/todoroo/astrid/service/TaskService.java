@@ -1,12 +1,16 @@
 package com.todoroo.astrid.service;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
 
 import org.weloveastrid.rmilk.data.MilkTaskFields;
 
 import android.content.ContentValues;
 
+import com.todoroo.andlib.data.DatabaseDao;
 import com.todoroo.andlib.data.Property;
 import com.todoroo.andlib.data.TodorooCursor;
 import com.todoroo.andlib.service.Autowired;
@@ -107,6 +111,32 @@ public class TaskService {
         }
     }
 
+    /**
+     * Resolve a set of remote ids to local task ids in one query per
+     * {@link DatabaseDao#IDS_PER_STATEMENT} ids
+     *
+     * @param remoteIds remote ids to look up
+     * @return map of remote id => local id for the tasks that exist locally
+     */
+    public HashMap<Long, Long> fetchLocalIdsByRemoteIds(Collection<Long> remoteIds) {
+        HashMap<Long, Long> result = new HashMap<Long, Long>(remoteIds.size());
+        long[] ids = new long[remoteIds.size()];
+        int i = 0;
+        for(Long remoteId : remoteIds)
+            ids[i++] = remoteId;
+        for(int start = 0; start < ids.length; start += DatabaseDao.IDS_PER_STATEMENT) {
+            TodorooCursor<Task> cursor = query(Query.select(Task.ID, Task.REMOTE_ID).where(
+                    Task.REMOTE_ID.in(DatabaseDao.idChunk(ids, start))));
+            try {
+                for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext())
+                    result.put(cursor.get(Task.REMOTE_ID), cursor.get(Task.ID));
+            } finally {
+                cursor.close();
+            }
+        }
+        return result;
+    }
+
     /**
      * Mark the given task as completed and save it.
      *
@@ -120,6 +150,81 @@ public class TaskService {
         taskDao.save(item);
     }
 
+    /**
+     * Mark all tasks matching the criterion as completed or not completed,
+     * in one transaction. Tasks already in that state are left alone. Hooks
+     * run once for all tasks rather than once per task.
+     *
+     * @return # of tasks changed
+     */
+    public int completeAll(Criterion criterion, boolean completed) {
+        final long[] ids = taskDao.fetchIds(Criterion.and(criterion, completed ?
+                Task.COMPLETION_DATE.eq(0) : Task.COMPLETION_DATE.gt(0)));
+        final Task template = new Task();
+        template.setValue(Task.COMPLETION_DATE, completed ? DateUtilities.now() : 0L);
+        return taskDao.runInTransaction(new Callable<Integer>() {
+            public Integer call() {
+                return taskDao.saveExistingMultiple(ids, template);
+            }
+        });
+    }
+
+    /**
+     * Delete all tasks matching the criterion in one transaction. As with
+     * {@link #delete(Task)}, tasks are only marked deleted and their
+     * calendar events removed. Hooks run once for all tasks rather than
+     * once per task.
+     *
+     * @return # of tasks deleted
+     */
+    public int deleteAll(Criterion criterion) {
+        criterion = Criterion.and(criterion, TaskCriteria.notDeleted());
+        TodorooCursor<Task> cursor = taskDao.query(Query.select(Task.ID, Task.CALENDAR_URI).where(
+                Criterion.and(criterion, Task.CALENDAR_URI.isNotNull(), Task.CALENDAR_URI.neq("")))); //$NON-NLS-1$
+        try {
+            Task task = new Task();
+            for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                task.readFromCursor(cursor);
+                GCalHelper.deleteTaskEvent(task);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        final long[] ids = taskDao.fetchIds(criterion);
+        final Task template = new Task();
+        template.setValue(Task.CALENDAR_URI, ""); //$NON-NLS-1$
+        template.setValue(Task.DELETION_DATE, DateUtilities.now());
+        return taskDao.runInTransaction(new Callable<Integer>() {
+            public Integer call() {
+                return taskDao.saveExistingMultiple(ids, template);
+            }
+        });
+    }
+
+    /**
+     * Move all tasks matching the criterion from one list to another in one
+     * transaction. Tasks are saved once for all, so that they are synced.
+     *
+     * @param fromTag list to take tasks out of, or null to only add them
+     * @param toTag list to put tasks in
+     * @return # of tasks moved
+     */
+    public int moveAll(Criterion criterion, final String fromTag, final String toTag) {
+        final long[] ids = taskDao.fetchIds(criterion);
+        if(ids.length == 0)
+            return 0;
+        final Task template = new Task();
+        template.setValue(Task.MODIFICATION_DATE, DateUtilities.now());
+        template.putTransitory(SyncFlags.TAGS_CHANGED, true);
+        return taskDao.runInTransaction(new Callable<Integer>() {
+            public Integer call() {
+                TagService.getInstance().moveTasks(ids, fromTag, toTag);
+                return taskDao.saveExistingMultiple(ids, template);
+            }
+        });
+    }
+
     /**
      * Create or save the given action item
      *
@@ -213,22 +318,14 @@ public class TaskService {
     }
 
     /**
-     * Clean up tasks. Typically called on startup
+     * Clean up tasks without a title, e.g. from cancelled edits
+     * @return number of tasks deleted
      */
-    public void cleanup() {
-        TodorooCursor<Task> cursor = taskDao.query(
-                Query.select(Task.ID).where(TaskCriteria.hasNoTitle()));
-        try {
-            if(cursor.getCount() == 0)
-                return;
-
-            for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
-                long id = cursor.getLong(0);
-                taskDao.delete(id);
-            }
-        } finally {
-            cursor.close();
-        }
+    public int cleanup() {
+        long[] ids = taskDao.fetchIds(TaskCriteria.hasNoTitle());
+        if(ids.length == 0)
+            return 0;
+        return taskDao.deleteMultiple(ids);
     }
 
     /**
@@ -18,6 +18,7 @@ import com.todoroo.andlib.data.TodorooCursor;
 import com.todoroo.andlib.service.Autowired;
 import com.todoroo.andlib.service.ContextManager;
 import com.todoroo.andlib.service.DependencyInjectionService;
+import com.todoroo.andlib.service.ExceptionService;
 import com.todoroo.andlib.sql.Criterion;
 import com.todoroo.andlib.sql.Query;
 import com.todoroo.andlib.utility.DateUtilities;
@@ -34,6 +35,7 @@ import com.todoroo.astrid.gtasks.GtasksPreferenceService;
 import com.todoroo.astrid.helper.DueDateTimeMigrator;
 import com.todoroo.astrid.notes.NoteMetadata;
 import com.todoroo.astrid.producteev.sync.ProducteevDataService;
+import com.todoroo.astrid.repeats.NextOccurrenceMigrator;
 import com.todoroo.astrid.service.abtesting.ABChooser;
 import com.todoroo.astrid.tags.TagCaseMigrator;
 import com.todoroo.astrid.utility.AstridPreferences;
@@ -97,6 +99,22 @@ public final class UpgradeService {
     public static final int V3_0_0 = 136;
     public static final int V2_14_4 = 135;
 
+    /** version data migrations are running from, if they have not finished */
+    private static final String P_MIGRATING_FROM = "upgrade_migrating_from"; //$NON-NLS-1$
+
+    /** number of times the pending migrations were started */
+    private static final String P_MIGRATION_ATTEMPTS = "upgrade_migration_attempts"; //$NON-NLS-1$
+
+    /** prefix of flags for one-off migration steps that finished */
+    private static final String P_STEP_DONE = "upgrade_step_done_"; //$NON-NLS-1$
+
+    private static final String STEP_TAG_CASE = "tag-case"; //$NON-NLS-1$
+
+    private static final String STEP_CLEAR_DETAILS = "clear-details"; //$NON-NLS-1$
+
+    /** runs after which failing migrations are given up */
+    private static final int MAX_MIGRATION_ATTEMPTS = 3;
+
     @Autowired Database database;
 
     @Autowired TaskService taskService;
@@ -111,6 +129,8 @@ public final class UpgradeService {
 
     @Autowired ActFmPreferenceService actFmPreferenceService;
 
+    @Autowired ExceptionService exceptionService;
+
     public UpgradeService() {
         DependencyInjectionService.getInstance().inject(this);
     }
@@ -150,6 +170,13 @@ public final class UpgradeService {
 
         Preferences.setInt(AstridPreferences.P_UPGRADE_FROM, from);
 
+        // remember migrations are running, so they resume if we are killed.
+        // Those of an earlier upgrade that did not finish run as well
+        int pending = Preferences.getInt(P_MIGRATING_FROM, -1);
+        Preferences.setInt(P_MIGRATING_FROM, pending >= 0 ? Math.min(pending, from) : from);
+        Preferences.clear(P_MIGRATION_ATTEMPTS);
+        Preferences.flush();
+
         new Thread(new Runnable() {
             @Override
             public void run() {
@@ -157,30 +184,99 @@ public final class UpgradeService {
                     // NOTE: This line should be uncommented whenever any new version requires a data migration
                     // TasksXmlExporter.exportTasks(context, TasksXmlExporter.ExportType.EXPORT_TYPE_ON_UPGRADE, null, null, lastSetVersionName);
 
-                    if(from < V3_0_0)
-                        new Astrid2To3UpgradeHelper().upgrade2To3(context, from);
-
-                    if(from < V3_1_0)
-                        new Astrid2To3UpgradeHelper().upgrade3To3_1(context, from);
-
-                    if(from < V3_8_3_1)
-                        new TagCaseMigrator().performTagCaseMigration(context);
+                    runMigrations(context, Preferences.getInt(P_MIGRATING_FROM, from));
+                } finally {
+                    DialogUtilities.dismissDialog((Activity)context, dialog);
+                    context.sendBroadcast(new Intent(AstridApiConstants.BROADCAST_EVENT_REFRESH));
+                }
+            }
 
-                    if(from < V3_8_4 && Preferences.getBoolean(R.string.p_showNotes, false))
-                        taskService.clearDetails(Task.NOTES.neq("")); //$NON-NLS-1$
+        }).start();
+    }
 
-                    if (from < V4_0_6)
-                        new DueDateTimeMigrator().migrateDueTimes();
+    /**
+     * Resume data migrations of an upgrade that was interrupted, e.g. by
+     * the app being killed. Migrations pick up from their last committed
+     * chunk.
+     */
+    public void resumeMigrations(final Context context) {
+        final int from = Preferences.getInt(P_MIGRATING_FROM, -1);
+        if(from < 0)
+            return;
 
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    runMigrations(context, from);
                 } finally {
-                    DialogUtilities.dismissDialog((Activity)context, dialog);
                     context.sendBroadcast(new Intent(AstridApiConstants.BROADCAST_EVENT_REFRESH));
                 }
             }
-
         }).start();
     }
 
+    /**
+     * Run the data migrations of an upgrade. The upgrade is recorded as
+     * finished only if all of them finished, otherwise it is resumed on
+     * the next start, up to {@link #MAX_MIGRATION_ATTEMPTS} runs.
+     */
+    private void runMigrations(Context context, int from) {
+        int attempts = Preferences.getInt(P_MIGRATION_ATTEMPTS, 0) + 1;
+        if(attempts > MAX_MIGRATION_ATTEMPTS) {
+            exceptionService.reportError("upgrade-migrations", new IllegalStateException( //$NON-NLS-1$
+                    "Migrations from " + from + " failed " + MAX_MIGRATION_ATTEMPTS + " times")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            finishMigrations();
+            return;
+        }
+        Preferences.setInt(P_MIGRATION_ATTEMPTS, attempts);
+        Preferences.flush();
+
+        if(from < V3_0_0 && !new Astrid2To3UpgradeHelper().upgrade2To3(context, from))
+            return;
+
+        if(from < V3_1_0 && !new Astrid2To3UpgradeHelper().upgrade3To3_1(context, from))
+            return;
+
+        if(from < V3_8_3_1 && !isStepDone(STEP_TAG_CASE)) {
+            new TagCaseMigrator().performTagCaseMigration(context);
+            setStepDone(STEP_TAG_CASE);
+        }
+
+        if(from < V3_8_4 && Preferences.getBoolean(R.string.p_showNotes, false) &&
+                !isStepDone(STEP_CLEAR_DETAILS)) {
+            taskService.clearDetails(Task.NOTES.neq("")); //$NON-NLS-1$
+            setStepDone(STEP_CLEAR_DETAILS);
+        }
+
+        if (from < V4_0_6 && !new DueDateTimeMigrator().migrateDueTimes())
+            return;
+
+        if(!new NextOccurrenceMigrator().migrateNextOccurrences())
+            return;
+
+        finishMigrations();
+    }
+
+    /** @return true if the given one-off step ran for the pending upgrade */
+    private static boolean isStepDone(String step) {
+        return Preferences.getBoolean(P_STEP_DONE + step, false);
+    }
+
+    /** Record a one-off step, so resuming the upgrade does not repeat it */
+    private static void setStepDone(String step) {
+        Preferences.setBoolean(P_STEP_DONE + step, true);
+        Preferences.flush();
+    }
+
+    private static void finishMigrations() {
+        Preferences.clear(P_MIGRATING_FROM);
+        Preferences.clear(P_MIGRATION_ATTEMPTS);
+        Preferences.clear(P_STEP_DONE + STEP_TAG_CASE);
+        Preferences.clear(P_STEP_DONE + STEP_CLEAR_DETAILS);
+        Preferences.flush();
+    }
+
     /**
      * Return a change log string. Releases occur often enough that we don't
      * expect change sets to be localized.
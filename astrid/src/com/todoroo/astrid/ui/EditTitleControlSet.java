@@ -92,6 +92,8 @@ public class EditTitleControlSet extends TaskEditControlSet implements Importanc
         super.readFromTask(task);
         isRepeating = !TextUtils.isEmpty(task.getValue(Task.RECURRENCE));
         importanceValue = model.getValue(Task.IMPORTANCE);
+        if (completeBox != null)
+            updateCompleteBox();
     }
 
 
@@ -80,7 +80,6 @@ public class ReminderControlSet extends PopupControlSet {
 
         randomControlSet = new RandomReminderControlSet(activity, getView(), -1);
         alarmControl = new AlarmControlSet(activity, R.layout.control_set_alarms);
-        alarmControl.readFromTask(model);
 
         remindersBody = (LinearLayout) getView().findViewById(R.id.reminders_body);
         remindersBody.addView(alarmControl.getView());
@@ -110,6 +109,7 @@ public class ReminderControlSet extends PopupControlSet {
         // Calls to get view will force other control sets to load
         randomControlSet.readFromTask(model);
         randomControlSet.readFromTaskOnInitialize();
+        alarmControl.readFromTask(model, getEditMetadata());
     }
 
     @Override
@@ -1,5 +1,7 @@
 package com.todoroo.astrid.widget;
 
+import java.util.ArrayList;
+
 import android.app.PendingIntent;
 import android.app.Service;
 import android.appwidget.AppWidgetManager;
@@ -24,6 +26,7 @@ import com.todoroo.andlib.service.Autowired;
 import com.todoroo.andlib.service.ContextManager;
 import com.todoroo.andlib.service.DependencyInjectionService;
 import com.todoroo.andlib.utility.AndroidUtilities;
+import com.todoroo.andlib.utility.CoalescingExecutor;
 import com.todoroo.andlib.utility.DateUtilities;
 import com.todoroo.andlib.utility.Preferences;
 import com.todoroo.astrid.activity.TaskEditActivity;
@@ -60,7 +63,9 @@ public class TasksWidget extends AppWidgetProvider {
             super.onUpdate(context, appWidgetManager, appWidgetIds);
 
             // Start in service to prevent Application Not Responding timeout
-            updateWidgets(context);
+            Intent intent = new Intent(context, TasksWidget.WidgetUpdateService.class);
+            intent.putExtra(WidgetUpdateService.EXTRA_FORCE, true);
+            context.startService(intent);
         } catch (Exception e) {
             Log.e("astrid-update-widget", "widget update error", e); //$NON-NLS-1$ //$NON-NLS-2$
         }
@@ -76,13 +81,14 @@ public class TasksWidget extends AppWidgetProvider {
     }
 
     /**
-     * Update widget with the given id
+     * Update widget with the given id, also if its tasks did not change
      * @param id
      */
     public static void updateWidget(Context context, int id) {
         Intent intent = new Intent(ContextManager.getContext(),
                 TasksWidget.WidgetUpdateService.class);
         intent.putExtra(WidgetUpdateService.EXTRA_WIDGET_ID, id);
+        intent.putExtra(WidgetUpdateService.EXTRA_FORCE, true);
         context.startService(intent);
     }
 
@@ -97,6 +103,43 @@ public class TasksWidget extends AppWidgetProvider {
 
         public static final String EXTRA_WIDGET_ID = "widget_id"; //$NON-NLS-1$
 
+        /** render even if the tasks shown did not change */
+        public static final String EXTRA_FORCE = "force"; //$NON-NLS-1$
+
+        /**
+         * Time an update waits for more requests for the same widgets, as
+         * every database write requests one
+         */
+        private static final long UPDATE_WINDOW = 500;
+
+        /** all updates run on one worker, so they never race */
+        private static final CoalescingExecutor updateQueue = new CoalescingExecutor(
+                "widget-update", 1, 16, UPDATE_WINDOW, new Runnable() { //$NON-NLS-1$
+                    public void run() {
+                        stopWhenIdle();
+                    }
+                });
+
+        /** guards {@link #running} and {@link #lastStartId} */
+        private static final Object lifecycle = new Object();
+
+        private static WidgetUpdateService running = null;
+
+        private static int lastStartId;
+
+        private static final WidgetCache cache = new WidgetCache();
+
+        /** A task as shown in a row */
+        private static final class Row {
+            final String title;
+            final int color;
+
+            Row(String title, int color) {
+                this.title = title;
+                this.color = color;
+            }
+        }
+
         @Autowired
         Database database;
 
@@ -104,36 +147,81 @@ public class TasksWidget extends AppWidgetProvider {
         TaskService taskService;
 
         @Override
-        public void onStart(final Intent intent, int startId) {
+        public void onCreate() {
+            super.onCreate();
+            DependencyInjectionService.getInstance().inject(this);
+        }
+
+        @Override
+        public void onDestroy() {
+            synchronized(lifecycle) {
+                if(running == this)
+                    running = null;
+            }
+            super.onDestroy();
+        }
+
+        /**
+         * Stop the service once no update is pending. Requests for different
+         * widgets have different keys, so a finished update can't tell if
+         * it was the last one.
+         */
+        private static void stopWhenIdle() {
+            synchronized(lifecycle) {
+                if(running != null && updateQueue.getPendingCount() == 0)
+                    running.stopSelf(lastStartId);
+            }
+        }
+
+        @SuppressWarnings("nls")
+        @Override
+        public void onStart(Intent intent, int startId) {
             ContextManager.setContext(this);
-            new Thread(new Runnable() {
-                @Override
-                public void run() {
-                    startServiceInBackgroundThread(intent);
-                }
-            }).start();
+
+            int extrasId = AppWidgetManager.INVALID_APPWIDGET_ID;
+            boolean force = false;
+            if(intent != null) {
+                extrasId = intent.getIntExtra(EXTRA_WIDGET_ID, extrasId);
+                force = intent.getBooleanExtra(EXTRA_FORCE, false);
+            }
+
+            final int id = extrasId;
+            String key;
+            if(id == AppWidgetManager.INVALID_APPWIDGET_ID) {
+                key = "all";
+                if(force)
+                    cache.invalidateAll();
+            } else {
+                key = "widget:" + id;
+                if(force)
+                    cache.invalidate(id);
+            }
+
+            // the queue stops us once it is idle, also if this request was
+            // dropped because too many are pending
+            synchronized(lifecycle) {
+                running = this;
+                lastStartId = startId;
+                updateQueue.submit(key, new Runnable() {
+                    @Override
+                    public void run() {
+                        startServiceInBackgroundThread(id);
+                    }
+                });
+            }
         }
 
-        public void startServiceInBackgroundThread(Intent intent) {
+        public void startServiceInBackgroundThread(int extrasId) {
             ComponentName thisWidget = new ComponentName(this,
                     TasksWidget.class);
             AppWidgetManager manager = AppWidgetManager.getInstance(this);
 
-            int extrasId = AppWidgetManager.INVALID_APPWIDGET_ID;
-            if(intent != null)
-                extrasId = intent.getIntExtra(EXTRA_WIDGET_ID, extrasId);
             if(extrasId == AppWidgetManager.INVALID_APPWIDGET_ID) {
-                for(int id : manager.getAppWidgetIds(thisWidget)) {
-                    RemoteViews updateViews = buildUpdate(this, id);
-                    manager.updateAppWidget(id, updateViews);
-                }
+                for(int id : manager.getAppWidgetIds(thisWidget))
+                    update(manager, id);
             } else {
-                int id = extrasId;
-                RemoteViews updateViews = buildUpdate(this, id);
-                manager.updateAppWidget(id, updateViews);
+                update(manager, extrasId);
             }
-
-            stopSelf();
         }
 
         @Override
@@ -141,73 +229,137 @@ public class TasksWidget extends AppWidgetProvider {
             return null;
         }
 
-        @SuppressWarnings("nls")
-        public RemoteViews buildUpdate(Context context, int widgetId) {
-            DependencyInjectionService.getInstance().inject(this);
+        /**
+         * Update a widget if what it shows changed since its last update
+         */
+        private void update(AppWidgetManager manager, int widgetId) {
+            Filter filter = getFilter(widgetId);
+            int numberOfTasks = getNumberOfTasks();
+            ArrayList<Row> rows = readRows(filter, widgetId, numberOfTasks);
 
-            RemoteViews views = getThemedRemoteViews(context);
+            if(rows == null)
+                cache.invalidate(widgetId);
+            else if(!cache.setSnapshot(widgetId, snapshot(filter, widgetId, numberOfTasks, rows)))
+                return;
+
+            try {
+                manager.updateAppWidget(widgetId, buildUpdate(this, widgetId, filter, numberOfTasks, rows));
+            } catch (RuntimeException e) {
+                cache.invalidate(widgetId);
+                throw e;
+            }
+        }
 
+        public RemoteViews buildUpdate(Context context, int widgetId) {
+            Filter filter = getFilter(widgetId);
             int numberOfTasks = getNumberOfTasks();
+            return buildUpdate(context, widgetId, filter, numberOfTasks,
+                    readRows(filter, widgetId, numberOfTasks));
+        }
 
+        /**
+         * Read the tasks a widget shows
+         * @return rows, or null if they could not be read
+         */
+        @SuppressWarnings("nls")
+        private ArrayList<Row> readRows(Filter filter, int widgetId, int numberOfTasks) {
             TodorooCursor<Task> cursor = null;
-            Filter filter = null;
             try {
-                filter = getFilter(widgetId);
-                views.setTextViewText(R.id.widget_title, filter.title);
-                views.removeAllViews(R.id.taskbody);
-
                 SharedPreferences publicPrefs = AstridPreferences.getPublicPrefs(this);
                 int flags = publicPrefs.getInt(SortHelper.PREF_SORT_FLAGS, 0);
                 int sort = publicPrefs.getInt(SortHelper.PREF_SORT_SORT, 0);
-                String query = SortHelper.adjustQueryForFlagsAndSort(
-                        filter.getSqlQuery(), flags, sort).replaceAll("LIMIT \\d+", "") + " LIMIT " + numberOfTasks;
+                String queryKey = flags + ":" + sort + ":" + numberOfTasks + ":" + filter.getSqlQuery();
+                String query = cache.getQuery(widgetId, queryKey);
+                if(query == null) {
+                    query = SortHelper.adjustQueryForFlagsAndSort(
+                            filter.getSqlQuery(), flags, sort).replaceAll("LIMIT \\d+", "") + " LIMIT " + numberOfTasks;
+                    cache.putQuery(widgetId, queryKey, query);
+                }
 
                 database.openForReading();
                 cursor = taskService.fetchFiltered(query, null, Task.ID, Task.TITLE, Task.DUE_DATE, Task.COMPLETION_DATE);
+
+                Resources r = getResources();
+                int defaultColor = r
+                        .getColor(isDarkTheme() ? R.color.widget_text_color_dark : R.color.widget_text_color_light);
+                if (isLegacyTheme())
+                    defaultColor = r.getColor(android.R.color.white);
+
+                ArrayList<Row> rows = new ArrayList<Row>(numberOfTasks);
                 Task task = new Task();
-                int i = 0;
-                for (i = 0; i < cursor.getCount() && i < numberOfTasks; i++) {
+                for (int i = 0; i < cursor.getCount() && i < numberOfTasks; i++) {
                     cursor.moveToPosition(i);
                     task.readFromCursor(cursor);
 
-                    String textContent = "";
-                    Resources r = context.getResources();
-                    int textColor = r
-                            .getColor(isDarkTheme() ? R.color.widget_text_color_dark : R.color.widget_text_color_light);
-                    if (isLegacyTheme())
-                        textColor = r.getColor(android.R.color.white);
-
-                    textContent = task.getValue(Task.TITLE);
-
+                    int textColor = defaultColor;
                     if(task.isCompleted())
                         textColor = r.getColor(R.color.task_list_done);
                     else if(task.hasDueDate() && task.getValue(Task.DUE_DATE) < DateUtilities.now())
                         textColor = r.getColor(R.color.task_list_overdue);
 
+                    rows.add(new Row(task.getValue(Task.TITLE), textColor));
+                }
+                return rows;
+            } catch (Exception e) {
+                // can happen if database is not ready
+                Log.e("WIDGET-UPDATE", "Error updating widget", e);
+                return null;
+            } finally {
+                if(cursor != null)
+                    cursor.close();
+            }
+        }
+
+        /**
+         * @return everything a widget shows, including what its buttons
+         * open, as a string to compare with the last update
+         */
+        @SuppressWarnings("nls")
+        private String snapshot(Filter filter, int widgetId, int numberOfTasks, ArrayList<Row> rows) {
+            StringBuilder snapshot = new StringBuilder();
+            snapshot.append(ThemeService.getWidgetTheme()).append('\n').
+                append(filter.title).append('\n').
+                append(filter.getSqlQuery()).append('\n').
+                append(filter.valuesForNewTasks == null ? "" : PermaSql.replacePlaceholders(
+                        AndroidUtilities.contentValuesToSerializedString(filter.valuesForNewTasks))).append('\n').
+                append(Preferences.getStringValue(WidgetConfigActivity.PREF_CUSTOM_INTENT + widgetId)).append('\n').
+                append(Preferences.getStringValue(WidgetConfigActivity.PREF_CUSTOM_EXTRAS + widgetId)).append('\n').
+                append(numberOfTasks);
+            for(Row row : rows)
+                snapshot.append('\n').append(row.color).append(' ').append(row.title);
+            return snapshot.toString();
+        }
+
+        @SuppressWarnings("nls")
+        private RemoteViews buildUpdate(Context context, int widgetId, Filter filter,
+                int numberOfTasks, ArrayList<Row> rows) {
+            RemoteViews views = getThemedRemoteViews(context);
+
+            views.setTextViewText(R.id.widget_title, filter.title);
+            views.removeAllViews(R.id.taskbody);
+
+            if(rows != null) {
+                int i = 0;
+                for (i = 0; i < rows.size(); i++) {
+                    Row task = rows.get(i);
                     RemoteViews row = new RemoteViews(Constants.PACKAGE, R.layout.widget_row);
 
-                    row.setTextViewText(R.id.text, textContent);
-                    row.setTextColor(R.id.text, textColor);
+                    row.setTextViewText(R.id.text, task.title);
+                    row.setTextColor(R.id.text, task.color);
 
                     views.addView(R.id.taskbody, row);
 
-                    RemoteViews separator = new RemoteViews(Constants.PACKAGE, R.layout.widget_separator);
-                    boolean isLastRow = (i == cursor.getCount() - 1) || (i == numberOfTasks - 1);
-                    if (!isLastRow)
+                    boolean isLastRow = (i == rows.size() - 1) || (i == numberOfTasks - 1);
+                    if (!isLastRow) {
+                        RemoteViews separator = new RemoteViews(Constants.PACKAGE, R.layout.widget_separator);
                         views.addView(R.id.taskbody, separator);
+                    }
                 }
                 for (; i < numberOfTasks; i++) {
                     RemoteViews row = new RemoteViews(Constants.PACKAGE, R.layout.widget_row);
                     row.setViewVisibility(R.id.text, View.INVISIBLE);
                     views.addView(R.id.taskbody, row);
                 }
-
-            } catch (Exception e) {
-                // can happen if database is not ready
-                Log.e("WIDGET-UPDATE", "Error updating widget", e);
-            } finally {
-                if(cursor != null)
-                    cursor.close();
             }
 
             Intent listIntent = new Intent(context, TaskListActivity.class);
@@ -221,12 +373,8 @@ public class TasksWidget extends AppWidgetProvider {
             }
             listIntent.putExtra(TaskListActivity.TOKEN_SOURCE, Constants.SOURCE_WIDGET);
             listIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_MULTIPLE_TASK);
-            if(filter != null) {
-                listIntent.putExtra(TaskListFragment.TOKEN_FILTER, filter);
-                listIntent.setAction("L" + widgetId + filter.getSqlQuery());
-            } else {
-                listIntent.setAction("L" + widgetId);
-            }
+            listIntent.putExtra(TaskListFragment.TOKEN_FILTER, filter);
+            listIntent.setAction("L" + widgetId + filter.getSqlQuery());
             PendingIntent pListIntent = PendingIntent.getActivity(context, widgetId,
                     listIntent, PendingIntent.FLAG_CANCEL_CURRENT);
             if (pListIntent != null)
@@ -236,14 +384,12 @@ public class TasksWidget extends AppWidgetProvider {
             Intent editIntent = new Intent(context, TaskEditActivity.class);
             editIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_MULTIPLE_TASK);
             editIntent.putExtra(TaskEditFragment.OVERRIDE_FINISH_ANIM, false);
-            if(filter != null) {
-                editIntent.putExtra(TaskListFragment.TOKEN_FILTER, filter);
-                if (filter.valuesForNewTasks != null) {
-                    String values = AndroidUtilities.contentValuesToSerializedString(filter.valuesForNewTasks);
-                    values = PermaSql.replacePlaceholders(values);
-                    editIntent.putExtra(TaskEditFragment.TOKEN_VALUES, values);
-                    editIntent.setAction("E" + widgetId + values);
-                }
+            editIntent.putExtra(TaskListFragment.TOKEN_FILTER, filter);
+            if (filter.valuesForNewTasks != null) {
+                String values = AndroidUtilities.contentValuesToSerializedString(filter.valuesForNewTasks);
+                values = PermaSql.replacePlaceholders(values);
+                editIntent.putExtra(TaskEditFragment.TOKEN_VALUES, values);
+                editIntent.setAction("E" + widgetId + values);
             } else {
                 editIntent.setAction("E" + widgetId);
             }
@@ -0,0 +1,79 @@
+/**
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package com.todoroo.astrid.widget;
+
+import java.util.HashMap;
+
+/**
+ * State kept between updates of each widget: the task query compiled for
+ * its filter and sort settings, and a snapshot of what it last showed.
+ * Updates that would render the same snapshot again are skipped.
+ */
+public class WidgetCache {
+
+    private static final class Entry {
+        String queryKey;
+        String query;
+        String snapshot;
+    }
+
+    private final HashMap<Integer, Entry> entries = new HashMap<Integer, Entry>();
+
+    private Entry entry(int widgetId) {
+        Entry entry = entries.get(widgetId);
+        if(entry == null) {
+            entry = new Entry();
+            entries.put(widgetId, entry);
+        }
+        return entry;
+    }
+
+    // --- queries
+
+    /**
+     * @param queryKey the inputs the query is compiled from
+     * @return query compiled from the same inputs, or null
+     */
+    public synchronized String getQuery(int widgetId, String queryKey) {
+        Entry entry = entries.get(widgetId);
+        if(entry == null || !queryKey.equals(entry.queryKey))
+            return null;
+        return entry.query;
+    }
+
+    public synchronized void putQuery(int widgetId, String queryKey, String query) {
+        Entry entry = entry(widgetId);
+        entry.queryKey = queryKey;
+        entry.query = query;
+    }
+
+    // --- snapshots
+
+    /**
+     * Record what a widget is about to show
+     * @return false if it is what the widget shows already, so it need
+     * not be updated
+     */
+    public synchronized boolean setSnapshot(int widgetId, String snapshot) {
+        Entry entry = entry(widgetId);
+        if(snapshot.equals(entry.snapshot))
+            return false;
+        entry.snapshot = snapshot;
+        return true;
+    }
+
+    /** Forget what a widget shows, so its next update is rendered */
+    public synchronized void invalidate(int widgetId) {
+        Entry entry = entries.get(widgetId);
+        if(entry != null)
+            entry.snapshot = null;
+    }
+
+    /** Forget what all widgets show */
+    public synchronized void invalidateAll() {
+        for(Entry entry : entries.values())
+            entry.snapshot = null;
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.todoroo.andlib.data;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import android.content.ContentValues;
+
+import com.todoroo.astrid.benchmark.BenchmarkDatabase;
+import com.todoroo.astrid.data.Task;
+
+/**
+ * Value access on {@link AbstractModel}, using tasks since they have the
+ * most properties
+ */
+@SuppressWarnings("nls")
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AbstractModelBenchmark {
+
+    /** task as read from the database, with one edited value */
+    private Task task;
+
+    /** equal copy of the task */
+    private Task copy;
+
+    private ContentValues changes;
+
+    @Setup
+    public void createTask() {
+        Task saved = BenchmarkDatabase.createTask(3, 1300000000000L);
+        saved.setId(3);
+        task = new Task();
+        task.mergeWith(saved.getMergedValues());
+        task.markSaved();
+        task.setValue(Task.TITLE, "Edited title");
+
+        copy = (Task) task.clone();
+
+        changes = new ContentValues();
+        changes.put(Task.IMPORTANCE.name, Task.IMPORTANCE_MUST_DO);
+        changes.put(Task.DUE_DATE.name, 1300000000000L);
+        changes.put(Task.NOTES.name, "Merged notes");
+    }
+
+    @Benchmark
+    public long getValues() {
+        // one set value, stored values and a default
+        return task.getValue(Task.TITLE).length() + task.getValue(Task.DUE_DATE) +
+            task.getValue(Task.IMPORTANCE) + task.getValue(Task.ELAPSED_SECONDS);
+    }
+
+    @Benchmark
+    public Task setValues() {
+        Task result = new Task();
+        result.setValue(Task.TITLE, "New task");
+        result.setValue(Task.IMPORTANCE, Task.IMPORTANCE_SHOULD_DO);
+        result.setValue(Task.DUE_DATE, 1300000000000L);
+        result.setValue(Task.NOTES, "Notes");
+        result.setValue(Task.FLAGS, 0);
+        return result;
+    }
+
+    @Benchmark
+    public Task mergeWith() {
+        Task result = new Task();
+        result.mergeWith(changes);
+        return result;
+    }
+
+    @Benchmark
+    public ContentValues getMergedValues() {
+        return task.getMergedValues();
+    }
+
+    @Benchmark
+    public AbstractModel cloneModel() {
+        return task.clone();
+    }
+
+    @Benchmark
+    public boolean equalsModel() {
+        return task.equals(copy);
+    }
+
+    @Benchmark
+    public int hashCodeModel() {
+        return task.hashCode();
+    }
+
+}
@@ -0,0 +1,158 @@
+package com.todoroo.andlib.data;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.todoroo.andlib.sql.Criterion;
+import com.todoroo.andlib.sql.Join;
+import com.todoroo.andlib.sql.Query;
+import com.todoroo.andlib.utility.DateUtilities;
+import com.todoroo.astrid.benchmark.BenchmarkDatabase;
+import com.todoroo.astrid.core.SortHelper;
+import com.todoroo.astrid.data.Metadata;
+import com.todoroo.astrid.data.MetadataApiDao.MetadataCriteria;
+import com.todoroo.astrid.data.Task;
+import com.todoroo.astrid.data.TaskApiDao.TaskCriteria;
+
+/**
+ * Reads and writes through {@link DatabaseDao} on a SQLite database holding
+ * the given number of synthetic tasks
+ */
+@SuppressWarnings("nls")
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DatabaseDaoBenchmark {
+
+    /** page of the task list read by the list queries */
+    private static final int PAGE = 50;
+
+    @Param({ "1000", "10000", "100000" })
+    public int tasks;
+
+    private BenchmarkDatabase database;
+
+    private DatabaseDao<Task> taskDao;
+
+    private final Random random = new Random(42);
+
+    private long nextId;
+
+    @Setup(Level.Trial)
+    public void createDatabase() throws Exception {
+        database = new BenchmarkDatabase("benchmark-" + tasks);
+        database.populate(tasks);
+        taskDao = new DatabaseDao<Task>(Task.class, database);
+    }
+
+    @Setup(Level.Iteration)
+    public void removeCreatedTasks() {
+        // keep the table at its nominal size across iterations
+        taskDao.deleteWhere(Task.ID.gt(tasks));
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDatabase() {
+        database.clear();
+    }
+
+    private long randomId() {
+        return 1 + random.nextInt(tasks);
+    }
+
+    private static long readAll(TodorooCursor<Task> cursor) {
+        long sum = 0;
+        try {
+            Task task = new Task();
+            for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                task.clear();
+                task.readFromCursor(cursor);
+                sum += task.getId();
+            }
+        } finally {
+            cursor.close();
+        }
+        return sum;
+    }
+
+    // --- reads
+
+    @Benchmark
+    public Task fetchById() {
+        return taskDao.fetch(randomId(), Task.PROPERTIES);
+    }
+
+    @Benchmark
+    public long activeListPage() {
+        Query query = Query.select(Task.PROPERTIES).
+            where(TaskCriteria.activeAndVisible()).
+            orderBy(SortHelper.defaultTaskOrder()).limit(PAGE);
+        return readAll(taskDao.query(query));
+    }
+
+    @Benchmark
+    public long tagListPage() {
+        Query query = Query.select(Task.PROPERTIES).
+            join(Join.inner(Metadata.TABLE, Task.ID.eq(Metadata.TASK))).
+            where(Criterion.and(TaskCriteria.activeAndVisible(),
+                    MetadataCriteria.withKey(BenchmarkDatabase.TAG_KEY),
+                    Metadata.VALUE1.eq("tag" + random.nextInt(BenchmarkDatabase.TAGS)))).
+            orderBy(SortHelper.defaultTaskOrder()).limit(PAGE);
+        return readAll(taskDao.query(query));
+    }
+
+    @Benchmark
+    public int countActive() {
+        TodorooCursor<Task> cursor = taskDao.query(Query.select(Task.ID).
+                where(TaskCriteria.isActive()));
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // --- writes
+
+    @Benchmark
+    public boolean saveExisting() {
+        Task task = new Task();
+        task.setId(randomId());
+        task.setValue(Task.TITLE, "Renamed " + random.nextInt());
+        task.setValue(Task.MODIFICATION_DATE, DateUtilities.now());
+        return taskDao.saveExisting(task);
+    }
+
+    @Benchmark
+    public boolean createNew() {
+        return taskDao.createNew(BenchmarkDatabase.createTask((int) nextId++, DateUtilities.now()));
+    }
+
+    @Benchmark
+    public int saveExistingMultiple() {
+        long[] ids = new long[PAGE];
+        for(int i = 0; i < ids.length; i++)
+            ids[i] = randomId();
+        Task template = new Task();
+        template.setValue(Task.IMPORTANCE, random.nextInt(4));
+        return taskDao.saveExistingMultiple(ids, template);
+    }
+
+}
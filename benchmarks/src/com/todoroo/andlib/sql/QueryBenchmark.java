@@ -0,0 +1,79 @@
+package com.todoroo.andlib.sql;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.todoroo.astrid.core.SortHelper;
+import com.todoroo.astrid.data.Metadata;
+import com.todoroo.astrid.data.MetadataApiDao.MetadataCriteria;
+import com.todoroo.astrid.data.Task;
+import com.todoroo.astrid.data.TaskApiDao.TaskCriteria;
+
+/**
+ * Building SQL strings with {@link Query}, {@link QueryTemplate} and
+ * {@link Criterion}, shaped like the queries of the task list and filters
+ */
+@SuppressWarnings("nls")
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBenchmark {
+
+    private Long[] ids;
+
+    @Setup
+    public void createIds() {
+        ids = new Long[500];
+        for(int i = 0; i < ids.length; i++)
+            ids[i] = 1000L + i;
+    }
+
+    @Benchmark
+    public String taskListQuery() {
+        return Query.select(Task.PROPERTIES).
+            join(Join.left(Metadata.TABLE, Criterion.and(Task.ID.eq(Metadata.TASK),
+                    MetadataCriteria.withKey("tags-tag")))).
+            where(TaskCriteria.activeAndVisible()).
+            orderBy(SortHelper.defaultTaskOrder()).
+            groupBy(Task.ID).toString();
+    }
+
+    @Benchmark
+    public String filterTemplate() {
+        return new QueryTemplate().
+            join(Join.inner(Metadata.TABLE, Task.ID.eq(Metadata.TASK))).
+            where(Criterion.and(TaskCriteria.activeAndVisible(),
+                    MetadataCriteria.withKey("tags-tag"),
+                    Metadata.VALUE1.eq("errands"))).
+            orderBy(Order.desc(Task.IMPORTANCE), Order.asc(Task.DUE_DATE)).toString();
+    }
+
+    @Benchmark
+    public String nestedCriteria() {
+        return Criterion.or(
+                Criterion.and(Task.DUE_DATE.gt(0), Task.DUE_DATE.lt(Functions.fromNow(7 * 86400000L))),
+                Criterion.and(Task.IMPORTANCE.lte(Task.IMPORTANCE_MUST_DO),
+                        Criterion.not(Task.TITLE.like("%someday%"))),
+                Criterion.exists(Query.select(Metadata.ID).from(Metadata.TABLE).
+                        where(MetadataCriteria.withKey("tags-tag")))).toString();
+    }
+
+    @Benchmark
+    public String idInCriterion() {
+        return Task.ID.in(ids).toString();
+    }
+
+}
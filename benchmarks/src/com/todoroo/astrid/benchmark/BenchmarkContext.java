@@ -0,0 +1,39 @@
+package com.todoroo.astrid.benchmark;
+
+import java.io.File;
+
+import android.content.Context;
+
+/**
+ * Context placing databases in a scratch directory
+ */
+public class BenchmarkContext extends Context {
+
+    private final File directory;
+
+    public BenchmarkContext(File directory) {
+        this.directory = directory;
+        directory.mkdirs();
+    }
+
+    @Override
+    public String getPackageName() {
+        return "com.timsu.astrid"; //$NON-NLS-1$
+    }
+
+    @Override
+    public File getDatabasePath(String name) {
+        return new File(directory, name);
+    }
+
+    @Override
+    public boolean deleteDatabase(String name) {
+        return getDatabasePath(name).delete();
+    }
+
+    @Override
+    public String[] databaseList() {
+        return directory.list();
+    }
+
+}
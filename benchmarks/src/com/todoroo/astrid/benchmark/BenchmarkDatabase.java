@@ -0,0 +1,120 @@
+package com.todoroo.astrid.benchmark;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+
+import com.todoroo.andlib.data.AbstractDatabase;
+import com.todoroo.andlib.data.DatabaseDao;
+import com.todoroo.andlib.data.Table;
+import com.todoroo.andlib.service.ContextManager;
+import com.todoroo.andlib.utility.DateUtilities;
+import com.todoroo.astrid.data.Metadata;
+import com.todoroo.astrid.data.Task;
+
+/**
+ * Database with the task and metadata tables and indices of the app's
+ * <code>Database</code>, without its listeners which need the UI.
+ */
+@SuppressWarnings("nls")
+public class BenchmarkDatabase extends AbstractDatabase {
+
+    /** metadata key of the synthetic tags */
+    public static final String TAG_KEY = "tags-tag";
+
+    /** number of distinct synthetic tags */
+    public static final int TAGS = 20;
+
+    private static final Table[] TABLES = new Table[] {
+        Task.TABLE,
+        Metadata.TABLE,
+    };
+
+    private final String name;
+
+    /**
+     * Open a fresh database in a temporary directory
+     */
+    public BenchmarkDatabase(String name) {
+        File directory = new File(System.getProperty("java.io.tmpdir"), "astrid-benchmarks");
+        ContextManager.setContext(new BenchmarkContext(directory));
+        this.name = name;
+        clear();
+        openForWriting();
+    }
+
+    @Override
+    protected String getName() {
+        return name;
+    }
+
+    @Override
+    protected int getVersion() {
+        return 1;
+    }
+
+    @Override
+    public Table[] getTables() {
+        return TABLES;
+    }
+
+    @Override
+    protected void onCreateTables() {
+        database.execSQL("CREATE INDEX IF NOT EXISTS md_tid ON " + Metadata.TABLE +
+                "(" + Metadata.TASK.name + ")");
+        database.execSQL("CREATE INDEX IF NOT EXISTS md_tkid ON " + Metadata.TABLE +
+                "(" + Metadata.TASK.name + "," + Metadata.KEY.name + ")");
+        database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS t_rid ON " + Task.TABLE +
+                "(" + Task.REMOTE_ID.name + ")");
+    }
+
+    @Override
+    protected boolean onUpgrade(int oldVersion, int newVersion) {
+        return false;
+    }
+
+    /**
+     * Fill the database with tasks resembling a real list: a third have
+     * due dates, a fifth are completed, one in fifty is hidden and every
+     * task has one of {@link #TAGS} tags
+     */
+    public void populate(final int count) throws Exception {
+        final DatabaseDao<Task> taskDao = new DatabaseDao<Task>(Task.class, this);
+        final DatabaseDao<Metadata> metadataDao = new DatabaseDao<Metadata>(Metadata.class, this);
+        final long now = DateUtilities.now();
+        runInTransaction(new Callable<Void>() {
+            public Void call() {
+                for(int i = 0; i < count; i++) {
+                    Task task = createTask(i, now);
+                    taskDao.createNew(task);
+
+                    Metadata tag = new Metadata();
+                    tag.setValue(Metadata.TASK, task.getId());
+                    tag.setValue(Metadata.KEY, TAG_KEY);
+                    tag.setValue(Metadata.VALUE1, "tag" + (i % TAGS));
+                    metadataDao.createNew(tag);
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * @return synthetic task number i
+     */
+    public static Task createTask(int i, long now) {
+        Task task = new Task();
+        task.setValue(Task.TITLE, "Task number " + i);
+        task.setValue(Task.IMPORTANCE, i % 4);
+        task.setValue(Task.NOTES, i % 3 == 0 ? "Some notes for task " + i : "");
+        if(i % 3 == 0)
+            task.setValue(Task.DUE_DATE, now + (i % 30 - 10) * DateUtilities.ONE_DAY);
+        if(i % 5 == 0)
+            task.setValue(Task.COMPLETION_DATE, now - i);
+        if(i % 50 == 0)
+            task.setValue(Task.HIDE_UNTIL, now + DateUtilities.ONE_WEEK);
+        if(i % 7 == 0)
+            task.setValue(Task.RECURRENCE, "RRULE:FREQ=WEEKLY;INTERVAL=1;BYDAY=MO,WE");
+        return task;
+    }
+
+}
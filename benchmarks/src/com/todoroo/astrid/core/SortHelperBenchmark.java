@@ -0,0 +1,51 @@
+package com.todoroo.astrid.core;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.todoroo.andlib.sql.QueryTemplate;
+import com.todoroo.astrid.data.TaskApiDao.TaskCriteria;
+
+/**
+ * Rewriting a filter's SQL for the chosen sort and display flags, which
+ * the task list does on every load
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SortHelperBenchmark {
+
+    @Param({ "0", "1", "2", "3", "4" })
+    public int sort;
+
+    /** flags: none, or reversed and showing completed, hidden and deleted tasks */
+    @Param({ "0", "15" })
+    public int flags;
+
+    private String sql;
+
+    @Setup
+    public void createFilterSql() {
+        sql = new QueryTemplate().where(TaskCriteria.activeAndVisible()).toString();
+    }
+
+    @Benchmark
+    public String adjustQueryForFlagsAndSort() {
+        return SortHelper.adjustQueryForFlagsAndSort(sql, flags, sort);
+    }
+
+}
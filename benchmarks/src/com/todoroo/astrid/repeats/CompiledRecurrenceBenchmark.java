@@ -0,0 +1,63 @@
+package com.todoroo.astrid.repeats;
+
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing recurrence rules and computing occurrences from them
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompiledRecurrenceBenchmark {
+
+    @Param({
+        "RRULE:FREQ=DAILY;INTERVAL=1",
+        "RRULE:FREQ=WEEKLY;INTERVAL=2;BYDAY=MO,WE,FR",
+        "RRULE:FREQ=MONTHLY;INTERVAL=1",
+        "RRULE:FREQ=HOURLY;INTERVAL=6",
+    })
+    public String rule;
+
+    /** 2011-03-14 09:00 UTC, a monday */
+    private static final long DUE_DATE = 1300093200000L;
+
+    private CompiledRecurrence compiled;
+
+    @Setup
+    public void compileRule() throws ParseException {
+        compiled = CompiledRecurrence.compile(rule);
+    }
+
+    @Benchmark
+    public CompiledRecurrence compileUncached() throws ParseException {
+        CompiledRecurrence.clearCache();
+        return CompiledRecurrence.compile(rule);
+    }
+
+    @Benchmark
+    public long nextOccurrence() {
+        return compiled.nextOccurrence(DUE_DATE);
+    }
+
+    @Benchmark
+    public long[] nextTenOccurrences() {
+        return compiled.nextOccurrences(DUE_DATE, 10);
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.todoroo.astrid.utility;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.todoroo.astrid.data.Task;
+
+/**
+ * Parsing quick-add titles for dates, repeats, tags and priorities
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TitleParserBenchmark {
+
+    @Param({
+        "Buy milk",
+        "Call mom tomorrow at 5pm !!",
+        "Water the plants every week #home @(garden balcony)",
+        "Pay rent monthly on the 1st #finance !4",
+    })
+    public String title;
+
+    @Benchmark
+    public Task parse() {
+        Task task = new Task();
+        task.setValue(Task.TITLE, title);
+        new TitleParser(task, new ArrayList<String>()).parse();
+        return task;
+    }
+
+}
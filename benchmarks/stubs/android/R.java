@@ -0,0 +1,17 @@
+package android;
+
+/**
+ * Compile-only stand-in for the framework class
+ */
+public final class R {
+
+    public static final class drawable {
+        public static final int ic_dialog_alert = 0x01080027;
+        public static final int ic_dialog_info = 0x01080028;
+    }
+
+    public static final class string {
+        public static final int cancel = 0x01040000;
+        public static final int ok = 0x0104000a;
+    }
+}
@@ -0,0 +1,23 @@
+package android.app;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * Compile-only stand-in for the framework class
+ */
+public class Activity extends Context {
+
+    public final void runOnUiThread(Runnable action) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public void startActivityForResult(Intent intent, int requestCode) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public void unregisterReceiver(BroadcastReceiver receiver) {
+        throw new RuntimeException("Stub!");
+    }
+}
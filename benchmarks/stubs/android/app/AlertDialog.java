@@ -0,0 +1,36 @@
+package android.app;
+
+import android.content.Context;
+import android.content.DialogInterface;
+
+/**
+ * Compile-only stand-in for the framework class
+ */
+public class AlertDialog {
+
+    public static class Builder {
+        public Builder(Context context) {
+            throw new RuntimeException("Stub!");
+        }
+
+        public Builder setTitle(int titleId) {
+            throw new RuntimeException("Stub!");
+        }
+
+        public Builder setMessage(CharSequence message) {
+            throw new RuntimeException("Stub!");
+        }
+
+        public Builder setIcon(int iconId) {
+            throw new RuntimeException("Stub!");
+        }
+
+        public Builder setPositiveButton(int textId, DialogInterface.OnClickListener listener) {
+            throw new RuntimeException("Stub!");
+        }
+
+        public AlertDialog show() {
+            throw new RuntimeException("Stub!");
+        }
+    }
+}
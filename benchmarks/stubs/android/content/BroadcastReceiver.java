@@ -0,0 +1,7 @@
+package android.content;
+
+/**
+ * Compile-only stand-in for the framework class
+ */
+public abstract class BroadcastReceiver {
+}
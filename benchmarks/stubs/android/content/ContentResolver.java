@@ -0,0 +1,26 @@
+package android.content;
+
+import android.database.Cursor;
+import android.net.Uri;
+
+/**
+ * Compile-only stand-in for the framework class
+ */
+public abstract class ContentResolver {
+
+    public final Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public final Uri insert(Uri url, ContentValues values) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public final int update(Uri uri, ContentValues values, String where, String[] selectionArgs) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public final int delete(Uri url, String where, String[] selectionArgs) {
+        throw new RuntimeException("Stub!");
+    }
+}
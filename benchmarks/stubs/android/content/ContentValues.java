@@ -0,0 +1,171 @@
+package android.content;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/**
+ * Stand-in for the framework class, backed by a {@link HashMap} like the
+ * real one. Conversions follow the framework's <code>getAs*</code> rules.
+ */
+public final class ContentValues implements Parcelable {
+
+    private final HashMap<String, Object> values;
+
+    public ContentValues() {
+        values = new HashMap<String, Object>(8);
+    }
+
+    public ContentValues(int size) {
+        values = new HashMap<String, Object>(size, 1.0f);
+    }
+
+    public ContentValues(ContentValues from) {
+        values = new HashMap<String, Object>(from.values);
+    }
+
+    public void put(String key, String value) { values.put(key, value); }
+    public void put(String key, Byte value) { values.put(key, value); }
+    public void put(String key, Short value) { values.put(key, value); }
+    public void put(String key, Integer value) { values.put(key, value); }
+    public void put(String key, Long value) { values.put(key, value); }
+    public void put(String key, Float value) { values.put(key, value); }
+    public void put(String key, Double value) { values.put(key, value); }
+    public void put(String key, Boolean value) { values.put(key, value); }
+    public void put(String key, byte[] value) { values.put(key, value); }
+
+    public void putAll(ContentValues other) {
+        values.putAll(other.values);
+    }
+
+    public void putNull(String key) {
+        values.put(key, null);
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    public void remove(String key) {
+        values.remove(key);
+    }
+
+    public void clear() {
+        values.clear();
+    }
+
+    public boolean containsKey(String key) {
+        return values.containsKey(key);
+    }
+
+    public Object get(String key) {
+        return values.get(key);
+    }
+
+    public String getAsString(String key) {
+        Object value = values.get(key);
+        return value != null ? value.toString() : null;
+    }
+
+    public Long getAsLong(String key) {
+        Object value = values.get(key);
+        if(value instanceof Number)
+            return ((Number) value).longValue();
+        if(value instanceof CharSequence) {
+            try {
+                return Long.valueOf(value.toString());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    public Integer getAsInteger(String key) {
+        Long value = getAsLong(key);
+        return value != null ? Integer.valueOf(value.intValue()) : null;
+    }
+
+    public Double getAsDouble(String key) {
+        Object value = values.get(key);
+        if(value instanceof Number)
+            return ((Number) value).doubleValue();
+        if(value instanceof CharSequence) {
+            try {
+                return Double.valueOf(value.toString());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    public Float getAsFloat(String key) {
+        Double value = getAsDouble(key);
+        return value != null ? Float.valueOf(value.floatValue()) : null;
+    }
+
+    public Boolean getAsBoolean(String key) {
+        Object value = values.get(key);
+        if(value instanceof Boolean)
+            return (Boolean) value;
+        if(value instanceof Number)
+            return ((Number) value).intValue() != 0;
+        if(value instanceof CharSequence)
+            return Boolean.valueOf(value.toString());
+        return null;
+    }
+
+    public byte[] getAsByteArray(String key) {
+        Object value = values.get(key);
+        return value instanceof byte[] ? (byte[]) value : null;
+    }
+
+    public Set<Map.Entry<String, Object>> valueSet() {
+        return values.entrySet();
+    }
+
+    public Set<String> keySet() {
+        return values.keySet();
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        return object instanceof ContentValues && values.equals(((ContentValues) object).values);
+    }
+
+    @Override
+    public int hashCode() {
+        return values.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return values.toString();
+    }
+
+    public int describeContents() {
+        return 0;
+    }
+
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeMap(values);
+    }
+
+    public static final Parcelable.Creator<ContentValues> CREATOR = new Parcelable.Creator<ContentValues>() {
+        @SuppressWarnings("unchecked")
+        public ContentValues createFromParcel(Parcel source) {
+            ContentValues result = new ContentValues();
+            result.values.putAll(source.readHashMap(null));
+            return result;
+        }
+
+        public ContentValues[] newArray(int size) {
+            return new ContentValues[size];
+        }
+    };
+
+}
@@ -0,0 +1,69 @@
+package android.content;
+
+import java.io.File;
+
+import android.content.pm.PackageManager;
+import android.content.res.Resources;
+
+/**
+ * Stand-in for the framework class. Benchmarks supply a subclass that
+ * places databases in a scratch directory; everything else is unsupported.
+ */
+public abstract class Context {
+
+    public static final String CONNECTIVITY_SERVICE = "connectivity";
+    public static final String INPUT_METHOD_SERVICE = "input_method";
+
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    public String getPackageName() {
+        throw new RuntimeException("Stub!");
+    }
+
+    public PackageManager getPackageManager() {
+        throw new RuntimeException("Stub!");
+    }
+
+    public Resources getResources() {
+        throw new RuntimeException("Stub!");
+    }
+
+    public ContentResolver getContentResolver() {
+        throw new RuntimeException("Stub!");
+    }
+
+    public Object getSystemService(String name) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public final String getString(int resId) {
+        return getResources().getString(resId);
+    }
+
+    public final String getString(int resId, Object... formatArgs) {
+        return getResources().getString(resId, formatArgs);
+    }
+
+    public void startActivity(Intent intent) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public void sendOrderedBroadcast(Intent intent, String receiverPermission) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public String[] databaseList() {
+        throw new RuntimeException("Stub!");
+    }
+
+    public File getDatabasePath(String name) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public boolean deleteDatabase(String name) {
+        throw new RuntimeException("Stub!");
+    }
+
+}
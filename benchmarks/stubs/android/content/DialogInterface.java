@@ -0,0 +1,11 @@
+package android.content;
+
+/**
+ * Compile-only stand-in for the framework interface
+ */
+public interface DialogInterface {
+
+    public interface OnClickListener {
+        public void onClick(DialogInterface dialog, int which);
+    }
+}
@@ -0,0 +1,23 @@
+package android.content;
+
+/**
+ * Compile-only stand-in for the framework class
+ */
+public class Intent {
+
+    public Intent() {
+        throw new RuntimeException("Stub!");
+    }
+
+    public Intent(String action) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public Intent setClassName(String packageName, String className) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public Intent putExtra(String name, long value) {
+        throw new RuntimeException("Stub!");
+    }
+}
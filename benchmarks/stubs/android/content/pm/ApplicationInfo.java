@@ -0,0 +1,11 @@
+package android.content.pm;
+
+/**
+ * Compile-only stand-in for the framework class
+ */
+public class ApplicationInfo {
+
+    public CharSequence loadLabel(PackageManager pm) {
+        throw new RuntimeException("Stub!");
+    }
+}
@@ -0,0 +1,9 @@
+package android.content.pm;
+
+/**
+ * Compile-only stand-in for the framework class
+ */
+public class PackageInfo {
+
+    public Signature[] signatures;
+}
@@ -0,0 +1,25 @@
+package android.content.pm;
+
+/**
+ * Compile-only stand-in for the framework class
+ */
+public abstract class PackageManager {
+
+    public static final int GET_SIGNATURES = 64;
+
+    public static class NameNotFoundException extends Exception {
+        private static final long serialVersionUID = 1L;
+    }
+
+    public PackageInfo getPackageInfo(String packageName, int flags) throws NameNotFoundException {
+        throw new RuntimeException("Stub!");
+    }
+
+    public ApplicationInfo getApplicationInfo(String packageName, int flags) throws NameNotFoundException {
+        throw new RuntimeException("Stub!");
+    }
+
+    public boolean hasSystemFeature(String name) {
+        throw new RuntimeException("Stub!");
+    }
+}
@@ -0,0 +1,11 @@
+package android.content.pm;
+
+/**
+ * Compile-only stand-in for the framework class
+ */
+public class Signature {
+
+    public String toCharsString() {
+        throw new RuntimeException("Stub!");
+    }
+}
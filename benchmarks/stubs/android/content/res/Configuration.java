@@ -0,0 +1,12 @@
+package android.content.res;
+
+/**
+ * Compile-only stand-in for the framework class
+ */
+public final class Configuration {
+
+    public static final int SCREENLAYOUT_SIZE_MASK = 0x0f;
+    public static final int SCREENLAYOUT_SIZE_XLARGE = 0x04;
+
+    public int screenLayout;
+}
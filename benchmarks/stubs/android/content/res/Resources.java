@@ -0,0 +1,33 @@
+package android.content.res;
+
+import java.io.InputStream;
+
+/**
+ * Compile-only stand-in for the framework class
+ */
+public class Resources {
+
+    public String getString(int id) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public String getString(int id, Object... formatArgs) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public String[] getStringArray(int id) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public int getColor(int id) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public Configuration getConfiguration() {
+        throw new RuntimeException("Stub!");
+    }
+
+    public InputStream openRawResource(int id) {
+        throw new RuntimeException("Stub!");
+    }
+}
@@ -0,0 +1,47 @@
+package android.database;
+
+/**
+ * Stand-in for the framework class, forwarding every call
+ */
+public class CursorWrapper implements Cursor {
+
+    private final Cursor cursor;
+
+    public CursorWrapper(Cursor cursor) {
+        this.cursor = cursor;
+    }
+
+    public int getCount() { return cursor.getCount(); }
+    public int getPosition() { return cursor.getPosition(); }
+    public boolean move(int offset) { return cursor.move(offset); }
+    public boolean moveToPosition(int position) { return cursor.moveToPosition(position); }
+    public boolean moveToFirst() { return cursor.moveToFirst(); }
+    public boolean moveToLast() { return cursor.moveToLast(); }
+    public boolean moveToNext() { return cursor.moveToNext(); }
+    public boolean moveToPrevious() { return cursor.moveToPrevious(); }
+    public boolean isFirst() { return cursor.isFirst(); }
+    public boolean isLast() { return cursor.isLast(); }
+    public boolean isBeforeFirst() { return cursor.isBeforeFirst(); }
+    public boolean isAfterLast() { return cursor.isAfterLast(); }
+
+    public int getColumnIndex(String columnName) { return cursor.getColumnIndex(columnName); }
+    public int getColumnIndexOrThrow(String columnName) { return cursor.getColumnIndexOrThrow(columnName); }
+    public String getColumnName(int columnIndex) { return cursor.getColumnName(columnIndex); }
+    public String[] getColumnNames() { return cursor.getColumnNames(); }
+    public int getColumnCount() { return cursor.getColumnCount(); }
+
+    public byte[] getBlob(int columnIndex) { return cursor.getBlob(columnIndex); }
+    public String getString(int columnIndex) { return cursor.getString(columnIndex); }
+    public short getShort(int columnIndex) { return cursor.getShort(columnIndex); }
+    public int getInt(int columnIndex) { return cursor.getInt(columnIndex); }
+    public long getLong(int columnIndex) { return cursor.getLong(columnIndex); }
+    public float getFloat(int columnIndex) { return cursor.getFloat(columnIndex); }
+    public double getDouble(int columnIndex) { return cursor.getDouble(columnIndex); }
+    public boolean isNull(int columnIndex) { return cursor.isNull(columnIndex); }
+
+    public void deactivate() { cursor.deactivate(); }
+    public boolean requery() { return cursor.requery(); }
+    public void close() { cursor.close(); }
+    public boolean isClosed() { return cursor.isClosed(); }
+
+}
@@ -0,0 +1,22 @@
+package android.database;
+
+/**
+ * Stand-in for the framework class
+ */
+public class SQLException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public SQLException() {
+        super();
+    }
+
+    public SQLException(String error) {
+        super(error);
+    }
+
+    public SQLException(String error, Throwable cause) {
+        super(error, cause);
+    }
+
+}
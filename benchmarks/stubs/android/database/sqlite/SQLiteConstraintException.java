@@ -0,0 +1,18 @@
+package android.database.sqlite;
+
+/**
+ * Stand-in for the framework class
+ */
+public class SQLiteConstraintException extends SQLiteException {
+
+    private static final long serialVersionUID = 1L;
+
+    public SQLiteConstraintException() {
+        super();
+    }
+
+    public SQLiteConstraintException(String error) {
+        super(error);
+    }
+
+}
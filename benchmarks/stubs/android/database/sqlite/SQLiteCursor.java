@@ -0,0 +1,204 @@
+package android.database.sqlite;
+
+import java.util.ArrayList;
+
+import android.database.Cursor;
+
+/**
+ * Stand-in for the framework class. The whole result is read up front,
+ * like a framework cursor whose window holds every row, and values are
+ * converted on access following SQLite's rules.
+ */
+public class SQLiteCursor implements Cursor {
+
+    private final String[] columns;
+
+    private final ArrayList<Object[]> rows;
+
+    private int position = -1;
+
+    private boolean closed = false;
+
+    SQLiteCursor(String[] columns, ArrayList<Object[]> rows) {
+        this.columns = columns;
+        this.rows = rows;
+    }
+
+    // --- position
+
+    public int getCount() {
+        return rows.size();
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public boolean move(int offset) {
+        return moveToPosition(position + offset);
+    }
+
+    public boolean moveToPosition(int newPosition) {
+        int count = rows.size();
+        if(newPosition >= count) {
+            position = count;
+            return false;
+        }
+        if(newPosition < 0) {
+            position = -1;
+            return false;
+        }
+        position = newPosition;
+        return true;
+    }
+
+    public boolean moveToFirst() {
+        return moveToPosition(0);
+    }
+
+    public boolean moveToLast() {
+        return moveToPosition(rows.size() - 1);
+    }
+
+    public boolean moveToNext() {
+        return moveToPosition(position + 1);
+    }
+
+    public boolean moveToPrevious() {
+        return moveToPosition(position - 1);
+    }
+
+    public boolean isFirst() {
+        return position == 0 && rows.size() != 0;
+    }
+
+    public boolean isLast() {
+        return position == rows.size() - 1 && rows.size() != 0;
+    }
+
+    public boolean isBeforeFirst() {
+        return rows.size() == 0 || position == -1;
+    }
+
+    public boolean isAfterLast() {
+        return rows.size() == 0 || position == rows.size();
+    }
+
+    // --- columns
+
+    public int getColumnIndex(String columnName) {
+        // framework cursors accept qualified names such as "tasks.title"
+        int dot = columnName.lastIndexOf('.');
+        if(dot != -1)
+            columnName = columnName.substring(dot + 1);
+        for(int i = 0; i < columns.length; i++)
+            if(columns[i].equalsIgnoreCase(columnName))
+                return i;
+        return -1;
+    }
+
+    public int getColumnIndexOrThrow(String columnName) {
+        int index = getColumnIndex(columnName);
+        if(index < 0)
+            throw new IllegalArgumentException("column '" + columnName + "' does not exist");
+        return index;
+    }
+
+    public String getColumnName(int columnIndex) {
+        return columns[columnIndex];
+    }
+
+    public String[] getColumnNames() {
+        return columns;
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    // --- values
+
+    private Object value(int columnIndex) {
+        if(position < 0 || position >= rows.size())
+            throw new IllegalStateException("cursor is at position " + position);
+        return rows.get(position)[columnIndex];
+    }
+
+    public byte[] getBlob(int columnIndex) {
+        Object value = value(columnIndex);
+        if(value == null || value instanceof byte[])
+            return (byte[]) value;
+        return value.toString().getBytes();
+    }
+
+    public String getString(int columnIndex) {
+        Object value = value(columnIndex);
+        return value == null ? null : value.toString();
+    }
+
+    public short getShort(int columnIndex) {
+        return (short) getLong(columnIndex);
+    }
+
+    public int getInt(int columnIndex) {
+        return (int) getLong(columnIndex);
+    }
+
+    public long getLong(int columnIndex) {
+        Object value = value(columnIndex);
+        if(value instanceof Number)
+            return ((Number) value).longValue();
+        if(value == null)
+            return 0;
+        return (long) parse(value.toString());
+    }
+
+    public float getFloat(int columnIndex) {
+        return (float) getDouble(columnIndex);
+    }
+
+    public double getDouble(int columnIndex) {
+        Object value = value(columnIndex);
+        if(value instanceof Number)
+            return ((Number) value).doubleValue();
+        if(value == null)
+            return 0;
+        return parse(value.toString());
+    }
+
+    /** SQLite reads the longest numeric prefix of a string, or 0 */
+    private static double parse(String text) {
+        String trimmed = text.trim();
+        for(int end = trimmed.length(); end > 0; end--) {
+            try {
+                return Double.parseDouble(trimmed.substring(0, end));
+            } catch (NumberFormatException e) {
+                // try a shorter prefix
+            }
+        }
+        return 0;
+    }
+
+    public boolean isNull(int columnIndex) {
+        return value(columnIndex) == null;
+    }
+
+    // --- lifecycle
+
+    public void deactivate() {
+        // nothing to release
+    }
+
+    public boolean requery() {
+        return false;
+    }
+
+    public void close() {
+        closed = true;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+}
@@ -0,0 +1,293 @@
+package android.database.sqlite;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Map;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.SQLException;
+
+/**
+ * Stand-in for the framework class, running statements on a desktop
+ * SQLite build through the xerial JDBC driver. Transactions nest the way
+ * the framework's do: the outermost one commits only if every nested one
+ * was marked successful.
+ */
+public class SQLiteDatabase {
+
+    /**
+     * Used to create cursors. Ignored by this stand-in
+     */
+    public interface CursorFactory {
+        // no methods needed
+    }
+
+    private final String path;
+
+    private Connection connection;
+
+    private int transactionDepth = 0;
+
+    private boolean transactionFailed = false;
+
+    private boolean transactionSuccessful = false;
+
+    private SQLiteDatabase(String path) {
+        this.path = path;
+        try {
+            Class.forName("org.sqlite.JDBC");
+            connection = DriverManager.getConnection("jdbc:sqlite:" + path);
+        } catch (Exception e) {
+            throw new SQLiteException("unable to open database " + path, e);
+        }
+    }
+
+    public static SQLiteDatabase openOrCreateDatabase(File file, CursorFactory factory) {
+        return new SQLiteDatabase(file.getPath());
+    }
+
+    public static SQLiteDatabase openOrCreateDatabase(String path, CursorFactory factory) {
+        return new SQLiteDatabase(path);
+    }
+
+    public static SQLiteDatabase create(CursorFactory factory) {
+        return new SQLiteDatabase(":memory:");
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public synchronized boolean isOpen() {
+        return connection != null;
+    }
+
+    public boolean isReadOnly() {
+        return false;
+    }
+
+    public synchronized void close() {
+        if(connection == null)
+            return;
+        try {
+            connection.close();
+        } catch (java.sql.SQLException e) {
+            throw wrap(e);
+        }
+        connection = null;
+    }
+
+    private Connection connection() {
+        if(connection == null)
+            throw new IllegalStateException("database " + path + " already closed");
+        return connection;
+    }
+
+    private static SQLiteException wrap(java.sql.SQLException e) {
+        String message = e.getMessage();
+        if(message != null && message.contains("SQLITE_CONSTRAINT"))
+            return new SQLiteConstraintException(message);
+        return new SQLiteException(message, e);
+    }
+
+    // --- version
+
+    public int getVersion() {
+        Cursor cursor = rawQuery("PRAGMA user_version", null);
+        try {
+            cursor.moveToFirst();
+            return cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void setVersion(int version) {
+        execSQL("PRAGMA user_version = " + version);
+    }
+
+    // --- statements
+
+    private static void bind(PreparedStatement statement, Object[] args) throws java.sql.SQLException {
+        if(args == null)
+            return;
+        for(int i = 0; i < args.length; i++)
+            statement.setObject(i + 1, args[i]);
+    }
+
+    public synchronized void execSQL(String sql) {
+        execSQL(sql, null);
+    }
+
+    public synchronized void execSQL(String sql, Object[] bindArgs) {
+        try {
+            PreparedStatement statement = connection().prepareStatement(sql);
+            try {
+                bind(statement, bindArgs);
+                statement.execute();
+            } finally {
+                statement.close();
+            }
+        } catch (java.sql.SQLException e) {
+            throw wrap(e);
+        }
+    }
+
+    public synchronized Cursor rawQuery(String sql, String[] selectionArgs) {
+        try {
+            PreparedStatement statement = connection().prepareStatement(sql);
+            try {
+                bind(statement, selectionArgs);
+                if(!statement.execute())
+                    return new SQLiteCursor(new String[0], new ArrayList<Object[]>());
+                ResultSet result = statement.getResultSet();
+                ResultSetMetaData metaData = result.getMetaData();
+                String[] columns = new String[metaData.getColumnCount()];
+                for(int i = 0; i < columns.length; i++)
+                    columns[i] = metaData.getColumnLabel(i + 1);
+                ArrayList<Object[]> rows = new ArrayList<Object[]>();
+                while(result.next()) {
+                    Object[] row = new Object[columns.length];
+                    for(int i = 0; i < columns.length; i++)
+                        row[i] = result.getObject(i + 1);
+                    rows.add(row);
+                }
+                result.close();
+                return new SQLiteCursor(columns, rows);
+            } finally {
+                statement.close();
+            }
+        } catch (java.sql.SQLException e) {
+            throw wrap(e);
+        }
+    }
+
+    private int executeUpdate(String sql, Object[] args) {
+        try {
+            PreparedStatement statement = connection().prepareStatement(sql);
+            try {
+                bind(statement, args);
+                return statement.executeUpdate();
+            } finally {
+                statement.close();
+            }
+        } catch (java.sql.SQLException e) {
+            throw wrap(e);
+        }
+    }
+
+    public synchronized long insertOrThrow(String table, String nullColumnHack, ContentValues values) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append('(');
+        Object[] args = new Object[values.size()];
+        int i = 0;
+        for(Map.Entry<String, Object> entry : values.valueSet()) {
+            sql.append(i > 0 ? "," : "").append(entry.getKey());
+            args[i++] = entry.getValue();
+        }
+        if(i == 0)
+            sql.append(nullColumnHack);
+        sql.append(") VALUES (");
+        for(int j = 0; j < Math.max(1, i); j++)
+            sql.append(j > 0 ? ",?" : "?");
+        sql.append(')');
+        if(i == 0)
+            args = new Object[] { null };
+
+        executeUpdate(sql.toString(), args);
+        try {
+            Statement statement = connection().createStatement();
+            try {
+                ResultSet result = statement.executeQuery("SELECT last_insert_rowid()");
+                return result.next() ? result.getLong(1) : -1;
+            } finally {
+                statement.close();
+            }
+        } catch (java.sql.SQLException e) {
+            throw wrap(e);
+        }
+    }
+
+    public synchronized long insert(String table, String nullColumnHack, ContentValues values) {
+        try {
+            return insertOrThrow(table, nullColumnHack, values);
+        } catch (SQLException e) {
+            return -1;
+        }
+    }
+
+    public synchronized int update(String table, ContentValues values, String whereClause, String[] whereArgs) {
+        StringBuilder sql = new StringBuilder("UPDATE ").append(table).append(" SET ");
+        int argCount = values.size() + (whereArgs == null ? 0 : whereArgs.length);
+        Object[] args = new Object[argCount];
+        int i = 0;
+        for(Map.Entry<String, Object> entry : values.valueSet()) {
+            sql.append(i > 0 ? "," : "").append(entry.getKey()).append("=?");
+            args[i++] = entry.getValue();
+        }
+        if(whereClause != null && whereClause.length() > 0)
+            sql.append(" WHERE ").append(whereClause);
+        if(whereArgs != null)
+            System.arraycopy(whereArgs, 0, args, i, whereArgs.length);
+        return executeUpdate(sql.toString(), args);
+    }
+
+    public synchronized int delete(String table, String whereClause, String[] whereArgs) {
+        String sql = "DELETE FROM " + table;
+        if(whereClause != null && whereClause.length() > 0)
+            sql += " WHERE " + whereClause;
+        return executeUpdate(sql, whereArgs);
+    }
+
+    // --- transactions
+
+    public synchronized void beginTransaction() {
+        try {
+            if(transactionDepth == 0) {
+                connection().setAutoCommit(false);
+                transactionFailed = false;
+            }
+        } catch (java.sql.SQLException e) {
+            throw wrap(e);
+        }
+        transactionDepth++;
+        transactionSuccessful = false;
+    }
+
+    public synchronized void setTransactionSuccessful() {
+        if(transactionDepth == 0)
+            throw new IllegalStateException("no transaction pending");
+        transactionSuccessful = true;
+    }
+
+    public synchronized void endTransaction() {
+        if(transactionDepth == 0)
+            throw new IllegalStateException("no transaction pending");
+        if(!transactionSuccessful)
+            transactionFailed = true;
+        transactionSuccessful = false;
+        transactionDepth--;
+        if(transactionDepth > 0)
+            return;
+        try {
+            if(transactionFailed)
+                connection().rollback();
+            else
+                connection().commit();
+            connection().setAutoCommit(true);
+        } catch (java.sql.SQLException e) {
+            throw wrap(e);
+        }
+    }
+
+    public synchronized boolean inTransaction() {
+        return transactionDepth > 0;
+    }
+
+}
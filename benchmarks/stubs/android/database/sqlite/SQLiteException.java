@@ -0,0 +1,24 @@
+package android.database.sqlite;
+
+import android.database.SQLException;
+
+/**
+ * Stand-in for the framework class
+ */
+public class SQLiteException extends SQLException {
+
+    private static final long serialVersionUID = 1L;
+
+    public SQLiteException() {
+        super();
+    }
+
+    public SQLiteException(String error) {
+        super(error);
+    }
+
+    public SQLiteException(String error, Throwable cause) {
+        super(error, cause);
+    }
+
+}
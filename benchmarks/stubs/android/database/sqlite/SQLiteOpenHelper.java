@@ -0,0 +1,75 @@
+package android.database.sqlite;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase.CursorFactory;
+
+/**
+ * Stand-in for the framework class. Databases are opened through
+ * {@link Context#getDatabasePath(String)}, and created or upgraded in a
+ * transaction according to the stored user version.
+ */
+public abstract class SQLiteOpenHelper {
+
+    private final Context context;
+
+    private final String name;
+
+    private final CursorFactory factory;
+
+    private final int version;
+
+    private SQLiteDatabase database = null;
+
+    public SQLiteOpenHelper(Context context, String name, CursorFactory factory, int version) {
+        if(version < 1)
+            throw new IllegalArgumentException("Version must be >= 1, was " + version);
+        this.context = context;
+        this.name = name;
+        this.factory = factory;
+        this.version = version;
+    }
+
+    public synchronized SQLiteDatabase getWritableDatabase() {
+        if(database != null && database.isOpen())
+            return database;
+
+        SQLiteDatabase db = name == null ? SQLiteDatabase.create(factory) :
+            SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(name), factory);
+        int current = db.getVersion();
+        if(current != version) {
+            db.beginTransaction();
+            try {
+                if(current == 0)
+                    onCreate(db);
+                else
+                    onUpgrade(db, current, version);
+                db.setVersion(version);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        }
+        onOpen(db);
+        database = db;
+        return db;
+    }
+
+    public synchronized SQLiteDatabase getReadableDatabase() {
+        return getWritableDatabase();
+    }
+
+    public synchronized void close() {
+        if(database != null && database.isOpen())
+            database.close();
+        database = null;
+    }
+
+    public abstract void onCreate(SQLiteDatabase db);
+
+    public abstract void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion);
+
+    public void onOpen(SQLiteDatabase db) {
+        // optional
+    }
+
+}
@@ -0,0 +1,38 @@
+package android.database.sqlite;
+
+/**
+ * Stand-in for the framework class, limited to building query strings
+ */
+public class SQLiteQueryBuilder {
+
+    public static String buildQueryString(boolean distinct, String tables, String[] columns,
+            String where, String groupBy, String having, String orderBy, String limit) {
+        StringBuilder query = new StringBuilder(120);
+        query.append("SELECT ");
+        if(distinct)
+            query.append("DISTINCT ");
+        if(columns != null && columns.length != 0) {
+            for(int i = 0; i < columns.length; i++) {
+                if(i > 0)
+                    query.append(", ");
+                query.append(columns[i]);
+            }
+            query.append(' ');
+        } else {
+            query.append("* ");
+        }
+        query.append("FROM ").append(tables);
+        appendClause(query, " WHERE ", where);
+        appendClause(query, " GROUP BY ", groupBy);
+        appendClause(query, " HAVING ", having);
+        appendClause(query, " ORDER BY ", orderBy);
+        appendClause(query, " LIMIT ", limit);
+        return query.toString();
+    }
+
+    private static void appendClause(StringBuilder query, String name, String clause) {
+        if(clause != null && clause.length() > 0)
+            query.append(name).append(clause);
+    }
+
+}
@@ -0,0 +1,7 @@
+package android.graphics;
+
+/**
+ * Compile-only stand-in for the framework class
+ */
+public final class Bitmap {
+}
@@ -0,0 +1,13 @@
+package android.graphics;
+
+import java.io.InputStream;
+
+/**
+ * Compile-only stand-in for the framework class
+ */
+public class BitmapFactory {
+
+    public static Bitmap decodeStream(InputStream is) {
+        throw new RuntimeException("Stub!");
+    }
+}
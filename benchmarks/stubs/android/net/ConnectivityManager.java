@@ -0,0 +1,11 @@
+package android.net;
+
+/**
+ * Compile-only stand-in for the framework class
+ */
+public class ConnectivityManager {
+
+    public NetworkInfo getActiveNetworkInfo() {
+        throw new RuntimeException("Stub!");
+    }
+}
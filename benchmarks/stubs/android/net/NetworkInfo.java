@@ -0,0 +1,15 @@
+package android.net;
+
+/**
+ * Compile-only stand-in for the framework class
+ */
+public class NetworkInfo {
+
+    public enum State {
+        CONNECTING, CONNECTED, SUSPENDED, DISCONNECTING, DISCONNECTED, UNKNOWN
+    }
+
+    public State getState() {
+        throw new RuntimeException("Stub!");
+    }
+}
@@ -0,0 +1,37 @@
+package android.net;
+
+/**
+ * Stand-in for the framework class, holding the string it was parsed
+ * from since models create their content URIs in static initializers
+ */
+public abstract class Uri {
+
+    public static Uri parse(String uriString) {
+        return new StringUri(uriString);
+    }
+
+    public static Uri withAppendedPath(Uri baseUri, String pathSegment) {
+        String base = baseUri.toString();
+        return new StringUri(base.endsWith("/") ? base + pathSegment : base + "/" + pathSegment); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    public String getLastPathSegment() {
+        String uri = toString();
+        int end = uri.endsWith("/") ? uri.length() - 1 : uri.length(); //$NON-NLS-1$
+        return uri.substring(uri.lastIndexOf('/', end - 1) + 1, end);
+    }
+
+    private static final class StringUri extends Uri {
+        private final String uriString;
+
+        StringUri(String uriString) {
+            this.uriString = uriString;
+        }
+
+        @Override
+        public String toString() {
+            return uriString;
+        }
+    }
+
+}
@@ -0,0 +1,14 @@
+package android.os;
+
+/**
+ * Compile-only stand-in for the framework class
+ */
+public class Build {
+
+    public static final String MODEL = "jvm";
+
+    public static class VERSION {
+        public static final String SDK = "7";
+        public static final int SDK_INT = 7;
+    }
+}
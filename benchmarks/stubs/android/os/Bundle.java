@@ -0,0 +1,37 @@
+package android.os;
+
+import java.util.Set;
+
+/**
+ * Compile-only stand-in for the framework class
+ */
+public final class Bundle {
+
+    public Set<String> keySet() {
+        throw new RuntimeException("Stub!");
+    }
+
+    public Object get(String key) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public void putInt(String key, int value) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public void putLong(String key, long value) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public void putDouble(String key, double value) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public void putString(String key, String value) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public void putBoolean(String key, boolean value) {
+        throw new RuntimeException("Stub!");
+    }
+}
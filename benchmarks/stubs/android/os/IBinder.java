@@ -0,0 +1,7 @@
+package android.os;
+
+/**
+ * Compile-only stand-in for the framework interface
+ */
+public interface IBinder {
+}
@@ -0,0 +1,69 @@
+package android.os;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stand-in for the framework class. Values are kept as objects in write
+ * order instead of being marshalled, which is enough for round trips
+ * within one process.
+ */
+public final class Parcel {
+
+    private final ArrayList<Object> data = new ArrayList<Object>();
+
+    private int position = 0;
+
+    private Parcel() {
+        // use obtain()
+    }
+
+    public static Parcel obtain() {
+        return new Parcel();
+    }
+
+    public void recycle() {
+        data.clear();
+        position = 0;
+    }
+
+    public int dataPosition() {
+        return position;
+    }
+
+    public void setDataPosition(int position) {
+        this.position = position;
+    }
+
+    public void writeInt(int value) { data.add(value); }
+    public void writeLong(long value) { data.add(value); }
+    public void writeDouble(double value) { data.add(value); }
+    public void writeString(String value) { data.add(value); }
+    public void writeValue(Object value) { data.add(value); }
+
+    public void writeMap(Map<?, ?> value) {
+        data.add(value == null ? null : new HashMap<Object, Object>(value));
+    }
+
+    public void writeParcelable(Parcelable value, int flags) {
+        data.add(value);
+    }
+
+    public int readInt() { return (Integer) data.get(position++); }
+    public long readLong() { return (Long) data.get(position++); }
+    public double readDouble() { return (Double) data.get(position++); }
+    public String readString() { return (String) data.get(position++); }
+    public Object readValue(ClassLoader loader) { return data.get(position++); }
+
+    @SuppressWarnings("rawtypes")
+    public HashMap readHashMap(ClassLoader loader) {
+        return (HashMap) data.get(position++);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Parcelable> T readParcelable(ClassLoader loader) {
+        return (T) data.get(position++);
+    }
+
+}
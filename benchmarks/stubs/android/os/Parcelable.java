@@ -0,0 +1,18 @@
+package android.os;
+
+/**
+ * Stand-in for the framework interface
+ */
+public interface Parcelable {
+
+    public int describeContents();
+
+    public void writeToParcel(Parcel dest, int flags);
+
+    public interface Creator<T> {
+        public T createFromParcel(Parcel source);
+
+        public T[] newArray(int size);
+    }
+
+}
@@ -0,0 +1,9 @@
+package android.text;
+
+/**
+ * Compile-only stand-in for the framework interface
+ */
+public interface InputType {
+
+    public static final int TYPE_NULL = 0;
+}
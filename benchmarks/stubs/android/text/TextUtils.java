@@ -0,0 +1,45 @@
+package android.text;
+
+import java.util.Iterator;
+
+/**
+ * Stand-in for the framework class
+ */
+public final class TextUtils {
+
+    private TextUtils() {
+        // static methods only
+    }
+
+    public static boolean isEmpty(CharSequence str) {
+        return str == null || str.length() == 0;
+    }
+
+    public static boolean equals(CharSequence a, CharSequence b) {
+        if(a == b)
+            return true;
+        return a != null && b != null && a.toString().equals(b.toString());
+    }
+
+    public static String join(CharSequence delimiter, Object[] tokens) {
+        StringBuilder result = new StringBuilder();
+        for(int i = 0; i < tokens.length; i++) {
+            if(i > 0)
+                result.append(delimiter);
+            result.append(tokens[i]);
+        }
+        return result.toString();
+    }
+
+    @SuppressWarnings("rawtypes")
+    public static String join(CharSequence delimiter, Iterable tokens) {
+        StringBuilder result = new StringBuilder();
+        for(Iterator iterator = tokens.iterator(); iterator.hasNext(); ) {
+            result.append(iterator.next());
+            if(iterator.hasNext())
+                result.append(delimiter);
+        }
+        return result.toString();
+    }
+
+}
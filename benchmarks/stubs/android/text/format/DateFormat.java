@@ -0,0 +1,13 @@
+package android.text.format;
+
+import android.content.Context;
+
+/**
+ * Compile-only stand-in for the framework class
+ */
+public class DateFormat {
+
+    public static boolean is24HourFormat(Context context) {
+        throw new RuntimeException("Stub!");
+    }
+}
@@ -0,0 +1,18 @@
+package android.text.format;
+
+/**
+ * Compile-only stand-in for the framework class
+ */
+public class DateUtils {
+
+    public static final int LENGTH_LONG = 10;
+    public static final int LENGTH_MEDIUM = 20;
+
+    public static String getMonthString(int month, int abbrev) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public static String getDayOfWeekString(int dayOfWeek, int abbrev) {
+        throw new RuntimeException("Stub!");
+    }
+}
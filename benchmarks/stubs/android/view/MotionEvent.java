@@ -0,0 +1,7 @@
+package android.view;
+
+/**
+ * Compile-only stand-in for the framework class
+ */
+public final class MotionEvent {
+}
@@ -0,0 +1,21 @@
+package android.view;
+
+import android.os.IBinder;
+
+/**
+ * Compile-only stand-in for the framework class
+ */
+public class View {
+
+    public interface OnTouchListener {
+        boolean onTouch(View v, MotionEvent event);
+    }
+
+    public void setOnTouchListener(OnTouchListener listener) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public IBinder getWindowToken() {
+        throw new RuntimeException("Stub!");
+    }
+}
@@ -0,0 +1,15 @@
+package android.view;
+
+/**
+ * Compile-only stand-in for the framework class
+ */
+public abstract class ViewGroup extends View {
+
+    public int getChildCount() {
+        throw new RuntimeException("Stub!");
+    }
+
+    public View getChildAt(int index) {
+        throw new RuntimeException("Stub!");
+    }
+}
@@ -0,0 +1,13 @@
+package android.view.inputmethod;
+
+import android.os.IBinder;
+
+/**
+ * Compile-only stand-in for the framework class
+ */
+public final class InputMethodManager {
+
+    public boolean hideSoftInputFromWindow(IBinder windowToken, int flags) {
+        throw new RuntimeException("Stub!");
+    }
+}
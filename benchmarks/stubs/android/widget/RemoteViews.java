@@ -0,0 +1,7 @@
+package android.widget;
+
+/**
+ * Compile-only stand-in for the framework class
+ */
+public class RemoteViews {
+}
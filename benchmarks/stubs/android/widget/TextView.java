@@ -0,0 +1,17 @@
+package android.widget;
+
+import android.view.View;
+
+/**
+ * Compile-only stand-in for the framework class
+ */
+public class TextView extends View {
+
+    public int getInputType() {
+        throw new RuntimeException("Stub!");
+    }
+
+    public void setInputType(int type) {
+        throw new RuntimeException("Stub!");
+    }
+}
@@ -0,0 +1,30 @@
+package com.todoroo.astrid.api;
+
+/**
+ * Stand-in for the resource class that aapt generates for the api
+ * library, holding only the ids referenced by the benchmarked code.
+ * Values are arbitrary since no resources are loaded.
+ */
+public final class R {
+
+    public static final class color {
+        public static final int importance_1 = 0x7f050001;
+        public static final int importance_2 = 0x7f050002;
+        public static final int importance_3 = 0x7f050003;
+        public static final int importance_4 = 0x7f050004;
+        public static final int importance_5 = 0x7f050005;
+        public static final int importance_6 = 0x7f050006;
+    }
+
+    public static final class string {
+        public static final int DLG_error = 0x7f060001;
+        public static final int DLG_error_generic = 0x7f060002;
+        public static final int DLG_error_title = 0x7f060003;
+        public static final int today = 0x7f060004;
+        public static final int tomorrow = 0x7f060005;
+        public static final int tmrw = 0x7f060006;
+        public static final int yesterday = 0x7f060007;
+        public static final int yest = 0x7f060008;
+    }
+
+}
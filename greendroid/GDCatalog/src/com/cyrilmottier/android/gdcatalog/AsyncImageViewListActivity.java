@@ -146,6 +146,10 @@ public class AsyncImageViewListActivity extends GDListActivity implements OnScro
 
             return result;
         }
+
+        public String getKey() {
+            return "rounded-thumbnail-" + mThumbnailSize + "-" + mThumbnailRadius;
+        }
     }
 
     public void onScroll(AbsListView arg0, int arg1, int arg2, int arg3) {
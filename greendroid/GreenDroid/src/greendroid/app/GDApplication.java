@@ -16,6 +16,7 @@
 package greendroid.app;
 
 import greendroid.image.ImageCache;
+import greendroid.image.ImageFileCache;
 
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
@@ -61,6 +62,7 @@ public class GDApplication extends Application {
     
     private ExecutorService mExecutorService;
     private ImageCache mImageCache;
+    private ImageFileCache mImageFileCache;
     private ArrayList<WeakReference<OnLowMemoryListener>> mLowMemoryListeners;
 
     public GDApplication() {
@@ -81,6 +83,13 @@ public class GDApplication extends Application {
         return mImageCache;
     }
 
+    public synchronized ImageFileCache getImageFileCache() {
+        if (mImageFileCache == null) {
+            mImageFileCache = new ImageFileCache(this);
+        }
+        return mImageFileCache;
+    }
+
     /**
      * Returns the class of the home {@link Activity}. The home {@link Activity}
      * is the main entrance point of your application. This is usually where the
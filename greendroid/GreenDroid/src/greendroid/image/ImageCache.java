@@ -18,45 +18,106 @@ package greendroid.image;
 import greendroid.app.GDApplication.OnLowMemoryListener;
 import greendroid.util.GDUtils;
 
-import java.lang.ref.SoftReference;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
 
 import android.content.Context;
 import android.graphics.Bitmap;
 
+/**
+ * An in-memory cache of decoded images. The cache is bounded by the number
+ * of bytes held by its bitmaps and evicts the least recently used images
+ * first. It may be accessed from any thread.
+ */
 public class ImageCache implements OnLowMemoryListener {
-    
-    private final HashMap<String, SoftReference<Bitmap>> mSoftCache;
-    
+
+    /** Part of the VM heap the cache is allowed to use (1/8th) */
+    private static final int HEAP_FRACTION = 8;
+
+    private final LinkedHashMap<String, Bitmap> mCache;
+    private final long mMaxSize;
+    private long mSize;
+
+    private int mHitCount;
+    private int mMissCount;
+
     public ImageCache(Context context) {
-        mSoftCache = new HashMap<String, SoftReference<Bitmap>>();
+        this(Runtime.getRuntime().maxMemory() / HEAP_FRACTION);
         GDUtils.getGDApplication(context).registerOnLowMemoryListener(this);
     }
-    
+
+    /**
+     * @param maxSize maximum number of bytes of bitmap data to keep
+     */
+    public ImageCache(long maxSize) {
+        mCache = new LinkedHashMap<String, Bitmap>(16, 0.75f, true);
+        mMaxSize = maxSize;
+    }
+
     public static ImageCache from(Context context) {
         return GDUtils.getImageCache(context);
     }
-    
-    public Bitmap get(String url) {
-        final SoftReference<Bitmap> ref = mSoftCache.get(url);
-        if (ref == null) {
-            return null;
-        }
-        
-        final Bitmap bitmap = ref.get();
+
+    public synchronized Bitmap get(String url) {
+        final Bitmap bitmap = mCache.get(url);
         if (bitmap == null) {
-            mSoftCache.remove(url);
+            mMissCount++;
+        } else {
+            mHitCount++;
         }
-        
         return bitmap;
     }
-    
-    public void put(String url, Bitmap bitmap) {
-        mSoftCache.put(url, new SoftReference<Bitmap>(bitmap));
+
+    public synchronized void put(String url, Bitmap bitmap) {
+        if (url == null || bitmap == null) {
+            return;
+        }
+        final Bitmap previous = mCache.put(url, bitmap);
+        if (previous != null) {
+            mSize -= sizeOf(previous);
+        }
+        mSize += sizeOf(bitmap);
+        trimToSize(mMaxSize);
+    }
+
+    public synchronized void remove(String url) {
+        final Bitmap previous = mCache.remove(url);
+        if (previous != null) {
+            mSize -= sizeOf(previous);
+        }
+    }
+
+    public synchronized void flush() {
+        mCache.clear();
+        mSize = 0;
+    }
+
+    /**
+     * @return number of bytes currently held by cached bitmaps
+     */
+    public synchronized long size() {
+        return mSize;
     }
-    
-    public void flush() {
-        mSoftCache.clear();
+
+    @Override
+    public synchronized String toString() {
+        final int accesses = mHitCount + mMissCount;
+        return String.format("ImageCache[size=%d/%d,entries=%d,hitRate=%d%%]", mSize, mMaxSize,
+                mCache.size(), accesses == 0 ? 0 : (100 * mHitCount / accesses));
+    }
+
+    private void trimToSize(long maxSize) {
+        final Iterator<Entry<String, Bitmap>> iterator = mCache.entrySet().iterator();
+        while (mSize > maxSize && iterator.hasNext()) {
+            final Entry<String, Bitmap> eldest = iterator.next();
+            mSize -= sizeOf(eldest.getValue());
+            iterator.remove();
+        }
+    }
+
+    private static int sizeOf(Bitmap bitmap) {
+        return bitmap.getRowBytes() * bitmap.getHeight();
     }
 
     public void onLowMemoryReceived() {
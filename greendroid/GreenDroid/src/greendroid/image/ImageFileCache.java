@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2010 Cyril Mottier (http://www.cyrilmottier.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package greendroid.image;
+
+import greendroid.util.GDUtils;
+import greendroid.util.Md5Util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+
+import android.content.Context;
+
+/**
+ * A size-capped disk cache holding the raw bytes of downloaded images.
+ * When the cache grows over its maximum size, the least recently used files
+ * are deleted first. Files held by a reader and files still being written
+ * are never deleted.
+ */
+public class ImageFileCache {
+
+    private static final String DIRECTORY = "gd_images";
+
+    private static final long DEFAULT_MAX_SIZE = 8 * 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File mDirectory;
+    private final long mMaxSize;
+
+    /** Current size on disk, -1 until the directory has been scanned */
+    private long mSize = -1;
+
+    /** Number of readers holding each file */
+    private final HashMap<File, Integer> mReaders = new HashMap<File, Integer>();
+
+    public ImageFileCache(File directory, long maxSize) {
+        mDirectory = directory;
+        mMaxSize = maxSize;
+    }
+
+    public ImageFileCache(Context context) {
+        this(new File(context.getCacheDir(), DIRECTORY), DEFAULT_MAX_SIZE);
+    }
+
+    public static ImageFileCache from(Context context) {
+        return GDUtils.getImageFileCache(context);
+    }
+
+    /**
+     * Get the cached file for this url and hold it, so it is not deleted
+     * while it is read. It must be released with {@link #release(File)}.
+     * 
+     * @return the cached file for this url, or null if it is not cached
+     */
+    public synchronized File get(String url) {
+        final File file = peek(url);
+        if (file != null) {
+            final Integer readers = mReaders.get(file);
+            mReaders.put(file, readers == null ? 1 : readers + 1);
+        }
+        return file;
+    }
+
+    /**
+     * @return the cached file for this url without holding it, or null if
+     *         it is not cached
+     */
+    public synchronized File peek(String url) {
+        final File file = getFile(url);
+        if (!file.exists()) {
+            return null;
+        }
+        file.setLastModified(System.currentTimeMillis());
+        return file;
+    }
+
+    /**
+     * Let a file returned by {@link #get(String)} be deleted again
+     */
+    public synchronized void release(File file) {
+        final Integer readers = mReaders.get(file);
+        if (readers == null || readers <= 1) {
+            mReaders.remove(file);
+        } else {
+            mReaders.put(file, readers - 1);
+        }
+    }
+
+    /**
+     * Write the contents of the given stream to the cache
+     *
+     * @return the cached file
+     */
+    public File put(String url, InputStream in) throws IOException {
+        final File file = getFile(url);
+        final File temp = new File(mDirectory, file.getName() + TEMP_SUFFIX);
+        if (!mDirectory.exists()) {
+            mDirectory.mkdirs();
+        }
+
+        final OutputStream out = new FileOutputStream(temp);
+        try {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            out.close();
+        }
+
+        synchronized (this) {
+            ensureSize();
+            if (file.exists()) {
+                mSize -= file.length();
+                file.delete();
+            }
+            if (!temp.renameTo(file)) {
+                temp.delete();
+                throw new IOException("Unable to write " + file);
+            }
+            mSize += file.length();
+            trimToSize(mMaxSize);
+        }
+        return file;
+    }
+
+    /**
+     * Delete every cached file that is not being read or written
+     */
+    public synchronized void clear() {
+        trimToSize(0);
+    }
+
+    private File getFile(String url) {
+        final String name;
+        synchronized (Md5Util.class) {
+            name = Md5Util.md5(url);
+        }
+        return new File(mDirectory, name);
+    }
+
+    private void ensureSize() {
+        if (mSize >= 0) {
+            return;
+        }
+        mSize = 0;
+        final File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!isTemp(file)) {
+                    mSize += file.length();
+                }
+            }
+        }
+    }
+
+    private static boolean isTemp(File file) {
+        return file.getName().endsWith(TEMP_SUFFIX);
+    }
+
+    private void trimToSize(long maxSize) {
+        ensureSize();
+        if (mSize <= maxSize) {
+            return;
+        }
+
+        final File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            public int compare(File lhs, File rhs) {
+                final long l = lhs.lastModified();
+                final long r = rhs.lastModified();
+                return l < r ? -1 : (l == r ? 0 : 1);
+            }
+        });
+
+        for (int i = 0; i < files.length && mSize > maxSize; i++) {
+            if (isTemp(files[i]) || mReaders.containsKey(files[i])) {
+                continue;
+            }
+            final long length = files[i].length();
+            if (files[i].delete()) {
+                mSize -= length;
+            }
+        }
+    }
+}
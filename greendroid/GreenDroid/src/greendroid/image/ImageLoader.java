@@ -18,9 +18,17 @@ package greendroid.image;
 import greendroid.util.Config;
 import greendroid.util.GDUtils;
 
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import android.content.Context;
 import android.graphics.Bitmap;
@@ -60,15 +68,30 @@ public class ImageLoader {
     private static final int ON_START = 0x100;
     private static final int ON_FAIL = 0x101;
     private static final int ON_END = 0x102;
-    
+
+    private static final Runnable NO_OP = new Runnable() {
+        public void run() {
+        }
+    };
+
     private static ImageCache sImageCache;
+    private static ImageFileCache sImageFileCache;
     private static ExecutorService sExecutor;
     private static BitmapFactory.Options sDefaultOptions;
 
+    /** Loads in flight by cache key. Requests for the same key attach to them */
+    private static final HashMap<String, ImageFetcher> sFetchers = new HashMap<String, ImageFetcher>();
+
+    /** Downloads in flight by url, shared by loads of different sizes */
+    private static final HashMap<String, FutureTask<File>> sDownloads = new HashMap<String, FutureTask<File>>();
+
     public ImageLoader(Context context) {
         if (sImageCache == null) {
             sImageCache = GDUtils.getImageCache(context);
         }
+        if (sImageFileCache == null) {
+            sImageFileCache = GDUtils.getImageFileCache(context);
+        }
         if (sExecutor == null) {
             sExecutor = GDUtils.getExecutor(context);
         }
@@ -90,46 +113,221 @@ public class ImageLoader {
     }
     
     public Future<?> loadImage(String url, ImageLoaderCallback callback, ImageProcessor bitmapProcessor, BitmapFactory.Options options) {
-        return sExecutor.submit(new ImageFetcher(url, callback, bitmapProcessor, options));
+        return loadImage(url, callback, bitmapProcessor, options, 0, 0);
+    }
+
+    /**
+     * Load an image, decoding it at a reduced resolution when it is larger
+     * than the given size. A size of 0 means no limit.
+     */
+    public Future<?> loadImage(String url, ImageLoaderCallback callback, ImageProcessor bitmapProcessor,
+            BitmapFactory.Options options, int maxWidth, int maxHeight) {
+        final String key = getCacheKey(url, bitmapProcessor, maxWidth, maxHeight);
+        // Each request gets its own future, so cancelling it does not
+        // cancel other requests attached to the same load
+        final FutureTask<Void> request = new FutureTask<Void>(NO_OP, null);
+        final ImageHandler handler = new ImageHandler(url, callback);
+
+        synchronized (sFetchers) {
+            ImageFetcher fetcher = key == null ? null : sFetchers.get(key);
+            if (fetcher == null) {
+                fetcher = new ImageFetcher(url, key, bitmapProcessor, options, maxWidth, maxHeight);
+                if (key != null) {
+                    sFetchers.put(key, fetcher);
+                }
+                sExecutor.submit(fetcher);
+            }
+            fetcher.attach(request, handler);
+        }
+        return request;
+    }
+
+    /**
+     * Key of the image loaded from the given url at the given size and with
+     * the given processor in the {@link ImageCache}. Images loaded as they
+     * are stay keyed by their url.
+     * 
+     * @return the key, or null if the processor has no key, in which case
+     *         the image is not cached
+     */
+    public static String getCacheKey(String url, ImageProcessor bitmapProcessor, int maxWidth, int maxHeight) {
+        if (bitmapProcessor == null && maxWidth <= 0 && maxHeight <= 0) {
+            return url;
+        }
+        final String processorKey = bitmapProcessor == null ? null : bitmapProcessor.getKey();
+        if (bitmapProcessor != null && processorKey == null) {
+            return null;
+        }
+        final StringBuilder key = new StringBuilder(String.valueOf(url));
+        key.append('#').append(Math.max(maxWidth, 0)).append('x').append(Math.max(maxHeight, 0));
+        if (processorKey != null) {
+            key.append('#').append(processorKey);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Compute the largest power of two sample size that keeps the decoded
+     * image at least as big as the requested size
+     */
+    static int computeSampleSize(int width, int height, int maxWidth, int maxHeight) {
+        int sampleSize = 1;
+        if (maxWidth <= 0 && maxHeight <= 0) {
+            return sampleSize;
+        }
+        while ((maxWidth <= 0 || width / (sampleSize * 2) >= maxWidth)
+                && (maxHeight <= 0 || height / (sampleSize * 2) >= maxHeight)) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Get the file for an url, downloading it if it is not cached. Only one
+     * thread downloads a given url, others wait for its download. The file
+     * is kept from eviction until it is released with
+     * {@link ImageFileCache#release(File)}.
+     */
+    private static File fetchFile(final String url) throws Exception {
+        final File file = sImageFileCache.get(url);
+        if (file != null) {
+            return file;
+        }
+
+        FutureTask<File> download;
+        boolean owner = false;
+        synchronized (sDownloads) {
+            download = sDownloads.get(url);
+            if (download == null) {
+                download = new FutureTask<File>(new Callable<File>() {
+                    public File call() throws Exception {
+                        final File cached = sImageFileCache.peek(url);
+                        if (cached != null) {
+                            return cached;
+                        }
+                        // TODO Cyril: Use a AndroidHttpClient?
+                        final InputStream in = new URL(url).openStream();
+                        try {
+                            return sImageFileCache.put(url, in);
+                        } finally {
+                            in.close();
+                        }
+                    }
+                });
+                sDownloads.put(url, download);
+                owner = true;
+            }
+        }
+
+        if (owner) {
+            try {
+                download.run();
+            } finally {
+                synchronized (sDownloads) {
+                    sDownloads.remove(url);
+                }
+            }
+        }
+
+        final File downloaded;
+        try {
+            downloaded = download.get();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw new Exception(cause);
+        }
+
+        // Each reader holds the file, it may have been evicted already
+        final File held = sImageFileCache.get(url);
+        if (held == null) {
+            throw new FileNotFoundException("Evicted before it was read: " + downloaded);
+        }
+        return held;
     }
 
     private class ImageFetcher implements Runnable {
 
         private String mUrl;
-        private ImageHandler mHandler;
+        private String mKey;
         private ImageProcessor mBitmapProcessor;
         private BitmapFactory.Options mOptions;
+        private int mMaxWidth;
+        private int mMaxHeight;
+
+        /** Requests attached to this load and their handlers, guarded by sFetchers */
+        private final ArrayList<Future<?>> mRequests = new ArrayList<Future<?>>();
+        private final ArrayList<ImageHandler> mHandlers = new ArrayList<ImageHandler>();
+        private boolean mStarted;
 
-        public ImageFetcher(String url, ImageLoaderCallback callback, ImageProcessor bitmapProcessor, BitmapFactory.Options options) {
+        public ImageFetcher(String url, String key, ImageProcessor bitmapProcessor,
+                BitmapFactory.Options options, int maxWidth, int maxHeight) {
             mUrl = url;
-            mHandler = new ImageHandler(url, callback);
+            mKey = key;
             mBitmapProcessor = bitmapProcessor;
             mOptions = options;
+            mMaxWidth = maxWidth;
+            mMaxHeight = maxHeight;
+        }
+
+        /** Called with sFetchers held */
+        private void attach(Future<?> request, ImageHandler handler) {
+            mRequests.add(request);
+            mHandlers.add(handler);
+            if (mStarted) {
+                handler.sendMessage(Message.obtain(handler, ON_START));
+            }
         }
 
         public void run() {
 
             Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
 
-            final Handler h = mHandler;
+            synchronized (sFetchers) {
+                // Skip loads every request gave up on before they started
+                boolean cancelled = true;
+                for (Future<?> request : mRequests) {
+                    cancelled &= request.isCancelled();
+                }
+                if (cancelled) {
+                    sFetchers.remove(mKey);
+                    return;
+                }
+                mStarted = true;
+                for (ImageHandler h : mHandlers) {
+                    h.sendMessage(Message.obtain(h, ON_START));
+                }
+            }
+
             Bitmap bitmap = null;
             Throwable throwable = null;
 
-            h.sendMessage(Message.obtain(h, ON_START));
-
             try {
 
                 if (TextUtils.isEmpty(mUrl)) {
                     throw new Exception("The given URL cannot be null or empty");
                 }
 
-                // TODO Cyril: Use a AndroidHttpClient?
-                bitmap = BitmapFactory.decodeStream(new URL(mUrl).openStream(), null, (mOptions == null) ? sDefaultOptions : mOptions);
+                bitmap = sImageCache.get(mKey);
+                if (bitmap == null) {
+                    final File file = fetchFile(mUrl);
+                    try {
+                        bitmap = decodeFile(file);
+                    } finally {
+                        sImageFileCache.release(file);
+                    }
+
+                    if (mBitmapProcessor != null && bitmap != null) {
+                        final Bitmap processedBitmap = mBitmapProcessor.processImage(bitmap);
+                        if (processedBitmap != null) {
+                            bitmap = processedBitmap;
+                        }
+                    }
 
-                if (mBitmapProcessor != null && bitmap != null) {
-                    final Bitmap processedBitmap = mBitmapProcessor.processImage(bitmap);
-                    if (processedBitmap != null) {
-                        bitmap = processedBitmap;
+                    if (bitmap != null) {
+                        sImageCache.put(mKey, bitmap);
                     }
                 }
 
@@ -141,17 +339,45 @@ public class ImageLoader {
                 throwable = e;
             }
 
-            if (bitmap == null) {
-                if (throwable == null) {
-                    // Skia returned a null bitmap ... that's usually because
-                    // the given url wasn't pointing to a valid image
-                    throwable = new Exception("Skia image decoding failed");
+            if (bitmap == null && throwable == null) {
+                // Skia returned a null bitmap ... that's usually because
+                // the given url wasn't pointing to a valid image
+                throwable = new Exception("Skia image decoding failed");
+            }
+
+            // Requests attaching from now on start a new load, which is
+            // served from the cache
+            synchronized (sFetchers) {
+                sFetchers.remove(mKey);
+                for (ImageHandler h : mHandlers) {
+                    if (bitmap == null) {
+                        h.sendMessage(Message.obtain(h, ON_FAIL, throwable));
+                    } else {
+                        h.sendMessage(Message.obtain(h, ON_END, bitmap));
+                    }
                 }
-                h.sendMessage(Message.obtain(h, ON_FAIL, throwable));
-            } else {
-                h.sendMessage(Message.obtain(h, ON_END, bitmap));
             }
         }
+
+        private Bitmap decodeFile(File file) {
+            final String path = file.getAbsolutePath();
+            final BitmapFactory.Options options = (mOptions == null) ? sDefaultOptions : mOptions;
+            if (mMaxWidth <= 0 && mMaxHeight <= 0) {
+                return BitmapFactory.decodeFile(path, options);
+            }
+
+            final BitmapFactory.Options bounds = new BitmapFactory.Options();
+            bounds.inJustDecodeBounds = true;
+            BitmapFactory.decodeFile(path, bounds);
+
+            final BitmapFactory.Options sampled = new BitmapFactory.Options();
+            sampled.inDither = options.inDither;
+            sampled.inScaled = options.inScaled;
+            sampled.inDensity = options.inDensity;
+            sampled.inTargetDensity = options.inTargetDensity;
+            sampled.inSampleSize = computeSampleSize(bounds.outWidth, bounds.outHeight, mMaxWidth, mMaxHeight);
+            return BitmapFactory.decodeFile(path, sampled);
+        }
     }
 
     private class ImageHandler extends Handler {
@@ -184,7 +410,6 @@ public class ImageLoader {
                 case ON_END:
 
                     final Bitmap bitmap = (Bitmap) msg.obj;
-                    sImageCache.put(mUrl, bitmap);
 
                     if (mCallback != null) {
                         mCallback.onImageLoadingEnded(ImageLoader.this, bitmap);
@@ -37,4 +37,13 @@ public interface ImageProcessor {
 	 */
 	Bitmap processImage(Bitmap bitmap);
 
+	/**
+	 * Processed images are cached under this key, so processors returning
+	 * the same key must process images the same way.
+	 * 
+	 * @return A key identifying the processing, or null if the processed
+	 *         images should not be cached
+	 */
+	String getKey();
+
 }
@@ -56,6 +56,8 @@ public class ImageRequest {
     private ImageRequestCallback mCallback;
     private ImageProcessor mBitmapProcessor;
     private BitmapFactory.Options mOptions;
+    private int mMaxWidth;
+    private int mMaxHeight;
 
     public ImageRequest(String url, ImageRequestCallback callback) {
         this(url, callback, null);
@@ -80,12 +82,21 @@ public class ImageRequest {
         return mUrl;
     }
 
+    /**
+     * Downsample the image while decoding when it is larger than the given
+     * size. Must be called before {@link #load(Context)}.
+     */
+    public void setMaxSize(int maxWidth, int maxHeight) {
+        mMaxWidth = maxWidth;
+        mMaxHeight = maxHeight;
+    }
+
     public void load(Context context) {
         if (mFuture == null) {
             if (sImageLoader == null) {
                 sImageLoader = new ImageLoader(context);
             }
-            mFuture = sImageLoader.loadImage(mUrl, new InnerCallback(), mBitmapProcessor, mOptions);
+            mFuture = sImageLoader.loadImage(mUrl, new InnerCallback(), mBitmapProcessor, mOptions, mMaxWidth, mMaxHeight);
         }
     }
 
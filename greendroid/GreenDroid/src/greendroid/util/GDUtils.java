@@ -17,6 +17,7 @@ package greendroid.util;
 
 import greendroid.app.GDApplication;
 import greendroid.image.ImageCache;
+import greendroid.image.ImageFileCache;
 
 import java.util.concurrent.ExecutorService;
 
@@ -52,6 +53,16 @@ public class GDUtils {
         return getGDApplication(context).getImageCache();
     }
 
+    /**
+     * Return the {@link GDApplication} disk cache of downloaded images
+     * 
+     * @param context The calling context
+     * @return The image file cache of the current {@link GDApplication}
+     */
+    public static ImageFileCache getImageFileCache(Context context) {
+        return getGDApplication(context).getImageFileCache();
+    }
+
     /**
      * Return the {@link GDApplication} executors pool.
      * 
@@ -15,6 +15,7 @@
  */
 package greendroid.widget;
 
+import greendroid.image.ImageLoader;
 import greendroid.image.ImageProcessor;
 import greendroid.image.ImageRequest;
 import greendroid.image.ImageRequest.ImageRequestCallback;
@@ -31,6 +32,7 @@ import android.os.Parcelable;
 import android.text.TextUtils;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.ListView;
 
@@ -237,7 +239,9 @@ public class AsyncImageView extends ImageView implements ImageRequestCallback {
 			// TODO cyril: This is a synchronous call ... make it asynchronous
 			mBitmap = null;
 			if (!force) {
-				mBitmap = GDUtils.getImageCache(getContext()).get(mUrl);
+				mBitmap = GDUtils.getImageCache(getContext()).get(getCacheKey());
+			} else {
+				GDUtils.getImageCache(getContext()).remove(getCacheKey());
 			}
 
 			if (mBitmap != null) {
@@ -252,10 +256,30 @@ public class AsyncImageView extends ImageView implements ImageRequestCallback {
 
 			setDefaultImage();
 			mRequest = new ImageRequest(mUrl, this, mImageProcessor, mOptions);
+			mRequest.setMaxSize(getMaxWidth(), getMaxHeight());
 			mRequest.load(getContext());
 		}
 	}
 
+	/**
+	 * No need to decode more pixels than we can display: images are loaded
+	 * at the size of the view when it is fixed, 0 meaning no limit.
+	 */
+	private int getMaxWidth() {
+		final ViewGroup.LayoutParams params = getLayoutParams();
+		return (params != null && params.width > 0 && params.height > 0) ? params.width : 0;
+	}
+
+	private int getMaxHeight() {
+		final ViewGroup.LayoutParams params = getLayoutParams();
+		return (params != null && params.width > 0 && params.height > 0) ? params.height : 0;
+	}
+
+	/** Key the image this view loads is cached at */
+	private String getCacheKey() {
+		return ImageLoader.getCacheKey(mUrl, mImageProcessor, getMaxWidth(), getMaxHeight());
+	}
+
 	/**
 	 * Force the loading to be stopped.
 	 */
@@ -309,7 +333,7 @@ public class AsyncImageView extends ImageView implements ImageRequestCallback {
 			} else {
 				// We're paused: let's look in a synchronous and efficient cache
 				// prior using the default image.
-				mBitmap = GDUtils.getImageCache(getContext()).get(mUrl);
+				mBitmap = GDUtils.getImageCache(getContext()).get(getCacheKey());
 				if (mBitmap != null) {
 					setImageBitmap(mBitmap);
 					return;
@@ -0,0 +1,158 @@
+package com.todoroo.andlib.data;
+
+import java.util.List;
+
+import android.content.ContentValues;
+import android.os.Parcel;
+
+import com.todoroo.andlib.data.Property.DoubleProperty;
+import com.todoroo.andlib.data.Property.LongProperty;
+import com.todoroo.andlib.service.Autowired;
+import com.todoroo.astrid.dao.TaskDao;
+import com.todoroo.astrid.data.Metadata;
+import com.todoroo.astrid.data.TagData;
+import com.todoroo.astrid.data.Task;
+import com.todoroo.astrid.data.UserValue;
+import com.todoroo.astrid.test.DatabaseTestCase;
+
+@SuppressWarnings("nls")
+public class AbstractModelTests extends DatabaseTestCase {
+
+    @Autowired
+    TaskDao taskDao;
+
+    public void testDefaults() {
+        Task task = new Task();
+        assertNull(task.getSetValues());
+        assertEquals("", task.getValue(Task.TITLE));
+        assertEquals(0L, (long) task.getValue(Task.DUE_DATE));
+        assertFalse(task.containsValue(Task.TITLE));
+    }
+
+    public void testSetValuesAreTrackedUntilSaved() {
+        Task task = new Task();
+        task.setValue(Task.TITLE, "a");
+        ContentValues setValues = task.getSetValues();
+        assertEquals(1, setValues.size());
+
+        // later changes still show up, as callers hold on to set values
+        task.setValue(Task.IMPORTANCE, Task.IMPORTANCE_MUST_DO);
+        assertTrue(setValues.containsKey(Task.IMPORTANCE.name));
+
+        task.markSaved();
+        assertNull(task.getSetValues());
+        assertFalse(task.isModified());
+        assertEquals("a", task.getValue(Task.TITLE));
+
+        task.setValue(Task.TITLE, "a");
+        assertEquals(0, task.getSetValues().size());
+        task.setValue(Task.TITLE, "b");
+        assertTrue(task.isModified());
+        assertEquals("b", task.getSetValues().getAsString(Task.TITLE.name));
+    }
+
+    public void testReadFromDatabase() {
+        Task task = new Task();
+        task.setValue(Task.TITLE, "read");
+        task.setValue(Task.ESTIMATED_SECONDS, 60);
+        taskDao.save(task);
+
+        Task fetched = taskDao.fetch(task.getId(), Task.ID, Task.TITLE, Task.ESTIMATED_SECONDS);
+        assertEquals(task.getId(), fetched.getId());
+        assertEquals("read", fetched.getValue(Task.TITLE));
+        assertEquals(60, (int) fetched.getValue(Task.ESTIMATED_SECONDS));
+        assertNull(fetched.getSetValues());
+        assertEquals("read", fetched.getDatabaseValues().getAsString(Task.TITLE.name));
+    }
+
+    public void testConversions() {
+        Metadata metadata = new Metadata();
+        metadata.setValue(Metadata.VALUE1, "123");
+        metadata.setValue(Metadata.VALUE2, "abc");
+        assertEquals(123L, (long) metadata.getValue(new LongProperty(Metadata.TABLE, Metadata.VALUE1.name)));
+        assertNull(metadata.getValue(new LongProperty(Metadata.TABLE, Metadata.VALUE2.name)));
+
+        ContentValues values = new ContentValues();
+        values.put("weight", 1.5);
+        metadata.mergeWith(values);
+        assertEquals(1.5, metadata.getValue(new DoubleProperty(Metadata.TABLE, "weight")));
+        assertEquals(1.5, metadata.getMergedValues().getAsDouble("weight"));
+    }
+
+    public void testCloneEqualsAndClear() {
+        Task task = new Task();
+        task.setValue(Task.TITLE, "a");
+        task.setId(5);
+        Task clone = (Task) task.clone();
+        assertEquals(task, clone);
+        assertEquals(task.hashCode(), clone.hashCode());
+
+        clone.setValue(Task.TITLE, "b");
+        assertFalse(task.equals(clone));
+        assertEquals("a", task.getValue(Task.TITLE));
+
+        clone.clearValue(Task.TITLE);
+        assertFalse(clone.containsValue(Task.TITLE));
+        assertEquals(new Task(), new Task());
+    }
+
+    public void testParcel() {
+        Task task = new Task();
+        task.setValue(Task.TITLE, "read");
+        task.setId(3);
+        task.markSaved();
+        task.setValue(Task.TITLE, "changed");
+
+        Parcel parcel = Parcel.obtain();
+        try {
+            task.writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            Task restored = Task.CREATOR.createFromParcel(parcel);
+            assertEquals(task, restored);
+            assertEquals(1, restored.getSetValues().size());
+            assertEquals(3, restored.getId());
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    public void testDecodedValues() {
+        Task task = new Task();
+        task.setValue(Task.USER, "{\"id\":5,\"name\":\"Sam\",\"email\":\"sam@example.com\"}");
+        UserValue user = task.getUser();
+        assertEquals(5, user.getId(-2));
+        assertEquals("Sam", user.getName());
+        assertSame(user, task.getUser());
+
+        // shared by content
+        Task other = new Task();
+        other.setValue(Task.USER, task.getValue(Task.USER));
+        assertSame(user, other.getUser());
+
+        // changes are decoded again
+        task.setValue(Task.USER, "{\"id\":6}");
+        assertEquals(6, task.getUser().getId(-2));
+        task.clearValue(Task.USER);
+        assertEquals(-2, task.getUser().getId(-2));
+        task.setValue(Task.USER, "not json");
+        assertSame(UserValue.EMPTY, task.getUser());
+    }
+
+    public void testDecodedValuesAreImmutable() throws Exception {
+        TagData tagData = new TagData();
+        tagData.setValue(TagData.MEMBERS, "[{\"id\":1},{\"email\":\"a@example.com\"}]");
+        List<UserValue> members = tagData.getMembers();
+        assertEquals(2, members.size());
+        assertEquals("a@example.com", members.get(1).getEmail());
+
+        members.get(0).toJson().put("tag", "changed");
+        assertFalse(tagData.getMembers().get(0).has("tag"));
+        try {
+            members.clear();
+            fail("members can be changed");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+}
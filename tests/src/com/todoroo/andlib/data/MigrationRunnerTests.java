@@ -0,0 +1,106 @@
+package com.todoroo.andlib.data;
+
+import java.util.ArrayList;
+
+import com.todoroo.astrid.test.DatabaseTestCase;
+
+@SuppressWarnings("nls")
+public class MigrationRunnerTests extends DatabaseTestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        database.execSQL("CREATE TABLE source (value INTEGER)");
+        database.execSQL("CREATE TABLE target (value INTEGER)");
+        for(int i = 1; i <= 10; i++)
+            database.execSQL("INSERT INTO source (value) VALUES (" + i + ")");
+    }
+
+    private long count(String table) {
+        return database.simpleQueryForLong("SELECT COUNT(*) FROM " + table);
+    }
+
+    /** copies rows of source to target, failing once at the given row */
+    private class CopyMigration extends Migration {
+        final ArrayList<Long> checkpoints = new ArrayList<Long>();
+        long failAt;
+
+        public CopyMigration(long failAt) {
+            super("copy");
+            this.failAt = failAt;
+        }
+
+        @Override
+        protected long migrateChunk(long checkpoint, int limit) {
+            checkpoints.add(checkpoint);
+            long last = Math.min(checkpoint + limit, 10);
+            if(checkpoint >= last)
+                return DONE;
+            for(long row = checkpoint + 1; row <= last; row++) {
+                if(row == failAt) {
+                    failAt = 0;
+                    throw new IllegalStateException("killed");
+                }
+                database.execSQL("INSERT INTO target (value) VALUES (" + row + ")");
+            }
+            return last;
+        }
+    }
+
+    public void testRunsInChunks() {
+        MigrationRunner runner = new MigrationRunner(database, 4);
+        CopyMigration migration = new CopyMigration(0);
+        assertFalse(runner.isStarted("copy"));
+
+        assertTrue(runner.run(migration));
+        assertEquals(10, count("target"));
+        assertEquals("[0, 4, 8, 10]", migration.checkpoints.toString());
+        assertTrue(runner.isDone("copy"));
+
+        // finished migrations are skipped
+        migration.checkpoints.clear();
+        assertTrue(runner.run(migration));
+        assertTrue(migration.checkpoints.isEmpty());
+        assertEquals(10, count("target"));
+    }
+
+    public void testResumesAfterFailedChunk() {
+        MigrationRunner runner = new MigrationRunner(database, 4);
+        CopyMigration migration = new CopyMigration(6);
+
+        assertFalse(runner.run(migration));
+        // the failed chunk was rolled back, the one before it kept
+        assertEquals(4, count("target"));
+        assertTrue(runner.isStarted("copy"));
+        assertFalse(runner.isDone("copy"));
+
+        migration.checkpoints.clear();
+        assertTrue(new MigrationRunner(database, 4).run(migration));
+        assertEquals("[4, 8, 10]", migration.checkpoints.toString());
+        assertEquals(10, count("target"));
+        assertEquals(10, database.simpleQueryForLong("SELECT COUNT(DISTINCT value) FROM target"));
+    }
+
+    public void testInsertSelect() {
+        MigrationRunner runner = new MigrationRunner(database, 3);
+        Migration migration = new InsertSelectMigration("insert", database, "source",
+                "INSERT INTO target (value) SELECT value * 2 FROM source WHERE value > 2");
+
+        assertTrue(runner.run(migration));
+        assertEquals(8, count("target"));
+        assertEquals(104, database.simpleQueryForLong("SELECT SUM(value) FROM target"));
+    }
+
+    public void testFailedAttachIsResumed() {
+        MigrationRunner runner = new MigrationRunner(database, 3);
+        Migration migration = new InsertSelectMigration("attach", database, "source",
+                "INSERT INTO target (value) SELECT value FROM source WHERE 1")
+                .attach("missing", "/no/such/directory/legacy.db");
+
+        assertFalse(runner.run(migration));
+        assertTrue(runner.isStarted("attach"));
+        assertFalse(runner.isDone("attach"));
+        assertEquals(0, count("target"));
+    }
+
+}
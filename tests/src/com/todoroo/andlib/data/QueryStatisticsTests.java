@@ -0,0 +1,80 @@
+package com.todoroo.andlib.data;
+
+import com.todoroo.andlib.data.QueryStatistics.Template;
+import com.todoroo.andlib.service.Autowired;
+import com.todoroo.andlib.sql.Query;
+import com.todoroo.astrid.dao.TaskDao;
+import com.todoroo.astrid.data.Task;
+import com.todoroo.astrid.test.DatabaseTestCase;
+
+@SuppressWarnings("nls")
+public class QueryStatisticsTests extends DatabaseTestCase {
+
+    @Autowired
+    TaskDao taskDao;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        QueryStatistics.reset();
+        QueryStatistics.setEnabled(true);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        QueryStatistics.setEnabled(false);
+        QueryStatistics.setSlowThreshold(50);
+        QueryStatistics.reset();
+        super.tearDown();
+    }
+
+    private Template find(String fragment) {
+        for(Template template : QueryStatistics.getTemplates())
+            if(template.sql.contains(fragment))
+                return template;
+        return null;
+    }
+
+    public void testNormalize() {
+        assertEquals("SELECT * FROM tasks WHERE (title = ? AND importance > ?)",
+                QueryStatistics.normalize("SELECT *  FROM tasks\nWHERE (title = 'it''s' AND importance > -2)"));
+        assertEquals("SELECT value1 FROM metadata WHERE task IN (?)",
+                QueryStatistics.normalize("SELECT value1 FROM metadata WHERE task IN (1, 2,3)"));
+    }
+
+    public void testGroupsByTemplate() {
+        for(int i = 0; i < 3; i++) {
+            Task task = new Task();
+            task.setValue(Task.TITLE, "task " + i);
+            taskDao.save(task);
+        }
+        assertNotNull(find("INSERT INTO tasks"));
+
+        QueryStatistics.reset();
+        for(int i = 0; i < 3; i++)
+            taskDao.query(Query.select(Task.ID).where(Task.TITLE.eq("task " + i))).close();
+
+        Template template = find("FROM tasks WHERE");
+        assertNotNull(template);
+        assertEquals(3, template.getCount());
+        assertEquals(3, template.getRows());
+        assertTrue(template.getPercentile(0.99) >= template.getPercentile(0.5));
+    }
+
+    public void testCapturesPlanOfSlowQueries() {
+        QueryStatistics.setSlowThreshold(0);
+        taskDao.query(Query.select(Task.ID).where(Task.TITLE.eq("a"))).close();
+
+        Template template = find("FROM tasks WHERE");
+        assertNotNull(template.getPlan());
+        assertTrue(template.getPlan(), template.isFullScan());
+        assertTrue(QueryStatistics.dump().contains("FULL SCAN"));
+    }
+
+    public void testDisabled() {
+        QueryStatistics.setEnabled(false);
+        taskDao.query(Query.select(Task.ID)).close();
+        assertEquals(0, QueryStatistics.getTemplates().size());
+    }
+
+}
@@ -0,0 +1,135 @@
+package com.todoroo.andlib.test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal local HTTP server answering GET requests with canned responses,
+ * used to test api clients without the network
+ */
+@SuppressWarnings("nls")
+public class StandInServer extends Thread {
+
+    /**
+     * Produces the body returned for a request
+     */
+    public interface Responder {
+        /**
+         * @param path request path and query string, without leading slash
+         * @return response body, or null to drop the connection
+         */
+        public String respond(String path);
+    }
+
+    private final ServerSocket socket;
+    private final Responder responder;
+    private final String contentType;
+    private final ArrayList<String> requests = new ArrayList<String>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    /** time each request takes to answer */
+    public volatile long delay = 0;
+
+    public StandInServer(String contentType, Responder responder) throws IOException {
+        this.contentType = contentType;
+        this.responder = responder;
+        socket = new ServerSocket(0);
+        setDaemon(true);
+        start();
+    }
+
+    public int getPort() {
+        return socket.getLocalPort();
+    }
+
+    /** @return base url of this server, ending with a slash */
+    public String getUrl() {
+        return "http://127.0.0.1:" + getPort() + "/";
+    }
+
+    /** @return number of requests whose path contained the given string */
+    public int count(String fragment) {
+        int count = 0;
+        synchronized(requests) {
+            for(String request : requests)
+                if(request.contains(fragment))
+                    count++;
+        }
+        return count;
+    }
+
+    /** @return largest number of requests answered at the same time */
+    public int getMaxInFlight() {
+        return maxInFlight.get();
+    }
+
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    @Override
+    public void run() {
+        while(!socket.isClosed()) {
+            try {
+                final Socket client = socket.accept();
+                new Thread() {
+                    @Override
+                    public void run() {
+                        handle(client);
+                    }
+                }.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void handle(Socket client) {
+        int current = inFlight.incrementAndGet();
+        synchronized(maxInFlight) {
+            if(current > maxInFlight.get())
+                maxInFlight.set(current);
+        }
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream()));
+            String requestLine = reader.readLine();
+            for(String header = reader.readLine(); header != null && header.length() > 0;
+                    header = reader.readLine()) {
+                // skip headers
+            }
+
+            String path = requestLine.split(" ")[1].substring(1);
+            synchronized(requests) {
+                requests.add(path);
+            }
+
+            String response = responder.respond(path);
+            if(response == null) {
+                client.close();
+                return;
+            }
+            if(delay > 0)
+                Thread.sleep(delay);
+
+            byte[] body = response.getBytes("UTF-8");
+            OutputStream out = client.getOutputStream();
+            out.write(("HTTP/1.1 200 OK\r\nContent-Type: " + contentType + "\r\n" +
+                    "Content-Length: " + body.length + "\r\nConnection: close\r\n\r\n").getBytes("UTF-8"));
+            out.write(body);
+            out.flush();
+            client.close();
+        } catch (Exception e) {
+            // client went away
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.todoroo.andlib.utility;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("nls")
+public class CoalescingExecutorTests extends TestCase {
+
+    private final List<String> ran = Collections.synchronizedList(new ArrayList<String>());
+    private final AtomicInteger idle = new AtomicInteger();
+    private CountDownLatch idleLatch = new CountDownLatch(1);
+
+    private final Runnable onIdle = new Runnable() {
+        public void run() {
+            idle.incrementAndGet();
+            idleLatch.countDown();
+        }
+    };
+
+    private Runnable job(final String name) {
+        return new Runnable() {
+            public void run() {
+                ran.add(name);
+            }
+        };
+    }
+
+    public void testRepeatsInWindowRunOnce() throws Exception {
+        CoalescingExecutor executor = new CoalescingExecutor("test", 2, 16, 200, onIdle);
+        try {
+            executor.submit("task:1", job("a"));
+            executor.submit("task:1", job("b"));
+            executor.submit("task:1", job("c"));
+            executor.submit("tag:1", job("d"));
+
+            assertTrue(idleLatch.await(2, TimeUnit.SECONDS));
+            Collections.sort(ran);
+            assertEquals("[c, d]", ran.toString());
+            assertEquals(1, idle.get());
+            assertEquals(0, executor.getPendingCount());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testSubmitWhileRunningRunsAgain() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        CoalescingExecutor executor = new CoalescingExecutor("test", 1, 16, 10, onIdle);
+        try {
+            executor.submit("task:1", new Runnable() {
+                public void run() {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        //
+                    }
+                    ran.add("first");
+                }
+            });
+            assertTrue(started.await(2, TimeUnit.SECONDS));
+            executor.submit("task:1", job("second"));
+            executor.submit("task:1", job("third"));
+            release.countDown();
+
+            assertTrue(idleLatch.await(2, TimeUnit.SECONDS));
+            assertEquals("[first, third]", ran.toString());
+            assertEquals(1, idle.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testDropsBeyondMaxPending() throws Exception {
+        CoalescingExecutor executor = new CoalescingExecutor("test", 1, 2, 100, onIdle);
+        try {
+            assertTrue(executor.submit("task:1", job("a")));
+            assertTrue(executor.submit("task:2", job("b")));
+            assertFalse(executor.submit("task:3", job("c")));
+            // repeats of a pending key are still accepted
+            assertTrue(executor.submit("task:2", job("d")));
+
+            assertTrue(idleLatch.await(2, TimeUnit.SECONDS));
+            Collections.sort(ran);
+            assertEquals("[a, d]", ran.toString());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testFailingJobDoesNotStopQueue() throws Exception {
+        CoalescingExecutor executor = new CoalescingExecutor("test", 1, 16, 10, onIdle);
+        try {
+            executor.submit("task:1", new Runnable() {
+                public void run() {
+                    throw new IllegalStateException("fetch failed");
+                }
+            });
+            assertTrue(idleLatch.await(2, TimeUnit.SECONDS));
+
+            idleLatch = new CountDownLatch(1);
+            executor.submit("task:1", job("retry"));
+            assertTrue(idleLatch.await(2, TimeUnit.SECONDS));
+            assertEquals("[retry]", ran.toString());
+            assertEquals(2, idle.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.todoroo.andlib.utility;
+
+import android.content.SharedPreferences;
+
+import com.timsu.astrid.R;
+import com.todoroo.andlib.test.TodorooTestCase;
+
+@SuppressWarnings("nls")
+public class PreferencesTests extends TodorooTestCase {
+
+    private static final String KEY = "preferences-test";
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        Preferences.clear(KEY);
+        Preferences.flush();
+    }
+
+    public void testWritesAreReadBackBeforeCommit() {
+        Preferences.setLong(KEY, 5L);
+        assertEquals(5L, Preferences.getLong(KEY, 0));
+        assertTrue(Preferences.isSet(KEY));
+        // wrong type reads give the default
+        assertEquals(3, Preferences.getInt(KEY, 3));
+
+        Preferences.clear(KEY);
+        assertFalse(Preferences.isSet(KEY));
+        assertEquals(7L, Preferences.getLong(KEY, 7));
+    }
+
+    public void testFlushCommits() {
+        Preferences.setString(KEY, "value");
+        Preferences.flush();
+        SharedPreferences prefs = Preferences.getPrefs(getContext());
+        assertEquals("value", prefs.getString(KEY, null));
+
+        // getPrefs writes pending changes first
+        Preferences.setString(KEY, "other");
+        assertEquals("other", Preferences.getPrefs(getContext()).getString(KEY, null));
+    }
+
+    public void testOutsideWritesInvalidateCache() {
+        Preferences.setBoolean(KEY, true);
+        assertTrue(Preferences.getBoolean(KEY, false));
+
+        Preferences.getPrefs(getContext()).edit().putBoolean(KEY, false).commit();
+        // listeners may be called on the main thread
+        for(int i = 0; i < 20 && Preferences.getBoolean(KEY, true); i++)
+            AndroidUtilities.sleepDeep(50L);
+        assertFalse(Preferences.getBoolean(KEY, true));
+    }
+
+    public void testStoredValueReadWithWrongTypeFirst() {
+        Preferences.getPrefs(getContext()).edit().putLong(KEY, 5L).commit();
+        for(int i = 0; i < 20 && !Preferences.isSet(KEY); i++)
+            AndroidUtilities.sleepDeep(50L);
+
+        // loaded through the int getter, which the stored long fails
+        assertEquals(3, Preferences.getInt(KEY, 3));
+        assertEquals(5L, Preferences.getLong(KEY, 0));
+    }
+
+    public void testIntegerFromString() {
+        int key = R.string.p_default_urgency_key;
+        String old = Preferences.getStringValue(key);
+        try {
+            Preferences.setString(key, "3");
+            assertEquals(3, Preferences.getIntegerFromString(key, 0));
+            Preferences.setStringFromInteger(key, 2);
+            assertEquals(2, Preferences.getIntegerFromString(key, 0));
+            Preferences.setString(key, "not a number");
+            assertEquals(1, Preferences.getIntegerFromString(key, 1));
+        } finally {
+            Preferences.setString(key, old);
+            Preferences.flush();
+        }
+    }
+
+}
@@ -0,0 +1,139 @@
+package com.todoroo.astrid.adapter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.todoroo.andlib.service.Autowired;
+import com.todoroo.andlib.utility.AndroidUtilities;
+import com.todoroo.astrid.data.Task;
+import com.todoroo.astrid.helper.TaskRowCache;
+import com.todoroo.astrid.service.TaskService;
+import com.todoroo.astrid.test.DatabaseTestCase;
+
+@SuppressWarnings("nls")
+public class TaskRowLoaderTests extends DatabaseTestCase {
+
+    @Autowired
+    TaskService taskService;
+
+    private Task task(long id, long modificationDate) {
+        Task task = new Task();
+        task.setId(id);
+        task.setValue(Task.MODIFICATION_DATE, modificationDate);
+        task.setValue(Task.TIMER_START, 0L);
+        task.setValue(Task.ELAPSED_SECONDS, 0);
+        return task;
+    }
+
+    public void testRowsAreKeyedByStamp() {
+        long stamp = TaskRowCache.stamp(task(1, 100));
+        long newerStamp = TaskRowCache.stamp(task(1, 200));
+
+        TaskRowLoader loader = new TaskRowLoader(taskService);
+        TaskRowLoader.Row row = loader.getOrCreate(task(1, 100));
+        row.details = new StringBuilder("details");
+
+        assertSame(row, loader.getOrCreate(task(1, 100)));
+        assertSame(row, loader.get(1, stamp));
+        assertNull(loader.get(1, newerStamp));
+        assertNull(loader.get(2, stamp));
+
+        TaskRowLoader.Row newer = loader.getOrCreate(task(1, 200));
+        assertNotSame(row, newer);
+        assertNull(newer.details);
+        assertNull(loader.get(1, stamp));
+        assertSame(newer, loader.get(1));
+    }
+
+    public void testLoadKeepsRowsOfUnchangedTasksOnly() {
+        Task task = new Task();
+        task.setValue(Task.TITLE, "task");
+        taskService.save(task);
+        Task fetched = taskService.fetchById(task.getId(), TaskRowLoader.PROPERTIES);
+
+        final TaskRowLoader loader = new TaskRowLoader(taskService);
+        TaskRowLoader.Row row = loader.getOrCreate(fetched);
+        loader.getOrCreate(task(task.getId() + 100, 100));
+        loader.addEnricher(new TaskRowLoader.Enricher() {
+            public boolean enrich(List<Task> batch) {
+                for(Task t : batch)
+                    loader.getOrCreate(t);
+                return false;
+            }
+        });
+        loader.start(null, new Runnable() {
+            public void run() {
+                //
+            }
+        });
+
+        AndroidUtilities.sleepDeep(1500L);
+        assertEquals(1, loader.size());
+        assertSame(row, loader.get(task.getId(), TaskRowCache.stamp(fetched)));
+    }
+
+    public void testRunsQueryOnceForAllEnrichers() {
+        for(int i = 0; i < 30; i++) {
+            Task task = new Task();
+            task.setValue(Task.TITLE, "task " + i);
+            taskService.save(task);
+        }
+
+        final List<Long> first = new ArrayList<Long>();
+        final List<Long> second = new ArrayList<Long>();
+        final int[] changes = new int[1];
+        TaskRowLoader loader = new TaskRowLoader(taskService);
+        loader.addEnricher(new TaskRowLoader.Enricher() {
+            public boolean enrich(List<Task> batch) {
+                for(Task task : batch)
+                    first.add(task.getId());
+                return true;
+            }
+        });
+        loader.addEnricher(new TaskRowLoader.Enricher() {
+            public boolean enrich(List<Task> batch) {
+                for(Task task : batch)
+                    second.add(task.getId());
+                return false;
+            }
+        });
+        // a null query loads all tasks
+        loader.start(null, new Runnable() {
+            public void run() {
+                changes[0]++;
+            }
+        });
+
+        AndroidUtilities.sleepDeep(2000L);
+        assertEquals(30, first.size());
+        assertEquals(first, second);
+        // after the first batch and at the end
+        assertEquals(2, changes[0]);
+    }
+
+    public void testCancel() {
+        Task task = new Task();
+        task.setValue(Task.TITLE, "task");
+        taskService.save(task);
+
+        final List<Long> loaded = new ArrayList<Long>();
+        TaskRowLoader loader = new TaskRowLoader(taskService);
+        loader.addEnricher(new TaskRowLoader.Enricher() {
+            public boolean enrich(List<Task> batch) {
+                for(Task t : batch)
+                    loaded.add(t.getId());
+                return true;
+            }
+        });
+        loader.start(null, new Runnable() {
+            public void run() {
+                //
+            }
+        });
+        loader.cancel();
+
+        AndroidUtilities.sleepDeep(1000L);
+        assertEquals(0, loaded.size());
+    }
+
+}
@@ -6,8 +6,13 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 
+import android.os.Looper;
+
 import com.timsu.astrid.R;
+import com.todoroo.andlib.data.TodorooCursor;
 import com.todoroo.andlib.service.Autowired;
+import com.todoroo.andlib.sql.Criterion;
+import com.todoroo.andlib.sql.Query;
 import com.todoroo.andlib.utility.AndroidUtilities;
 import com.todoroo.astrid.backup.BackupService.BackupDirectorySetting;
 import com.todoroo.astrid.dao.TaskDao;
@@ -127,6 +132,111 @@ public class BackupServiceTests extends DatabaseTestCase {
         }
     }
 
+    /** Test unchanged data is not backed up again and changes go to a delta */
+    public void testIncrementalBackup() throws IOException {
+        assertEquals(0, temporaryDirectory.list().length);
+
+        boolean backupSetting = getBackupSetting();
+        try {
+            setBackupSetting(true);
+            BackupIndex.clear(getContext());
+
+            Task other = new Task();
+            other.setValue(Task.TITLE, "submarine");
+            taskDao.createNew(other);
+
+            BackupService service = new BackupService();
+            service.setBackupDirectorySetting(setting);
+            service.testBackup(getContext());
+            AndroidUtilities.sleepDeep(BACKUP_WAIT_TIME);
+
+            File[] files = temporaryDirectory.listFiles();
+            assertEquals(1, files.length);
+            assertTrue(files[0].getName().matches(BackupService.BACKUP_FILE_NAME_REGEX));
+            long fullSize = files[0].length();
+            long changes = BackupIndex.read(getContext()).changes;
+
+            // nothing changed, nothing written
+            service.testBackup(getContext());
+            AndroidUtilities.sleepDeep(BACKUP_WAIT_TIME);
+            assertEquals(1, temporaryDirectory.listFiles().length);
+            assertEquals(changes, BackupIndex.read(getContext()).changes);
+
+            // one task changed, written to a delta
+            other.setValue(Task.TITLE, "submarine sandwich");
+            taskDao.save(other);
+            service.testBackup(getContext());
+            AndroidUtilities.sleepDeep(BACKUP_WAIT_TIME);
+
+            files = temporaryDirectory.listFiles();
+            assertEquals(2, files.length);
+            File delta = files[0].getName().matches(BackupService.BACKUP_DELTA_FILE_NAME_REGEX) ?
+                    files[0] : files[1];
+            assertTrue(delta.getName().matches(BackupService.BACKUP_DELTA_FILE_NAME_REGEX));
+            assertTrue(delta.length() < fullSize);
+
+            BackupIndex index = BackupIndex.read(getContext());
+            assertEquals(1, index.deltas);
+            assertTrue(index.changes > changes);
+            assertEquals(2, index.hashes.size());
+            assertTrue(new File(temporaryDirectory, index.base).exists());
+        } finally {
+            setBackupSetting(backupSetting);
+        }
+    }
+
+    private int countTasks(String title) {
+        TodorooCursor<Task> cursor = taskDao.query(Query.select(Task.ID).where(
+                title == null ? Criterion.all : Task.TITLE.eq(title)));
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /** Test a delta restores over its full backup after a title edit */
+    public void testRestoreDeltaAfterTitleEdit() throws IOException {
+        boolean backupSetting = getBackupSetting();
+        try {
+            setBackupSetting(true);
+            BackupIndex.clear(getContext());
+
+            Task other = new Task();
+            other.setValue(Task.TITLE, "submarine");
+            taskDao.createNew(other);
+
+            BackupService service = new BackupService();
+            service.setBackupDirectorySetting(setting);
+            service.testBackup(getContext());
+            AndroidUtilities.sleepDeep(BACKUP_WAIT_TIME);
+
+            other.setValue(Task.TITLE, "submarine sandwich");
+            taskDao.save(other);
+            service.testBackup(getContext());
+            AndroidUtilities.sleepDeep(BACKUP_WAIT_TIME);
+
+            File delta = null;
+            for(File file : temporaryDirectory.listFiles())
+                if(file.getName().matches(BackupService.BACKUP_DELTA_FILE_NAME_REGEX))
+                    delta = file;
+            assertNotNull(delta);
+
+            // restore full and delta into an empty database
+            taskDao.deleteWhere(Criterion.all);
+            if(Looper.myLooper() == null)
+                Looper.prepare();
+            TasksXmlImporter.importTasks(getContext(), delta.getAbsolutePath(), null);
+            AndroidUtilities.sleepDeep(BACKUP_WAIT_TIME);
+
+            assertEquals(2, countTasks(null));
+            assertEquals(1, countTasks("submarine sandwich"));
+            assertEquals(0, countTasks("submarine"));
+        } finally {
+            setBackupSetting(backupSetting);
+        }
+    }
+
     public void testDeletion() throws IOException {
         // create a bunch of backups
         assertEquals(0, temporaryDirectory.list().length);
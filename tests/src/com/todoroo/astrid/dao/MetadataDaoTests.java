@@ -187,4 +187,31 @@ public class MetadataDaoTests extends DatabaseTestCase {
         cursor.close();
     }
 
-}
\ No newline at end of file
+    /**
+     * Test set-based deletion of dangling metadata
+     */
+    public void testDeleteDangling() throws Exception {
+        assertEquals(0, metadataDao.deleteDangling());
+
+        Task task = new Task();
+        taskDao.persist(task);
+        Metadata metadata = new Metadata();
+        metadata.setValue(Metadata.KEY, "kept");
+        metadata.setValue(Metadata.TASK, task.getId());
+        assertTrue(metadataDao.persist(metadata));
+
+        metadata = new Metadata();
+        metadata.setValue(Metadata.KEY, "dangling");
+        metadata.setValue(Metadata.TASK, task.getId() + 1);
+        assertTrue(metadataDao.persist(metadata));
+
+        assertEquals(1, metadataDao.deleteDangling());
+        TodorooCursor<Metadata> cursor = metadataDao.query(Query.select(KEYS));
+        assertEquals(1, cursor.getCount());
+        cursor.moveToFirst();
+        metadata.readFromCursor(cursor);
+        assertEquals("kept", metadata.getValue(Metadata.KEY));
+        cursor.close();
+    }
+
+}
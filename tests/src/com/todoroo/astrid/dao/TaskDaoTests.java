@@ -221,6 +221,32 @@ public class TaskDaoTests extends DatabaseTestCase {
         cursor.close();
     }
 
+    /**
+     * Test creating several tasks at once
+     */
+    public void testCreateMultiple() throws Exception {
+        Task[] tasks = new Task[3];
+        for(int i = 0; i < tasks.length; i++) {
+            tasks[i] = new Task();
+            tasks[i].setValue(Task.TITLE, "task " + i);
+        }
+        tasks[1].setValue(Task.COMPLETION_DATE, DateUtilities.now());
+        assertTrue(taskDao.createNewMultiple(tasks));
+
+        TodorooCursor<Task> cursor = taskDao.query(
+                Query.select(IDS));
+        assertEquals(3, cursor.getCount());
+        cursor.close();
+
+        for(int i = 0; i < tasks.length; i++) {
+            assertNotSame(Task.NO_ID, tasks[i].getId());
+            assertNull(tasks[i].getSetValues());
+            Task task = taskDao.fetch(tasks[i].getId(), TITLES);
+            assertEquals("task " + i, task.getValue(Task.TITLE));
+        }
+        assertTrue(taskDao.fetch(tasks[1].getId(), Task.COMPLETION_DATE).isCompleted());
+    }
+
     // TODO check eventing
 }
 
@@ -0,0 +1,171 @@
+package com.todoroo.astrid.helper;
+
+import greendroid.image.ImageFileCache;
+import greendroid.image.ImageLoader;
+import greendroid.image.ImageProcessor;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import android.graphics.Bitmap;
+
+import com.todoroo.andlib.test.TodorooTestCase;
+import com.todoroo.andlib.utility.DateUtilities;
+
+@SuppressWarnings("nls")
+public class ImageCacheTests extends TodorooTestCase {
+
+    private File directory;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        directory = File.createTempFile("images", Long.toString(System.nanoTime()));
+        if(!directory.delete() || !directory.mkdir())
+            throw new IOException("Could not create temp directory: " + directory.getAbsolutePath());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        for(File file : directory.listFiles())
+            file.delete();
+        directory.delete();
+    }
+
+    private static InputStream bytes(int length) {
+        return new ByteArrayInputStream(new byte[length]);
+    }
+
+    /** processor with a fixed key */
+    private static ImageProcessor processor(final String key) {
+        return new ImageProcessor() {
+            public Bitmap processImage(Bitmap bitmap) {
+                return bitmap;
+            }
+
+            public String getKey() {
+                return key;
+            }
+        };
+    }
+
+    // --- keys
+
+    public void testCacheKeys() {
+        String url = "http://example.com/a.png";
+        assertEquals(url, ImageLoader.getCacheKey(url, null, 0, 0));
+        assertFalse(url.equals(ImageLoader.getCacheKey(url, null, 40, 40)));
+        assertFalse(ImageLoader.getCacheKey(url, null, 40, 40).equals(
+                ImageLoader.getCacheKey(url, null, 80, 80)));
+
+        // processors are told apart by key, not by instance
+        assertEquals(ImageLoader.getCacheKey(url, processor("round"), 40, 40),
+                ImageLoader.getCacheKey(url, processor("round"), 40, 40));
+        assertFalse(ImageLoader.getCacheKey(url, processor("round"), 40, 40).equals(
+                ImageLoader.getCacheKey(url, processor("square"), 40, 40)));
+        assertFalse(ImageLoader.getCacheKey(url, processor("round"), 40, 40).equals(
+                ImageLoader.getCacheKey(url, null, 40, 40)));
+
+        // processors without a key are not cached
+        assertNull(ImageLoader.getCacheKey(url, processor(null), 40, 40));
+    }
+
+    // --- file cache
+
+    public void testFileCacheEvictsLeastRecentlyUsed() throws IOException {
+        ImageFileCache cache = new ImageFileCache(directory, 10);
+        File a = cache.put("a", bytes(4));
+        File b = cache.put("b", bytes(4));
+        a.setLastModified(1000000000000L);
+        b.setLastModified(1000000060000L);
+
+        cache.put("c", bytes(4));
+        assertNull(cache.peek("a"));
+        assertNotNull(cache.peek("b"));
+        assertNotNull(cache.peek("c"));
+    }
+
+    public void testFileCacheKeepsHeldAndTemporaryFiles() throws IOException {
+        ImageFileCache cache = new ImageFileCache(directory, 10);
+        File temp = new File(directory, "download.tmp");
+        OutputStream out = new FileOutputStream(temp);
+        out.write(new byte[20]);
+        out.close();
+
+        File a = cache.put("a", bytes(4));
+        File b = cache.put("b", bytes(4));
+        assertEquals(a, cache.get("a"));
+        a.setLastModified(1000000000000L);
+        b.setLastModified(1000000060000L);
+        temp.setLastModified(1000000000000L);
+
+        // a is held, so b goes instead
+        cache.put("c", bytes(4));
+        assertTrue(a.exists());
+        assertFalse(b.exists());
+        assertTrue(temp.exists());
+
+        // once released, a is evicted
+        cache.release(a);
+        a.setLastModified(1000000000000L);
+        cache.put("d", bytes(4));
+        assertFalse(a.exists());
+        assertTrue(temp.exists());
+    }
+
+    // --- disk cache
+
+    private class StringDiskCache extends DiskCache<String, String> {
+        public StringDiskCache() {
+            super(directory, null, ".txt");
+        }
+
+        @Override
+        protected void toDisk(String key, String in, OutputStream out) {
+            try {
+                out.write(in.getBytes());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        protected String fromDisk(String key, InputStream in) {
+            return null;
+        }
+    }
+
+    public void testDiskCacheKeepsRunningSize() throws IOException {
+        StringDiskCache cache = new StringDiskCache();
+        cache.setMaxSize(10);
+        cache.put("a", "1234");
+        cache.put("b", "1234");
+        assertEquals(8, cache.getCacheBytes());
+
+        cache.put("b", "12");
+        assertEquals(6, cache.getCacheBytes());
+
+        cache.getFile("a").setLastModified(1000000000000L);
+        cache.getFile("b").setLastModified(1000000060000L);
+        cache.put("c", "123456");
+        assertFalse(cache.contains("a"));
+        assertTrue(cache.contains("b"));
+        assertEquals(8, cache.getCacheBytes());
+
+        cache.clear("b");
+        assertEquals(6, cache.getCacheBytes());
+    }
+
+    public void testPendingPicturesExpire() {
+        long now = DateUtilities.now();
+        assertTrue(ImageDiskCache.isEvictable("1234.jpg", now, now));
+        assertFalse(ImageDiskCache.isEvictable("pending_1234.jpg", now - DateUtilities.ONE_DAY, now));
+        assertTrue(ImageDiskCache.isEvictable("pending_1234.jpg", now - 3 * DateUtilities.ONE_WEEK, now));
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.todoroo.astrid.helper;
+
+import com.todoroo.andlib.service.Autowired;
+import com.todoroo.astrid.dao.MetadataDao;
+import com.todoroo.astrid.dao.TaskDao;
+import com.todoroo.astrid.data.Metadata;
+import com.todoroo.astrid.data.Task;
+import com.todoroo.astrid.test.DatabaseTestCase;
+
+@SuppressWarnings("nls")
+public class TaskEditMetadataTests extends DatabaseTestCase {
+
+    @Autowired
+    MetadataDao metadataDao;
+
+    @Autowired
+    TaskDao taskDao;
+
+    private long createMetadata(long task, String key, String value) {
+        Metadata metadata = new Metadata();
+        metadata.setValue(Metadata.TASK, task);
+        metadata.setValue(Metadata.KEY, key);
+        metadata.setValue(Metadata.VALUE1, value);
+        metadataDao.persist(metadata);
+        return metadata.getId();
+    }
+
+    public void testGroupsByKey() {
+        Task task = new Task();
+        taskDao.save(task);
+        Task other = new Task();
+        taskDao.save(other);
+
+        createMetadata(task.getId(), "tags", "b");
+        createMetadata(task.getId(), "alarm", "1");
+        createMetadata(task.getId(), "tags", "a");
+        createMetadata(other.getId(), "tags", "c");
+
+        TaskEditMetadata snapshot = new TaskEditMetadata(task.getId());
+        assertEquals(2, snapshot.get("tags").size());
+        assertEquals("b", snapshot.get("tags").get(0).getValue(Metadata.VALUE1));
+        assertEquals("a", snapshot.get("tags").get(1).getValue(Metadata.VALUE1));
+        assertEquals("1", snapshot.getFirst("alarm").getValue(Metadata.VALUE1));
+        assertEquals(0, snapshot.get("missing").size());
+        assertNull(snapshot.getFirst("missing"));
+    }
+
+    public void testReadOnce() {
+        Task task = new Task();
+        taskDao.save(task);
+        createMetadata(task.getId(), "tags", "a");
+
+        TaskEditMetadata snapshot = new TaskEditMetadata(task.getId());
+        assertEquals(1, snapshot.get("tags").size());
+
+        // later changes are not seen by the same snapshot
+        createMetadata(task.getId(), "tags", "b");
+        assertEquals(1, snapshot.get("tags").size());
+        assertEquals(2, new TaskEditMetadata(task.getId()).get("tags").size());
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.todoroo.astrid.helper;
+
+import com.todoroo.astrid.data.Task;
+import com.todoroo.astrid.test.DatabaseTestCase;
+
+@SuppressWarnings("nls")
+public class TaskRowCacheTests extends DatabaseTestCase {
+
+    private Task task(long modificationDate, long timerStart) {
+        Task task = new Task();
+        task.setId(1);
+        task.setValue(Task.MODIFICATION_DATE, modificationDate);
+        task.setValue(Task.TIMER_START, timerStart);
+        task.setValue(Task.ELAPSED_SECONDS, 0);
+        return task;
+    }
+
+    public void testStampCoversTimer() {
+        assertEquals(TaskRowCache.stamp(task(100, 0)), TaskRowCache.stamp(task(100, 0)));
+        assertFalse(TaskRowCache.stamp(task(100, 0)) == TaskRowCache.stamp(task(200, 0)));
+        assertFalse(TaskRowCache.stamp(task(100, 0)) == TaskRowCache.stamp(task(100, 50)));
+    }
+
+    public void testValuesAreOnlyReturnedForTheirStamp() {
+        TaskRowCache<String> cache = new TaskRowCache<String>("test", 10);
+        cache.put(1, 100, "a");
+        assertEquals("a", cache.get(1, 100));
+        assertNull(cache.get(2, 100));
+        assertEquals("a", cache.peek(1));
+
+        // a newer version drops the old value
+        assertNull(cache.get(1, 200));
+        assertNull(cache.peek(1));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    public void testBoundedBySize() {
+        TaskRowCache<String> cache = new TaskRowCache<String>("test", 5) {
+            @Override
+            protected int sizeOf(String value) {
+                return value.length();
+            }
+        };
+        cache.put(1, 0, "aa");
+        cache.put(2, 0, "bb");
+        assertEquals("aa", cache.get(1, 0));
+
+        // least recently used goes first
+        cache.put(3, 0, "cc");
+        assertEquals(4, cache.size());
+        assertNull(cache.peek(2));
+        assertEquals("aa", cache.peek(1));
+
+        cache.put(3, 0, "c");
+        assertEquals(3, cache.size());
+        cache.remove(1);
+        assertEquals(1, cache.size());
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.todoroo.astrid.producteev.api;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.todoroo.andlib.test.StandInServer;
+import com.todoroo.andlib.test.TodorooTestCase;
+
+/**
+ * Runs the invoker against a local stand-in for the producteev server
+ */
+@SuppressWarnings("nls")
+public class ProducteevInvokerTests extends TodorooTestCase {
+
+    private final HashSet<String> failOnce = new HashSet<String>();
+    private StandInServer server;
+    private ProducteevInvoker invoker;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        server = new StandInServer("application/json", new StandInServer.Responder() {
+            public String respond(String path) {
+                synchronized(failOnce) {
+                    if(failOnce.remove(path.substring(0, path.indexOf('?'))))
+                        return null;
+                }
+                return "{\"task\":{}}";
+            }
+        });
+        new ProducteevRestClient().reset();
+        invoker = new ProducteevInvoker("key", "secret", server.getUrl());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        server.close();
+        new ProducteevRestClient().reset();
+        super.tearDown();
+    }
+
+    public void testNetworkFailureRetriesOnlyThatCall() throws Exception {
+        failOnce.add("tasks/set_title.json");
+
+        invoker.tasksSetStar(1, 3);
+        invoker.tasksSetTitle(1, "title");
+
+        assertEquals(2, server.count("tasks/set_title.json"));
+        assertEquals(1, server.count("tasks/set_star.json"));
+    }
+
+    public void testCreateIsNotRetried() throws Exception {
+        failOnce.add("tasks/create.json");
+
+        try {
+            invoker.tasksCreate("title", null, null, null, null, null, null);
+            fail("expected failure");
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals(1, server.count("tasks/create.json"));
+    }
+
+    public void testCallsRunInParallel() throws Exception {
+        server.delay = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(ProducteevRestClient.MAX_CONNECTIONS);
+        try {
+            long start = System.currentTimeMillis();
+            Future<?>[] calls = new Future<?>[ProducteevRestClient.MAX_CONNECTIONS];
+            for(int i = 0; i < calls.length; i++) {
+                final long id = i;
+                calls[i] = executor.submit(new Callable<Object>() {
+                    public Object call() throws Exception {
+                        return invoker.tasksSetTitle(id, "title");
+                    }
+                });
+            }
+            for(Future<?> call : calls)
+                call.get();
+            long elapsed = System.currentTimeMillis() - start;
+
+            assertTrue("max in flight: " + server.getMaxInFlight(), server.getMaxInFlight() > 1);
+            assertTrue("elapsed: " + elapsed, elapsed < calls.length * server.delay);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
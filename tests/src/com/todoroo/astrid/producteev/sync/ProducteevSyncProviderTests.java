@@ -0,0 +1,115 @@
+package com.todoroo.astrid.producteev.sync;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.todoroo.andlib.data.TodorooCursor;
+import com.todoroo.andlib.sql.Query;
+import com.todoroo.andlib.test.StandInServer;
+import com.todoroo.astrid.core.PluginServices;
+import com.todoroo.astrid.data.Metadata;
+import com.todoroo.astrid.data.Task;
+import com.todoroo.astrid.producteev.api.ProducteevInvoker;
+import com.todoroo.astrid.producteev.api.ProducteevRestClient;
+import com.todoroo.astrid.test.DatabaseTestCase;
+
+/**
+ * Pushes locally updated tasks against a local stand-in for the producteev
+ * server
+ */
+@SuppressWarnings("nls")
+public class ProducteevSyncProviderTests extends DatabaseTestCase {
+
+    private static final int TASKS = 8;
+    private static final Pattern ID_TASK = Pattern.compile("id_task=(\\d+)");
+
+    private StandInServer server;
+    private PushingProvider provider;
+
+    /** exposes pushing every task in the database */
+    private static class PushingProvider extends ProducteevSyncProvider {
+        public PushingProvider(ProducteevInvoker invoker) {
+            super(invoker);
+        }
+
+        public void pushAll() throws IOException {
+            TodorooCursor<Task> cursor = PluginServices.getTaskService().query(
+                    Query.select(Task.PROPERTIES));
+            try {
+                sendLocallyUpdated(new SyncData<ProducteevTaskContainer>(
+                        new ArrayList<ProducteevTaskContainer>(), null, cursor));
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        server = new StandInServer("application/json", new StandInServer.Responder() {
+            public String respond(String path) {
+                Matcher matcher = ID_TASK.matcher(path);
+                if(!matcher.find())
+                    return "{}";
+                String id = matcher.group(1);
+                return "{\"task\":{\"id_task\":" + id + ",\"id_dashboard\":1,\"id_responsible\":1," +
+                    "\"title\":\"task " + id + "\",\"time_created\":\"\",\"status\":1,\"deleted\":0," +
+                    "\"deadline\":\"\",\"all_day\":0,\"star\":0,\"labels\":[],\"notes\":[]}}";
+            }
+        });
+        new ProducteevRestClient().reset();
+        ProducteevInvoker invoker = new ProducteevInvoker("key", "secret", server.getUrl());
+        invoker.setCredentials("token", "email", "password");
+        provider = new PushingProvider(invoker);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        server.close();
+        new ProducteevRestClient().reset();
+        super.tearDown();
+    }
+
+    private void givenTask(long remoteId) {
+        Task task = new Task();
+        task.setValue(Task.TITLE, "task " + remoteId);
+        PluginServices.getTaskService().save(task);
+
+        Metadata metadata = ProducteevTask.newMetadata();
+        metadata.setValue(Metadata.TASK, task.getId());
+        metadata.setValue(ProducteevTask.ID, remoteId);
+        metadata.setValue(ProducteevTask.DASHBOARD_ID, 1L);
+        metadata.setValue(ProducteevTask.RESPONSIBLE_ID, 1L);
+        PluginServices.getMetadataService().save(metadata);
+    }
+
+    public void testRemoteTasksAreReadInParallel() throws Exception {
+        for(int i = 1; i <= TASKS; i++)
+            givenTask(i);
+        server.delay = 200;
+
+        provider.pushAll();
+
+        assertTrue("max in flight: " + server.getMaxInFlight(), server.getMaxInFlight() > 1);
+        for(int i = 1; i <= TASKS; i++)
+            assertTrue(server.count("id_task=" + i + "&") > 0);
+
+        // every task is written back once, in place
+        TodorooCursor<Task> cursor = PluginServices.getTaskService().query(
+                Query.select(Task.ID, Task.TITLE));
+        try {
+            assertEquals(TASKS, cursor.getCount());
+            Task task = new Task();
+            for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                task.readFromCursor(cursor);
+                assertTrue(task.getValue(Task.TITLE).startsWith("task "));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+}
@@ -1,12 +1,18 @@
 package com.todoroo.astrid.provider;
 
+import java.util.ArrayList;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.net.Uri;
 
+import com.todoroo.andlib.data.AbstractDatabase.DatabaseUpdateListener;
 import com.todoroo.andlib.data.Property.IntegerProperty;
 import com.todoroo.andlib.data.Property.StringProperty;
+import com.todoroo.andlib.utility.DateUtilities;
 import com.todoroo.astrid.api.AstridApiConstants;
 import com.todoroo.astrid.data.Metadata;
 import com.todoroo.astrid.data.StoreObject;
@@ -346,4 +352,120 @@ public class Astrid3ProviderTests extends DatabaseTestCase {
         assertEquals(20, cursor.getInt(0));
     }
 
+    /** Test inserting several rows in one transaction */
+    public void testBulkInsert() {
+        ContentResolver resolver = getContext().getContentResolver();
+        final int[] updates = new int[1];
+        database.addListener(new DatabaseUpdateListener() {
+            public void onDatabaseUpdated() {
+                updates[0]++;
+            }
+        });
+
+        ContentValues[] rows = new ContentValues[3];
+        for(int i = 0; i < rows.length; i++) {
+            rows[i] = new ContentValues();
+            rows[i].put(Task.TITLE.name, "boards of canada " + i);
+        }
+        assertEquals(3, resolver.bulkInsert(Task.CONTENT_URI, rows));
+        assertEquals(1, updates[0]);
+
+        Cursor cursor = resolver.query(Task.CONTENT_URI, PROJECTION, null, null, Task.TITLE.name);
+        assertEquals(3, cursor.getCount());
+        cursor.moveToLast();
+        assertEquals("boards of canada 2", cursor.getString(1));
+        cursor.close();
+
+        // a failing row rolls back the whole batch
+        rows[1].put("no_such_column", 1);
+        try {
+            resolver.bulkInsert(Task.CONTENT_URI, rows);
+            fail("Able to insert into missing column");
+        } catch (Exception e) {
+            // expected
+        }
+        cursor = resolver.query(Task.CONTENT_URI, PROJECTION, null, null, null);
+        assertEquals(3, cursor.getCount());
+        cursor.close();
+    }
+
+    /** Test applying a batch of operations in one transaction */
+    public void testApplyBatch() throws Exception {
+        ContentResolver resolver = getContext().getContentResolver();
+
+        ContentValues values = new ContentValues();
+        values.put(Task.TITLE.name, "aphex twin");
+        Uri existing = resolver.insert(Task.CONTENT_URI, values);
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>();
+        operations.add(ContentProviderOperation.newInsert(Task.CONTENT_URI).
+                withValue(Task.TITLE.name, "autechre").build());
+        operations.add(ContentProviderOperation.newUpdate(existing).
+                withValue(Task.TITLE.name, "afx").build());
+        ContentProviderResult[] results = resolver.applyBatch(AstridApiConstants.PACKAGE, operations);
+        assertEquals(2, results.length);
+        assertNotNull(results[0].uri);
+        assertEquals(1, results[1].count.intValue());
+
+        Cursor cursor = resolver.query(existing, PROJECTION, null, null, null);
+        cursor.moveToFirst();
+        assertEquals("afx", cursor.getString(1));
+        cursor.close();
+
+        // a failing operation rolls back the whole batch
+        operations.clear();
+        operations.add(ContentProviderOperation.newDelete(existing).build());
+        operations.add(ContentProviderOperation.newInsert(Task.CONTENT_URI).
+                withValue("no_such_column", 1).build());
+        try {
+            resolver.applyBatch(AstridApiConstants.PACKAGE, operations);
+            fail("Able to insert into missing column");
+        } catch (Exception e) {
+            // expected
+        }
+        cursor = resolver.query(Task.CONTENT_URI, PROJECTION, null, null, null);
+        assertEquals(2, cursor.getCount());
+        cursor.close();
+    }
+
+    /** Test that updating many rows at once still runs task save hooks */
+    public void testUpdatingMany() {
+        ContentResolver resolver = getContext().getContentResolver();
+
+        ContentValues values = new ContentValues();
+        values.put(Task.MODIFICATION_DATE.name, 1L);
+        for(int i = 0; i < 3; i++) {
+            values.put(Task.TITLE.name, "squarepusher " + i);
+            resolver.insert(Task.CONTENT_URI, values);
+        }
+
+        long before = DateUtilities.now();
+        values.clear();
+        values.put(Task.COMPLETION_DATE.name, before);
+        values.put(Task.DUE_DATE.name, before);
+        assertEquals(3, resolver.update(Task.CONTENT_URI, values, null, null));
+
+        String[] projection = new String[] {
+                Task.COMPLETION_DATE.name,
+                Task.MODIFICATION_DATE.name,
+        };
+        Cursor cursor = resolver.query(Task.CONTENT_URI, projection, null, null, null);
+        assertEquals(3, cursor.getCount());
+        for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+            assertEquals(before, cursor.getLong(0));
+            assertTrue(cursor.getLong(1) >= before);
+        }
+        cursor.close();
+
+        // due date alone depends on each task's recurrence
+        values.clear();
+        values.put(Task.DUE_DATE.name, before + 1000L);
+        assertEquals(2, resolver.update(Task.CONTENT_URI, values,
+                Task.TITLE.name + " != 'squarepusher 0'", null));
+        cursor = resolver.query(Task.CONTENT_URI, PROJECTION,
+                Task.DUE_DATE.name + " = " + (before + 1000L), null, null);
+        assertEquals(2, cursor.getCount());
+        cursor.close();
+    }
+
 }
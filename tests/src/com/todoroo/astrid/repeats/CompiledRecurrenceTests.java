@@ -0,0 +1,97 @@
+package com.todoroo.astrid.repeats;
+
+import java.util.Date;
+
+import com.google.ical.values.Frequency;
+import com.google.ical.values.RRule;
+import com.todoroo.andlib.service.Autowired;
+import com.todoroo.andlib.utility.DateUtilities;
+import com.todoroo.astrid.dao.TaskDao;
+import com.todoroo.astrid.data.Task;
+import com.todoroo.astrid.test.DatabaseTestCase;
+
+public class CompiledRecurrenceTests extends DatabaseTestCase {
+
+    @Autowired TaskDao taskDao;
+
+    private static String buildRRule(int interval, Frequency freq) {
+        RRule rrule = new RRule();
+        rrule.setInterval(interval);
+        rrule.setFreq(freq);
+        return rrule.toIcal();
+    }
+
+    private static long dueDate() {
+        return Task.createDueDate(Task.URGENCY_SPECIFIC_DAY,
+                new Date(110, 7, 1).getTime());
+    }
+
+    public void testCompiledRuleIsShared() throws Exception {
+        String recurrence = buildRRule(2, Frequency.DAILY);
+        assertSame(CompiledRecurrence.compile(recurrence), CompiledRecurrence.compile(recurrence));
+    }
+
+    public void testNextOccurrencesDaily() throws Exception {
+        CompiledRecurrence rule = CompiledRecurrence.compile(buildRRule(2, Frequency.DAILY));
+        long[] next = rule.nextOccurrences(dueDate(), 5);
+        assertEquals(5, next.length);
+        long previous = dueDate();
+        for(long occurrence : next) {
+            assertTrue(occurrence > previous);
+            assertEquals(2, Math.round((occurrence - previous) / (double) DateUtilities.ONE_DAY));
+            previous = occurrence;
+        }
+    }
+
+    public void testNextOccurrencesSubday() throws Exception {
+        CompiledRecurrence rule = CompiledRecurrence.compile(buildRRule(3, Frequency.HOURLY));
+        long start = Task.createDueDate(Task.URGENCY_SPECIFIC_DAY_TIME,
+                new Date(110, 7, 1, 10, 4).getTime());
+        long[] next = rule.nextOccurrences(start, 3);
+        assertEquals(3, next.length);
+        assertEquals(start + 9 * DateUtilities.ONE_HOUR, next[2], 1000);
+    }
+
+    public void testNextOccurrenceIsPersisted() {
+        Task task = new Task();
+        task.setValue(Task.TITLE, "repeat");
+        task.setValue(Task.DUE_DATE, dueDate());
+        task.setValue(Task.RECURRENCE, buildRRule(1, Frequency.WEEKLY));
+        taskDao.save(task);
+
+        task = taskDao.fetch(task.getId(), Task.NEXT_OCCURRENCE);
+        assertEquals(dueDate() + DateUtilities.ONE_WEEK, task.getValue(Task.NEXT_OCCURRENCE), DateUtilities.ONE_HOUR);
+
+        // update recurrence without reading due date
+        task.setValue(Task.RECURRENCE, buildRRule(2, Frequency.WEEKLY));
+        taskDao.save(task);
+        task = taskDao.fetch(task.getId(), Task.NEXT_OCCURRENCE);
+        assertEquals(dueDate() + 2 * DateUtilities.ONE_WEEK, task.getValue(Task.NEXT_OCCURRENCE), DateUtilities.ONE_HOUR);
+
+        // clearing the recurrence clears the next occurrence
+        task.setValue(Task.RECURRENCE, "");
+        taskDao.save(task);
+        task = taskDao.fetch(task.getId(), Task.NEXT_OCCURRENCE);
+        assertEquals(0L, (long) task.getValue(Task.NEXT_OCCURRENCE));
+    }
+
+    /** Cached rules compute the same due dates as rules parsed each time */
+    public void testCachedNextDueDateMatchesUncached() throws Exception {
+        Task task = new Task();
+        task.setValue(Task.DUE_DATE, dueDate());
+        task.setValue(Task.COMPLETION_DATE, DateUtilities.now());
+
+        for(Frequency freq : new Frequency[] { Frequency.DAILY, Frequency.WEEKLY,
+                Frequency.MONTHLY, Frequency.YEARLY }) {
+            for(int interval = 1; interval <= 3; interval++) {
+                String recurrence = buildRRule(interval, freq);
+                CompiledRecurrence.clearCache();
+                long uncached = RepeatTaskCompleteListener.computeNextDueDate(task, recurrence);
+                long cached = RepeatTaskCompleteListener.computeNextDueDate(task, recurrence);
+                assertTrue(uncached > 0);
+                assertEquals(freq + " " + interval, uncached, cached);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.todoroo.astrid.service;
+
+import java.util.List;
+
+import com.todoroo.andlib.service.Autowired;
+import com.todoroo.astrid.dao.MetadataDao;
+import com.todoroo.astrid.dao.TaskDao;
+import com.todoroo.astrid.data.Metadata;
+import com.todoroo.astrid.data.Task;
+import com.todoroo.astrid.service.DatabaseMaintenance.Job;
+import com.todoroo.astrid.service.DatabaseMaintenance.Result;
+import com.todoroo.astrid.test.DatabaseTestCase;
+
+@SuppressWarnings("nls")
+public class DatabaseMaintenanceTests extends DatabaseTestCase {
+
+    @Autowired
+    TaskDao taskDao;
+
+    @Autowired
+    MetadataDao metadataDao;
+
+    private DatabaseMaintenance maintenance;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        maintenance = new DatabaseMaintenance();
+        maintenance.resetSchedule();
+    }
+
+    private Result find(List<Result> results, String job) {
+        for(Result result : results)
+            if(result.job.equals(job))
+                return result;
+        return null;
+    }
+
+    public void testRunsDueJobsOnce() {
+        Task untitled = new Task();
+        taskDao.save(untitled);
+        Metadata dangling = new Metadata();
+        dangling.setValue(Metadata.KEY, "dangling");
+        dangling.setValue(Metadata.TASK, untitled.getId() + 100);
+        metadataDao.persist(dangling);
+
+        List<Result> results = maintenance.runDueJobs();
+        assertEquals(maintenance.getJobs().length, results.size());
+        assertEquals(2, find(results, "cleanup").rows);
+        assertEquals(0, find(results, "integrity").rows);
+        assertEquals(0, find(results, "vacuum").rows);
+        for(Job job : maintenance.getJobs())
+            assertTrue(DatabaseMaintenance.getLastRun(job) > 0);
+
+        // schedule is persisted, so nothing is due right away
+        assertEquals(0, new DatabaseMaintenance().runDueJobs().size());
+
+        maintenance.resetSchedule();
+        assertEquals(0, find(maintenance.runDueJobs(), "cleanup").rows);
+    }
+
+    private Job findJob(String name) {
+        for(Job job : maintenance.getJobs())
+            if(job.name.equals(name))
+                return job;
+        return null;
+    }
+
+    /** leaves free pages behind in a database in the given vacuum mode */
+    private long createFreePages(String autoVacuum) {
+        database.execSQL("PRAGMA auto_vacuum = " + autoVacuum);
+        database.execSQL("VACUUM");
+        database.execSQL("CREATE TABLE filler (value TEXT)");
+        StringBuilder value = new StringBuilder();
+        for(int i = 0; i < 2000; i++)
+            value.append('x');
+        for(int i = 0; i < 200; i++)
+            database.execSQL("INSERT INTO filler (value) VALUES ('" + value + "')");
+        database.execSQL("DROP TABLE filler");
+        return database.simpleQueryForLong("PRAGMA freelist_count");
+    }
+
+    public void testIncrementalVacuumFreesPages() {
+        long free = createFreePages("INCREMENTAL");
+        assertTrue(free >= 64);
+
+        assertTrue(findJob("vacuum").run() > 0);
+        assertTrue(database.simpleQueryForLong("PRAGMA freelist_count") < free);
+    }
+
+    public void testFullVacuumWaitsForIdle() {
+        createFreePages("NONE");
+
+        assertNull(find(maintenance.runDueJobs(false), "vacuum"));
+        assertEquals(0, DatabaseMaintenance.getLastRun(findJob("vacuum")));
+        assertEquals(0, database.simpleQueryForLong("PRAGMA auto_vacuum"));
+
+        assertTrue(find(maintenance.runDueJobs(true), "vacuum").rows > 0);
+        assertEquals(2, database.simpleQueryForLong("PRAGMA auto_vacuum"));
+    }
+
+}
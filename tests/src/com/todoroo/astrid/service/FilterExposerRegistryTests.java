@@ -0,0 +1,141 @@
+package com.todoroo.astrid.service;
+
+import android.content.ContentValues;
+
+import com.todoroo.andlib.sql.QueryTemplate;
+import com.todoroo.andlib.test.TodorooTestCase;
+import com.todoroo.astrid.api.AstridFilterExposer;
+import com.todoroo.astrid.api.Filter;
+import com.todoroo.astrid.api.FilterListItem;
+import com.todoroo.astrid.data.Metadata;
+import com.todoroo.astrid.data.StoreObject;
+import com.todoroo.astrid.data.Task;
+import com.todoroo.astrid.service.FilterExposerRegistry.SummarizedFilterExposer;
+
+@SuppressWarnings("nls")
+public class FilterExposerRegistryTests extends TodorooTestCase {
+
+    private static class CountingExposer implements AstridFilterExposer {
+        private final String title;
+        int calls = 0;
+
+        public CountingExposer(String title) {
+            this.title = title;
+        }
+
+        public FilterListItem[] getFilters() {
+            calls++;
+            return new FilterListItem[] {
+                new Filter(title, title, new QueryTemplate(), null)
+            };
+        }
+    }
+
+    private static class SummarizedExposer extends CountingExposer implements SummarizedFilterExposer {
+        String summary = "a";
+
+        public SummarizedExposer(String title) {
+            super(title);
+        }
+
+        public Object getSummary() {
+            return summary;
+        }
+    }
+
+    private static ContentValues metadataKey(String key) {
+        ContentValues values = new ContentValues();
+        values.put(Metadata.KEY.name, key);
+        return values;
+    }
+
+    public void testCachesUntilTableChanges() {
+        FilterExposerRegistry registry = new FilterExposerRegistry();
+        CountingExposer tasks = new CountingExposer("tasks");
+        CountingExposer lists = new CountingExposer("lists");
+        registry.register(tasks, new String[] { Task.TABLE.name });
+        registry.register(lists, new String[] { StoreObject.TABLE.name });
+
+        FilterListItem[] filters = registry.getFilters();
+        assertEquals(2, filters.length);
+        assertEquals("tasks", filters[0].listingTitle);
+        assertEquals("lists", filters[1].listingTitle);
+
+        registry.getFilters();
+        assertEquals(1, tasks.calls);
+        assertEquals(1, lists.calls);
+
+        registry.onTableUpdated(Task.TABLE.name, new ContentValues());
+        registry.getFilters();
+        assertEquals(2, tasks.calls);
+        assertEquals(1, lists.calls);
+    }
+
+    public void testMetadataKeys() {
+        FilterExposerRegistry registry = new FilterExposerRegistry();
+        CountingExposer tags = new CountingExposer("tags");
+        registry.register(tags, new String[0], "tags-tag");
+        registry.getFilters();
+
+        registry.onTableUpdated(Metadata.TABLE.name, metadataKey("alarm"));
+        registry.getFilters();
+        assertEquals(1, tags.calls);
+
+        registry.onTableUpdated(Metadata.TABLE.name, metadataKey("tags-tag"));
+        registry.getFilters();
+        assertEquals(2, tags.calls);
+
+        // deletes don't say which key was removed
+        registry.onTableUpdated(Metadata.TABLE.name, null);
+        registry.getFilters();
+        assertEquals(3, tags.calls);
+    }
+
+    public void testSettings() {
+        FilterExposerRegistry registry = new FilterExposerRegistry();
+        CountingExposer tasks = new CountingExposer("tasks");
+        CountingExposer sync = new CountingExposer("sync");
+        registry.register(tasks, new String[] { Task.TABLE.name });
+        registry.register(sync, new String[] { StoreObject.TABLE.name, FilterExposerRegistry.SETTINGS });
+        registry.getFilters();
+
+        registry.onSettingsChanged();
+        registry.getFilters();
+        assertEquals(1, tasks.calls);
+        assertEquals(2, sync.calls);
+    }
+
+    public void testSummaries() {
+        FilterExposerRegistry registry = new FilterExposerRegistry();
+        SummarizedExposer tags = new SummarizedExposer("tags");
+        registry.register(tags, new String[0]);
+        registry.getFilters();
+
+        registry.getFilters();
+        assertEquals(1, tags.calls);
+
+        tags.summary = "b";
+        registry.getFilters();
+        assertEquals(2, tags.calls);
+        registry.getFilters();
+        assertEquals(2, tags.calls);
+    }
+
+    public void testReturnsCopies() {
+        FilterExposerRegistry registry = new FilterExposerRegistry();
+        registry.register(new CountingExposer("inbox"), new String[0]);
+
+        FilterListItem[] filters = registry.getFilters();
+        filters[0].listingTitle = "inbox (3)";
+
+        assertEquals("inbox", registry.getFilters()[0].listingTitle);
+    }
+
+    public void testBuiltInExposersAreRegistered() {
+        FilterExposerRegistry registry = FilterExposerRegistry.getInstance();
+        assertTrue(registry.isRegistered("com.todoroo.astrid.core.CoreFilterExposer"));
+        assertTrue(registry.isRegistered("com.todoroo.astrid.tags.TagFilterExposer"));
+        assertFalse(registry.isRegistered("com.example.OtherFilterExposer"));
+    }
+
+}
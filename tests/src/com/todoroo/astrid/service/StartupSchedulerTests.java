@@ -0,0 +1,119 @@
+package com.todoroo.astrid.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.todoroo.astrid.service.StartupScheduler.Phase;
+import com.todoroo.astrid.service.StartupScheduler.Stage;
+
+@SuppressWarnings("nls")
+public class StartupSchedulerTests extends TestCase {
+
+    private final List<String> ran = Collections.synchronizedList(new ArrayList<String>());
+
+    private Phase phase(final String name, Stage stage, String... dependencies) {
+        return new Phase(name, stage, dependencies) {
+            @Override
+            protected void run() {
+                if(name.startsWith("fail"))
+                    throw new IllegalStateException(name);
+                ran.add(name);
+            }
+        };
+    }
+
+    public void testCriticalPhasesRunInOrderOnCaller() {
+        StartupLog log = new StartupLog(16);
+        StartupScheduler scheduler = new StartupScheduler(log);
+        scheduler.add(phase("database", Stage.CRITICAL));
+        scheduler.add(phase("alarms", Stage.DEFERRED, "database"));
+        scheduler.add(phase("upgrade", Stage.CRITICAL, "database"));
+
+        scheduler.runCritical();
+        assertEquals("[database, upgrade]", ran.toString());
+        assertEquals(2, log.getEntries().size());
+        assertEquals("upgrade", log.getEntries().get(1).phase);
+        assertEquals(Thread.currentThread().getName(), log.getEntries().get(0).thread);
+    }
+
+    public void testBackgroundPhasesFollowDependencies() throws Exception {
+        StartupLog log = new StartupLog(16);
+        StartupScheduler scheduler = new StartupScheduler(log);
+        scheduler.add(phase("database", Stage.CRITICAL));
+        scheduler.add(phase("flags", Stage.DEFERRED));
+        scheduler.add(phase("sync", Stage.DEFERRED, "flags", "database"));
+        scheduler.add(phase("maintenance", Stage.IDLE));
+        scheduler.add(phase("report", Stage.IDLE, "maintenance"));
+
+        scheduler.runCritical();
+        scheduler.startBackground();
+        assertTrue(scheduler.awaitBackground(5000));
+
+        assertEquals(5, ran.size());
+        assertTrue(ran.indexOf("flags") < ran.indexOf("sync"));
+        // idle phases wait for all deferred ones
+        assertTrue(ran.indexOf("sync") < ran.indexOf("maintenance"));
+        assertEquals("report", ran.get(4));
+        assertTrue(log.getEntries().get(4).thread.startsWith("startup-"));
+    }
+
+    public void testFailuresAreLoggedAndDoNotBlockDependents() throws Exception {
+        StartupLog log = new StartupLog(16);
+        final List<String> failed = new ArrayList<String>();
+        StartupScheduler scheduler = new StartupScheduler(log) {
+            @Override
+            protected void onPhaseFailed(Phase phase, RuntimeException e) {
+                failed.add(phase.name);
+            }
+        };
+        scheduler.add(phase("fail-sync", Stage.DEFERRED));
+        scheduler.add(phase("after", Stage.DEFERRED, "fail-sync"));
+        scheduler.runCritical();
+        scheduler.startBackground();
+        assertTrue(scheduler.awaitBackground(5000));
+
+        assertEquals("[fail-sync]", failed.toString());
+        assertEquals("[after]", ran.toString());
+        assertTrue(log.getEntries().get(0).failed);
+
+        scheduler = new StartupScheduler(log);
+        scheduler.add(phase("fail-database", Stage.CRITICAL));
+        try {
+            scheduler.runCritical();
+            fail("critical failure should stop startup");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    public void testInvalidDependencies() {
+        StartupScheduler scheduler = new StartupScheduler(new StartupLog(4));
+        scheduler.add(phase("idle", Stage.IDLE));
+        try {
+            scheduler.add(phase("deferred", Stage.DEFERRED, "idle"));
+            fail("deferred phase can not wait for an idle one");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            scheduler.add(phase("other", Stage.IDLE, "missing"));
+            fail("dependencies must be added first");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testLogKeepsNewestEntries() {
+        StartupLog log = new StartupLog(3);
+        for(int i = 0; i < 5; i++)
+            log.add(new StartupLog.Entry("phase" + i, "CRITICAL", "main", 0, i, false));
+        List<StartupLog.Entry> entries = log.getEntries();
+        assertEquals(3, entries.size());
+        assertEquals("phase2", entries.get(0).phase);
+        assertEquals("phase4", entries.get(2).phase);
+    }
+
+}
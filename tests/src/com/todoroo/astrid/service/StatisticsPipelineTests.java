@@ -0,0 +1,124 @@
+package com.todoroo.astrid.service;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import com.todoroo.astrid.service.StatisticsPipeline.EventSink;
+import com.todoroo.astrid.service.abtesting.ABOptions;
+
+@SuppressWarnings("nls")
+public class StatisticsPipelineTests extends TestCase {
+
+    private static class FakeSink implements EventSink {
+        final ArrayList<String> events = new ArrayList<String>();
+        final ArrayList<Map<String, String>> attributes = new ArrayList<Map<String, String>>();
+
+        public synchronized void tagEvent(String event, Map<String, String> eventAttributes) {
+            events.add(event);
+            attributes.add(eventAttributes);
+        }
+    }
+
+    public void testFlushWritesEventsInOrder() {
+        FakeSink sink = new FakeSink();
+        StatisticsPipeline pipeline = new StatisticsPipeline(sink, new ABOptions(), 16);
+        assertTrue(pipeline.offer("a"));
+        assertTrue(pipeline.offer("b", "key", "value", "empty", null));
+        assertEquals(2, pipeline.pending());
+        assertEquals(0, sink.events.size());
+
+        assertEquals(2, pipeline.flush());
+        assertEquals(0, pipeline.pending());
+        assertEquals("a", sink.events.get(0));
+        assertNull(sink.attributes.get(0));
+        assertEquals("b", sink.events.get(1));
+        assertEquals(1, sink.attributes.get(1).size());
+        assertEquals("value", sink.attributes.get(1).get("key"));
+        assertEquals(2, pipeline.getDeliveredCount());
+    }
+
+    public void testFullBufferDropsEvents() {
+        FakeSink sink = new FakeSink();
+        StatisticsPipeline pipeline = new StatisticsPipeline(sink, null, 4);
+        for(int i = 0; i < 6; i++)
+            pipeline.offer("event" + i);
+        assertEquals(6, pipeline.getOfferedCount());
+        assertEquals(2, pipeline.getDroppedCount());
+        assertEquals(4, pipeline.flush());
+        assertEquals("event3", sink.events.get(3));
+
+        // slots are reused once written
+        assertTrue(pipeline.offer("again"));
+        assertEquals(1, pipeline.flush());
+        assertEquals("again", sink.events.get(4));
+    }
+
+    public void testFailingSinkDoesNotStopBatch() {
+        final FakeSink sink = new FakeSink();
+        StatisticsPipeline pipeline = new StatisticsPipeline(new EventSink() {
+            public void tagEvent(String event, Map<String, String> attributes) {
+                if("bad".equals(event))
+                    throw new IllegalStateException();
+                sink.tagEvent(event, attributes);
+            }
+        }, null, 8);
+        pipeline.offer("bad");
+        pipeline.offer("good");
+        assertEquals(1, pipeline.flush());
+        assertEquals(1, pipeline.getFailedCount());
+        assertEquals("good", sink.events.get(0));
+    }
+
+    public void testRunAfterFlushRunsOnConsumerAfterEvents() throws Exception {
+        final FakeSink sink = new FakeSink();
+        StatisticsPipeline pipeline = new StatisticsPipeline(sink, null, 16);
+        pipeline.start();
+        pipeline.offer("a");
+        pipeline.offer("b");
+
+        final CountDownLatch ran = new CountDownLatch(1);
+        final int[] written = new int[1];
+        final Thread[] thread = new Thread[1];
+        pipeline.runAfterFlush(new Runnable() {
+            public void run() {
+                synchronized(sink) {
+                    written[0] = sink.events.size();
+                }
+                thread[0] = Thread.currentThread();
+                ran.countDown();
+            }
+        });
+
+        // well before the batch delay
+        assertTrue(ran.await(1, TimeUnit.SECONDS));
+        assertEquals(2, written[0]);
+        assertNotSame(Thread.currentThread(), thread[0]);
+    }
+
+    public void testConcurrentProducers() throws Exception {
+        final FakeSink sink = new FakeSink();
+        final StatisticsPipeline pipeline = new StatisticsPipeline(sink, null, 1024);
+        final int threads = 4, perThread = 200;
+        final CountDownLatch done = new CountDownLatch(threads);
+        for(int i = 0; i < threads; i++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    for(int j = 0; j < perThread; j++)
+                        pipeline.offer("event");
+                    done.countDown();
+                }
+            }.start();
+        }
+        done.await();
+
+        assertEquals(threads * perThread, pipeline.flush());
+        assertEquals(0, pipeline.getDroppedCount());
+        assertEquals(threads * perThread, sink.events.size());
+    }
+
+}
@@ -0,0 +1,100 @@
+package com.todoroo.astrid.service;
+
+import com.todoroo.andlib.data.TodorooCursor;
+import com.todoroo.andlib.service.Autowired;
+import com.todoroo.andlib.sql.Query;
+import com.todoroo.astrid.dao.MetadataDao;
+import com.todoroo.astrid.data.Metadata;
+import com.todoroo.astrid.data.Task;
+import com.todoroo.astrid.tags.TagService;
+import com.todoroo.astrid.test.DatabaseTestCase;
+
+@SuppressWarnings("nls")
+public class TaskServiceTests extends DatabaseTestCase {
+
+    @Autowired
+    TaskService taskService;
+
+    @Autowired
+    MetadataDao metadataDao;
+
+    private Task createTask(String title, int importance) {
+        Task task = new Task();
+        task.setValue(Task.TITLE, title);
+        task.setValue(Task.IMPORTANCE, importance);
+        taskService.save(task);
+        return task;
+    }
+
+    private Task fetch(Task task) {
+        return taskService.fetchById(task.getId(), Task.PROPERTIES);
+    }
+
+    public void testCompleteAll() {
+        Task first = createTask("first", Task.IMPORTANCE_DO_OR_DIE);
+        Task second = createTask("second", Task.IMPORTANCE_DO_OR_DIE);
+        Task other = createTask("other", Task.IMPORTANCE_NONE);
+
+        assertEquals(2, taskService.completeAll(Task.IMPORTANCE.eq(Task.IMPORTANCE_DO_OR_DIE), true));
+        assertTrue(fetch(first).isCompleted());
+        assertTrue(fetch(second).isCompleted());
+        assertFalse(fetch(other).isCompleted());
+
+        // tasks already completed are left alone
+        assertEquals(0, taskService.completeAll(Task.ID.eq(first.getId()), true));
+
+        assertEquals(2, taskService.completeAll(Task.IMPORTANCE.eq(Task.IMPORTANCE_DO_OR_DIE), false));
+        assertFalse(fetch(first).isCompleted());
+    }
+
+    public void testDeleteAll() {
+        Task first = createTask("first", Task.IMPORTANCE_DO_OR_DIE);
+        Task other = createTask("other", Task.IMPORTANCE_NONE);
+
+        assertEquals(1, taskService.deleteAll(Task.IMPORTANCE.eq(Task.IMPORTANCE_DO_OR_DIE)));
+        assertTrue(fetch(first).isDeleted());
+        assertFalse(fetch(other).isDeleted());
+
+        assertEquals(0, taskService.deleteAll(Task.IMPORTANCE.eq(Task.IMPORTANCE_DO_OR_DIE)));
+    }
+
+    public void testMoveAll() {
+        Task first = createTask("first", Task.IMPORTANCE_DO_OR_DIE);
+        Task second = createTask("second", Task.IMPORTANCE_DO_OR_DIE);
+        Task other = createTask("other", Task.IMPORTANCE_NONE);
+        for(Task task : new Task[] { first, second, other })
+            addTag(task, "inbox");
+        addTag(second, "work");
+
+        assertEquals(2, taskService.moveAll(Task.IMPORTANCE.eq(Task.IMPORTANCE_DO_OR_DIE), "inbox", "work"));
+        assertEquals("work", TagService.getInstance().getTagsAsString(first.getId()));
+        assertEquals("work", TagService.getInstance().getTagsAsString(second.getId()));
+        assertEquals("inbox", TagService.getInstance().getTagsAsString(other.getId()));
+    }
+
+    private void addTag(Task task, String tag) {
+        Metadata metadata = new Metadata();
+        metadata.setValue(Metadata.KEY, TagService.KEY);
+        metadata.setValue(Metadata.TASK, task.getId());
+        metadata.setValue(TagService.TAG, tag);
+        metadataDao.createNew(metadata);
+    }
+
+    public void testCleanupRemovesUntitledTasks() {
+        Task task = createTask("title", Task.IMPORTANCE_NONE);
+        Task untitled = createTask("", Task.IMPORTANCE_NONE);
+        addTag(untitled, "inbox");
+
+        taskService.cleanup();
+        assertNotNull(fetch(task));
+        assertNull(fetch(untitled));
+        TodorooCursor<Metadata> cursor = metadataDao.query(Query.select(Metadata.ID).where(
+                Metadata.TASK.eq(untitled.getId())));
+        try {
+            assertEquals(0, cursor.getCount());
+        } finally {
+            cursor.close();
+        }
+    }
+
+}
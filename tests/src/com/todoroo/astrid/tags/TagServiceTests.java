@@ -0,0 +1,57 @@
+package com.todoroo.astrid.tags;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+
+import com.todoroo.andlib.service.Autowired;
+import com.todoroo.astrid.dao.TaskDao;
+import com.todoroo.astrid.data.Task;
+import com.todoroo.astrid.test.DatabaseTestCase;
+
+@SuppressWarnings("nls")
+public class TagServiceTests extends DatabaseTestCase {
+
+    @Autowired
+    TaskDao taskDao;
+
+    private TagService tagService;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        tagService = new TagService();
+    }
+
+    private Task createTask(String... tags) {
+        Task task = new Task();
+        task.setValue(Task.TITLE, "task");
+        taskDao.save(task);
+        LinkedHashSet<String> tagSet = new LinkedHashSet<String>();
+        for(String tag : tags)
+            tagSet.add(tag);
+        tagService.synchronizeTags(task.getId(), tagSet);
+        return task;
+    }
+
+    public void testGetTagsByTask() {
+        Task first = createTask("zebra", "Apple", "mango");
+        Task second = createTask("mango");
+        Task untagged = createTask();
+        Task other = createTask("other");
+
+        HashMap<Long, ArrayList<String>> tags = tagService.getTagsByTask(new long[] {
+                first.getId(), second.getId(), untagged.getId() });
+        assertEquals(2, tags.size());
+        assertEquals("[Apple, mango, zebra]", tags.get(first.getId()).toString());
+        assertEquals("[mango]", tags.get(second.getId()).toString());
+        assertNull(tags.get(untagged.getId()));
+        assertNull(tags.get(other.getId()));
+
+        // same as reading each task on its own
+        assertEquals(tagService.getTagsAsString(first.getId()),
+                tags.get(first.getId()).toString().replaceAll("[\\[\\]]", ""));
+        assertTrue(tagService.getTagsByTask(new long[0]).isEmpty());
+    }
+
+}
@@ -0,0 +1,147 @@
+package com.todoroo.astrid.tags;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+
+import com.todoroo.andlib.service.Autowired;
+import com.todoroo.andlib.utility.DateUtilities;
+import com.todoroo.astrid.dao.TagDataDao;
+import com.todoroo.astrid.dao.TaskDao;
+import com.todoroo.astrid.dao.UpdateDao;
+import com.todoroo.astrid.data.TagData;
+import com.todoroo.astrid.data.Task;
+import com.todoroo.astrid.data.Update;
+import com.todoroo.astrid.service.TagDataService;
+import com.todoroo.astrid.tags.TagService.Tag;
+import com.todoroo.astrid.test.DatabaseTestCase;
+
+@SuppressWarnings("nls")
+public class TagSummaryTests extends DatabaseTestCase {
+
+    @Autowired
+    TaskDao taskDao;
+
+    @Autowired
+    TagDataDao tagDataDao;
+
+    @Autowired
+    UpdateDao updateDao;
+
+    private TagService tagService;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        tagService = new TagService();
+    }
+
+    private Task createTask(String tag, long hideUntil) {
+        Task task = new Task();
+        task.setValue(Task.TITLE, "task");
+        task.setValue(Task.HIDE_UNTIL, hideUntil);
+        taskDao.save(task);
+        LinkedHashSet<String> tags = new LinkedHashSet<String>();
+        tags.add(tag);
+        tagService.synchronizeTags(task.getId(), tags);
+        return task;
+    }
+
+    private Tag find(String name) {
+        ArrayList<Tag> tags = tagService.getTagList();
+        for(Tag tag : tags)
+            if(tag.tag.equals(name))
+                return tag;
+        return null;
+    }
+
+    private Update createUpdate(long remoteId, String message, long created) {
+        return createUpdate("," + remoteId + ",", message, created);
+    }
+
+    private Update createUpdate(String tags, String message, long created) {
+        Update update = new Update();
+        update.setValue(Update.TAGS, tags);
+        update.setValue(Update.ACTION_CODE, "tag_comment");
+        update.setValue(Update.MESSAGE, message);
+        update.setValue(Update.CREATION_DATE, created);
+        updateDao.createNew(update);
+        return update;
+    }
+
+    public void testCountsFollowTasks() {
+        Task task = createTask("errands", 0);
+        assertEquals(1, find("errands").count);
+
+        // hidden tasks are not counted
+        createTask("errands", DateUtilities.now() + DateUtilities.ONE_DAY);
+        assertEquals(1, find("errands").count);
+
+        task.setValue(Task.COMPLETION_DATE, DateUtilities.now());
+        taskDao.save(task);
+        assertNull(find("errands"));
+    }
+
+    public void testCountsExpireWhenHiddenTaskAppears() throws Exception {
+        createTask("later", DateUtilities.now() + 500);
+        assertNull(find("later"));
+
+        Thread.sleep(1000);
+        assertEquals(1, find("later").count);
+    }
+
+    public void testLatestUpdateText() {
+        TagData tagData = new TagData();
+        tagData.setValue(TagData.NAME, "shared");
+        tagData.setValue(TagData.REMOTE_ID, 5L);
+        tagDataDao.createNew(tagData);
+
+        createUpdate(5, "first", 1000);
+        assertTrue(find("shared").updateText.endsWith("first"));
+
+        createUpdate(5, "second", 2000);
+        createUpdate(6, "other list", 3000);
+        assertTrue(find("shared").updateText.endsWith("second"));
+    }
+
+    public void testActiveTagsBySize() {
+        createTask("small", 0);
+        createTask("big", 0);
+        createTask("big", 0);
+        createTask("hidden", DateUtilities.now() + DateUtilities.ONE_DAY);
+
+        Tag[] tags = tagService.getActiveTags();
+        assertEquals(2, tags.length);
+        assertEquals("big", tags[0].tag);
+        assertEquals(2, tags[0].count);
+        assertEquals("small", tags[1].tag);
+    }
+
+    public void testLatestUpdatesFromTagIndex() {
+        TagDataService tagDataService = new TagDataService();
+        createUpdate(",5,6,", "both", 1000);
+        createUpdate(5, "five", 2000);
+        Update queued = createUpdate(",9,", "queued", 3000);
+        createUpdate(7, "seven", 500);
+
+        HashSet<Long> remoteIds = new HashSet<Long>();
+        for(long id = 5; id <= 8; id++)
+            remoteIds.add(id);
+        HashMap<Long, Update> latest = tagDataService.getLatestUpdates(remoteIds);
+        assertEquals("five", latest.get(5L).getValue(Update.MESSAGE));
+        assertEquals("both", latest.get(6L).getValue(Update.MESSAGE));
+        assertEquals("seven", latest.get(7L).getValue(Update.MESSAGE));
+        assertFalse(latest.containsKey(8L));
+
+        // moving updates to another tag and deleting them updates the index
+        Update template = new Update();
+        template.setValue(Update.TAGS, ",8,");
+        updateDao.update(Update.ID.eq(queued.getId()), template);
+        updateDao.deleteWhere(Update.MESSAGE.eq("seven"));
+        latest = tagDataService.getLatestUpdates(remoteIds);
+        assertEquals("queued", latest.get(8L).getValue(Update.MESSAGE));
+        assertFalse(latest.containsKey(7L));
+    }
+
+}
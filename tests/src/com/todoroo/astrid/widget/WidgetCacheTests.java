@@ -0,0 +1,44 @@
+package com.todoroo.astrid.widget;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("nls")
+public class WidgetCacheTests extends TestCase {
+
+    public void testQueryCachedPerInputs() {
+        WidgetCache cache = new WidgetCache();
+        assertNull(cache.getQuery(1, "0:0:5:sql"));
+
+        cache.putQuery(1, "0:0:5:sql", "sql LIMIT 5");
+        assertEquals("sql LIMIT 5", cache.getQuery(1, "0:0:5:sql"));
+        assertNull(cache.getQuery(1, "0:1:5:sql"));
+        assertNull(cache.getQuery(2, "0:0:5:sql"));
+    }
+
+    public void testSkipsUnchangedSnapshot() {
+        WidgetCache cache = new WidgetCache();
+        assertTrue(cache.setSnapshot(1, "a"));
+        assertFalse(cache.setSnapshot(1, "a"));
+        assertTrue(cache.setSnapshot(2, "a"));
+        assertTrue(cache.setSnapshot(1, "b"));
+        assertFalse(cache.setSnapshot(1, "b"));
+    }
+
+    public void testInvalidate() {
+        WidgetCache cache = new WidgetCache();
+        cache.putQuery(1, "key", "query");
+        cache.setSnapshot(1, "a");
+        cache.setSnapshot(2, "a");
+
+        cache.invalidate(1);
+        assertTrue(cache.setSnapshot(1, "a"));
+        assertFalse(cache.setSnapshot(2, "a"));
+        // compiled queries survive
+        assertEquals("query", cache.getQuery(1, "key"));
+
+        cache.invalidateAll();
+        assertTrue(cache.setSnapshot(1, "a"));
+        assertTrue(cache.setSnapshot(2, "a"));
+    }
+
+}
@@ -0,0 +1,129 @@
+package org.weloveastrid.rmilk.api;
+
+import org.weloveastrid.rmilk.api.data.RtmTaskList;
+import org.weloveastrid.rmilk.api.data.RtmTaskSeries;
+import org.weloveastrid.rmilk.api.data.RtmTasks;
+
+import com.todoroo.andlib.test.StandInServer;
+import com.todoroo.andlib.test.TodorooTestCase;
+
+/**
+ * Runs the RTM invoker against canned responses from a local server
+ */
+@SuppressWarnings("nls")
+public class InvokerTests extends TodorooTestCase {
+
+    private static final String TASKS = "<?xml version='1.0' encoding='UTF-8'?>" +
+        "<rsp stat=\"ok\"><tasks rev=\"1\">" +
+        "<list id=\"100\">" +
+        "<taskseries id=\"1\" created=\"2012-01-01T10:00:00Z\" modified=\"2012-01-02T10:00:00Z\" " +
+        "name=\"Pick up milk\" source=\"api\" url=\"\" location_id=\"\">" +
+        "<rrule every=\"1\">FREQ=WEEKLY;INTERVAL=1</rrule>" +
+        "<tags><tag>errands</tag><tag>home</tag></tags>" +
+        "<participants/>" +
+        "<notes><note id=\"7\" created=\"2012-01-01T10:00:00Z\" modified=\"2012-01-01T10:00:00Z\" " +
+        "title=\"where\">the &amp; store</note></notes>" +
+        "<task id=\"11\" due=\"2012-01-05T00:00:00Z\" has_due_time=\"0\" added=\"2012-01-01T10:00:00Z\" " +
+        "completed=\"2012-01-03T10:00:00Z\" deleted=\"\" priority=\"1\" postponed=\"0\" estimate=\"\"/>" +
+        "<task id=\"12\" due=\"2012-01-12T00:00:00Z\" has_due_time=\"0\" added=\"2012-01-03T10:00:00Z\" " +
+        "completed=\"\" deleted=\"\" priority=\"1\" postponed=\"2\" estimate=\"1 hour\"/>" +
+        "</taskseries>" +
+        "<taskseries id=\"2\" created=\"2012-01-01T10:00:00Z\" modified=\"2012-01-01T10:00:00Z\" " +
+        "name=\"Plain\" source=\"api\" url=\"\" location_id=\"\">" +
+        "<tags/><participants/>" +
+        "<task id=\"21\" due=\"\" has_due_time=\"0\" added=\"2012-01-01T10:00:00Z\" " +
+        "completed=\"\" deleted=\"\" priority=\"N\" postponed=\"0\" estimate=\"\"/>" +
+        "</taskseries>" +
+        "</list></tasks></rsp>";
+
+    private static final String UNAVAILABLE = "<?xml version='1.0' encoding='UTF-8'?>" +
+        "<rsp stat=\"fail\"><err code=\"105\" msg=\"Service currently unavailable\"/></rsp>";
+
+    private static final String INVALID_TOKEN = "<?xml version='1.0' encoding='UTF-8'?>" +
+        "<rsp stat=\"fail\"><err code=\"98\" msg=\"Login failed / Invalid auth token\"/></rsp>";
+
+    private String[] responses;
+    private int next;
+    private StandInServer server;
+    private Invoker invoker;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        server = new StandInServer("text/xml", new StandInServer.Responder() {
+            public synchronized String respond(String path) {
+                return responses[Math.min(next++, responses.length - 1)];
+            }
+        });
+        invoker = new Invoker("127.0.0.1", server.getPort(), ServiceImpl.REST_SERVICE_URL_POSTFIX,
+                new ApplicationInfo("key", "secret", "test"));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        server.close();
+        super.tearDown();
+    }
+
+    private RtmTasks getTasks() throws ServiceException {
+        return invoker.invoke(ServiceImpl.TASKS_PARSER, new Param("method", "rtm.tasks.getList"));
+    }
+
+    public void testStreamingTaskList() throws Exception {
+        responses = new String[] { TASKS };
+        RtmTasks tasks = getTasks();
+
+        assertEquals(1, tasks.getLists().size());
+        RtmTaskList list = tasks.getLists().get(0);
+        assertEquals("100", list.getId());
+        assertEquals(2, list.getSeries().size());
+
+        RtmTaskSeries series = list.getSeries().get(0);
+        assertEquals("Pick up milk", series.getName());
+        assertSame(list, series.getList());
+        assertTrue(series.hasRecurrence());
+        assertEquals(2, series.getTags().size());
+        assertEquals("home", series.getTags().get(1));
+        assertEquals(1, series.getNotes().getNotes().size());
+        assertEquals("the & store", series.getNotes().getNotes().get(0).getText());
+        // the uncompleted occurrence is selected
+        assertEquals("12", series.getTask().getId());
+        assertEquals(2, series.getTask().getPostponed());
+
+        RtmTaskSeries plain = list.getSeries().get(1);
+        assertFalse(plain.hasRecurrence());
+        assertNull(plain.getTags());
+        assertNull(plain.getTask().getDue());
+        assertEquals(0, plain.getNotes().getNotes().size());
+    }
+
+    public void testServiceUnavailableIsRetried() throws Exception {
+        responses = new String[] { UNAVAILABLE, TASKS };
+        RtmTasks tasks = getTasks();
+        assertEquals(1, tasks.getLists().size());
+        assertEquals(2, server.count("rtm.tasks.getList"));
+    }
+
+    public void testServiceErrorIsNotRetried() throws Exception {
+        responses = new String[] { INVALID_TOKEN, TASKS };
+        try {
+            getTasks();
+            fail("expected error");
+        } catch (ServiceException e) {
+            assertEquals(98, e.getResponseCode());
+        }
+        assertEquals(1, server.count("rtm.tasks.getList"));
+    }
+
+    public void testRateLimiterAllowsBurstThenThrottles() throws Exception {
+        RateLimiter limiter = new RateLimiter(3, 200);
+        long start = System.currentTimeMillis();
+        for(int i = 0; i < 3; i++)
+            limiter.acquire();
+        assertTrue(System.currentTimeMillis() - start < 100);
+
+        limiter.acquire();
+        assertTrue(System.currentTimeMillis() - start >= 150);
+    }
+
+}